@@ -0,0 +1,117 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.service.AccountsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accounts with UUID ids found by id and by handle, alone and as part of a transfer, and a scan of every balance in
+ * handle order against the same scan over a map of the accounts. The ids passed in are copies of the stored ones, as
+ * they are when decoded from a request, so a lookup by id compares the characters of both.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@State(Scope.Benchmark)
+public class AccountHandleBenchmark {
+
+    private static final BigDecimal AMOUNT = BigDecimal.ONE;
+
+    @Param({"100000"})
+    public int accounts;
+
+    private AccountsService accountsService;
+    private String[] ids;
+    private int[] handles;
+    private Map<String, Account> map;
+
+    @Setup
+    public void setUp() {
+        accountsService = Benchmarks.accountsService("striped", false);
+        ids = new String[accounts];
+        handles = new int[accounts];
+        map = new ConcurrentHashMap<>();
+        for (int i = 0; i < accounts; i++) {
+            String id = UUID.randomUUID().toString();
+            Account account = new Account(id, new BigDecimal(1_000_000_000));
+            accountsService.createAccount(account);
+            map.put(id, account);
+            ids[i] = new String(id.toCharArray());
+            handles[i] = account.getHandle();
+        }
+    }
+
+    @Benchmark
+    public boolean lookupById() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String from = ids[random.nextInt(accounts)];
+        String to = ids[random.nextInt(accounts)];
+        return accountsService.getAccount(from) != null && accountsService.getAccount(to) != null && !from.equals(to);
+    }
+
+    @Benchmark
+    public boolean lookupByHandle() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = handles[random.nextInt(accounts)];
+        int to = handles[random.nextInt(accounts)];
+        return accountsService.getAccount(from) != null && accountsService.getAccount(to) != null && from != to;
+    }
+
+    @Benchmark
+    public TransferOutcome transferById() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(accounts);
+        return accountsService.tryTransfer(ids[from], ids[(from + 1 + random.nextInt(accounts - 1)) % accounts],
+                AMOUNT);
+    }
+
+    @Benchmark
+    public TransferOutcome transferByHandle() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(accounts);
+        return accountsService.tryTransfer(handles[from],
+                handles[(from + 1 + random.nextInt(accounts - 1)) % accounts], AMOUNT);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public BigDecimal scanByHandle() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (Account account : accountsService.getAccountsRepository().allAccounts()) {
+            total = total.add(account.getBalance());
+        }
+        return total;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public BigDecimal scanMap() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (Account account : map.values()) {
+            total = total.add(account.getBalance());
+        }
+        return total;
+    }
+}
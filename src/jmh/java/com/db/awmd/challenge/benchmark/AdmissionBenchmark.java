@@ -0,0 +1,90 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.config.AdmissionProperties;
+import com.db.awmd.challenge.service.AdmissionControl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cost of the admission checks a transfer request goes through before reaching the service: a runaway client that
+ * is always rejected, against many well-behaved clients that are always admitted.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+public class AdmissionBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Runaway {
+
+        AdmissionControl admissionControl;
+
+        @Setup
+        public void setUp() {
+            AdmissionProperties properties = new AdmissionProperties();
+            properties.setClientRate(1);
+            properties.setClientBurst(1);
+            admissionControl = new AdmissionControl(properties);
+            admissionControl.admitClient("Runaway");
+        }
+    }
+
+    /**
+     * Default limits, which the clients stay well under, each sending a request every few milliseconds.
+     */
+    @State(Scope.Benchmark)
+    public static class Admission {
+
+        AdmissionControl admissionControl = new AdmissionControl(new AdmissionProperties());
+        final AtomicInteger threads = new AtomicInteger();
+    }
+
+    @State(Scope.Thread)
+    public static class Clients {
+
+        String[] ids = new String[1 << 12];
+        int next;
+
+        @Setup
+        public void setUp(Admission admission) {
+            int thread = admission.threads.getAndIncrement();
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = "Client-" + thread + "-" + i;
+            }
+        }
+    }
+
+    @Benchmark
+    public long rejected(Runaway runaway) {
+        return runaway.admissionControl.shouldShed() ? -1 : runaway.admissionControl.admitClient("Runaway");
+    }
+
+    @Benchmark
+    public long admitted(Admission admission, Clients clients) {
+        AdmissionControl admissionControl = admission.admissionControl;
+        if (admissionControl.shouldShed()) {
+            return -1;
+        }
+        clients.next = (clients.next + 1) & (clients.ids.length - 1);
+        long wait = admissionControl.admitClient(clients.ids[clients.next]);
+        if (wait == 0) {
+            admissionControl.completed(admissionControl.started());
+        }
+        return wait;
+    }
+}
@@ -0,0 +1,66 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.service.AccountLocks;
+import com.db.awmd.challenge.service.CasTransferEngine;
+import com.db.awmd.challenge.service.EpochBarrier;
+import com.db.awmd.challenge.service.TransferEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+
+/**
+ * Round trip transfers between two accounts with decimal and fixed-point balances, and reads of a balance. The gc
+ * profiler is enabled in build.gradle; when running the benchmark jar directly pass {@code -prof gc} so the
+ * allocation rate per operation ({@code gc.alloc.rate.norm}) of the two representations is reported.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BalanceModeBenchmark {
+
+    @Param({"decimal", "fixed-point"})
+    public String balanceMode;
+
+    @Param({"1.25", "125"})
+    public String transferAmount;
+
+    private final AccountLocks accountLocks = new AccountLocks(1024);
+    private final TransferEngine engine = new CasTransferEngine(accountLocks, new EpochBarrier(accountLocks));
+    private BigDecimal amount;
+    private Account from;
+    private Account to;
+
+    @Setup
+    public void setUp() {
+        amount = new BigDecimal(transferAmount);
+        from = new Account("Id-from", new BigDecimal(1_000_000));
+        to = new Account("Id-to", new BigDecimal(1_000_000));
+        if ("fixed-point".equals(balanceMode)) {
+            from.useFixedPoint(2);
+            to.useFixedPoint(2);
+        }
+    }
+
+    @Benchmark
+    public void roundTripTransfer() {
+        engine.transfer(from, to, amount, 1);
+        engine.transfer(to, from, amount, 1);
+    }
+
+    @Benchmark
+    public BigDecimal readBalance() {
+        return from.getBalance();
+    }
+}
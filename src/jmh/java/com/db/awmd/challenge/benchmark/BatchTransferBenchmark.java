@@ -0,0 +1,76 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.BatchTransfer;
+import com.db.awmd.challenge.domain.BatchTransferResult;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.service.AccountsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A batch of transfers applied through {@code AccountsService.transfer(BatchTransfer)} against the same transfers
+ * applied one call at a time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BatchTransferBenchmark {
+
+    @Param({"10000"})
+    public int batchSize;
+
+    @Param({"1000"})
+    public int accounts;
+
+    private AccountsService accountsService;
+    private List<Transfer> transfers;
+
+    @Setup
+    public void setUp() {
+        accountsService = Benchmarks.accountsService("striped");
+        String[] ids = Benchmarks.createAccounts(accountsService, accounts, new BigDecimal(1_000_000_000));
+
+        Random random = new Random(42);
+        transfers = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            int from = random.nextInt(accounts);
+            int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+            transfers.add(new Transfer(ids[from], ids[to], BigDecimal.ONE));
+        }
+    }
+
+    @Benchmark
+    public void singleCalls() throws Exception {
+        for (Transfer transfer : transfers) {
+            accountsService.transfer(transfer.getAccountFromId(), transfer.getAccountToId(), transfer.getAmount());
+        }
+    }
+
+    @Benchmark
+    public BatchTransferResult atomicBatch() {
+        return accountsService.transfer(new BatchTransfer(BatchTransfer.Mode.ATOMIC, transfers));
+    }
+
+    @Benchmark
+    public BatchTransferResult bestEffortBatch() {
+        return accountsService.transfer(new BatchTransfer(BatchTransfer.Mode.BEST_EFFORT, transfers));
+    }
+}
@@ -0,0 +1,71 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.config.AuditProperties;
+import com.db.awmd.challenge.config.BalanceProperties;
+import com.db.awmd.challenge.config.LedgerProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.AccountLocks;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.AuditService;
+import com.db.awmd.challenge.service.CasTransferEngine;
+import com.db.awmd.challenge.service.EpochBarrier;
+import com.db.awmd.challenge.service.ShardedTransferEngine;
+import com.db.awmd.challenge.service.StripedLockTransferEngine;
+import com.db.awmd.challenge.service.TransactionLedger;
+import com.db.awmd.challenge.service.TransferEngine;
+import com.db.awmd.challenge.service.TransferMetrics;
+
+import java.math.BigDecimal;
+
+/**
+ * Wires the service the way Spring does, without starting a context, and with notifications discarded so
+ * they do not dominate the measurement.
+ */
+final class Benchmarks {
+
+    private Benchmarks() {
+    }
+
+    static AccountsService accountsService(String engine) {
+        return accountsService(engine, true);
+    }
+
+    static AccountsService accountsService(String engine, boolean metrics) {
+        return accountsService(engine, metrics, new BalanceProperties());
+    }
+
+    static AccountsService accountsService(String engine, boolean metrics, BalanceProperties balanceProperties) {
+        return accountsService(engine, metrics, balanceProperties, new AccountLocks(1024));
+    }
+
+    /**
+     * @param accountLocks the locks of the service, for services built on top of it
+     */
+    static AccountsService accountsService(String engine, boolean metrics, BalanceProperties balanceProperties,
+                                           AccountLocks accountLocks) {
+        EpochBarrier epochBarrier = new EpochBarrier(accountLocks);
+        TransferEngine transferEngine;
+        if ("cas".equals(engine)) {
+            transferEngine = new CasTransferEngine(accountLocks, epochBarrier);
+        } else if ("sharded".equals(engine)) {
+            transferEngine = new ShardedTransferEngine(accountLocks, epochBarrier, 0);
+        } else {
+            transferEngine = new StripedLockTransferEngine(accountLocks, epochBarrier);
+        }
+        AccountsRepositoryInMemory accountsRepository = new AccountsRepositoryInMemory();
+        return new AccountsService(accountsRepository, (account, description) -> {
+        }, transferEngine, balanceProperties, accountLocks, epochBarrier,
+                new TransferMetrics(accountLocks, metrics), new TransactionLedger(new LedgerProperties()),
+                new AuditService(accountsRepository, epochBarrier, new AuditProperties()));
+    }
+
+    static String[] createAccounts(AccountsService accountsService, int count, BigDecimal balance) {
+        String[] ids = new String[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = "Id-" + i;
+            accountsService.createAccount(new Account(ids[i], balance));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,224 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.metrics.LatencyHistogram;
+import com.db.awmd.challenge.web.BinaryTransferServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load against the binary transfer endpoint of a running service started with {@code accounts.binary.enabled=true}:
+ * every connection keeps {@code pipeline} transfers of one unit between random accounts outstanding, sending the next
+ * as each response arrives, all driven by a single selector thread. The accounts are created over HTTP with the same
+ * ids as {@link HttpLoadGenerator}, so both can run against the same service. Prints the sustained requests per
+ * second and the latency percentiles of the measured period. With {@code handles} set to true the accounts are
+ * addressed by the handles the service gave them instead of by id.
+ * <p>
+ * {@code java ... BinaryLoadGenerator [host] [httpPort] [binaryPort] [connections] [pipeline] [seconds]
+ * [warmupSeconds] [accounts] [handles]}
+ */
+public final class BinaryLoadGenerator {
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final String host;
+    private final int accounts;
+    private final int pipeline;
+    private final byte[][] ids;
+    private final int[] handles;
+    private boolean byHandle;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final long[] statuses = new long[256];
+    private boolean measuring;
+
+    private BinaryLoadGenerator(String host, int accounts, int pipeline) {
+        this.host = host;
+        this.accounts = accounts;
+        this.pipeline = pipeline;
+        this.ids = new byte[accounts][];
+        for (int i = 0; i < accounts; i++) {
+            ids[i] = ("Load-" + i).getBytes(StandardCharsets.US_ASCII);
+        }
+        this.handles = new int[accounts];
+    }
+
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int httpPort = args.length > 1 ? Integer.parseInt(args[1]) : 18080;
+        int binaryPort = args.length > 2 ? Integer.parseInt(args[2]) : 18091;
+        int connections = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+        int pipeline = args.length > 4 ? Integer.parseInt(args[4]) : 64;
+        int seconds = args.length > 5 ? Integer.parseInt(args[5]) : 30;
+        int warmupSeconds = args.length > 6 ? Integer.parseInt(args[6]) : 10;
+        int accounts = args.length > 7 ? Integer.parseInt(args[7]) : 10_000;
+        boolean handles = args.length > 8 && Boolean.parseBoolean(args[8]);
+
+        BinaryLoadGenerator generator = new BinaryLoadGenerator(host, accounts, pipeline);
+        generator.createAccounts(httpPort);
+        if (handles) {
+            generator.fetchHandles(httpPort);
+        }
+        generator.run(binaryPort, connections, warmupSeconds, seconds);
+    }
+
+    private void createAccounts(int httpPort) throws IOException {
+        URL url = new URL("http", host, httpPort, "/v1/accounts");
+        for (int i = 0; i < accounts; i++) {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(("{\"accountId\":\"Load-" + i + "\",\"balance\":1000000000}").getBytes(StandardCharsets.UTF_8));
+            }
+            // 400 when a previous run already created it
+            connection.getResponseCode();
+            connection.disconnect();
+        }
+    }
+
+    private void fetchHandles(int httpPort) throws IOException {
+        for (int i = 0; i < accounts; i++) {
+            HttpURLConnection connection = (HttpURLConnection) new URL("http", host, httpPort,
+                "/v1/accounts/Load-" + i + "/handle").openConnection();
+            if (connection.getResponseCode() != 200) {
+                throw new IOException("The service gives no handle for account Load-" + i);
+            }
+            try (InputStream in = connection.getInputStream()) {
+                handles[i] = Integer.parseInt(new String(readAll(in), StandardCharsets.US_ASCII).trim());
+            }
+            connection.disconnect();
+        }
+        byHandle = true;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        for (int read; (read = in.read(buffer)) > 0; ) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void run(int port, int connections, int warmupSeconds, int seconds) throws IOException {
+        Selector selector = Selector.open();
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        for (int i = 0; i < connections; i++) {
+            SocketChannel channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.connect(address);
+            channel.register(selector, SelectionKey.OP_CONNECT, new Connection());
+        }
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+        long measuredAt = 0;
+
+        while (System.nanoTime() < end) {
+            if (!measuring && System.nanoTime() >= measureFrom) {
+                measuring = true;
+                measuredAt = System.nanoTime();
+            }
+            selector.select(100);
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                Connection connection = (Connection) key.attachment();
+                SocketChannel channel = (SocketChannel) key.channel();
+                if (key.isConnectable()) {
+                    channel.finishConnect();
+                } else if (key.isReadable()) {
+                    if (channel.read(connection.in) < 0) {
+                        throw new IOException("Connection closed by the server");
+                    }
+                    receive(connection);
+                }
+                send(key, connection);
+            }
+        }
+        selector.close();
+
+        double elapsed = (System.nanoTime() - measuredAt) / 1e9;
+        LatencyHistogram.Snapshot snapshot = latency.snapshot();
+        System.out.printf(Locale.ROOT, "connections=%d pipeline=%d requests=%d rps=%.0f applied=%d rejected=%d%n",
+            connections, pipeline, snapshot.getCount(), snapshot.getCount() / elapsed, statuses[0],
+            snapshot.getCount() - statuses[0]);
+        System.out.printf(Locale.ROOT, "latency ms: p50=%.2f p90=%.2f p99=%.2f p999=%.2f max=%.2f%n",
+            snapshot.percentile(50) / 1e6, snapshot.percentile(90) / 1e6, snapshot.percentile(99) / 1e6,
+            snapshot.percentile(99.9) / 1e6, snapshot.getMax() / 1e6);
+    }
+
+    /**
+     * Tops the connection up to {@code pipeline} outstanding requests and writes what it can.
+     */
+    private void send(SelectionKey key, Connection connection) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        ByteBuffer out = connection.out;
+        while (connection.outstanding < pipeline && out.remaining() >= 64) {
+            int from = random.nextInt(accounts);
+            int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+            // responses arrive in order, so the slot of a correlation id is free again by the time it is reused
+            int correlationId = connection.next;
+            connection.next = (correlationId + 1) % pipeline;
+            if (byHandle) {
+                out.putInt(4 + 6 + 6 + 8 + 1).putInt(correlationId)
+                    .putShort((short) BinaryTransferServer.HANDLE).putInt(handles[from])
+                    .putShort((short) BinaryTransferServer.HANDLE).putInt(handles[to]);
+            } else {
+                out.putInt(4 + 2 + ids[from].length + 2 + ids[to].length + 8 + 1).putInt(correlationId)
+                    .putShort((short) ids[from].length).put(ids[from]).putShort((short) ids[to].length).put(ids[to]);
+            }
+            out.putLong(1).put((byte) 0);
+            connection.sentAt[correlationId] = System.nanoTime();
+            connection.outstanding++;
+        }
+        out.flip();
+        ((SocketChannel) key.channel()).write(out);
+        key.interestOps(out.hasRemaining() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        out.compact();
+    }
+
+    private void receive(Connection connection) {
+        ByteBuffer in = connection.in;
+        in.flip();
+        long now = System.nanoTime();
+        while (in.remaining() >= 9) {
+            in.getInt();
+            int correlationId = in.getInt();
+            int status = in.get() & 0xff;
+            connection.outstanding--;
+            if (measuring) {
+                latency.record(now - connection.sentAt[correlationId]);
+                statuses[status]++;
+            }
+        }
+        in.compact();
+    }
+
+    private final class Connection {
+
+        final ByteBuffer in = ByteBuffer.allocate(BUFFER_BYTES);
+        final ByteBuffer out = ByteBuffer.allocate(BUFFER_BYTES);
+        final long[] sentAt = new long[pipeline];
+        int next;
+        int outstanding;
+    }
+}
@@ -0,0 +1,77 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.config.BulkProperties;
+import com.db.awmd.challenge.domain.BulkImportResult;
+import com.db.awmd.challenge.service.AccountStreamFormat;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.BinaryAccountFormat;
+import com.db.awmd.challenge.service.BulkAccountsService;
+import com.db.awmd.challenge.service.NdjsonAccountFormat;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Imports a million accounts into an empty in-memory repository per invocation; a million divided by the reported
+ * time is the import rate in accounts per second.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class BulkImportBenchmark {
+
+    private static final int ACCOUNTS = 1_000_000;
+
+    @Param({"ndjson", "binary"})
+    public String format;
+
+    private AccountStreamFormat<?> streamFormat;
+    private byte[] stream;
+    private BulkAccountsService bulkAccountsService;
+
+    @Setup(Level.Trial)
+    public void encode() throws IOException {
+        streamFormat = "binary".equals(format) ? new BinaryAccountFormat() : new NdjsonAccountFormat(new ObjectMapper());
+        AccountsService accountsService = Benchmarks.accountsService("striped", false);
+        Benchmarks.createAccounts(accountsService, ACCOUNTS, new BigDecimal("1000.25"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * ACCOUNTS);
+        new BulkAccountsService(accountsService, new BulkProperties()).exportAccounts(streamFormat, out);
+        stream = out.toByteArray();
+    }
+
+    @Setup(Level.Invocation)
+    public void emptyRepository() {
+        bulkAccountsService = new BulkAccountsService(Benchmarks.accountsService("striped", false),
+                new BulkProperties());
+    }
+
+    @TearDown(Level.Invocation)
+    public void stopWorkers() {
+        bulkAccountsService.destroy();
+    }
+
+    @Benchmark
+    public BulkImportResult importAccounts() throws IOException {
+        return bulkAccountsService.importAccounts(streamFormat, new ByteArrayInputStream(stream));
+    }
+}
@@ -0,0 +1,92 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.config.BalanceProperties;
+import com.db.awmd.challenge.config.HoldProperties;
+import com.db.awmd.challenge.domain.Hold;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.service.AccountLocks;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.HoldService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of holding funds compared with a transfer between random accounts: a hold released again, and a hold
+ * captured, which is a transfer out of the held funds. Finished holds are forgotten by a sweeper running every 100
+ * milliseconds, as the scheduled one would.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@State(Scope.Benchmark)
+public class HoldBenchmark {
+
+    private static final int ACCOUNTS = 10_000;
+    private static final BigDecimal AMOUNT = BigDecimal.ONE;
+
+    private String[] ids;
+    private AccountsService accountsService;
+    private HoldService holdService;
+    private ScheduledExecutorService sweeper;
+
+    @Setup
+    public void setUp() {
+        AccountLocks accountLocks = new AccountLocks(1024);
+        accountsService = Benchmarks.accountsService("striped", true, new BalanceProperties(), accountLocks);
+        ids = Benchmarks.createAccounts(accountsService, ACCOUNTS, new BigDecimal(1_000_000_000));
+        HoldProperties properties = new HoldProperties();
+        properties.setRetentionMillis(0);
+        holdService = new HoldService(accountsService, accountLocks, properties);
+        sweeper = Executors.newSingleThreadScheduledExecutor();
+        sweeper.scheduleWithFixedDelay(holdService::sweep, 100, 100, TimeUnit.MILLISECONDS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        sweeper.shutdownNow();
+    }
+
+    @Benchmark
+    public TransferOutcome transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(ACCOUNTS);
+        return accountsService.tryTransfer(ids[from], ids[(from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS],
+                AMOUNT);
+    }
+
+    @Benchmark
+    public Hold holdAndRelease() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(ACCOUNTS);
+        Hold hold = holdService.hold(ids[from], ids[(from + 1) % ACCOUNTS], AMOUNT, null);
+        return holdService.release(hold.getId());
+    }
+
+    @Benchmark
+    public Hold holdAndCapture() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(ACCOUNTS);
+        Hold hold = holdService.hold(ids[from], ids[(from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS], AMOUNT,
+                null);
+        return holdService.capture(hold.getId(), null);
+    }
+}
@@ -0,0 +1,74 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.config.BalanceProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.service.AccountsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Every thread pays a single merchant account from its own payer, the shape of a checkout spike. With
+ * {@code combineAfterContentions} at 0 all credits compete for the merchant's balance (and its stripe with the
+ * striped engine); otherwise the merchant starts combining its deposits once it sees that many contended updates.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(Threads.MAX)
+public class HotAccountBenchmark {
+
+    private static final BigDecimal AMOUNT = BigDecimal.ONE;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal(1_000_000_000);
+    private static final String MERCHANT = "Merchant";
+
+    @State(Scope.Benchmark)
+    public static class Service {
+
+        @Param({"striped", "cas"})
+        public String engine;
+
+        @Param({"0", "64"})
+        public int combineAfterContentions;
+
+        AccountsService accountsService;
+        final AtomicInteger payers = new AtomicInteger();
+
+        @Setup
+        public void setUp() {
+            BalanceProperties balanceProperties = new BalanceProperties();
+            balanceProperties.setCombineAfterContentions(combineAfterContentions);
+            accountsService = Benchmarks.accountsService(engine, true, balanceProperties);
+            accountsService.createAccount(new Account(MERCHANT, BigDecimal.ZERO));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Payer {
+
+        String id;
+
+        @Setup
+        public void setUp(Service service) {
+            id = "Payer-" + service.payers.getAndIncrement();
+            service.accountsService.createAccount(new Account(id, INITIAL_BALANCE));
+        }
+    }
+
+    @Benchmark
+    public void payMerchant(Service service, Payer payer) throws Exception {
+        service.accountsService.transfer(payer.id, MERCHANT, AMOUNT);
+    }
+}
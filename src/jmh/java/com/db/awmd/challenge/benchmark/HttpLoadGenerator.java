@@ -0,0 +1,218 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closed-loop HTTP load against a running service: every connection sends a transfer between two random accounts,
+ * waits for the response and sends the next, over keep-alive connections driven by a single selector thread, so
+ * thousands of connections need no thousands of client threads. Prints the sustained requests per second and the
+ * latency percentiles of the measured period.
+ * <p>
+ * {@code java ... HttpLoadGenerator [host] [port] [connections] [seconds] [warmupSeconds] [accounts]}
+ */
+public final class HttpLoadGenerator {
+
+    private static final int MAX_PENDING_CONNECTS = 256;
+
+    private final String host;
+    private final int port;
+    private final int accounts;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private boolean measuring;
+    private long ok;
+    private long rejected;
+    private long errors;
+
+    private HttpLoadGenerator(String host, int port, int accounts) {
+        this.host = host;
+        this.port = port;
+        this.accounts = accounts;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 18080;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+        int warmupSeconds = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+        int accounts = args.length > 5 ? Integer.parseInt(args[5]) : 10_000;
+
+        HttpLoadGenerator generator = new HttpLoadGenerator(host, port, accounts);
+        generator.createAccounts();
+        generator.run(connections, warmupSeconds, seconds);
+    }
+
+    private void createAccounts() throws IOException {
+        URL url = new URL("http", host, port, "/v1/accounts");
+        for (int i = 0; i < accounts; i++) {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(("{\"accountId\":\"Load-" + i + "\",\"balance\":1000000000}").getBytes(StandardCharsets.UTF_8));
+            }
+            connection.getResponseCode();
+            connection.disconnect();
+        }
+    }
+
+    private void run(int connections, int warmupSeconds, int seconds) throws IOException {
+        Selector selector = Selector.open();
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        int opened = 0;
+        int pendingConnects = 0;
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+        long connectedAt = 0;
+
+        while (System.nanoTime() < end) {
+            while (opened < connections && pendingConnects < MAX_PENDING_CONNECTS) {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel.connect(address);
+                channel.register(selector, SelectionKey.OP_CONNECT, new Connection());
+                opened++;
+                pendingConnects++;
+            }
+            if (!measuring && System.nanoTime() >= measureFrom) {
+                measuring = true;
+                connectedAt = System.nanoTime();
+            }
+
+            selector.select(100);
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                Connection connection = (Connection) key.attachment();
+                SocketChannel channel = (SocketChannel) key.channel();
+                try {
+                    if (key.isConnectable()) {
+                        channel.finishConnect();
+                        pendingConnects--;
+                        send(key, connection);
+                    } else if (key.isWritable()) {
+                        write(key, connection);
+                    } else if (key.isReadable()) {
+                        read(key, connection);
+                    }
+                } catch (IOException e) {
+                    if (key.isConnectable()) {
+                        pendingConnects--;
+                    }
+                    errors++;
+                    key.cancel();
+                    channel.close();
+                    opened--;
+                }
+            }
+        }
+        selector.close();
+
+        double elapsed = (System.nanoTime() - connectedAt) / 1e9;
+        LatencyHistogram.Snapshot snapshot = latency.snapshot();
+        System.out.printf(Locale.ROOT, "connections=%d requests=%d rps=%.0f ok=%d rejected=%d errors=%d%n",
+            connections, snapshot.getCount(), snapshot.getCount() / elapsed, ok, rejected, errors);
+        System.out.printf(Locale.ROOT, "latency ms: p50=%.2f p90=%.2f p99=%.2f p999=%.2f max=%.2f%n",
+            snapshot.percentile(50) / 1e6, snapshot.percentile(90) / 1e6, snapshot.percentile(99) / 1e6,
+            snapshot.percentile(99.9) / 1e6, snapshot.getMax() / 1e6);
+    }
+
+    private void send(SelectionKey key, Connection connection) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(accounts);
+        int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+        String body = "{\"accountFromId\":\"Load-" + from + "\",\"accountToId\":\"Load-" + to + "\",\"amount\":1}";
+        String request = "POST /v1/accounts/transfer HTTP/1.1\r\nHost: " + host + "\r\n"
+            + "Content-Type: application/json\r\nContent-Length: " + body.length() + "\r\n\r\n" + body;
+        connection.request = ByteBuffer.wrap(request.getBytes(StandardCharsets.US_ASCII));
+        connection.sentAt = System.nanoTime();
+        write(key, connection);
+    }
+
+    private void write(SelectionKey key, Connection connection) throws IOException {
+        ((SocketChannel) key.channel()).write(connection.request);
+        key.interestOps(connection.request.hasRemaining() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    private void read(SelectionKey key, Connection connection) throws IOException {
+        if (((SocketChannel) key.channel()).read(connection.response) < 0) {
+            throw new IOException("Connection closed by the server");
+        }
+        int status = connection.completedStatus();
+        if (status == 0) {
+            return;
+        }
+        if (measuring) {
+            latency.record(System.nanoTime() - connection.sentAt);
+            if (status == 200) {
+                ok++;
+            } else if (status < 500) {
+                rejected++;
+            } else {
+                errors++;
+            }
+        }
+        send(key, connection);
+    }
+
+    private static final class Connection {
+
+        ByteBuffer request;
+        ByteBuffer response = ByteBuffer.allocate(16 * 1024);
+        long sentAt;
+
+        /**
+         * @return the status of the response once it is complete, consuming it, or 0 while it is incomplete
+         */
+        int completedStatus() {
+            String received = new String(response.array(), 0, response.position(), StandardCharsets.US_ASCII);
+            int headerEnd = received.indexOf("\r\n\r\n");
+            if (headerEnd < 0) {
+                return 0;
+            }
+            String headers = received.substring(0, headerEnd).toLowerCase(Locale.ROOT);
+            int length;
+            if (headers.contains("transfer-encoding: chunked")) {
+                int last = received.indexOf("\r\n0\r\n\r\n", headerEnd);
+                if (last < 0) {
+                    return 0;
+                }
+                length = last + 7 - headerEnd - 4;
+            } else {
+                int index = headers.indexOf("content-length:");
+                length = index < 0 ? 0
+                    : Integer.parseInt(headers.substring(index + 15, headers.indexOf('\n', index) < 0
+                    ? headers.length() : headers.indexOf('\n', index)).trim());
+            }
+            int total = headerEnd + 4 + length;
+            if (response.position() < total) {
+                return 0;
+            }
+            int status = Integer.parseInt(received.substring(9, 12));
+            response.flip();
+            response.position(total);
+            response.compact();
+            return status;
+        }
+    }
+}
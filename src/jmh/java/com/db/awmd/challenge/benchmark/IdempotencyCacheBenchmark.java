@@ -0,0 +1,83 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.config.IdempotencyProperties;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.service.IdempotencyCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Request ids that are always new, so every call inserts and evicts, against retries of a small set of ids that
+ * are always found, from several threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+public class IdempotencyCacheBenchmark {
+
+    private static final Supplier<TransferOutcome> TRANSFER = () -> TransferOutcome.APPLIED;
+    private static final BigDecimal AMOUNT = BigDecimal.TEN;
+
+    @State(Scope.Benchmark)
+    public static class Cache {
+
+        IdempotencyCache cache;
+        final AtomicInteger threads = new AtomicInteger();
+
+        @Setup
+        public void setUp() {
+            cache = new IdempotencyCache(new IdempotencyProperties());
+            for (int i = 0; i < 1024; i++) {
+                cache.execute(null, "127.0.0.1", request("Retry-" + i), TRANSFER);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Ids {
+
+        String prefix;
+        long next;
+        Transfer[] retries = new Transfer[1024];
+
+        @Setup
+        public void setUp(Cache cache) {
+            prefix = "Req-" + cache.threads.getAndIncrement() + "-";
+            for (int i = 0; i < retries.length; i++) {
+                retries[i] = request("Retry-" + i);
+            }
+        }
+    }
+
+    @Benchmark
+    public TransferOutcome insert(Cache cache, Ids ids) {
+        return cache.cache.execute(null, "127.0.0.1", request(ids.prefix + ids.next++), TRANSFER);
+    }
+
+    @Benchmark
+    public TransferOutcome hit(Cache cache, Ids ids) {
+        return cache.cache.execute(null, "127.0.0.1", ids.retries[(int) (ids.next++ & 1023)], TRANSFER);
+    }
+
+    private static Transfer request(String requestId) {
+        return new Transfer("Id-1", "Id-2", AMOUNT, requestId);
+    }
+}
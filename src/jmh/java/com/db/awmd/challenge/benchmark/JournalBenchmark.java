@@ -0,0 +1,122 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.repository.Journal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Append throughput of the transfer journal for each fsync policy, and the time to replay a journal of
+ * {@code entries} transfers. The 100M entries journal takes several gigabytes of disk in the temp directory.
+ */
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+public class JournalBenchmark {
+
+    private static final int SEGMENT_SIZE = 256 * 1024 * 1024;
+    private static final BigDecimal AMOUNT = new BigDecimal("12.34");
+
+    @State(Scope.Benchmark)
+    public static class Append {
+
+        @Param({"NEVER", "INTERVAL", "ALWAYS"})
+        public Journal.FsyncPolicy fsync;
+
+        Path directory;
+        Journal journal;
+
+        @Setup(Level.Iteration)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("journal-append");
+            journal = Journal.open(directory, SEGMENT_SIZE, fsync, 10, new Counter());
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws IOException {
+            journal.close();
+            delete(directory);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Replay {
+
+        @Param({"1000000", "100000000"})
+        public int entries;
+
+        Path directory;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("journal-replay");
+            try (Journal journal = Journal.open(directory, SEGMENT_SIZE, Journal.FsyncPolicy.NEVER, 0, new Counter())) {
+                for (int i = 0; i < entries; i++) {
+                    journal.appendTransfer("Id-" + (i & 0xffff), "Id-" + ((i + 1) & 0xffff), AMOUNT, 1);
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            delete(directory);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @Threads(4)
+    public long append(Append state) {
+        return state.journal.appendTransfer("0f8fad5b-d9cb-469f-a165-70867728950e",
+                "7c9e6679-7425-40de-944b-e07fc1f90ae7", AMOUNT, 1);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long replay(Replay state) throws IOException {
+        Counter counter = new Counter();
+        Journal.open(state.directory, SEGMENT_SIZE, Journal.FsyncPolicy.NEVER, 0, counter).close();
+        return counter.records;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static class Counter implements Journal.Visitor {
+
+        long records;
+
+        @Override
+        public void accountCreated(String accountId, BigDecimal balance) {
+            records++;
+        }
+
+        @Override
+        public void transferApplied(String accountFromId, String accountToId, BigDecimal amount) {
+            records++;
+        }
+    }
+}
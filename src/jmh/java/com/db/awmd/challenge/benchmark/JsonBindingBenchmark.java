@@ -0,0 +1,70 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.config.AccountViewProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.service.AccountViews;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+
+/**
+ * JSON binding of the request and response bodies of {@code AccountsController}, with an
+ * {@link ObjectMapper} built the same way Spring MVC builds its message converter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JsonBindingBenchmark {
+
+    private ObjectMapper objectMapper;
+    private Account account;
+    private byte[] accountJson;
+    private byte[] transferJson;
+    private AccountViews accountViews;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        account = new Account("0f8fad5b-d9cb-469f-a165-70867728950e", new BigDecimal("123456.78"));
+        accountJson = objectMapper.writeValueAsBytes(account);
+        transferJson = objectMapper.writeValueAsBytes(new Transfer("0f8fad5b-d9cb-469f-a165-70867728950e",
+                "7c9e6679-7425-40de-944b-e07fc1f90ae7", new BigDecimal("99.95")));
+        accountViews = new AccountViews(objectMapper, new AccountViewProperties());
+    }
+
+    @Benchmark
+    public byte[] serializeAccount() throws Exception {
+        return objectMapper.writeValueAsBytes(account);
+    }
+
+    /**
+     * The read path of {@code GET /v1/accounts/{accountId}} while the balance does not change.
+     */
+    @Benchmark
+    public byte[] accountView() {
+        return accountViews.view(account).getJson();
+    }
+
+    @Benchmark
+    public Account deserializeAccount() throws Exception {
+        return objectMapper.readValue(accountJson, Account.class);
+    }
+
+    @Benchmark
+    public Transfer deserializeTransfer() throws Exception {
+        return objectMapper.readValue(transferJson, Transfer.class);
+    }
+}
@@ -0,0 +1,82 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.metrics.LatencyHistogram;
+import com.db.awmd.challenge.service.AccountsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cost of the transfer instrumentation: the same transfers with {@code TransferMetrics} on and off, and the
+ * histogram recording on its own, from several threads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+public class MetricsOverheadBenchmark {
+
+    private static final BigDecimal AMOUNT = BigDecimal.ONE;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal(1_000_000_000);
+
+    @State(Scope.Benchmark)
+    public static class Service {
+
+        @Param({"on", "off"})
+        public String metrics;
+
+        AccountsService accountsService;
+        final AtomicInteger pairs = new AtomicInteger();
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        @Setup
+        public void setUp() {
+            accountsService = Benchmarks.accountsService("striped", "on".equals(metrics));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Pair {
+
+        String from;
+        String to;
+        long value;
+
+        @Setup
+        public void setUp(Service service) {
+            int pair = service.pairs.getAndIncrement();
+            from = "Pair-" + pair + "-a";
+            to = "Pair-" + pair + "-b";
+            service.accountsService.createAccount(new Account(from, INITIAL_BALANCE));
+            service.accountsService.createAccount(new Account(to, INITIAL_BALANCE));
+        }
+    }
+
+    @Benchmark
+    public void transfer(Service service, Pair pair) throws Exception {
+        service.accountsService.transfer(pair.from, pair.to, AMOUNT);
+        service.accountsService.transfer(pair.to, pair.from, AMOUNT);
+    }
+
+    @Benchmark
+    public void recordLatency(Service service, Pair pair) {
+        pair.value = (pair.value + 7919) & 0xfffff;
+        service.histogram.record(pair.value);
+    }
+}
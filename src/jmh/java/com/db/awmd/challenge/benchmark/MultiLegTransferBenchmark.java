@@ -0,0 +1,65 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.BatchTransferResult;
+import com.db.awmd.challenge.domain.MultiLegTransfer;
+import com.db.awmd.challenge.service.AccountsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One multi-leg transfer paying {@code legs} distinct accounts against the same payments made one transfer call at
+ * a time. Divide the time per operation by {@code legs} for the cost of a leg.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MultiLegTransferBenchmark {
+
+    @Param({"1", "10", "1000"})
+    public int legs;
+
+    private AccountsService accountsService;
+    private MultiLegTransfer transfer;
+
+    @Setup
+    public void setUp() {
+        accountsService = Benchmarks.accountsService("striped");
+        String[] ids = Benchmarks.createAccounts(accountsService, legs + 1, BigDecimal.ZERO);
+        accountsService.getAccount(ids[0]).setBalance(new BigDecimal(Long.MAX_VALUE));
+
+        List<MultiLegTransfer.Leg> payments = new ArrayList<>(legs);
+        for (int i = 1; i <= legs; i++) {
+            payments.add(new MultiLegTransfer.Leg(ids[i], BigDecimal.ONE));
+        }
+        transfer = new MultiLegTransfer(ids[0], payments);
+    }
+
+    @Benchmark
+    public BatchTransferResult multiLeg() {
+        return accountsService.transfer(transfer);
+    }
+
+    @Benchmark
+    public void singleCalls() throws Exception {
+        for (MultiLegTransfer.Leg leg : transfer.getLegs()) {
+            accountsService.transfer(transfer.getAccountFromId(), leg.getAccountToId(), leg.getAmount());
+        }
+    }
+}
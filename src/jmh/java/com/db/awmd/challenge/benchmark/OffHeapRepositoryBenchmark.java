@@ -0,0 +1,115 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.config.BalanceProperties;
+import com.db.awmd.challenge.config.OffHeapProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.OffHeapAccountsRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the heap map with the off-heap store. Lookup and update latencies are sampled, so the JMH output
+ * carries the p99; the heap retained by the accounts is printed by the setup, measured across full collections.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+public class OffHeapRepositoryBenchmark {
+
+    private static final int LOOKUPS = 1 << 16;
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @Param({"in-memory", "off-heap"})
+    public String store;
+
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    private AccountsRepository repository;
+    private String[] lookupIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long heapBefore = usedHeap();
+        if ("off-heap".equals(store)) {
+            OffHeapProperties properties = new OffHeapProperties();
+            properties.setCapacity(size);
+            repository = new OffHeapAccountsRepository(properties, new BalanceProperties());
+        } else {
+            repository = new AccountsRepositoryInMemory();
+        }
+        for (int i = 0; i < size; i++) {
+            repository.createAccount(new Account("Id-" + i, BigDecimal.TEN));
+        }
+        long heapBytes = usedHeap() - heapBefore;
+        long offHeapBytes = repository instanceof OffHeapAccountsRepository
+                ? ((OffHeapAccountsRepository) repository).offHeapBytes()
+                : 0;
+        System.out.printf("%n%s, %d accounts: %d heap bytes/account, %d off-heap bytes/account%n", store, size,
+                heapBytes / size, offHeapBytes / size);
+
+        Random random = new Random(42);
+        lookupIds = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookupIds[i] = new String("Id-" + random.nextInt(size));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (repository instanceof OffHeapAccountsRepository) {
+            ((OffHeapAccountsRepository) repository).destroy();
+        }
+    }
+
+    @Benchmark
+    public Account getAccount(Cursor cursor) {
+        return repository.getAccount(lookupIds[cursor.next()]);
+    }
+
+    @Benchmark
+    public void deposit(Cursor cursor) {
+        repository.getAccount(lookupIds[cursor.next()]).deposit(AMOUNT);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int position = new Random().nextInt(LOOKUPS);
+
+        int next() {
+            position = (position + 1) & (LOOKUPS - 1);
+            return position;
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,76 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.exception.NonexistentAccountException;
+import com.db.awmd.challenge.service.AccountsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of transfers that are rejected, through the throwing {@code transfer} and through the result-typed
+ * {@code tryTransfer}, for the two rejections seen most: insufficient funds and an unknown account.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@State(Scope.Benchmark)
+public class RejectedTransferBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal(1_000);
+
+    private AccountsService accountsService;
+
+    @Setup
+    public void setUp() {
+        accountsService = Benchmarks.accountsService("striped");
+        accountsService.createAccount(new Account("Id-Empty", BigDecimal.ZERO));
+        accountsService.createAccount(new Account("Id-Full", new BigDecimal(1_000_000)));
+    }
+
+    @Benchmark
+    public Object insufficientFundsThrowing() throws Exception {
+        try {
+            accountsService.transfer("Id-Empty", "Id-Full", AMOUNT);
+            return null;
+        } catch (InsufficientFundsException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public TransferOutcome insufficientFundsOutcome() {
+        return accountsService.tryTransfer("Id-Empty", "Id-Full", AMOUNT);
+    }
+
+    @Benchmark
+    public Object nonexistentAccountThrowing() throws Exception {
+        try {
+            accountsService.transfer("Id-Full", "Id-Missing", AMOUNT);
+            return null;
+        } catch (NonexistentAccountException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public TransferOutcome nonexistentAccountOutcome() {
+        return accountsService.tryTransfer("Id-Full", "Id-Missing", AMOUNT);
+    }
+}
@@ -0,0 +1,302 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.config.AuditProperties;
+import com.db.awmd.challenge.config.BalanceProperties;
+import com.db.awmd.challenge.config.LedgerProperties;
+import com.db.awmd.challenge.config.ReplicationProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.metrics.LatencyHistogram;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.ReplicatedAccountsRepository;
+import com.db.awmd.challenge.repository.ReplicationLog;
+import com.db.awmd.challenge.service.AccountLocks;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.AuditService;
+import com.db.awmd.challenge.service.EpochBarrier;
+import com.db.awmd.challenge.service.ReplicationFollower;
+import com.db.awmd.challenge.service.ReplicationLeader;
+import com.db.awmd.challenge.service.StripedLockTransferEngine;
+import com.db.awmd.challenge.service.TransactionLedger;
+import com.db.awmd.challenge.service.TransferMetrics;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replication between two processes on this host: this process is the leader and runs transfers between random
+ * accounts, and a follower is started as a child JVM that reports the log position it applied every millisecond.
+ * The lag of a report is the time between the leader reaching that position and the report arriving, so it
+ * includes applying the records on the follower; positions are sampled every millisecond on the leader, which is
+ * the resolution of the lag. Prints the transfer and replication throughput, the lag percentiles, how long the
+ * follower took to drain the log once transfers stopped, and whether the totals of both processes agree.
+ * <p>
+ * {@code java ... ReplicationLoadGenerator [threads] [seconds] [accounts]}
+ */
+public final class ReplicationLoadGenerator {
+
+    private static final String FOLLOWER = "follower";
+
+    private ReplicationLoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && FOLLOWER.equals(args[0])) {
+            follow(Integer.parseInt(args[1]));
+            return;
+        }
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int accounts = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+        lead(threads, seconds, accounts);
+    }
+
+    private static void lead(int threads, int seconds, int accounts) throws Exception {
+        ReplicatedAccountsRepository repository = new ReplicatedAccountsRepository(new AccountsRepositoryInMemory(),
+                properties(0));
+        ReplicationLog replicationLog = repository.getLog();
+        Node node = new Node(repository);
+        ReplicationLeader leader = new ReplicationLeader(repository, node.barrier, properties(0));
+        for (int i = 0; i < accounts; i++) {
+            node.service.createAccount(new Account("Id-" + i, new BigDecimal(1_000_000_000)));
+        }
+
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, "-Xmx1g", "-cp", System.getProperty("java.class.path"),
+                ReplicationLoadGenerator.class.getName(), FOLLOWER, Integer.toString(leader.port()))
+                .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        PrintStream commands = new PrintStream(process.getOutputStream(), true, "UTF-8");
+        Reports reports = new Reports(new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)));
+        reports.start();
+        reports.awaitPosition(replicationLog.position(), TimeUnit.MINUTES.toNanos(1));
+
+        long[] sampleNanos = new long[seconds * 2_000 + 1_000];
+        long[] samplePositions = new long[sampleNanos.length];
+        int[] samples = {0};
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder transfers = new LongAdder();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (running.get()) {
+                    int from = random.nextInt(accounts);
+                    int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+                    node.service.tryTransfer("Id-" + from, "Id-" + to, BigDecimal.ONE);
+                    transfers.increment();
+                }
+            });
+            workers.add(worker);
+        }
+        Thread sampler = new Thread(() -> {
+            while (running.get() && samples[0] < sampleNanos.length) {
+                samplePositions[samples[0]] = replicationLog.position();
+                sampleNanos[samples[0]] = System.nanoTime();
+                samples[0]++;
+                sleepMillis(1);
+            }
+        });
+
+        long startPosition = replicationLog.position();
+        long started = System.nanoTime();
+        reports.measureFrom(started);
+        sampler.start();
+        workers.forEach(Thread::start);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        sampler.join();
+        long stopped = System.nanoTime();
+        long endPosition = replicationLog.position();
+        reports.awaitPosition(endPosition, TimeUnit.MINUTES.toNanos(1));
+        long drained = System.nanoTime();
+
+        LatencyHistogram lag = new LatencyHistogram();
+        for (long[] report : reports.measured()) {
+            int sample = Arrays.binarySearch(samplePositions, 0, samples[0], report[1]);
+            if (sample < 0) {
+                sample = -sample - 1;
+            }
+            if (sample < samples[0] && report[0] >= sampleNanos[sample]) {
+                lag.record(TimeUnit.NANOSECONDS.toMicros(report[0] - sampleNanos[sample]));
+            }
+        }
+
+        commands.println("total");
+        String followerTotal = reports.awaitTotal();
+        BigDecimal leaderTotal = node.audit.summarize().getTotalBalance();
+        commands.println("quit");
+        process.waitFor(10, TimeUnit.SECONDS);
+        leader.destroy();
+
+        double elapsedSeconds = (stopped - started) / 1e9;
+        LatencyHistogram.Snapshot lagSnapshot = lag.snapshot();
+        System.out.printf(Locale.ROOT, "threads=%d accounts=%d transfers=%d tps=%.0f replicated=%.1f MB/s%n",
+                threads, accounts, transfers.sum(), transfers.sum() / elapsedSeconds,
+                (endPosition - startPosition) / elapsedSeconds / (1 << 20));
+        System.out.printf(Locale.ROOT, "lag ms: p50=%.2f p90=%.2f p99=%.2f max=%.2f (%d reports)%n",
+                lagSnapshot.percentile(50) / 1e3, lagSnapshot.percentile(90) / 1e3,
+                lagSnapshot.percentile(99) / 1e3, lagSnapshot.getMax() / 1e3, lagSnapshot.getCount());
+        System.out.printf(Locale.ROOT, "drained in %d ms after transfers stopped; totals %s (leader %s, follower %s)%n",
+                TimeUnit.NANOSECONDS.toMillis(drained - stopped),
+                leaderTotal.compareTo(new BigDecimal(followerTotal)) == 0 ? "match" : "DIFFER", leaderTotal,
+                followerTotal);
+    }
+
+    /**
+     * The follower process: prints {@code applied <position>} whenever the applied position changed, checked every
+     * millisecond, and answers {@code total} on its input with the total of its balances.
+     */
+    private static void follow(int port) throws Exception {
+        Node node = new Node(new AccountsRepositoryInMemory());
+        ReplicationFollower follower = new ReplicationFollower(node.service, node.locks, node.barrier,
+                properties(port));
+        Thread commands = new Thread(() -> {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+                String command;
+                while ((command = in.readLine()) != null && !command.equals("quit")) {
+                    if (command.equals("total")) {
+                        synchronized (System.out) {
+                            System.out.println("total " + node.audit.summarize().getTotalBalance().toPlainString());
+                            System.out.flush();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            System.exit(0);
+        });
+        commands.setDaemon(true);
+        commands.start();
+
+        long reported = -1;
+        while (true) {
+            long applied = follower.appliedPosition();
+            if (applied != reported) {
+                synchronized (System.out) {
+                    System.out.println("applied " + applied);
+                    System.out.flush();
+                }
+                reported = applied;
+            }
+            sleepMillis(1);
+        }
+    }
+
+    private static ReplicationProperties properties(int port) {
+        ReplicationProperties properties = new ReplicationProperties();
+        properties.setPort(port);
+        properties.setReconnectMillis(100);
+        return properties;
+    }
+
+    private static void sleepMillis(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Wires a service the way Spring does on a leader or a follower, without notifications.
+     */
+    private static final class Node {
+
+        final AccountLocks locks = new AccountLocks(1024);
+        final EpochBarrier barrier = new EpochBarrier(locks);
+        final AuditService audit;
+        final AccountsService service;
+
+        Node(AccountsRepository repository) {
+            audit = new AuditService(repository, barrier, new AuditProperties());
+            service = new AccountsService(repository, (account, description) -> {
+            }, new StripedLockTransferEngine(locks, barrier), new BalanceProperties(), locks, barrier,
+                    new TransferMetrics(locks, false), new TransactionLedger(new LedgerProperties()), audit);
+        }
+    }
+
+    /**
+     * Reads the reports of the follower, stamping each with the time it arrived.
+     */
+    private static final class Reports extends Thread {
+
+        final BufferedReader in;
+        final List<long[]> measured = new ArrayList<>();
+        volatile long position = -1;
+        volatile long measureFrom = Long.MAX_VALUE;
+        volatile String total;
+
+        Reports(BufferedReader in) {
+            this.in = in;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    long now = System.nanoTime();
+                    if (line.startsWith("applied ")) {
+                        long applied = Long.parseLong(line.substring(8));
+                        if (now >= measureFrom) {
+                            synchronized (measured) {
+                                measured.add(new long[]{now, applied});
+                            }
+                        }
+                        position = applied;
+                    } else if (line.startsWith("total ")) {
+                        total = line.substring(6);
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        void measureFrom(long nanos) {
+            measureFrom = nanos;
+        }
+
+        List<long[]> measured() {
+            synchronized (measured) {
+                return new ArrayList<>(measured);
+            }
+        }
+
+        void awaitPosition(long target, long timeoutNanos) {
+            long deadline = System.nanoTime() + timeoutNanos;
+            while (position < target) {
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("Follower stuck at " + position + ", leader at " + target);
+                }
+                sleepMillis(1);
+            }
+        }
+
+        String awaitTotal() {
+            while (total == null) {
+                sleepMillis(1);
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups and inserts on {@code AccountsRepositoryInMemory} at different sizes. Created ids are built from a
+ * counter inside the measured method, so {@code createAccount} includes that string concatenation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RepositoryBenchmark {
+
+    private static final int LOOKUPS = 1 << 16;
+
+    @Param({"10000", "1000000", "10000000"})
+    public int size;
+
+    private AccountsRepositoryInMemory repository;
+    private String[] lookupIds;
+    private int next;
+    private long created;
+
+    @Setup
+    public void setUp() {
+        repository = new AccountsRepositoryInMemory();
+        for (int i = 0; i < size; i++) {
+            repository.createAccount(new Account("Id-" + i, BigDecimal.TEN));
+        }
+
+        Random random = new Random(42);
+        lookupIds = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            // fresh instances so the String hash is not already cached
+            lookupIds[i] = new String("Id-" + random.nextInt(size));
+        }
+    }
+
+    @Benchmark
+    public Account getAccount() {
+        next = (next + 1) & (LOOKUPS - 1);
+        return repository.getAccount(lookupIds[next]);
+    }
+
+    @Benchmark
+    public void createAccount() {
+        repository.createAccount(new Account("New-" + created++, BigDecimal.TEN));
+    }
+}
@@ -0,0 +1,117 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.service.AccountsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code AccountsService} hot paths: transfers between private account pairs, transfers concentrated on a
+ * few hot accounts following a Zipf distribution, and a configurable mix of lookups and transfers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(Threads.MAX)
+public class TransferBenchmark {
+
+    private static final BigDecimal AMOUNT = BigDecimal.ONE;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal(1_000_000_000);
+
+    @State(Scope.Benchmark)
+    public static class Service {
+
+        @Param({"striped", "cas", "sharded"})
+        public String engine;
+
+        @Param({"10000"})
+        public int accounts;
+
+        @Param({"1.1"})
+        public double zipfExponent;
+
+        AccountsService accountsService;
+        String[] ids;
+        final AtomicInteger pairs = new AtomicInteger();
+
+        @Setup
+        public void setUp() {
+            accountsService = Benchmarks.accountsService(engine);
+            ids = Benchmarks.createAccounts(accountsService, accounts, INITIAL_BALANCE);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        @Param({"90"})
+        public int readPercent;
+
+        String from;
+        String to;
+        int[] hotRanks;
+        int next;
+        boolean forward;
+
+        @Setup
+        public void setUp(Service service) {
+            int pair = service.pairs.getAndIncrement();
+            from = "Pair-" + pair + "-a";
+            to = "Pair-" + pair + "-b";
+            service.accountsService.createAccount(new Account(from, INITIAL_BALANCE));
+            service.accountsService.createAccount(new Account(to, INITIAL_BALANCE));
+            hotRanks = Zipf.sample(service.accounts, service.zipfExponent, 1 << 16, pair);
+        }
+
+        String nextHot(String[] ids) {
+            next = (next + 1) & (hotRanks.length - 1);
+            return ids[hotRanks[next]];
+        }
+    }
+
+    @Benchmark
+    public void uncontended(Service service, ThreadState state) throws Exception {
+        state.forward = !state.forward;
+        if (state.forward) {
+            service.accountsService.transfer(state.from, state.to, AMOUNT);
+        } else {
+            service.accountsService.transfer(state.to, state.from, AMOUNT);
+        }
+    }
+
+    @Benchmark
+    public void zipfSkewed(Service service, ThreadState state) throws Exception {
+        String from = state.nextHot(service.ids);
+        String to = state.nextHot(service.ids);
+        if (!from.equals(to)) {
+            service.accountsService.transfer(from, to, AMOUNT);
+        }
+    }
+
+    @Benchmark
+    public Object mixedReadWrite(Service service, ThreadState state) throws Exception {
+        String from = state.nextHot(service.ids);
+        if (ThreadLocalRandom.current().nextInt(100) < state.readPercent) {
+            return service.accountsService.getAccount(from).getBalance();
+        }
+        String to = state.nextHot(service.ids);
+        if (!from.equals(to)) {
+            service.accountsService.transfer(from, to, AMOUNT);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,16 @@
+package com.db.awmd.challenge.benchmark;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The scenarios of {@link TransferBenchmark} sampled per call, for the latency percentiles of each engine rather
+ * than its throughput.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TransferLatencyBenchmark extends TransferBenchmark {
+}
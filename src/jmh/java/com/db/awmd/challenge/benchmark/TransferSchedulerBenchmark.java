@@ -0,0 +1,93 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.config.SchedulerProperties;
+import com.db.awmd.challenge.metrics.LatencyHistogram;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.TransferScheduler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules transfers due over the next {@code spreadMillis} on top of a million pending far in the future, and
+ * waits until all of them ran. The scheduler lag of the invocation is printed after it; a lag that stays in the
+ * order of the tick means the wheel keeps up.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class TransferSchedulerBenchmark {
+
+    private static final int ACCOUNTS = 10_000;
+    private static final int FAR_FUTURE = 1_000_000;
+
+    @Param({"100000"})
+    public int transfers;
+
+    @Param({"1000"})
+    public int spreadMillis;
+
+    private String[] ids;
+    private TransferScheduler scheduler;
+    private LatencyHistogram.Snapshot lagBefore;
+
+    @Setup
+    public void setUp() {
+        AccountsService accountsService = Benchmarks.accountsService("striped", false);
+        ids = Benchmarks.createAccounts(accountsService, ACCOUNTS, new BigDecimal(1_000_000_000));
+        SchedulerProperties properties = new SchedulerProperties();
+        properties.setRetentionMillis(0);
+        scheduler = new TransferScheduler(accountsService, properties);
+        long farFuture = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(30);
+        for (int i = 0; i < FAR_FUTURE; i++) {
+            scheduler.schedule(ids[i % ACCOUNTS], ids[(i + 1) % ACCOUNTS], BigDecimal.ONE, farFuture + i);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void rememberLag() {
+        lagBefore = scheduler.lag();
+    }
+
+    @TearDown(Level.Invocation)
+    public void printLag() {
+        LatencyHistogram.Snapshot lag = scheduler.lag();
+        System.out.printf(Locale.ROOT, "lag ms (cumulative): p50=%d p99=%d max=%d, this run: %d transfers%n",
+                lag.percentile(50), lag.percentile(99), lag.getMax(), lag.getCount() - lagBefore.getCount());
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        scheduler.destroy();
+    }
+
+    @Benchmark
+    public long scheduleAndRun() throws InterruptedException {
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < transfers; i++) {
+            int from = i % ACCOUNTS;
+            scheduler.schedule(ids[from], ids[(from + 7) % ACCOUNTS], BigDecimal.ONE, start + i % spreadMillis);
+        }
+        while (scheduler.pending() > FAR_FUTURE) {
+            Thread.sleep(1);
+        }
+        return scheduler.pending();
+    }
+}
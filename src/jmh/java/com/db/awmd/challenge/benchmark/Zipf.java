@@ -0,0 +1,31 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Draws ranks in {@code [0, n)} where rank {@code k} has a probability proportional to {@code 1 / (k + 1)^s}.
+ * Samples are precomputed so drawing them does not show up in the measurement.
+ */
+final class Zipf {
+
+    private Zipf() {
+    }
+
+    static int[] sample(int n, double exponent, int samples, long seed) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1.0 / Math.pow(k + 1, exponent);
+            cdf[k] = sum;
+        }
+
+        Random random = new Random(seed);
+        int[] ranks = new int[samples];
+        for (int i = 0; i < samples; i++) {
+            int rank = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+            ranks[i] = rank >= 0 ? rank : Math.min(-rank - 1, n - 1);
+        }
+        return ranks;
+    }
+}
@@ -0,0 +1,16 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.views")
+public class AccountViewProperties {
+
+    /**
+     * Upper bound of cached account views; beyond it a new view replaces an arbitrary cached one.
+     */
+    private int maxEntries = 100_000;
+}
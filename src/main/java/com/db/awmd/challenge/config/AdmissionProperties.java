@@ -0,0 +1,35 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.admission")
+public class AdmissionProperties {
+
+    private boolean enabled;
+
+    /** Sustained transfer requests per second of one client, by X-Client-Id or remote address; 0 for no limit. */
+    private int clientRate = 10_000;
+
+    /** Requests a client can send at once after being idle. */
+    private int clientBurst = 20_000;
+
+    /** Sustained transfers per second from one source account; 0 for no limit. */
+    private int accountRate = 1_000;
+
+    private int accountBurst = 1_000;
+
+    /** Clients and accounts tracked at once by each limit; beyond it new ones share a single bucket. */
+    private int maxTrackedKeys = 100_000;
+
+    /** Transfer requests in progress beyond which new ones are shed with 503; 0 to never shed on it. */
+    private int maxInFlight = 1_000;
+
+    /** p99 transfer request latency of the last window beyond which requests are shed with 503; 0 to never shed on it. */
+    private long maxP99Millis = 1_000;
+
+    private long windowMillis = 1_000;
+}
@@ -0,0 +1,21 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.web.async")
+public class AsyncWebProperties {
+
+    private boolean enabled = false;
+
+    /** Threads running the handlers; servlet container threads only read and parse requests and write responses. */
+    private int threads = 2 * Runtime.getRuntime().availableProcessors();
+
+    /** Requests waiting for a handler thread; beyond it requests are handled on the servlet container thread. */
+    private int queueCapacity = 10_000;
+
+    private long timeoutMillis = 30_000;
+}
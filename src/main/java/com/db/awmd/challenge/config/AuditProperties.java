@@ -0,0 +1,16 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.audit")
+public class AuditProperties {
+
+    /** Whether the total of all balances is checked periodically. */
+    private boolean checkEnabled = true;
+
+    private long checkIntervalMillis = 60 * 1000;
+}
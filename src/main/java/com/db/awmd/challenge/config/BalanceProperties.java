@@ -0,0 +1,44 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * How account balances are stored. Accounts do not carry a currency, so the fixed-point scale is the one
+ * configured for the currency the deployment operates in.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.balance")
+public class BalanceProperties {
+
+    public enum Mode {
+        DECIMAL, FIXED_POINT
+    }
+
+    private Mode mode = Mode.DECIMAL;
+
+    private String currency = "EUR";
+
+    private int defaultScale = 2;
+
+    private Map<String, Integer> scales = new HashMap<>();
+
+    /**
+     * Contended updates of one account within 100 milliseconds after which its deposits are combined instead of
+     * competing for the balance; 0 never combines them.
+     */
+    private int combineAfterContentions = 64;
+
+    public boolean isFixedPoint() {
+        return mode == Mode.FIXED_POINT;
+    }
+
+    public int scale() {
+        return scales.getOrDefault(currency, defaultScale);
+    }
+}
@@ -0,0 +1,21 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.binary")
+public class BinaryProtocolProperties {
+
+    private boolean enabled = false;
+
+    private int port = 18091;
+
+    /** Selector threads serving the connections, 0 for one per processor. */
+    private int workers = 0;
+
+    /** Input and output buffer of each connection; a request frame must fit in it. */
+    private int bufferBytes = 64 * 1024;
+}
@@ -0,0 +1,22 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.bulk")
+public class BulkProperties {
+
+    /** Threads decoding and inserting imported records; 0 uses one per available processor. */
+    private int workers = 0;
+
+    /** Records handed to a worker at once. */
+    private int chunkSize = 4096;
+
+    /** Chunks read ahead of the workers per worker, which bounds the memory of an import. */
+    private int chunksPerWorker = 2;
+
+    private int maxReportedRejections = 1000;
+}
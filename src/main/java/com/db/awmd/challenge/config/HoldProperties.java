@@ -0,0 +1,23 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.holds")
+public class HoldProperties {
+
+    /** How long funds are held when the request does not say. */
+    private long defaultTtlMillis = 7L * 24 * 60 * 60 * 1000;
+
+    /** Longest a hold can be requested for. */
+    private long maxTtlMillis = 30L * 24 * 60 * 60 * 1000;
+
+    /** How often expired holds are released. */
+    private long sweepIntervalMillis = 1000;
+
+    /** How long captured, released and expired holds can still be queried. */
+    private long retentionMillis = 60 * 60 * 1000;
+}
@@ -0,0 +1,18 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.idempotency")
+public class IdempotencyProperties {
+
+    /**
+     * Upper bound of remembered request ids; the oldest are evicted first.
+     */
+    private int maxEntries = 100_000;
+
+    private long ttlMillis = 10 * 60 * 1000;
+}
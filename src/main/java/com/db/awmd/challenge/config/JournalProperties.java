@@ -0,0 +1,20 @@
+package com.db.awmd.challenge.config;
+
+import com.db.awmd.challenge.repository.Journal;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.journal")
+public class JournalProperties {
+
+    private String directory = "data/journal";
+
+    private int segmentSize = 64 * 1024 * 1024;
+
+    private Journal.FsyncPolicy fsync = Journal.FsyncPolicy.ALWAYS;
+
+    private long fsyncIntervalMillis = 10;
+}
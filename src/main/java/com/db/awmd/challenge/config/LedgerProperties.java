@@ -0,0 +1,21 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.ledger")
+public class LedgerProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Most recent entries kept per account; older ones are overwritten. An entry takes about 24 bytes of ring
+     * slots, which grow on demand up to this size.
+     */
+    private int entriesPerAccount = 1000;
+
+    private int maxPageSize = 500;
+}
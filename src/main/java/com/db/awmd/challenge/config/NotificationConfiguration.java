@@ -0,0 +1,20 @@
+package com.db.awmd.challenge.config;
+
+import com.db.awmd.challenge.service.AsyncNotificationService;
+import com.db.awmd.challenge.service.EmailNotificationService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+@Configuration
+public class NotificationConfiguration {
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(prefix = "notifications.async", name = "enabled", havingValue = "true")
+    public AsyncNotificationService asyncNotificationService(EmailNotificationService emailNotificationService,
+                                                             NotificationProperties notificationProperties) {
+        return new AsyncNotificationService(emailNotificationService, notificationProperties);
+    }
+}
@@ -0,0 +1,36 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "notifications.async")
+public class NotificationProperties {
+
+    public enum OverflowPolicy {
+        /** The transfer thread waits for room in the queue. */
+        BLOCK,
+        /** The new notification is discarded. */
+        DROP_NEWEST,
+        /** The oldest queued notification is discarded to make room. */
+        DROP_OLDEST,
+        /** The transfer thread sends the notification itself. */
+        CALLER_RUNS
+    }
+
+    private boolean enabled = false;
+
+    private int workers = 2;
+
+    /** Capacity shared by all workers. */
+    private int queueCapacity = 10_000;
+
+    private int batchSize = 256;
+
+    /** Sends the notifications of a batch that target the same account as one. */
+    private boolean coalesce = true;
+
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+}
@@ -0,0 +1,16 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.offheap")
+public class OffHeapProperties {
+
+    /**
+     * Accounts the store can hold; the index is allocated for this many up front and does not grow.
+     */
+    private int capacity = 1 << 20;
+}
@@ -0,0 +1,32 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.replication")
+public class ReplicationProperties {
+
+    /** Port the leader accepts followers on, and followers connect to. */
+    private int port = 18090;
+
+    /** Host of the leader, for followers. */
+    private String leaderHost = "localhost";
+
+    /**
+     * Bytes of the leader's in-memory log, rounded up to a power of two. A follower that falls further behind is
+     * sent a new snapshot.
+     */
+    private int logCapacity = 64 * 1024 * 1024;
+
+    /** How often the leader tells an idle follower that it is still caught up. */
+    private long heartbeatMillis = 100;
+
+    /** How far behind the leader a follower may be and still serve reads. */
+    private long maxStalenessMillis = 1000;
+
+    /** Wait before a follower reconnects to the leader. */
+    private long reconnectMillis = 1000;
+}
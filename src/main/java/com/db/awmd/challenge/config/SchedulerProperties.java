@@ -0,0 +1,20 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.scheduler")
+public class SchedulerProperties {
+
+    /** Resolution of execution times; transfers due within the same tick run together. */
+    private long tickMillis = 10;
+
+    /** Due transfers applied per batch. */
+    private int batchSize = 1_000;
+
+    /** How long executed and cancelled transfers can still be queried. */
+    private long retentionMillis = 60 * 60 * 1000;
+}
@@ -0,0 +1,20 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.snapshot")
+public class SnapshotProperties {
+
+    private String directory = "data/snapshots";
+
+    private long intervalMillis = 5 * 60 * 1000;
+
+    /**
+     * Snapshots kept on disk; journal segments are kept back to the oldest of them.
+     */
+    private int retained = 2;
+}
@@ -0,0 +1,41 @@
+package com.db.awmd.challenge.config;
+
+import com.db.awmd.challenge.web.AdmissionInterceptor;
+import com.db.awmd.challenge.web.FollowerInterceptor;
+import com.db.awmd.challenge.web.RequestLatencyInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import java.util.Optional;
+
+@Configuration
+public class WebConfiguration extends WebMvcConfigurerAdapter {
+
+    private final RequestLatencyInterceptor requestLatencyInterceptor;
+    private final AdmissionInterceptor admissionInterceptor;
+    private final Optional<FollowerInterceptor> followerInterceptor;
+
+    @Autowired
+    public WebConfiguration(RequestLatencyInterceptor requestLatencyInterceptor,
+                            AdmissionInterceptor admissionInterceptor,
+                            Optional<FollowerInterceptor> followerInterceptor) {
+        this.requestLatencyInterceptor = requestLatencyInterceptor;
+        this.admissionInterceptor = admissionInterceptor;
+        this.followerInterceptor = followerInterceptor;
+    }
+
+    /**
+     * Latency is recorded first, so that rejected and shed requests are timed too. On a follower, changes are
+     * refused before admission control counts them.
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(requestLatencyInterceptor).addPathPatterns("/v1/**");
+        followerInterceptor.ifPresent(interceptor -> registry.addInterceptor(interceptor).addPathPatterns("/v1/**"));
+        registry.addInterceptor(admissionInterceptor)
+                .addPathPatterns("/v1/accounts/transfer", "/v1/accounts/transfers/**",
+                        "/v1/accounts/*/holds/**");
+    }
+}
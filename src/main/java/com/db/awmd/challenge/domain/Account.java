@@ -2,6 +2,7 @@ package com.db.awmd.challenge.domain;
 
 import com.db.awmd.challenge.exception.InsufficientFundsException;
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import org.hibernate.validator.constraints.NotEmpty;
@@ -13,35 +14,142 @@ import java.math.BigDecimal;
 @Data
 public class Account {
 
+  public static final int NO_HANDLE = -1;
+
   @NotNull
   @NotEmpty
   private final String accountId;
 
-  @NotNull
-  @Min(value = 0, message = "Initial balance must be positive.")
-  private BigDecimal balance;
+  private volatile BalanceCell balance;
+
+  /**
+   * Dense number given to the account by a repository that numbers its accounts, {@link #NO_HANDLE} until then.
+   * Handles are only meaningful within one process and start over when the accounts are cleared.
+   */
+  @JsonIgnore
+  private volatile int handle = NO_HANDLE;
 
   public Account(String accountId) {
     this.accountId = accountId;
-    this.balance = BigDecimal.ZERO;
+    this.balance = new DecimalBalanceCell(BigDecimal.ZERO);
+  }
+
+  /**
+   * An account whose balance is kept by a cell of the repository, such as one stored outside the heap.
+   */
+  public Account(String accountId, BalanceCell balance) {
+    this.accountId = accountId;
+    this.balance = balance;
+  }
+
+  @NotNull
+  @Min(value = 0, message = "Initial balance must be positive.")
+  public BigDecimal getBalance() {
+    return balance.get();
+  }
+
+  public void setBalance(BigDecimal balance) {
+    this.balance.set(balance);
+  }
+
+  /**
+   * Switches the account to a fixed-point balance with the given number of decimal places. Must be called
+   * before the account is shared with other threads.
+   */
+  public void useFixedPoint(int scale) {
+    balance = new FixedPointBalanceCell(balance.get(), scale);
+  }
+
+  /**
+   * Funds reserved by holds, not part of the balance.
+   */
+  @JsonIgnore
+  public BigDecimal getHeld() {
+    return balance.getHeld();
+  }
+
+  /**
+   * @see BalanceCell#hold(BigDecimal)
+   */
+  public boolean hold(BigDecimal amount) {
+    return balance.hold(amount);
+  }
+
+  /**
+   * @see BalanceCell#release(BigDecimal)
+   */
+  public void release(BigDecimal amount) {
+    balance.release(amount);
+  }
+
+  /**
+   * @see BalanceCell#takeHeld(BigDecimal)
+   */
+  public void takeHeld(BigDecimal amount) {
+    balance.takeHeld(amount);
+  }
+
+  /**
+   * @see BalanceCell#combineDepositsAfter(int)
+   */
+  public void combineDepositsAfter(int contentions) {
+    balance.combineDepositsAfter(contentions);
+  }
+
+  /**
+   * @see BalanceCell#contended()
+   */
+  public void contended() {
+    balance.contended();
+  }
+
+  @JsonIgnore
+  public boolean isCombiningDeposits() {
+    return balance.isCombining();
   }
 
   public void withdraw(BigDecimal amount) throws InsufficientFundsException {
-    if (balance.compareTo(amount) < 0) {
+    if (!tryWithdraw(amount)) {
       throw new InsufficientFundsException(accountId, amount);
     }
+  }
 
-    balance = balance.subtract(amount);
+  /**
+   * @return false, leaving the balance untouched, when the balance is lower than the amount
+   */
+  public boolean tryWithdraw(BigDecimal amount) {
+    return balance.tryWithdraw(amount);
   }
 
   public void deposit(BigDecimal amount) {
-    balance = balance.add(amount);
+    balance.deposit(amount);
+  }
+
+  /**
+   * @see BalanceCell#checkDeposit(BigDecimal)
+   */
+  public void checkDeposit(BigDecimal amount) {
+    balance.checkDeposit(amount);
+  }
+
+  /**
+   * @see BalanceCell#preserve(long)
+   */
+  public void preserveBalance(long epoch) {
+    balance.preserve(epoch);
+  }
+
+  /**
+   * @see BalanceCell#getBefore(long)
+   */
+  public BigDecimal balanceBefore(long epoch) {
+    return balance.getBefore(epoch);
   }
 
   @JsonCreator
   public Account(@JsonProperty("accountId") String accountId,
     @JsonProperty("balance") BigDecimal balance) {
     this.accountId = accountId;
-    this.balance = balance;
+    this.balance = new DecimalBalanceCell(balance);
   }
 }
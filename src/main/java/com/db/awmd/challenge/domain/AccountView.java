@@ -0,0 +1,25 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+/**
+ * Immutable state of an account as served to readers, with its JSON representation. The balance is the version
+ * of the view: the view stays current for as long as the account holds the same balance.
+ */
+@Getter
+@AllArgsConstructor
+public class AccountView {
+
+  private final String accountId;
+
+  private final BigDecimal balance;
+
+  private final byte[] json;
+
+  public boolean isCurrent(BigDecimal currentBalance) {
+    return balance.equals(currentBalance);
+  }
+}
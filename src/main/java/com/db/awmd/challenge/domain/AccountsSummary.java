@@ -0,0 +1,24 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * Aggregates of all balances at a consistent cut.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountsSummary {
+
+    /** Last epoch whose transfers the cut includes. */
+    long epoch;
+
+    long accounts;
+
+    BigDecimal totalBalance;
+
+    long durationMillis;
+}
@@ -0,0 +1,156 @@
+package com.db.awmd.challenge.domain;
+
+import com.db.awmd.challenge.exception.BalanceOverflowException;
+import java.math.BigDecimal;
+
+/**
+ * Holds the balance of an {@link Account}. Every update is an atomic compare-and-set, so a cell can be
+ * shared between threads without holding its monitor.
+ * <p>
+ * A cell can also keep the balance it had before a given epoch, which is how a consistent cut of all accounts is
+ * read while transfers of the next epoch keep flowing. Preserving and reading that value must happen under the
+ * account's lock.
+ * <p>
+ * A cell that sees enough contended updates can switch to combining deposits: instead of competing for the balance,
+ * concurrent deposits are added to striped accumulators that withdrawals fold into the balance when it alone does
+ * not cover them. A withdrawal therefore never fails while deposits cover it, and the balance read is the sum of
+ * both, though a read may miss deposits that are being folded at that moment.
+ * <p>
+ * Funds can also be held: moved out of the balance, which is what can be withdrawn, into a held amount that is only
+ * changed under the account's lock. The book balance is the sum of both, and is what a consistent cut preserves.
+ */
+public abstract class BalanceCell {
+
+  private static final long CONTENTION_WINDOW_NANOS = 100_000_000;
+
+  private long preservedEpoch;
+  private BigDecimal preserved;
+  private volatile BigDecimal held = BigDecimal.ZERO;
+
+  private volatile int combineAfter;
+  private int contentions;
+  private long windowStarted;
+
+  public abstract BigDecimal get();
+
+  public abstract void set(BigDecimal balance);
+
+  /**
+   * @return false, leaving the balance untouched, when the balance is lower than the amount
+   */
+  public abstract boolean tryWithdraw(BigDecimal amount);
+
+  public abstract void deposit(BigDecimal amount);
+
+  /**
+   * Checks that a deposit of the amount could be made now, without making it. Cells that store any balance accept
+   * every deposit.
+   *
+   * @throws BalanceOverflowException when the cell cannot represent the amount or the balance after the deposit
+   */
+  public void checkDeposit(BigDecimal amount) {
+  }
+
+  public BigDecimal getHeld() {
+    return held;
+  }
+
+  /**
+   * Moves funds from the balance to the held amount. Must be called under the account's lock.
+   *
+   * @return false, leaving the balance untouched, when the balance is lower than the amount
+   */
+  public boolean hold(BigDecimal amount) {
+    if (!tryWithdraw(amount)) {
+      return false;
+    }
+    held = held.add(amount);
+    return true;
+  }
+
+  /**
+   * Moves held funds back to the balance. Must be called under the account's lock.
+   */
+  public void release(BigDecimal amount) {
+    held = held.subtract(amount);
+    deposit(amount);
+  }
+
+  /**
+   * Takes funds out of the held amount, for a transfer to another account. Must be called under the account's lock.
+   */
+  public void takeHeld(BigDecimal amount) {
+    held = held.subtract(amount);
+  }
+
+  /**
+   * @param contentions contended updates within 100 milliseconds after which deposits are combined; 0 never
+   *                    combines them
+   */
+  public void combineDepositsAfter(int contentions) {
+    combineAfter = contentions;
+  }
+
+  /**
+   * Reports an update that had to retry or wait because of another update of the same account. The count is
+   * approximate, since it is not synchronized.
+   */
+  public void contended() {
+    int threshold = combineAfter;
+    if (threshold <= 0 || isCombining()) {
+      return;
+    }
+    long now = System.nanoTime();
+    if (now - windowStarted > CONTENTION_WINDOW_NANOS) {
+      windowStarted = now;
+      contentions = 0;
+    }
+    if (++contentions >= threshold) {
+      startCombining();
+    }
+  }
+
+  public boolean isCombining() {
+    return false;
+  }
+
+  /**
+   * Called after a failed compare-and-set of the balance: reports the contention and yields once the same update
+   * keeps failing, so that retries stop burning the time of the thread that would succeed.
+   */
+  protected void backOff(int failures) {
+    contended();
+    if (failures >= 4) {
+      Thread.yield();
+    }
+  }
+
+  /**
+   * Switches deposits to the accumulators for good. Cells that cannot combine ignore it.
+   */
+  protected void startCombining() {
+  }
+
+  /**
+   * Remembers the current book balance as the one before {@code epoch}, unless it was already remembered by an
+   * earlier update of the same epoch. Called before the first update an epoch makes.
+   */
+  public void preserve(long epoch) {
+    if (preservedEpoch < epoch) {
+      preserved = getBook();
+      preservedEpoch = epoch;
+    }
+  }
+
+  /**
+   * @return the book balance before the first update made in {@code epoch}
+   */
+  public BigDecimal getBefore(long epoch) {
+    return preservedEpoch == epoch ? preserved : getBook();
+  }
+
+  private BigDecimal getBook() {
+    BigDecimal funds = held;
+    return funds.signum() == 0 ? get() : get().add(funds);
+  }
+}
@@ -0,0 +1,28 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.*;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTransfer {
+
+    public enum Mode {
+        /** Either every transfer is applied or none is. */
+        ATOMIC,
+        /** Each transfer is applied or rejected on its own. */
+        BEST_EFFORT
+    }
+
+    @NotNull
+    Mode mode;
+
+    @NotNull
+    @NotEmpty
+    List<Transfer> transfers;
+}
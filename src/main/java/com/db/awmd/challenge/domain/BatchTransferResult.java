@@ -0,0 +1,36 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTransferResult {
+
+    public enum Status {
+        APPLIED,
+        REJECTED,
+        /** Valid on its own but not applied because another transfer of an atomic batch was rejected. */
+        ABORTED
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Item {
+
+        int index;
+        Status status;
+        String message;
+    }
+
+    int applied;
+    int rejected;
+    List<Item> items;
+}
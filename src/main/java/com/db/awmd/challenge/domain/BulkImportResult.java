@@ -0,0 +1,32 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkImportResult {
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Rejection {
+
+        /** Position of the record in the stream, starting at 1. */
+        long record;
+        String accountId;
+        String message;
+    }
+
+    long imported;
+    long rejected;
+
+    /** The rejected records in stream order, up to {@code accounts.bulk.max-reported-rejections}. */
+    List<Rejection> rejections;
+}
@@ -0,0 +1,43 @@
+package com.db.awmd.challenge.domain;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Sum of amounts added from many threads, spread over cells picked by thread so that concurrent additions rarely
+ * contend. There is a cell per processor, up to 16, since more threads than processors cannot add at once. Like
+ * {@link java.util.concurrent.atomic.LongAdder}, the sum is not a snapshot: additions made while it is computed may
+ * or may not be included.
+ */
+public class DecimalAdder {
+
+  private static final int CELLS =
+    Math.min(16, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+  private final AtomicReferenceArray<BigDecimal> cells = new AtomicReferenceArray<>(CELLS);
+
+  public DecimalAdder() {
+    for (int i = 0; i < CELLS; i++) {
+      cells.set(i, BigDecimal.ZERO);
+    }
+  }
+
+  public void add(BigDecimal amount) {
+    int cell = (int) (Thread.currentThread().getId() & (CELLS - 1));
+    BigDecimal current;
+    do {
+      current = cells.get(cell);
+    } while (!cells.compareAndSet(cell, current, current.add(amount)));
+  }
+
+  public BigDecimal sum() {
+    BigDecimal sum = BigDecimal.ZERO;
+    for (int i = 0; i < CELLS; i++) {
+      BigDecimal cell = cells.get(i);
+      if (cell.signum() != 0) {
+        sum = sum.add(cell);
+      }
+    }
+    return sum;
+  }
+}
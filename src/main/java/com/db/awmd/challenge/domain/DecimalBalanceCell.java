@@ -0,0 +1,97 @@
+package com.db.awmd.challenge.domain;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+public class DecimalBalanceCell extends BalanceCell {
+
+  private static final AtomicReferenceFieldUpdater<DecimalBalanceCell, BigDecimal> VALUE =
+    AtomicReferenceFieldUpdater.newUpdater(DecimalBalanceCell.class, BigDecimal.class, "value");
+
+  private volatile BigDecimal value;
+  private volatile DecimalAdder pending;
+
+  public DecimalBalanceCell(BigDecimal value) {
+    this.value = value;
+  }
+
+  @Override
+  public BigDecimal get() {
+    DecimalAdder deposits = pending;
+    return deposits == null ? value : value.add(deposits.sum());
+  }
+
+  @Override
+  public void set(BigDecimal balance) {
+    fold();
+    value = balance;
+  }
+
+  @Override
+  public boolean tryWithdraw(BigDecimal amount) {
+    int failures = 0;
+    while (true) {
+      BigDecimal current = value;
+      if (current.compareTo(amount) < 0) {
+        if (!fold()) {
+          return false;
+        }
+      } else if (VALUE.compareAndSet(this, current, current.subtract(amount))) {
+        return true;
+      } else {
+        backOff(++failures);
+      }
+    }
+  }
+
+  @Override
+  public void deposit(BigDecimal amount) {
+    int failures = 0;
+    DecimalAdder deposits;
+    while ((deposits = pending) == null) {
+      BigDecimal current = value;
+      if (VALUE.compareAndSet(this, current, current.add(amount))) {
+        return;
+      }
+      backOff(++failures);
+    }
+    deposits.add(amount);
+  }
+
+  @Override
+  public boolean isCombining() {
+    return pending != null;
+  }
+
+  @Override
+  protected synchronized void startCombining() {
+    if (pending == null) {
+      pending = new DecimalAdder();
+    }
+  }
+
+  /**
+   * Moves the combined deposits into the balance. Folds are serialized, so a fold never moves a deposit that
+   * another fold already moved.
+   *
+   * @return whether any deposit was moved
+   */
+  private boolean fold() {
+    DecimalAdder deposits = pending;
+    if (deposits == null) {
+      return false;
+    }
+    synchronized (this) {
+      BigDecimal sum = deposits.sum();
+      if (sum.signum() == 0) {
+        return false;
+      }
+      deposits.add(sum.negate());
+      BigDecimal current;
+      do {
+        current = value;
+      } while (!VALUE.compareAndSet(this, current, current.add(sum)));
+      return true;
+    }
+  }
+}
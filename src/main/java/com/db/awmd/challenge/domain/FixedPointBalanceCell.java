@@ -0,0 +1,227 @@
+package com.db.awmd.challenge.domain;
+
+import com.db.awmd.challenge.exception.BalanceOverflowException;
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stores the balance as a {@code long} count of minor units (cents for a scale of 2), so updates neither
+ * allocate nor run arbitrary-precision arithmetic. Amounts with more decimals than the scale, and results
+ * that do not fit in a {@code long}, are rejected with a {@link BalanceOverflowException}.
+ * <p>
+ * Combined deposits are checked against the balance and the deposits not folded yet, but several can pass the check
+ * before any of them is added. A cell combining deposits therefore holds at most 2<sup>62</sup> units, and adds a
+ * deposit of more than 2<sup>39</sup> units to the balance directly: the combined deposits in flight, one per
+ * thread, can then add less than 2<sup>61</sup> units beyond the limit, so folding them never overflows.
+ */
+public class FixedPointBalanceCell extends BalanceCell {
+
+  private static final AtomicLongFieldUpdater<FixedPointBalanceCell> UNITS =
+    AtomicLongFieldUpdater.newUpdater(FixedPointBalanceCell.class, "units");
+  private static final long[] POWERS_OF_TEN = new long[19];
+  private static final long COMBINED_LIMIT = 1L << 62;
+  private static final long MAX_COMBINED_DEPOSIT = 1L << 39;
+
+  static {
+    POWERS_OF_TEN[0] = 1;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = 10 * POWERS_OF_TEN[i - 1];
+    }
+  }
+
+  private final int scale;
+  private volatile long units;
+  private volatile LongAdder pending;
+  private volatile Reading lastReading;
+
+  public FixedPointBalanceCell(BigDecimal value, int scale) {
+    this.scale = scale;
+    this.units = toUnits(value, scale);
+  }
+
+  public int getScale() {
+    return scale;
+  }
+
+  public long getUnits() {
+    LongAdder deposits = pending;
+    return deposits == null ? units : units + deposits.sum();
+  }
+
+  /**
+   * Reuses the value of the previous read while the balance has not changed since.
+   */
+  @Override
+  public BigDecimal get() {
+    long current = getUnits();
+    Reading reading = lastReading;
+    if (reading != null && reading.units == current) {
+      return reading.value;
+    }
+    BigDecimal value = BigDecimal.valueOf(current, scale);
+    lastReading = new Reading(current, value);
+    return value;
+  }
+
+  @Override
+  public void set(BigDecimal balance) {
+    fold();
+    units = toUnits(balance, scale);
+  }
+
+  @Override
+  public boolean tryWithdraw(BigDecimal amount) {
+    return tryWithdrawUnits(toUnits(amount, scale));
+  }
+
+  @Override
+  public void deposit(BigDecimal amount) {
+    depositUnits(toUnits(amount, scale));
+  }
+
+  @Override
+  public void checkDeposit(BigDecimal amount) {
+    long deposit = toUnits(amount, scale);
+    LongAdder deposits = pending;
+    if (deposits == null) {
+      add(units, deposit, scale);
+    } else {
+      checkCombined(units, deposits, deposit);
+    }
+  }
+
+  public boolean tryWithdrawUnits(long amount) {
+    int failures = 0;
+    while (true) {
+      long current = units;
+      if (current < amount) {
+        if (!fold()) {
+          return false;
+        }
+      } else if (UNITS.compareAndSet(this, current, current - amount)) {
+        return true;
+      } else {
+        backOff(++failures);
+      }
+    }
+  }
+
+  public void depositUnits(long amount) {
+    int failures = 0;
+    LongAdder deposits;
+    while ((deposits = pending) == null) {
+      long current = units;
+      if (UNITS.compareAndSet(this, current, add(current, amount, scale))) {
+        return;
+      }
+      backOff(++failures);
+    }
+    if (amount <= MAX_COMBINED_DEPOSIT) {
+      checkCombined(units, deposits, amount);
+      deposits.add(amount);
+      return;
+    }
+    while (true) {
+      long current = units;
+      checkCombined(current, deposits, amount);
+      if (UNITS.compareAndSet(this, current, current + amount)) {
+        return;
+      }
+      backOff(++failures);
+    }
+  }
+
+  @Override
+  public boolean isCombining() {
+    return pending != null;
+  }
+
+  @Override
+  protected synchronized void startCombining() {
+    if (pending == null) {
+      pending = new LongAdder();
+    }
+  }
+
+  /**
+   * Moves the combined deposits into the balance. Folds are serialized, so a fold never moves a deposit that
+   * another fold already moved.
+   *
+   * @return whether any deposit was moved
+   */
+  private boolean fold() {
+    LongAdder deposits = pending;
+    if (deposits == null) {
+      return false;
+    }
+    synchronized (this) {
+      long sum = deposits.sum();
+      if (sum == 0) {
+        return false;
+      }
+      deposits.add(-sum);
+      long current;
+      try {
+        do {
+          current = units;
+        } while (!UNITS.compareAndSet(this, current, add(current, sum, scale)));
+      } catch (BalanceOverflowException e) {
+        deposits.add(sum);
+        throw e;
+      }
+      return true;
+    }
+  }
+
+  /**
+   * @throws BalanceOverflowException when the sum does not fit in a {@code long}
+   */
+  public static long add(long units, long amount, int scale) {
+    try {
+      return Math.addExact(units, amount);
+    } catch (ArithmeticException e) {
+      throw new BalanceOverflowException("Balance overflow when depositing " + BigDecimal.valueOf(amount, scale));
+    }
+  }
+
+  /**
+   * @throws BalanceOverflowException when the balance with the deposits not folded yet and the amount would exceed
+   *                                  the limit of a cell combining deposits
+   */
+  private void checkCombined(long current, LongAdder deposits, long amount) {
+    if (add(add(current, deposits.sum(), scale), amount, scale) > COMBINED_LIMIT) {
+      throw new BalanceOverflowException("Balance overflow when depositing " + BigDecimal.valueOf(amount, scale));
+    }
+  }
+
+  /**
+   * Whole amounts are multiplied out directly. The others are shifted, which the JIT keeps off the heap as the shifted
+   * copy never leaves this method, whereas {@link BigDecimal#unscaledValue()} would allocate a {@code BigInteger}.
+   */
+  public static long toUnits(BigDecimal value, int scale) {
+    if (value.scale() == 0 && scale < POWERS_OF_TEN.length && value.precision() + scale < 19) {
+      return value.longValue() * POWERS_OF_TEN[scale];
+    }
+    BigDecimal shifted = value.movePointRight(scale);
+    if (shifted.scale() == 0 && shifted.precision() < 19) {
+      return shifted.longValue();
+    }
+    try {
+      return shifted.longValueExact();
+    } catch (ArithmeticException e) {
+      throw new BalanceOverflowException(value + " cannot be represented with " + scale + " decimal places");
+    }
+  }
+
+  private static final class Reading {
+
+    final long units;
+    final BigDecimal value;
+
+    Reading(long units, BigDecimal value) {
+      this.units = units;
+      this.value = value;
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * Funds reserved on an account for a payment to another account, until they are captured, released or the hold
+ * expires. Clients send the payee, the amount and optionally how long to hold the funds; the other properties are
+ * set by the service.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class Hold {
+
+    public enum Status {
+        HELD,
+        CAPTURED,
+        RELEASED,
+        EXPIRED
+    }
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    Long id;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    String accountId;
+
+    String accountToId;
+    BigDecimal amount;
+
+    /** How long to hold the funds; {@code accounts.holds.default-ttl-millis} when not set. */
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    Long ttlMillis;
+
+    /** Milliseconds since the epoch at which held funds are released. */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    Long expiresAt;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    Status status;
+
+    /** Amount transferred to the payee; the rest of the hold was returned to the account. */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    BigDecimal capturedAmount;
+}
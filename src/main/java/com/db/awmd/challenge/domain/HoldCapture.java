@@ -0,0 +1,17 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * Captures part of a hold, or all of it when no amount is given.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class HoldCapture {
+
+    BigDecimal amount;
+}
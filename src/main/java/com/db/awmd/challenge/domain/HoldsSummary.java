@@ -0,0 +1,21 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * Funds of an account split between what can be withdrawn, which is its balance, and what is held.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class HoldsSummary {
+
+    String accountId;
+
+    BigDecimal available;
+
+    BigDecimal held;
+}
@@ -0,0 +1,28 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * One side of an applied transfer, as seen by one of its accounts.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerEntry {
+
+    /** Position of the entry in the history of its account, starting at 1. */
+    long sequence;
+
+    /** Milliseconds since the epoch. */
+    long timestamp;
+
+    String counterpartyId;
+
+    /** Negative for a debit, positive for a credit. */
+    BigDecimal amount;
+
+    BigDecimal balanceAfter;
+}
@@ -0,0 +1,20 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class LedgerPage {
+
+    /** Newest first. */
+    List<LedgerEntry> entries;
+
+    /** Cursor of the next, older page; absent on the last page. */
+    Long nextCursor;
+}
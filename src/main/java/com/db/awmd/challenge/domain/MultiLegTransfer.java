@@ -0,0 +1,34 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.*;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.validation.constraints.NotNull;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * One debit of the source account, credited to many destinations. Either every leg is applied or none is.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class MultiLegTransfer {
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Leg {
+
+        String accountToId;
+        BigDecimal amount;
+    }
+
+    String accountFromId;
+
+    @NotNull
+    @NotEmpty
+    List<Leg> legs;
+}
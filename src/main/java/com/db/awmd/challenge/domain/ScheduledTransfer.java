@@ -0,0 +1,50 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+
+import javax.validation.constraints.NotNull;
+import java.math.BigDecimal;
+
+/**
+ * A transfer to execute at a given time. Clients send the accounts, the amount and the time; the other properties
+ * are set by the scheduler.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ScheduledTransfer {
+
+    public enum Status {
+        PENDING,
+        RUNNING,
+        APPLIED,
+        REJECTED,
+        CANCELLED
+    }
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    Long id;
+
+    String accountFromId;
+    String accountToId;
+    BigDecimal amount;
+
+    /** Milliseconds since the epoch; a time already past executes on the next tick. */
+    @NotNull
+    Long executeAt;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    Status status;
+
+    /** Milliseconds since the epoch at which the transfer was applied, rejected or cancelled. */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    Long finishedAt;
+
+    /** Why the transfer was rejected. */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    String message;
+}
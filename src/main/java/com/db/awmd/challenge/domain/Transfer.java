@@ -2,6 +2,7 @@ package com.db.awmd.challenge.domain;
 
 import lombok.*;
 
+import javax.validation.constraints.Size;
 import java.math.BigDecimal;
 
 @Getter
@@ -13,4 +14,16 @@ public class Transfer {
     String accountFromId;
     String accountToId;
     BigDecimal amount;
+
+    /**
+     * Optional idempotency key chosen by the client, scoped to its {@code X-Client-Id}; a retry with the same key
+     * returns the first outcome instead of transferring again. Reusing the key for another transfer is answered
+     * with 422.
+     */
+    @Size(max = 128)
+    String requestId;
+
+    public Transfer(String accountFromId, String accountToId, BigDecimal amount) {
+        this(accountFromId, accountToId, amount, null);
+    }
 }
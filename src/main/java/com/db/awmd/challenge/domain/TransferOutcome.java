@@ -0,0 +1,67 @@
+package com.db.awmd.challenge.domain;
+
+import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.exception.InvalidAmountTransferException;
+import com.db.awmd.challenge.exception.NonexistentAccountException;
+import com.db.awmd.challenge.exception.SameAccountTransferException;
+
+import java.math.BigDecimal;
+
+/**
+ * Result of a transfer, returned instead of thrown so that a rejection costs no allocation. The message of a
+ * rejection is only built when asked for, and is the message of the matching exception.
+ */
+public enum TransferOutcome {
+
+  APPLIED,
+  SOURCE_NOT_FOUND,
+  SAME_ACCOUNT,
+  INVALID_AMOUNT,
+  DESTINATION_NOT_FOUND,
+  INSUFFICIENT_FUNDS;
+
+  public boolean isApplied() {
+    return this == APPLIED;
+  }
+
+  /**
+   * @return the message of the rejection, null when the transfer was applied
+   */
+  public String message(String accountFromId, String accountToId, BigDecimal amount) {
+    switch (this) {
+      case SOURCE_NOT_FOUND:
+        return NonexistentAccountException.message(accountFromId);
+      case SAME_ACCOUNT:
+        return SameAccountTransferException.MESSAGE;
+      case INVALID_AMOUNT:
+        return InvalidAmountTransferException.MESSAGE;
+      case DESTINATION_NOT_FOUND:
+        return NonexistentAccountException.message(accountToId);
+      case INSUFFICIENT_FUNDS:
+        return InsufficientFundsException.message(accountFromId, amount);
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Bridges to the exception-based API.
+   */
+  public void throwIfRejected(String accountFromId, String accountToId, BigDecimal amount)
+    throws NonexistentAccountException, SameAccountTransferException, InvalidAmountTransferException,
+    InsufficientFundsException {
+    switch (this) {
+      case SOURCE_NOT_FOUND:
+        throw new NonexistentAccountException(accountFromId);
+      case SAME_ACCOUNT:
+        throw new SameAccountTransferException();
+      case INVALID_AMOUNT:
+        throw new InvalidAmountTransferException();
+      case DESTINATION_NOT_FOUND:
+        throw new NonexistentAccountException(accountToId);
+      case INSUFFICIENT_FUNDS:
+        throw new InsufficientFundsException(accountFromId, amount);
+      default:
+    }
+  }
+}
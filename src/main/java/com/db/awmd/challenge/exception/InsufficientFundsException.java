@@ -2,10 +2,18 @@ package com.db.awmd.challenge.exception;
 
 import java.math.BigDecimal;
 
+/**
+ * Stackless, like the other transfer rejections: they are expected outcomes, not programming errors, and filling in
+ * a stack trace would dominate the cost of a rejected transfer.
+ */
 public class InsufficientFundsException extends Exception {
 
     public InsufficientFundsException(String accountId, BigDecimal amount) {
-        super("Account: " + accountId +
-                " does not have sufficient funds to perform a transfer of " + amount);
+        super(message(accountId, amount), null, false, false);
+    }
+
+    public static String message(String accountId, BigDecimal amount) {
+        return "Account: " + accountId +
+                " does not have sufficient funds to perform a transfer of " + amount;
     }
 }
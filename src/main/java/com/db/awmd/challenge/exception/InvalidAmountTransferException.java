@@ -2,7 +2,9 @@ package com.db.awmd.challenge.exception;
 
 public class InvalidAmountTransferException extends Exception {
 
+    public static final String MESSAGE = "Transfer amount must be bigger than 0";
+
     public InvalidAmountTransferException() {
-        super("Transfer amount must be bigger than 0");
+        super(MESSAGE, null, false, false);
     }
 }
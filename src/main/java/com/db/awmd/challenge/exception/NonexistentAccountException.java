@@ -3,7 +3,10 @@ package com.db.awmd.challenge.exception;
 public class NonexistentAccountException extends Exception {
 
     public NonexistentAccountException(String accountId) {
-        super("Account: " + accountId + " does not exist");
+        super(message(accountId), null, false, false);
     }
 
+    public static String message(String accountId) {
+        return "Account: " + accountId + " does not exist";
+    }
 }
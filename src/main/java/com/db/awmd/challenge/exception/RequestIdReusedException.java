@@ -0,0 +1,8 @@
+package com.db.awmd.challenge.exception;
+
+public class RequestIdReusedException extends RuntimeException {
+
+    public RequestIdReusedException(String requestId) {
+        super("Request id " + requestId + " was already used for a different transfer", null, false, false);
+    }
+}
@@ -2,7 +2,9 @@ package com.db.awmd.challenge.exception;
 
 public class SameAccountTransferException extends Exception {
 
+    public static final String MESSAGE = "Origin account is the same as destination account";
+
     public SameAccountTransferException() {
-        super("Origin account is the same as destination account");
+        super(MESSAGE, null, false, false);
     }
 }
@@ -0,0 +1,72 @@
+package com.db.awmd.challenge.metrics;
+
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Approximate most-used accounts, kept with the Space-Saving algorithm over a random sample of the touches: a
+ * bounded table of counters where an untracked account replaces the least counted one and inherits its count. Only
+ * one touch in {@code sampleRate} takes the table lock, so contention stays negligible.
+ */
+public class HotAccounts {
+
+    @Value
+    public static class HotAccount {
+        String accountId;
+        long estimatedTransfers;
+    }
+
+    private final int capacity;
+    private final int sampleRate;
+    private final Map<String, long[]> counters = new HashMap<>();
+
+    /**
+     * @param sampleRate a power of two
+     */
+    public HotAccounts(int capacity, int sampleRate) {
+        this.capacity = capacity;
+        this.sampleRate = sampleRate;
+    }
+
+    public void touched(String accountId) {
+        if ((ThreadLocalRandom.current().nextInt() & (sampleRate - 1)) != 0) {
+            return;
+        }
+        synchronized (counters) {
+            long[] counter = counters.get(accountId);
+            if (counter != null) {
+                counter[0]++;
+            } else if (counters.size() < capacity) {
+                counters.put(accountId, new long[]{1});
+            } else {
+                Map.Entry<String, long[]> least = null;
+                for (Map.Entry<String, long[]> entry : counters.entrySet()) {
+                    if (least == null || entry.getValue()[0] < least.getValue()[0]) {
+                        least = entry;
+                    }
+                }
+                long[] inherited = counters.remove(least.getKey());
+                inherited[0]++;
+                counters.put(accountId, inherited);
+            }
+        }
+    }
+
+    public List<HotAccount> top(int limit) {
+        List<HotAccount> accounts = new ArrayList<>();
+        synchronized (counters) {
+            counters.forEach((id, counter) -> accounts.add(new HotAccount(id, counter[0] * sampleRate)));
+        }
+        return accounts.stream()
+                .sorted(Comparator.comparingLong(HotAccount::getEstimatedTransfers).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,118 @@
+package com.db.awmd.challenge.metrics;
+
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent log-linear histogram in the spirit of HdrHistogram. Values are counted in buckets 1/32 of a power of
+ * two wide, so every reported percentile is within about 3% of a recorded value, over the whole {@code long} range
+ * and in fixed memory. Recording is a single increment in a stripe picked by the current thread, cheap enough to
+ * stay on in hot paths. Counts are cumulative since startup.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray[] stripes;
+    private final int stripeMask;
+
+    public LatencyHistogram() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int count = Integer.highestOneBit(Math.max(1, Math.min(8, processors)));
+        stripes = new AtomicLongArray[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new AtomicLongArray(BUCKETS);
+        }
+        stripeMask = count - 1;
+    }
+
+    public void record(long value) {
+        int stripe = (int) Thread.currentThread().getId() & stripeMask;
+        stripes[stripe].incrementAndGet(bucketOf(Math.max(0, value)));
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                long count = stripe.get(i);
+                counts[i] += count;
+                total += count;
+            }
+        }
+        return new Snapshot(counts, total);
+    }
+
+    static int bucketOf(long value) {
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        if (shift < 0) {
+            return (int) value;
+        }
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * @return the highest value counted in the bucket
+     */
+    static long highestValueIn(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket >> SUB_BUCKET_BITS) - 1;
+        long lowest = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long total;
+
+        private Snapshot(long[] counts, long total) {
+            this.counts = counts;
+            this.total = total;
+        }
+
+        public long getCount() {
+            return total;
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return the value at the percentile, 0 when nothing was recorded
+         */
+        public long percentile(double percentile) {
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return highestValueIn(i);
+                }
+            }
+            return 0;
+        }
+
+        public long getMax() {
+            return percentile(100);
+        }
+
+        /**
+         * Adds the count, the usual percentiles and the maximum as {@code <prefix>.count}, {@code <prefix>.p50},
+         * ... {@code <prefix>.max}.
+         */
+        public void addTo(Collection<Metric<?>> metrics, String prefix) {
+            metrics.add(new Metric<>(prefix + ".count", total));
+            metrics.add(new Metric<>(prefix + ".p50", percentile(50)));
+            metrics.add(new Metric<>(prefix + ".p90", percentile(90)));
+            metrics.add(new Metric<>(prefix + ".p99", percentile(99)));
+            metrics.add(new Metric<>(prefix + ".p999", percentile(99.9)));
+            metrics.add(new Metric<>(prefix + ".max", getMax()));
+        }
+    }
+}
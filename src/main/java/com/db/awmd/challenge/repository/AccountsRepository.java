@@ -3,11 +3,52 @@ package com.db.awmd.challenge.repository;
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 
+import java.math.BigDecimal;
+
 public interface AccountsRepository {
 
   void createAccount(Account account) throws DuplicateAccountIdException;
 
   Account getAccount(String accountId);
 
+  /**
+   * @return the account with the given {@link Account#getHandle() handle}, or null when there is none or the
+   * repository does not number its accounts
+   */
+  default Account getAccount(int handle) {
+    return null;
+  }
+
   void clearAccounts();
+
+  /**
+   * @return every account created before the iteration started; balances are read as the accounts are visited, so
+   * they do not form a consistent cut while transfers run
+   */
+  Iterable<Account> allAccounts();
+
+  /**
+   * @return whether the repository keeps a record of transfers; they are then applied under the stripes of both
+   * accounts, whichever engine is configured, and recorded before the stripes are released, so that transfers
+   * sharing an account are recorded in the order they were applied
+   */
+  default boolean recordsTransfers() {
+    return false;
+  }
+
+  /**
+   * Called once a transfer has been applied to the accounts, while their stripes are still held, for repositories
+   * that {@link #recordsTransfers() keep a record of it}.
+   *
+   * @param epoch the epoch the transfer was applied in, see {@code EpochBarrier}
+   */
+  default void recordTransfer(String accountFromId, String accountToId, BigDecimal amount, long epoch) {
+  }
+
+  /**
+   * Waits until the transfers recorded so far are durable. Called after the stripes are released and before the
+   * transfers are acknowledged.
+   */
+  default void awaitRecorded() {
+  }
 }
@@ -2,19 +2,72 @@ package com.db.awmd.challenge.repository;
 
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import org.springframework.stereotype.Repository;
 
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Numbers accounts in the order they are created: the {@link Account#getHandle() handle} of an account is its index
+ * in a table of fixed-size chunks, so a lookup by handle is two array reads, and scans walk the chunks in order.
+ * Lookups by id go through a map.
+ * <p>
+ * Creations take no common lock. A creation first makes sure the chunk of the next handle exists, then takes that
+ * handle from a counter while the map holds the bin of its id, retrying if another creation took it first, so a
+ * duplicate never uses up a handle and the table stays dense. It then publishes the table with its new size once
+ * every lower handle is published, so lookups take no lock and never see a gap. Only the creation that needs a new
+ * chunk takes a lock, once every {@value #CHUNK_SIZE} accounts, and never while it holds a bin of the map.
+ */
 @Repository
 public class AccountsRepositoryInMemory implements AccountsRepository {
 
-  private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+  private static final int CHUNK_BITS = 12;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+  private static final int PUBLISH_SPINS = 64;
+
+  private final ConcurrentHashMap<String, Account> accounts = new ConcurrentHashMap<>();
+  private final AtomicInteger nextHandle = new AtomicInteger();
+  private final ReentrantLock chunkLock = new ReentrantLock();
+  private final ReentrantLock publishLock = new ReentrantLock();
+  private final Condition published = publishLock.newCondition();
+  private final AtomicInteger waiting = new AtomicInteger();
+  private volatile Account[][] chunks = new Account[1][];
+  private volatile Table table = new Table(chunks, 0);
 
   @Override
   public void createAccount(Account account) throws DuplicateAccountIdException {
-    Account previousAccount = accounts.putIfAbsent(account.getAccountId(), account);
-    if (previousAccount != null) {
+    // set only when the id was absent, since the same account may be created twice
+    int[] handle = {Account.NO_HANDLE};
+    try {
+      Account created;
+      do {
+        int next = nextHandle.get();
+        Account[] chunk = chunkOf(next);
+        created = accounts.computeIfAbsent(account.getAccountId(), id -> {
+          if (!nextHandle.compareAndSet(next, next + 1)) {
+            return null;
+          }
+          handle[0] = next;
+          account.setHandle(next);
+          chunk[next & (CHUNK_SIZE - 1)] = account;
+          return account;
+        });
+      } while (created == null);
+    } finally {
+      if (handle[0] != Account.NO_HANDLE) {
+        publish(handle[0]);
+      }
+    }
+    if (handle[0] == Account.NO_HANDLE) {
       throw new DuplicateAccountIdException(
         "Account id " + account.getAccountId() + " already exists!");
     }
@@ -25,9 +78,173 @@ public class AccountsRepositoryInMemory implements AccountsRepository {
     return accounts.get(accountId);
   }
 
+  @Override
+  public Account getAccount(int handle) {
+    Table current = table;
+    return handle >= 0 && handle < current.size ? current.get(handle) : null;
+  }
+
+  /**
+   * Handles start over from 0. Not safe to call while accounts are being created.
+   */
   @Override
   public void clearAccounts() {
-    accounts.clear();
+    chunkLock.lock();
+    try {
+      accounts.clear();
+      nextHandle.set(0);
+      chunks = new Account[1][];
+      table = new Table(chunks, 0);
+    } finally {
+      chunkLock.unlock();
+    }
+  }
+
+  /**
+   * @return the accounts created before the call, in handle order; parallel streams split it by handle range
+   */
+  @Override
+  public Collection<Account> allAccounts() {
+    Table current = table;
+    return new AbstractCollection<Account>() {
+
+      @Override
+      public int size() {
+        return current.size;
+      }
+
+      @Override
+      public Iterator<Account> iterator() {
+        return Spliterators.iterator(spliterator());
+      }
+
+      @Override
+      public Spliterator<Account> spliterator() {
+        return new HandleRange(current, 0, current.size);
+      }
+    };
+  }
+
+  private Account[] chunkOf(int handle) {
+    int chunk = handle >>> CHUNK_BITS;
+    Account[][] current = chunks;
+    if (chunk < current.length && current[chunk] != null) {
+      return current[chunk];
+    }
+    chunkLock.lock();
+    try {
+      current = chunks;
+      if (chunk >= current.length) {
+        current = Arrays.copyOf(current, Math.max(chunk + 1, 2 * current.length));
+      }
+      if (current[chunk] == null) {
+        current[chunk] = new Account[CHUNK_SIZE];
+      }
+      chunks = current;
+      return current[chunk];
+    } finally {
+      chunkLock.unlock();
+    }
+  }
+
+  /**
+   * Waits for the creations of the lower handles to publish theirs, each of which is at most a map insertion away and
+   * publishes even when the insertion fails. A creation that waits longer than a few yields sleeps until signalled.
+   */
+  private void publish(int handle) {
+    for (int spins = 0; table.size != handle; spins++) {
+      if (spins < PUBLISH_SPINS) {
+        Thread.yield();
+      } else {
+        awaitPublished(handle);
+      }
+    }
+    table = new Table(chunks, handle + 1);
+    if (waiting.get() > 0) {
+      publishLock.lock();
+      try {
+        published.signalAll();
+      } finally {
+        publishLock.unlock();
+      }
+    }
   }
 
+  private void awaitPublished(int handle) {
+    waiting.incrementAndGet();
+    publishLock.lock();
+    try {
+      while (table.size != handle) {
+        published.awaitUninterruptibly();
+      }
+    } finally {
+      publishLock.unlock();
+      waiting.decrementAndGet();
+    }
+  }
+
+  private static final class Table {
+
+    final Account[][] chunks;
+    final int size;
+
+    Table(Account[][] chunks, int size) {
+      this.chunks = chunks;
+      this.size = size;
+    }
+
+    Account get(int handle) {
+      return chunks[handle >>> CHUNK_BITS][handle & (CHUNK_SIZE - 1)];
+    }
+  }
+
+  private static final class HandleRange implements Spliterator<Account> {
+
+    private final Table table;
+    private int from;
+    private final int to;
+
+    HandleRange(Table table, int from, int to) {
+      this.table = table;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Account> action) {
+      if (from >= to) {
+        return false;
+      }
+      action.accept(table.get(from++));
+      return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Account> action) {
+      while (from < to) {
+        action.accept(table.get(from++));
+      }
+    }
+
+    @Override
+    public Spliterator<Account> trySplit() {
+      int middle = (from + to) >>> 1;
+      if (middle - from < CHUNK_SIZE / 4) {
+        return null;
+      }
+      HandleRange prefix = new HandleRange(table, from, middle);
+      from = middle;
+      return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+      return to - from;
+    }
+
+    @Override
+    public int characteristics() {
+      return ORDERED | SIZED | SUBSIZED | NONNULL | DISTINCT | IMMUTABLE;
+    }
+  }
 }
@@ -0,0 +1,381 @@
+package com.db.awmd.challenge.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary log of account creations and applied transfers, written to fixed-size memory-mapped segment
+ * files. A record is {@code [int length][int crc32][payload]}; a zero length marks the unwritten tail of a segment,
+ * and a record that does not fit in the current segment starts the next one. Transfer records carry the epoch they
+ * were applied in, which lets a snapshot taken at a consistent cut skip the transfers it already contains.
+ * <p>
+ * Appends are serialized, which only costs a copy into the mapped segment. With {@link FsyncPolicy#ALWAYS} an append
+ * returns once its record is forced to disk, and concurrent appenders share a single force (group commit).
+ */
+public class Journal implements Closeable {
+
+  public enum FsyncPolicy {
+    /** Every append is durable before it returns. */
+    ALWAYS,
+    /** Segments are forced in the background every fsync interval. */
+    INTERVAL,
+    /** Left to the operating system; segments are only forced on close. */
+    NEVER
+  }
+
+  public interface Visitor {
+
+    void accountCreated(String accountId, BigDecimal balance);
+
+    void transferApplied(String accountFromId, String accountToId, BigDecimal amount);
+  }
+
+  private static final byte CREATE = 1;
+  private static final byte TRANSFER = 2;
+  private static final int HEADER = 8;
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".log";
+
+  private final Path directory;
+  private final int segmentSize;
+  private final FsyncPolicy fsyncPolicy;
+  private final ReentrantLock appendLock = new ReentrantLock();
+  private final Object syncMonitor = new Object();
+  private final ByteBuffer scratch = ByteBuffer.allocate(1 << 16);
+  private final CRC32 crc = new CRC32();
+  private final ScheduledExecutorService flusher;
+
+  private long segmentIndex;
+  private long lastEpoch;
+  private volatile MappedByteBuffer segment;
+  private volatile long written;
+  private long synced;
+  private boolean closed;
+
+  private Journal(Path directory, int segmentSize, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis) {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.fsyncPolicy = fsyncPolicy;
+    if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+      flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "journal-flusher");
+        thread.setDaemon(true);
+        return thread;
+      });
+      flusher.scheduleWithFixedDelay(() -> sync(written), fsyncIntervalMillis, fsyncIntervalMillis,
+        TimeUnit.MILLISECONDS);
+    } else {
+      flusher = null;
+    }
+  }
+
+  /**
+   * Replays every record of the journal in {@code directory} into the visitor and opens it for appending after the
+   * last intact record. A torn record at the tail, left by a crash in the middle of an append, is overwritten.
+   */
+  public static Journal open(Path directory, int segmentSize, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis,
+    Visitor visitor) throws IOException {
+    return open(directory, segmentSize, fsyncPolicy, fsyncIntervalMillis, 0, 0, visitor);
+  }
+
+  /**
+   * Like {@link #open(Path, int, FsyncPolicy, long, Visitor)}, but only replays the records from {@code fromPosition}
+   * on, and of those skips the transfers applied up to {@code throughEpoch}.
+   */
+  public static Journal open(Path directory, int segmentSize, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis,
+    long fromPosition, long throughEpoch, Visitor visitor) throws IOException {
+    Files.createDirectories(directory);
+    Journal journal = new Journal(directory, segmentSize, fsyncPolicy, fsyncIntervalMillis);
+    journal.replay(fromPosition, throughEpoch, visitor);
+    return journal;
+  }
+
+  public long appendCreate(String accountId, BigDecimal balance) {
+    return append(CREATE, 0, accountId, null, balance);
+  }
+
+  public long appendTransfer(String accountFromId, String accountToId, BigDecimal amount, long epoch) {
+    return append(TRANSFER, epoch, accountFromId, accountToId, amount);
+  }
+
+  /**
+   * Like {@link #appendTransfer}, but returns without waiting for the record to be forced, so that callers can write
+   * it while holding the locks that order it and wait in {@link #awaitDurable()} once they released them.
+   */
+  public long writeTransfer(String accountFromId, String accountToId, BigDecimal amount, long epoch) {
+    return write(TRANSFER, epoch, accountFromId, accountToId, amount);
+  }
+
+  /**
+   * With {@link FsyncPolicy#ALWAYS}, returns once every record written so far is forced to disk.
+   */
+  public void awaitDurable() {
+    if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+      sync(written);
+    }
+  }
+
+  /**
+   * @return the highest epoch found in the records read when the journal was opened
+   */
+  public long lastEpoch() {
+    return lastEpoch;
+  }
+
+  /**
+   * Deletes the segments that end at or before {@code position}, once a snapshot has made them redundant. The
+   * current segment is always kept.
+   */
+  public void deleteSegmentsBefore(long position) throws IOException {
+    appendLock.lock();
+    try {
+      for (Path path : segments()) {
+        long index = indexOf(path);
+        if (index < segmentIndex && (index + 1) * segmentSize <= position) {
+          Files.delete(path);
+        }
+      }
+    } finally {
+      appendLock.unlock();
+    }
+  }
+
+  /**
+   * @return the logical end of the journal, {@code segment index * segment size + offset}
+   */
+  public long position() {
+    return written;
+  }
+
+  /**
+   * Drops every segment and starts an empty journal.
+   */
+  public void reset() throws IOException {
+    appendLock.lock();
+    try {
+      for (Path path : segments()) {
+        Files.delete(path);
+      }
+      segmentIndex = 0;
+      segment = map(0);
+      written = 0;
+      synchronized (syncMonitor) {
+        synced = 0;
+      }
+    } finally {
+      appendLock.unlock();
+    }
+  }
+
+  @Override
+  public void close() {
+    if (flusher != null) {
+      flusher.shutdown();
+    }
+    appendLock.lock();
+    try {
+      if (!closed) {
+        segment.force();
+        closed = true;
+      }
+    } finally {
+      appendLock.unlock();
+    }
+  }
+
+  private long append(byte type, long epoch, String first, String second, BigDecimal amount) {
+    long end = write(type, epoch, first, second, amount);
+    if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+      sync(end);
+    }
+    return end;
+  }
+
+  private long write(byte type, long epoch, String first, String second, BigDecimal amount) {
+    long end;
+    appendLock.lock();
+    try {
+      if (closed) {
+        throw new IllegalStateException("Journal is closed");
+      }
+      encode(type, epoch, first, second, amount);
+      int length = scratch.remaining();
+      if (segment.remaining() < HEADER + length) {
+        roll();
+      }
+      crc.reset();
+      crc.update(scratch.duplicate());
+      segment.putInt(length).putInt((int) crc.getValue()).put(scratch);
+      end = segmentIndex * segmentSize + segment.position();
+      written = end;
+    } finally {
+      appendLock.unlock();
+    }
+    return end;
+  }
+
+  private void encode(byte type, long epoch, String first, String second, BigDecimal amount) {
+    scratch.clear();
+    try {
+      scratch.put(type).putLong(epoch);
+      putString(first);
+      if (second != null) {
+        putString(second);
+      }
+      byte[] unscaled = amount.unscaledValue().toByteArray();
+      scratch.putInt(amount.scale()).putShort((short) unscaled.length).put(unscaled);
+    } catch (BufferOverflowException e) {
+      throw new IllegalArgumentException("Journal record is too large", e);
+    }
+    scratch.flip();
+  }
+
+  private void putString(String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    scratch.putShort((short) bytes.length).put(bytes);
+  }
+
+  /**
+   * Forces the journal up to at least {@code position}. Whoever gets the monitor forces everything written so far,
+   * so appenders queued behind it usually find their record already durable.
+   */
+  private void sync(long position) {
+    synchronized (syncMonitor) {
+      if (synced >= position) {
+        return;
+      }
+      long target = written;
+      segment.force();
+      synced = target;
+    }
+  }
+
+  private void roll() {
+    if (fsyncPolicy != FsyncPolicy.NEVER) {
+      segment.force();
+    }
+    try {
+      segment = map(segmentIndex + 1);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    segmentIndex++;
+  }
+
+  private void replay(long fromPosition, long throughEpoch, Visitor visitor) throws IOException {
+    List<Path> segments = segments();
+    if (segments.isEmpty()) {
+      segmentIndex = fromPosition / segmentSize;
+      segment = map(segmentIndex);
+      segment.position((int) (fromPosition % segmentSize));
+      written = fromPosition;
+      synced = written;
+      return;
+    }
+
+    Path last = segments.get(segments.size() - 1);
+    for (Path path : segments) {
+      long base = indexOf(path) * segmentSize;
+      if (base + segmentSize <= fromPosition && !path.equals(last)) {
+        continue;
+      }
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        buffer.position((int) Math.max(0, Math.min(channel.size(), fromPosition - base)));
+        int end = replay(buffer, throughEpoch, visitor);
+        if (path.equals(last)) {
+          segmentIndex = indexOf(path);
+          segment = map(segmentIndex);
+          segment.position(end);
+          written = segmentIndex * segmentSize + end;
+          synced = written;
+        }
+      }
+    }
+  }
+
+  private int replay(ByteBuffer buffer, long throughEpoch, Visitor visitor) {
+    while (buffer.remaining() >= HEADER) {
+      int start = buffer.position();
+      int length = buffer.getInt();
+      int checksum = buffer.getInt();
+      if (length <= 0 || length > buffer.remaining()) {
+        return start;
+      }
+
+      ByteBuffer payload = buffer.slice();
+      payload.limit(length);
+      crc.reset();
+      crc.update(payload.duplicate());
+      if ((int) crc.getValue() != checksum) {
+        return start;
+      }
+
+      byte type = payload.get();
+      long epoch = payload.getLong();
+      lastEpoch = Math.max(lastEpoch, epoch);
+      if (type == CREATE) {
+        visitor.accountCreated(getString(payload), getDecimal(payload));
+      } else if (type == TRANSFER && epoch > throughEpoch) {
+        visitor.transferApplied(getString(payload), getString(payload), getDecimal(payload));
+      }
+      buffer.position(start + HEADER + length);
+    }
+    return buffer.position();
+  }
+
+  private static String getString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getShort()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static BigDecimal getDecimal(ByteBuffer buffer) {
+    int scale = buffer.getInt();
+    byte[] unscaled = new byte[buffer.getShort()];
+    buffer.get(unscaled);
+    return new BigDecimal(new BigInteger(unscaled), scale);
+  }
+
+  private MappedByteBuffer map(long index) throws IOException {
+    Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+      StandardOpenOption.WRITE)) {
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    }
+  }
+
+  private List<Path> segments() throws IOException {
+    List<Path> segments = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      stream.forEach(segments::add);
+    }
+    Collections.sort(segments);
+    return segments;
+  }
+
+  private static long indexOf(Path segment) {
+    String name = segment.getFileName().toString();
+    return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+  }
+}
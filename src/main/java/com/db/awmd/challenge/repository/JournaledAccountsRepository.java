@@ -0,0 +1,235 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.config.BalanceProperties;
+import com.db.awmd.challenge.config.JournalProperties;
+import com.db.awmd.challenge.config.SnapshotProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Durable mode: keeps accounts in {@link AccountsRepositoryInMemory} and appends every creation and applied transfer
+ * to a {@link Journal}. On startup the latest {@link SnapshotFile} is loaded and only the journal after it is
+ * replayed to rebuild the balances.
+ */
+@Slf4j
+@Primary
+@Repository
+@Profile("durable")
+public class JournaledAccountsRepository implements AccountsRepository, DisposableBean {
+
+  private final AccountsRepositoryInMemory accounts;
+  private final BalanceProperties balanceProperties;
+  private final SnapshotProperties snapshotProperties;
+  private final Path snapshotDirectory;
+  private final Journal journal;
+  private final long lastEpoch;
+  private final long loadMillis;
+
+  @Autowired
+  public JournaledAccountsRepository(AccountsRepositoryInMemory accounts, JournalProperties journalProperties,
+    BalanceProperties balanceProperties, SnapshotProperties snapshotProperties) throws IOException {
+    this.accounts = accounts;
+    this.balanceProperties = balanceProperties;
+    this.snapshotProperties = snapshotProperties;
+    this.snapshotDirectory = Paths.get(snapshotProperties.getDirectory());
+
+    long started = System.nanoTime();
+    SnapshotFile.Snapshot snapshot = loadLatestSnapshot();
+    long fromPosition = snapshot == null ? 0 : snapshot.getJournalPosition();
+    long throughEpoch = snapshot == null ? 0 : snapshot.getEpoch();
+
+    Replay replay = new Replay();
+    this.journal = Journal.open(Paths.get(journalProperties.getDirectory()), journalProperties.getSegmentSize(),
+      journalProperties.getFsync(), journalProperties.getFsyncIntervalMillis(), fromPosition, throughEpoch, replay);
+    this.lastEpoch = Math.max(throughEpoch, journal.lastEpoch());
+    this.loadMillis = (System.nanoTime() - started) / 1_000_000;
+    log.info("Loaded {} accounts from snapshot and replayed {} journal records in {} ms",
+      snapshot == null ? 0 : snapshot.getAccounts(), replay.records, loadMillis);
+  }
+
+  /**
+   * The account only becomes durable once it is journaled, but it is published first so that a rejected duplicate
+   * never reaches the journal.
+   */
+  @Override
+  public void createAccount(Account account) throws DuplicateAccountIdException {
+    accounts.createAccount(account);
+    journal.appendCreate(account.getAccountId(), account.getBalance());
+  }
+
+  @Override
+  public Account getAccount(String accountId) {
+    return accounts.getAccount(accountId);
+  }
+
+  @Override
+  public Account getAccount(int handle) {
+    return accounts.getAccount(handle);
+  }
+
+  @Override
+  public Iterable<Account> allAccounts() {
+    return accounts.allAccounts();
+  }
+
+  @Override
+  public void clearAccounts() {
+    try {
+      journal.reset();
+      for (Path file : SnapshotFile.list(snapshotDirectory)) {
+        Files.delete(file);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    accounts.clearAccounts();
+  }
+
+  @Override
+  public boolean recordsTransfers() {
+    return true;
+  }
+
+  @Override
+  public void recordTransfer(String accountFromId, String accountToId, BigDecimal amount, long epoch) {
+    journal.writeTransfer(accountFromId, accountToId, amount, epoch);
+  }
+
+  @Override
+  public void awaitRecorded() {
+    journal.awaitDurable();
+  }
+
+  public long journalPosition() {
+    return journal.position();
+  }
+
+  /**
+   * @return the highest epoch found in the snapshot and the journal on startup
+   */
+  public long lastEpoch() {
+    return lastEpoch;
+  }
+
+  public long loadMillis() {
+    return loadMillis;
+  }
+
+  /**
+   * Writes the balances of a consistent cut, then drops the snapshots beyond the retained count and the journal
+   * segments that no retained snapshot needs anymore.
+   *
+   * @param journalPosition the journal position read before the cut started
+   * @param epoch           the last epoch contained in the cut
+   * @param ids             the accounts in the cut
+   * @param balances        their balances at the cut, in the same order
+   */
+  public SnapshotFile.Snapshot writeSnapshot(long journalPosition, long epoch, List<String> ids,
+    List<BigDecimal> balances) throws IOException {
+    SnapshotFile.Snapshot snapshot = SnapshotFile.write(snapshotDirectory, journalPosition, epoch, ids, balances);
+
+    List<Path> files = SnapshotFile.list(snapshotDirectory);
+    int retained = Math.max(1, snapshotProperties.getRetained());
+    for (Path file : files.subList(Math.min(retained, files.size()), files.size())) {
+      Files.delete(file);
+    }
+    long oldestPosition = snapshot.getJournalPosition();
+    for (Path file : files.subList(0, Math.min(retained, files.size()))) {
+      oldestPosition = Math.min(oldestPosition, SnapshotFile.journalPositionOf(file));
+    }
+    journal.deleteSegmentsBefore(oldestPosition);
+    return snapshot;
+  }
+
+  @Override
+  public void destroy() {
+    journal.close();
+  }
+
+  /**
+   * Falls back to older snapshots when the latest cannot be read; the journal is only compacted up to the oldest
+   * retained snapshot, so replaying from an older one is still complete.
+   */
+  private SnapshotFile.Snapshot loadLatestSnapshot() {
+    List<Path> files;
+    try {
+      files = SnapshotFile.list(snapshotDirectory);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    for (Path file : files) {
+      try {
+        return SnapshotFile.load(file, this::restore);
+      } catch (IOException e) {
+        log.warn("Skipping unreadable snapshot {}", file, e);
+        accounts.clearAccounts();
+      }
+    }
+    return null;
+  }
+
+  private Account restore(String accountId, BigDecimal balance) {
+    Account account = new Account(accountId, balance);
+    if (balanceProperties.isFixedPoint()) {
+      account.useFixedPoint(balanceProperties.scale());
+    }
+    account.combineDepositsAfter(balanceProperties.getCombineAfterContentions());
+    accounts.createAccount(account);
+    return account;
+  }
+
+  /**
+   * Transfers are journaled while the stripes of their accounts are held, and creations while the stripe of the new
+   * account is held, so a transfer follows the creation of its accounts and every transfer applied to them before
+   * it. Replay applies them in that order and fails on a transfer the journal cannot explain: one of an account that
+   * was never created, or one that would take a balance below zero. Accounts created after a snapshot started may
+   * already be in it, so their creation is skipped.
+   */
+  private class Replay implements Journal.Visitor {
+
+    private long records;
+
+    @Override
+    public void accountCreated(String accountId, BigDecimal balance) {
+      records++;
+      if (accounts.getAccount(accountId) == null) {
+        restore(accountId, balance);
+      }
+    }
+
+    @Override
+    public void transferApplied(String accountFromId, String accountToId, BigDecimal amount) {
+      records++;
+      Account from = accountOf(accountFromId);
+      Account to = accountOf(accountToId);
+      if (!from.tryWithdraw(amount)) {
+        throw new IllegalStateException("Journal transfer of " + amount + " from account " + accountFromId
+          + " to account " + accountToId + " would take its balance below zero");
+      }
+      to.deposit(amount);
+    }
+
+    private Account accountOf(String accountId) {
+      Account account = accounts.getAccount(accountId);
+      if (account == null) {
+        throw new IllegalStateException("Journal has a transfer of account " + accountId
+          + " before its creation");
+      }
+      return account;
+    }
+  }
+}
@@ -0,0 +1,373 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.config.BalanceProperties;
+import com.db.awmd.challenge.config.OffHeapProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.BalanceCell;
+import com.db.awmd.challenge.domain.FixedPointBalanceCell;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps account ids and balances outside the Java heap, for account counts where a map of {@link Account} objects
+ * costs gigabytes of heap and long collections.
+ * <p>
+ * Every account is a record appended to a chunk of native memory: {@code [long units][long held units]
+ * [long preserved epoch][long preserved units][int hash][int id length][id]}. Records are found through an
+ * open-addressing index of record addresses with linear probing; a record is written completely before its address
+ * is published into the index with compare-and-set, so lookups never see a partial record and concurrent creations
+ * of the same id cannot both win.
+ * Balances are fixed-point minor units updated with compare-and-set inside the record, and {@link #getAccount}
+ * returns a short-lived {@link Account} over it. The index is sized for {@code accounts.offheap.capacity} accounts
+ * up front and does not grow.
+ */
+@Primary
+@Repository
+@Profile("offheap")
+public class OffHeapAccountsRepository implements AccountsRepository, DisposableBean {
+
+  private static final Unsafe UNSAFE = unsafe();
+
+  private static final int UNITS = 0;
+  private static final int HELD = 8;
+  private static final int PRESERVED_EPOCH = 16;
+  private static final int PRESERVED_UNITS = 24;
+  private static final int HASH = 32;
+  private static final int ID_LENGTH = 36;
+  private static final int ID = 40;
+  private static final int CHUNK_SIZE = 64 * 1024 * 1024;
+
+  private final int scale;
+  private final int capacity;
+  private final int mask;
+  private final long index;
+  private final AtomicInteger size = new AtomicInteger();
+  private final ReentrantLock allocationLock = new ReentrantLock();
+  private final List<Long> chunks = new ArrayList<>();
+  private long chunk;
+  private int chunkOffset;
+
+  @Autowired
+  public OffHeapAccountsRepository(OffHeapProperties offHeapProperties, BalanceProperties balanceProperties) {
+    this.scale = balanceProperties.scale();
+    this.capacity = offHeapProperties.getCapacity();
+    long slots = Long.highestOneBit(Math.max(2, capacity + capacity / 3L) - 1) << 1;
+    if (slots > 1 << 30) {
+      throw new IllegalArgumentException("Off-heap capacity is too large: " + capacity);
+    }
+    this.mask = (int) slots - 1;
+    this.index = UNSAFE.allocateMemory(slots * 8);
+    UNSAFE.setMemory(index, slots * 8, (byte) 0);
+    newChunk();
+  }
+
+  @Override
+  public void createAccount(Account account) throws DuplicateAccountIdException {
+    String accountId = account.getAccountId();
+    byte[] id = accountId.getBytes(StandardCharsets.UTF_8);
+    int hash = hash(accountId);
+    long units = FixedPointBalanceCell.toUnits(account.getBalance(), scale);
+
+    if (size.incrementAndGet() > capacity) {
+      size.decrementAndGet();
+      throw new IllegalStateException("Off-heap account store is full (" + capacity + " accounts)");
+    }
+    long record = allocate(ID + id.length);
+    UNSAFE.putLong(record + UNITS, units);
+    UNSAFE.putLong(record + HELD, 0);
+    UNSAFE.putLong(record + PRESERVED_EPOCH, 0);
+    UNSAFE.putInt(record + HASH, hash);
+    UNSAFE.putInt(record + ID_LENGTH, id.length);
+    UNSAFE.copyMemory(id, Unsafe.ARRAY_BYTE_BASE_OFFSET, null, record + ID, id.length);
+
+    for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+      long address = index + ((long) slot << 3);
+      long existing = UNSAFE.getLongVolatile(null, address);
+      if (existing == 0) {
+        if (UNSAFE.compareAndSwapLong(null, address, 0, record)) {
+          return;
+        }
+        existing = UNSAFE.getLongVolatile(null, address);
+      }
+      if (matches(existing, hash, id)) {
+        size.decrementAndGet();
+        throw new DuplicateAccountIdException("Account id " + accountId + " already exists!");
+      }
+    }
+  }
+
+  @Override
+  public Account getAccount(String accountId) {
+    byte[] id = accountId.getBytes(StandardCharsets.UTF_8);
+    int hash = hash(accountId);
+    for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+      long record = UNSAFE.getLongVolatile(null, index + ((long) slot << 3));
+      if (record == 0) {
+        return null;
+      }
+      if (matches(record, hash, id)) {
+        return new Account(accountId, new Cell(record, scale));
+      }
+    }
+  }
+
+  /**
+   * Walks the index; accounts created during the iteration may or may not be visited.
+   */
+  @Override
+  public Iterable<Account> allAccounts() {
+    return () -> new Iterator<Account>() {
+
+      private int slot = -1;
+      private long record = advance();
+
+      @Override
+      public boolean hasNext() {
+        return record != 0;
+      }
+
+      @Override
+      public Account next() {
+        if (record == 0) {
+          throw new NoSuchElementException();
+        }
+        byte[] id = new byte[UNSAFE.getInt(record + ID_LENGTH)];
+        UNSAFE.copyMemory(null, record + ID, id, Unsafe.ARRAY_BYTE_BASE_OFFSET, id.length);
+        Account account = new Account(new String(id, StandardCharsets.UTF_8), new Cell(record, scale));
+        record = advance();
+        return account;
+      }
+
+      private long advance() {
+        while (++slot <= mask) {
+          long next = UNSAFE.getLongVolatile(null, index + ((long) slot << 3));
+          if (next != 0) {
+            return next;
+          }
+        }
+        return 0;
+      }
+    };
+  }
+
+  /**
+   * Not safe to call while other threads use the repository.
+   */
+  @Override
+  public void clearAccounts() {
+    UNSAFE.setMemory(index, (mask + 1L) * 8, (byte) 0);
+    allocationLock.lock();
+    try {
+      freeChunks();
+      newChunk();
+    } finally {
+      allocationLock.unlock();
+    }
+    size.set(0);
+  }
+
+  public int size() {
+    return size.get();
+  }
+
+  /**
+   * @return native memory held by the index and the record chunks
+   */
+  public long offHeapBytes() {
+    allocationLock.lock();
+    try {
+      return (mask + 1L) * 8 + (long) chunks.size() * CHUNK_SIZE;
+    } finally {
+      allocationLock.unlock();
+    }
+  }
+
+  @Override
+  public void destroy() {
+    allocationLock.lock();
+    try {
+      freeChunks();
+    } finally {
+      allocationLock.unlock();
+    }
+    UNSAFE.freeMemory(index);
+  }
+
+  private long allocate(int length) {
+    int aligned = (length + 7) & ~7;
+    if (aligned > CHUNK_SIZE) {
+      throw new IllegalArgumentException("Account id is too long");
+    }
+    allocationLock.lock();
+    try {
+      if (chunkOffset + aligned > CHUNK_SIZE) {
+        newChunk();
+      }
+      long record = chunk + chunkOffset;
+      chunkOffset += aligned;
+      return record;
+    } finally {
+      allocationLock.unlock();
+    }
+  }
+
+  private void newChunk() {
+    chunk = UNSAFE.allocateMemory(CHUNK_SIZE);
+    chunks.add(chunk);
+    chunkOffset = 0;
+  }
+
+  private void freeChunks() {
+    for (long address : chunks) {
+      UNSAFE.freeMemory(address);
+    }
+    chunks.clear();
+  }
+
+  private static boolean matches(long record, int hash, byte[] id) {
+    if (UNSAFE.getInt(record + HASH) != hash || UNSAFE.getInt(record + ID_LENGTH) != id.length) {
+      return false;
+    }
+    for (int i = 0; i < id.length; i++) {
+      if (UNSAFE.getByte(record + ID + i) != id[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int hash(String accountId) {
+    int h = accountId.hashCode() * 0x9e3779b9;
+    return h ^ (h >>> 16);
+  }
+
+  private static Unsafe unsafe() {
+    try {
+      Field field = Unsafe.class.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      return (Unsafe) field.get(null);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  /**
+   * Balance stored in a record. Views of the same account share the record, including the held amount and the
+   * preserved balance.
+   */
+  private static final class Cell extends BalanceCell {
+
+    private final long record;
+    private final int scale;
+
+    Cell(long record, int scale) {
+      this.record = record;
+      this.scale = scale;
+    }
+
+    @Override
+    public BigDecimal get() {
+      return BigDecimal.valueOf(UNSAFE.getLongVolatile(null, record + UNITS), scale);
+    }
+
+    @Override
+    public void set(BigDecimal balance) {
+      UNSAFE.putLongVolatile(null, record + UNITS, FixedPointBalanceCell.toUnits(balance, scale));
+    }
+
+    @Override
+    public boolean tryWithdraw(BigDecimal amount) {
+      long units = FixedPointBalanceCell.toUnits(amount, scale);
+      long current;
+      do {
+        current = UNSAFE.getLongVolatile(null, record + UNITS);
+        if (current < units) {
+          return false;
+        }
+      } while (!UNSAFE.compareAndSwapLong(null, record + UNITS, current, current - units));
+      return true;
+    }
+
+    @Override
+    public void deposit(BigDecimal amount) {
+      long units = FixedPointBalanceCell.toUnits(amount, scale);
+      long current;
+      do {
+        current = UNSAFE.getLongVolatile(null, record + UNITS);
+      } while (!UNSAFE.compareAndSwapLong(null, record + UNITS, current,
+        FixedPointBalanceCell.add(current, units, scale)));
+    }
+
+    @Override
+    public void checkDeposit(BigDecimal amount) {
+      FixedPointBalanceCell.add(UNSAFE.getLongVolatile(null, record + UNITS),
+        FixedPointBalanceCell.toUnits(amount, scale), scale);
+    }
+
+    @Override
+    public BigDecimal getHeld() {
+      return BigDecimal.valueOf(UNSAFE.getLongVolatile(null, record + HELD), scale);
+    }
+
+    @Override
+    public boolean hold(BigDecimal amount) {
+      if (!tryWithdraw(amount)) {
+        return false;
+      }
+      addHeld(FixedPointBalanceCell.toUnits(amount, scale));
+      return true;
+    }
+
+    @Override
+    public void release(BigDecimal amount) {
+      addHeld(-FixedPointBalanceCell.toUnits(amount, scale));
+      deposit(amount);
+    }
+
+    @Override
+    public void takeHeld(BigDecimal amount) {
+      addHeld(-FixedPointBalanceCell.toUnits(amount, scale));
+    }
+
+    @Override
+    public void preserve(long epoch) {
+      if (UNSAFE.getLong(record + PRESERVED_EPOCH) < epoch) {
+        UNSAFE.putLong(record + PRESERVED_UNITS, bookUnits());
+        UNSAFE.putLong(record + PRESERVED_EPOCH, epoch);
+      }
+    }
+
+    @Override
+    public BigDecimal getBefore(long epoch) {
+      return BigDecimal.valueOf(UNSAFE.getLong(record + PRESERVED_EPOCH) == epoch
+        ? UNSAFE.getLong(record + PRESERVED_UNITS)
+        : bookUnits(), scale);
+    }
+
+    /**
+     * Only changed under the account's lock, so a plain read before the write loses no update.
+     */
+    private void addHeld(long units) {
+      UNSAFE.putLongVolatile(null, record + HELD, UNSAFE.getLong(record + HELD) + units);
+    }
+
+    private long bookUnits() {
+      return UNSAFE.getLongVolatile(null, record + UNITS) + UNSAFE.getLongVolatile(null, record + HELD);
+    }
+  }
+}
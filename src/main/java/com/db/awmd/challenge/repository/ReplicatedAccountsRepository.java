@@ -0,0 +1,74 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.config.ReplicationProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+
+/**
+ * Leader mode: keeps accounts in {@link AccountsRepositoryInMemory} and appends every creation and applied transfer
+ * to a {@link ReplicationLog}, which the {@code ReplicationLeader} ships to followers. Transfers are appended while
+ * the stripes of both accounts are held, so the log lists them in the order they were applied.
+ */
+@Primary
+@Repository
+@Profile("leader")
+public class ReplicatedAccountsRepository implements AccountsRepository {
+
+  private final AccountsRepositoryInMemory accounts;
+
+  @Getter
+  private final ReplicationLog log;
+
+  @Autowired
+  public ReplicatedAccountsRepository(AccountsRepositoryInMemory accounts, ReplicationProperties properties) {
+    this.accounts = accounts;
+    this.log = new ReplicationLog(properties.getLogCapacity());
+  }
+
+  /**
+   * Like the journaled repository, publishes the account first so that a rejected duplicate is never shipped.
+   */
+  @Override
+  public void createAccount(Account account) throws DuplicateAccountIdException {
+    accounts.createAccount(account);
+    log.appendCreate(account.getAccountId(), account.getBalance());
+  }
+
+  @Override
+  public Account getAccount(String accountId) {
+    return accounts.getAccount(accountId);
+  }
+
+  @Override
+  public Account getAccount(int handle) {
+    return accounts.getAccount(handle);
+  }
+
+  @Override
+  public Iterable<Account> allAccounts() {
+    return accounts.allAccounts();
+  }
+
+  @Override
+  public void clearAccounts() {
+    accounts.clearAccounts();
+    log.appendClear();
+  }
+
+  @Override
+  public boolean recordsTransfers() {
+    return true;
+  }
+
+  @Override
+  public void recordTransfer(String accountFromId, String accountToId, BigDecimal amount, long epoch) {
+    log.appendTransfer(accountFromId, accountToId, amount, epoch);
+  }
+}
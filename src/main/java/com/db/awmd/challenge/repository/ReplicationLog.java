@@ -0,0 +1,202 @@
+package com.db.awmd.challenge.repository;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory log of account creations and applied transfers, shipped by the leader to its followers. Records are
+ * appended to a ring of bytes addressed by a logical position that only grows; once the ring is full the oldest
+ * records are overwritten, and a reader that asks for an overwritten position is told so and has to start over from
+ * a snapshot.
+ * <p>
+ * A record is {@code [int length][byte type][long epoch][payload]}, encoded like the records of the {@link Journal}
+ * but without a checksum, which the transport provides. Appends and reads are serialized by one lock: an append is
+ * a copy into the ring, and a read copies out a whole chunk of records at once, so readers hold it about as long as
+ * a few appends do.
+ */
+public class ReplicationLog {
+
+  public interface Visitor {
+
+    void accountCreated(String accountId, BigDecimal balance);
+
+    void transferApplied(String accountFromId, String accountToId, BigDecimal amount, long epoch);
+
+    void accountsCleared();
+  }
+
+  private static final byte CREATE = 1;
+  private static final byte TRANSFER = 2;
+  private static final byte CLEAR = 3;
+  private static final int HEADER = 4;
+
+  private final byte[] ring;
+  private final int mask;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition appended = lock.newCondition();
+  private final ByteBuffer scratch = ByteBuffer.allocate(1 << 16);
+
+  private volatile long written;
+
+  /**
+   * @param capacity bytes of the ring, rounded up to a power of two
+   */
+  public ReplicationLog(int capacity) {
+    int size = Integer.highestOneBit(Math.max(2 * scratch.capacity(), capacity) - 1) << 1;
+    this.ring = new byte[size];
+    this.mask = size - 1;
+  }
+
+  public long appendCreate(String accountId, BigDecimal balance) {
+    return append(CREATE, 0, accountId, null, balance);
+  }
+
+  public long appendTransfer(String accountFromId, String accountToId, BigDecimal amount, long epoch) {
+    return append(TRANSFER, epoch, accountFromId, accountToId, amount);
+  }
+
+  public long appendClear() {
+    return append(CLEAR, 0, null, null, null);
+  }
+
+  /**
+   * @return the end of the last record appended
+   */
+  public long position() {
+    return written;
+  }
+
+  /**
+   * Copies the records from {@code from} on into {@code buffer}, as many bytes as fit. The last record copied may be
+   * incomplete; the next read continues it.
+   *
+   * @return the number of bytes copied, or -1 when {@code from} was overwritten or is beyond the end of the log
+   */
+  public int read(long from, ByteBuffer buffer) {
+    lock.lock();
+    try {
+      if (from > written || written - from > ring.length) {
+        return -1;
+      }
+      int length = (int) Math.min(buffer.remaining(), written - from);
+      int offset = (int) (from & mask);
+      int first = Math.min(length, ring.length - offset);
+      buffer.put(ring, offset, first).put(ring, 0, length - first);
+      return length;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Waits until a record is appended after {@code position}.
+   *
+   * @return false when none was appended within the timeout
+   */
+  public boolean awaitAppend(long position, long timeout, TimeUnit unit) throws InterruptedException {
+    long nanos = unit.toNanos(timeout);
+    lock.lock();
+    try {
+      while (written <= position) {
+        if (nanos <= 0) {
+          return false;
+        }
+        nanos = appended.awaitNanos(nanos);
+      }
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Visits the complete records at the start of {@code records} and leaves it positioned after the last of them.
+   *
+   * @return the number of records visited
+   */
+  public static int decode(ByteBuffer records, Visitor visitor) {
+    int count = 0;
+    while (records.remaining() >= HEADER) {
+      int start = records.position();
+      int length = records.getInt();
+      if (length > records.remaining()) {
+        records.position(start);
+        break;
+      }
+      int end = records.position() + length;
+      byte type = records.get();
+      long epoch = records.getLong();
+      if (type == CREATE) {
+        visitor.accountCreated(getString(records), getDecimal(records));
+      } else if (type == TRANSFER) {
+        visitor.transferApplied(getString(records), getString(records), getDecimal(records), epoch);
+      } else if (type == CLEAR) {
+        visitor.accountsCleared();
+      }
+      records.position(end);
+      count++;
+    }
+    return count;
+  }
+
+  private long append(byte type, long epoch, String first, String second, BigDecimal amount) {
+    lock.lock();
+    try {
+      encode(type, epoch, first, second, amount);
+      int length = scratch.remaining();
+      int offset = (int) (written & mask);
+      int head = Math.min(length, ring.length - offset);
+      scratch.get(ring, offset, head).get(ring, 0, length - head);
+      written += length;
+      appended.signalAll();
+      return written;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void encode(byte type, long epoch, String first, String second, BigDecimal amount) {
+    scratch.clear();
+    try {
+      scratch.putInt(0).put(type).putLong(epoch);
+      if (first != null) {
+        putString(first);
+      }
+      if (second != null) {
+        putString(second);
+      }
+      if (amount != null) {
+        byte[] unscaled = amount.unscaledValue().toByteArray();
+        scratch.putInt(amount.scale()).putShort((short) unscaled.length).put(unscaled);
+      }
+    } catch (BufferOverflowException e) {
+      throw new IllegalArgumentException("Replication record is too large", e);
+    }
+    scratch.putInt(0, scratch.position() - HEADER);
+    scratch.flip();
+  }
+
+  private void putString(String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    scratch.putShort((short) bytes.length).put(bytes);
+  }
+
+  private static String getString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getShort()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static BigDecimal getDecimal(ByteBuffer buffer) {
+    int scale = buffer.getInt();
+    byte[] unscaled = new byte[buffer.getShort()];
+    buffer.get(unscaled);
+    return new BigDecimal(new BigInteger(unscaled), scale);
+  }
+}
@@ -0,0 +1,217 @@
+package com.db.awmd.challenge.repository;
+
+import lombok.Value;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Point-in-time image of every balance, taken at a consistent cut. It records the journal position read before the
+ * cut and the last epoch the cut contains, so that startup only replays the journal from that position and skips the
+ * transfers already in the image.
+ * <p>
+ * Layout: {@code [int magic][int version][long journal position][long epoch]}, then per account
+ * {@code [short id length][id][int scale][short unscaled length][unscaled]}, a {@code -1} id length,
+ * {@code [long accounts]} and the crc32 of everything before it. Files are written under a temporary name and
+ * renamed once complete, and are read back through memory-mapped windows.
+ */
+public final class SnapshotFile {
+
+  @Value
+  public static class Snapshot {
+    Path file;
+    long journalPosition;
+    long epoch;
+    long accounts;
+    long sizeBytes;
+  }
+
+  private static final int MAGIC = 0x534e4150;
+  private static final int VERSION = 1;
+  private static final int MAX_ENTRY = 1 << 17;
+  private static final long WINDOW = 1L << 30;
+  private static final String PREFIX = "snapshot-";
+  private static final String SUFFIX = ".snap";
+
+  private SnapshotFile() {
+  }
+
+  public static Snapshot write(Path directory, long journalPosition, long epoch, List<String> ids,
+    List<BigDecimal> balances) throws IOException {
+    Files.createDirectories(directory);
+    Path file = directory.resolve(String.format("%s%020d%s", PREFIX, epoch, SUFFIX));
+    Path temporary = directory.resolve(file.getFileName() + ".tmp");
+
+    long count = 0;
+    try (FileOutputStream stream = new FileOutputStream(temporary.toFile())) {
+      CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(stream, 1 << 16), new CRC32());
+      DataOutputStream out = new DataOutputStream(checked);
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(journalPosition);
+      out.writeLong(epoch);
+      for (int i = 0; i < ids.size(); i++) {
+        BigDecimal balance = balances.get(i);
+        byte[] id = ids.get(i).getBytes(StandardCharsets.UTF_8);
+        byte[] unscaled = balance.unscaledValue().toByteArray();
+        out.writeShort(id.length);
+        out.write(id);
+        out.writeInt(balance.scale());
+        out.writeShort(unscaled.length);
+        out.write(unscaled);
+        count++;
+      }
+      out.writeShort(-1);
+      out.writeLong(count);
+      out.flush();
+      out.writeInt((int) checked.getChecksum().getValue());
+      out.flush();
+      stream.getFD().sync();
+    }
+    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    return new Snapshot(file, journalPosition, epoch, count, Files.size(file));
+  }
+
+  /**
+   * Passes every balance of the snapshot to {@code accounts}, then verifies the checksum; the caller must discard
+   * what it was given when that fails.
+   */
+  public static Snapshot load(Path file, BiConsumer<String, BigDecimal> accounts) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      MappedInput in = new MappedInput(channel);
+      try {
+        if (in.buffer.getInt() != MAGIC || in.buffer.getInt() != VERSION) {
+          throw new IOException("Not a snapshot: " + file);
+        }
+        long journalPosition = in.buffer.getLong();
+        long epoch = in.buffer.getLong();
+
+        long count = 0;
+        while (true) {
+          in.ensure(MAX_ENTRY);
+          short idLength = in.buffer.getShort();
+          if (idLength < 0) {
+            break;
+          }
+          String id = new String(in.bytes(idLength), StandardCharsets.UTF_8);
+          int scale = in.buffer.getInt();
+          BigDecimal balance = new BigDecimal(new BigInteger(in.bytes(in.buffer.getShort())), scale);
+          accounts.accept(id, balance);
+          count++;
+        }
+
+        in.ensure(12);
+        long stored = in.buffer.getLong();
+        int checksum = in.checksum();
+        if (stored != count || in.buffer.getInt() != checksum) {
+          throw new IOException("Corrupt snapshot: " + file);
+        }
+        return new Snapshot(file, journalPosition, epoch, count, channel.size());
+      } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+        throw new IOException("Truncated snapshot: " + file, e);
+      }
+    }
+  }
+
+  /**
+   * Reads the journal position from the header only.
+   */
+  public static long journalPositionOf(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(16);
+      while (header.hasRemaining() && channel.read(header) >= 0) {
+        // keep reading
+      }
+      header.flip();
+      if (header.remaining() < 16 || header.getInt() != MAGIC || header.getInt() != VERSION) {
+        throw new IOException("Not a snapshot: " + file);
+      }
+      return header.getLong();
+    }
+  }
+
+  /**
+   * @return the snapshot files in {@code directory}, newest first
+   */
+  public static List<Path> list(Path directory) throws IOException {
+    List<Path> files = new ArrayList<>();
+    if (Files.isDirectory(directory)) {
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+        stream.forEach(files::add);
+      }
+    }
+    files.sort(Collections.reverseOrder());
+    return files;
+  }
+
+  /**
+   * Reads a file through read-only mappings of at most {@link #WINDOW} bytes, so snapshots are not limited to the
+   * 2 GB a single mapping can cover, and checksums the bytes as they are consumed.
+   */
+  private static final class MappedInput {
+
+    private final FileChannel channel;
+    private final long size;
+    private final CRC32 crc = new CRC32();
+    private long base;
+    private int checksummed;
+    private MappedByteBuffer buffer;
+
+    MappedInput(FileChannel channel) throws IOException {
+      this.channel = channel;
+      this.size = channel.size();
+      map(0);
+    }
+
+    void ensure(int bytes) throws IOException {
+      if (buffer.remaining() < bytes && base + buffer.limit() < size) {
+        checksumConsumed();
+        base += buffer.position();
+        map(base);
+      }
+    }
+
+    byte[] bytes(int length) {
+      byte[] bytes = new byte[length];
+      buffer.get(bytes);
+      return bytes;
+    }
+
+    int checksum() {
+      checksumConsumed();
+      return (int) crc.getValue();
+    }
+
+    private void checksumConsumed() {
+      ByteBuffer consumed = buffer.duplicate();
+      consumed.limit(buffer.position()).position(checksummed);
+      crc.update(consumed);
+      checksummed = buffer.position();
+    }
+
+    private void map(long position) throws IOException {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, size - position));
+      checksummed = 0;
+    }
+  }
+}
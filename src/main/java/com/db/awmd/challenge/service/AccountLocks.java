@@ -0,0 +1,108 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.metrics.LatencyHistogram;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed pool of locks that accounts are hashed onto. Locks are always acquired in ascending stripe order,
+ * so any number of callers locking overlapping sets of accounts can never deadlock. Time spent waiting for a
+ * stripe is recorded; an uncontended acquisition is not timed.
+ */
+@Component
+public class AccountLocks {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+    private final LatencyHistogram waits = new LatencyHistogram();
+
+    public AccountLocks(@Value("${accounts.transfer.stripes:1024}") int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1) << 1);
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    public int stripeOf(String accountId) {
+        int h = accountId.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * @return whether either stripe was held by another thread
+     */
+    public boolean lock(int stripe, int otherStripe) {
+        if (stripe == otherStripe) {
+            return lock(stripe);
+        } else if (stripe < otherStripe) {
+            return lock(stripe) | lock(otherStripe);
+        } else {
+            return lock(otherStripe) | lock(stripe);
+        }
+    }
+
+    public void unlock(int stripe) {
+        stripes[stripe].unlock();
+    }
+
+    public void unlock(int stripe, int otherStripe) {
+        stripes[stripe].unlock();
+        if (stripe != otherStripe) {
+            stripes[otherStripe].unlock();
+        }
+    }
+
+    /**
+     * @return the distinct stripes of the accounts, in the ascending order expected by {@link #lockAll}
+     */
+    public int[] stripesOf(Collection<Account> accounts) {
+        BitSet used = new BitSet(stripes.length);
+        for (Account account : accounts) {
+            used.set(stripeOf(account.getAccountId()));
+        }
+        return used.stream().toArray();
+    }
+
+    /**
+     * @param sortedStripes distinct stripes in ascending order
+     */
+    public void lockAll(int[] sortedStripes) {
+        for (int stripe : sortedStripes) {
+            lock(stripe);
+        }
+    }
+
+    public void unlockAll(int[] sortedStripes) {
+        for (int i = sortedStripes.length - 1; i >= 0; i--) {
+            stripes[sortedStripes[i]].unlock();
+        }
+    }
+
+    /**
+     * @return nanoseconds spent waiting for contended stripes
+     */
+    public LatencyHistogram.Snapshot waits() {
+        return waits.snapshot();
+    }
+
+    /**
+     * @return whether the stripe was held by another thread
+     */
+    public boolean lock(int stripe) {
+        ReentrantLock lock = stripes[stripe];
+        if (lock.tryLock()) {
+            return false;
+        }
+        long started = System.nanoTime();
+        lock.lock();
+        waits.record(System.nanoTime() - started);
+        return true;
+    }
+}
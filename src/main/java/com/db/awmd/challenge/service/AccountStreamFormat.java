@@ -0,0 +1,40 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Encoding of a stream of accounts for bulk import and export. Reading is split in two so that the thread reading
+ * the stream only frames records, and decoding them can run on the import workers.
+ *
+ * @param <R> a framed but not yet decoded record
+ */
+public interface AccountStreamFormat<R> {
+
+    interface Source<R> {
+
+        /**
+         * @return the next record, or null at the end of the stream
+         * @throws IllegalArgumentException when the stream cannot be framed past this point
+         */
+        R next() throws IOException;
+    }
+
+    interface Sink extends Flushable {
+
+        void write(Account account) throws IOException;
+    }
+
+    Source<R> source(InputStream in);
+
+    /**
+     * @throws IllegalArgumentException when the record is malformed
+     */
+    Account decode(R record);
+
+    Sink sink(OutputStream out) throws IOException;
+}
@@ -0,0 +1,94 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.config.AccountViewProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountView;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serves accounts to readers as published {@link AccountView}s, so repeated reads of an unchanged account reuse
+ * its serialized JSON. A read takes no lock: it reads the balance once, and either finds the published view of
+ * that balance or builds and publishes a new one from it. Writers never touch views; a view published by a slow
+ * reader after a newer one is replaced again on the next read, since every read checks the balance.
+ * <p>
+ * At most {@code accounts.views.max-entries} views are kept. Once full, publishing the view of another account
+ * evicts an arbitrary one, which costs no lock and no bookkeeping on the read path; the count may briefly exceed
+ * the bound by the number of concurrent readers.
+ */
+@Component
+public class AccountViews implements PublicMetrics {
+
+    private final ObjectWriter accountWriter;
+    private final int maxEntries;
+    private final ConcurrentHashMap<String, AccountView> views = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public AccountViews(ObjectMapper objectMapper, AccountViewProperties properties) {
+        this.accountWriter = objectMapper.writerFor(Account.class);
+        this.maxEntries = Math.max(1, properties.getMaxEntries());
+    }
+
+    public AccountView view(Account account) {
+        BigDecimal balance = account.getBalance();
+        AccountView view = views.get(account.getAccountId());
+        if (view != null && view.isCurrent(balance)) {
+            hits.increment();
+            return view;
+        }
+        misses.increment();
+        view = new AccountView(account.getAccountId(), balance, serialize(account.getAccountId(), balance));
+        if (views.put(account.getAccountId(), view) == null && views.size() > maxEntries) {
+            evictOne(account.getAccountId());
+        }
+        return view;
+    }
+
+    public void clear() {
+        views.clear();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.asList(
+                new Metric<>("account.views.hits", hits.sum()),
+                new Metric<>("account.views.misses", misses.sum()),
+                new Metric<>("account.views.evictions", evictions.sum()),
+                new Metric<>("account.views.size", views.size()));
+    }
+
+    private void evictOne(String keep) {
+        Iterator<String> ids = views.keySet().iterator();
+        while (ids.hasNext()) {
+            String id = ids.next();
+            if (!id.equals(keep)) {
+                ids.remove();
+                evictions.increment();
+                return;
+            }
+        }
+    }
+
+    private byte[] serialize(String accountId, BigDecimal balance) {
+        try {
+            return accountWriter.writeValueAsBytes(new Account(accountId, balance));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize account " + accountId, e);
+        }
+    }
+}
@@ -1,6 +1,12 @@
 package com.db.awmd.challenge.service;
 
+import com.db.awmd.challenge.config.BalanceProperties;
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.BatchTransfer;
+import com.db.awmd.challenge.domain.BatchTransferResult;
+import com.db.awmd.challenge.domain.MultiLegTransfer;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
 import com.db.awmd.challenge.exception.InsufficientFundsException;
 import com.db.awmd.challenge.exception.InvalidAmountTransferException;
 import com.db.awmd.challenge.exception.NonexistentAccountException;
@@ -12,6 +18,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Service
 @Slf4j
@@ -20,48 +32,398 @@ public class AccountsService {
     @Getter
     private final AccountsRepository accountsRepository;
     private final NotificationService notificationService;
+    private final TransferEngine transferEngine;
+    private final AccountLocks accountLocks;
+    private final BalanceProperties balanceProperties;
+    private final EpochBarrier epochBarrier;
+    private final TransferMetrics transferMetrics;
+    private final BatchTransferExecutor batchTransferExecutor;
+    private final TransactionLedger transactionLedger;
+    private final AuditService auditService;
 
     @Autowired
-    public AccountsService(AccountsRepository accountsRepository, NotificationService notificationService) {
+    public AccountsService(AccountsRepository accountsRepository, NotificationService notificationService,
+                           TransferEngine transferEngine, BalanceProperties balanceProperties,
+                           AccountLocks accountLocks, EpochBarrier epochBarrier, TransferMetrics transferMetrics,
+                           TransactionLedger transactionLedger, AuditService auditService) {
         this.accountsRepository = accountsRepository;
         this.notificationService = notificationService;
+        this.transferEngine = transferEngine;
+        this.accountLocks = accountLocks;
+        this.balanceProperties = balanceProperties;
+        this.epochBarrier = epochBarrier;
+        this.transferMetrics = transferMetrics;
+        this.batchTransferExecutor = new BatchTransferExecutor(accountLocks, epochBarrier, transferMetrics,
+                accountsRepository);
+        this.transactionLedger = transactionLedger;
+        this.auditService = auditService;
     }
 
+    /**
+     * Waits for a consistent cut in progress to end, so that the cut sees either the account and the funds it
+     * brings, or neither. A repository that records transfers creates the account under its stripe, so that its
+     * creation is recorded before any transfer of it.
+     */
     public void createAccount(Account account) {
-        this.accountsRepository.createAccount(account);
+        if (balanceProperties.isFixedPoint()) {
+            account.useFixedPoint(balanceProperties.scale());
+        }
+        account.combineDepositsAfter(balanceProperties.getCombineAfterContentions());
+        long epoch = epochBarrier.enterBetweenCuts();
+        try {
+            if (accountsRepository.recordsTransfers()) {
+                int stripe = accountLocks.stripeOf(account.getAccountId());
+                accountLocks.lock(stripe);
+                try {
+                    this.accountsRepository.createAccount(account);
+                } finally {
+                    accountLocks.unlock(stripe);
+                }
+            } else {
+                this.accountsRepository.createAccount(account);
+            }
+            auditService.accountCreated(account.getBalance());
+        } finally {
+            epochBarrier.exit(epoch);
+        }
     }
 
     public Account getAccount(String accountId) {
         return this.accountsRepository.getAccount(accountId);
     }
 
+    /**
+     * Checks a transfer as it would be checked before being applied, without applying it.
+     *
+     * @return the rejection, or null when the transfer would be attempted
+     */
+    public TransferOutcome check(String accountFromId, String accountToId, BigDecimal amount) {
+        return validate(accountFromId == null ? null : getAccount(accountFromId),
+                accountToId == null ? null : getAccount(accountToId), amount);
+    }
+
     public void transfer(String accountFromId, String accountToId, BigDecimal amount) throws InsufficientFundsException,
             NonexistentAccountException, InvalidAmountTransferException, SameAccountTransferException {
+        tryTransfer(accountFromId, accountToId, amount).throwIfRejected(accountFromId, accountToId, amount);
+    }
 
-        Account fromAccount = getAccount(accountFromId);
-        if (fromAccount == null) {
-            throw new NonexistentAccountException(accountFromId);
+    /**
+     * Same as {@link #transfer(String, String, BigDecimal)}, but reports a rejected transfer as its outcome instead
+     * of throwing, so callers that expect rejections do not pay for an exception.
+     */
+    public TransferOutcome tryTransfer(String accountFromId, String accountToId, BigDecimal amount) {
+        long started = transferMetrics.start();
+        try {
+            return tryTransfer(accountFromId == null ? null : getAccount(accountFromId),
+                    accountToId == null ? null : getAccount(accountToId), amount, started);
+        } catch (RuntimeException e) {
+            transferMetrics.failed(e, started);
+            throw e;
+        }
+    }
+
+    /**
+     * @return the account with the given {@link Account#getHandle() handle}, null when there is none
+     */
+    public Account getAccount(int handle) {
+        return this.accountsRepository.getAccount(handle);
+    }
+
+    /**
+     * Same as {@link #tryTransfer(String, String, BigDecimal)} for accounts known by their handles, which are found by
+     * index instead of by hashing and comparing their ids. Unknown handles are reported as nonexistent accounts.
+     */
+    public TransferOutcome tryTransfer(int accountFromHandle, int accountToHandle, BigDecimal amount) {
+        long started = transferMetrics.start();
+        try {
+            return tryTransfer(getAccount(accountFromHandle), getAccount(accountToHandle), amount, started);
+        } catch (RuntimeException e) {
+            transferMetrics.failed(e, started);
+            throw e;
+        }
+    }
+
+    private TransferOutcome tryTransfer(Account fromAccount, Account toAccount, BigDecimal amount, long started) {
+        TransferOutcome rejection = validate(fromAccount, toAccount, amount);
+        if (rejection != null) {
+            transferMetrics.rejected(rejection, started);
+            return rejection;
+        }
+        TransferLeg leg = new TransferLeg(0, fromAccount, toAccount, amount);
+
+        boolean recorded = accountsRepository.recordsTransfers();
+        boolean applied;
+        long epoch = epochBarrier.enter();
+        try {
+            applied = recorded ? applyAndRecord(leg, epoch) : transferEngine.transfer(leg.from, leg.to, amount, epoch);
+        } finally {
+            epochBarrier.exit(epoch);
+        }
+        if (!applied) {
+            transferMetrics.rejected(TransferOutcome.INSUFFICIENT_FUNDS, started);
+            return TransferOutcome.INSUFFICIENT_FUNDS;
+        }
+        if (recorded) {
+            accountsRepository.awaitRecorded();
+        }
+
+        transactionLedger.record(leg.from, leg.to, amount);
+        notifyAboutTransfer(leg);
+        transferMetrics.transferred(leg.from, leg.to, started);
+        return TransferOutcome.APPLIED;
+    }
+
+    /**
+     * Applies the transfer under the stripes of both accounts and records it before releasing them, for repositories
+     * that record transfers.
+     */
+    private boolean applyAndRecord(TransferLeg leg, long epoch) {
+        int fromStripe = accountLocks.stripeOf(leg.from.getAccountId());
+        int toStripe = accountLocks.stripeOf(leg.to.getAccountId());
+        if (accountLocks.lock(fromStripe, toStripe)) {
+            leg.from.contended();
+            leg.to.contended();
+        }
+        try {
+            if (epochBarrier.isCutInProgress()) {
+                leg.from.preserveBalance(epoch);
+                leg.to.preserveBalance(epoch);
+            }
+            if (!leg.from.tryWithdraw(leg.amount)) {
+                return false;
+            }
+            try {
+                leg.to.deposit(leg.amount);
+            } catch (RuntimeException e) {
+                leg.from.deposit(leg.amount);
+                throw e;
+            }
+            try {
+                recordTransfer(leg, epoch);
+            } catch (RuntimeException e) {
+                // every recorded transfer holds the stripes, so nothing spent the credit in the meantime
+                leg.to.tryWithdraw(leg.amount);
+                leg.from.deposit(leg.amount);
+                throw e;
+            }
+            return true;
+        } finally {
+            accountLocks.unlock(fromStripe, toStripe);
+        }
+    }
+
+    /**
+     * Transfers funds held on {@code fromAccount}, which must cover the amount, to {@code toAccount} under the stripes
+     * of both. Journaled, recorded in the ledger and notified like any other transfer.
+     */
+    void transferHeld(Account fromAccount, Account toAccount, BigDecimal amount) {
+        long started = transferMetrics.start();
+        try {
+            TransferLeg leg = new TransferLeg(0, fromAccount, toAccount, amount);
+            int fromStripe = accountLocks.stripeOf(fromAccount.getAccountId());
+            int toStripe = accountLocks.stripeOf(toAccount.getAccountId());
+
+            long epoch = epochBarrier.enter();
+            try {
+                accountLocks.lock(fromStripe, toStripe);
+                try {
+                    if (epochBarrier.isCutInProgress()) {
+                        fromAccount.preserveBalance(epoch);
+                        toAccount.preserveBalance(epoch);
+                    }
+                    // the deposit can overflow, taking the held funds cannot fail
+                    toAccount.deposit(amount);
+                    fromAccount.takeHeld(amount);
+                    try {
+                        recordTransfer(leg, epoch);
+                    } catch (RuntimeException e) {
+                        toAccount.tryWithdraw(amount);
+                        fromAccount.deposit(amount);
+                        fromAccount.hold(amount);
+                        throw e;
+                    }
+                } finally {
+                    accountLocks.unlock(fromStripe, toStripe);
+                }
+            } finally {
+                epochBarrier.exit(epoch);
+            }
+            accountsRepository.awaitRecorded();
+
+            transactionLedger.record(leg.from, leg.to, amount);
+            notifyAboutTransfer(leg);
+            transferMetrics.transferred(leg.from, leg.to, started);
+        } catch (RuntimeException e) {
+            transferMetrics.failed(e, started);
+            throw e;
         }
+    }
+
+    /**
+     * Applies a list of transfers in one call. Every transfer is validated up front; in {@link BatchTransfer.Mode#ATOMIC}
+     * mode nothing is applied unless all of them succeed, in {@link BatchTransfer.Mode#BEST_EFFORT} mode each one is
+     * applied or rejected on its own. Batches always lock the stripes of their accounts, whichever engine is configured.
+     */
+    public BatchTransferResult transfer(BatchTransfer batch) {
+        long started = transferMetrics.start();
+        List<Transfer> transfers = batch.getTransfers();
+        BatchTransferResult.Item[] items = new BatchTransferResult.Item[transfers.size()];
+        List<TransferLeg> legs = new ArrayList<>(transfers.size());
+        Map<String, Account> accounts = new HashMap<>();
 
-        if (accountFromId.equals(accountToId)) {
-            throw new SameAccountTransferException();
+        for (int i = 0; i < transfers.size(); i++) {
+            Transfer transfer = transfers.get(i);
+            String accountFromId = transfer.getAccountFromId();
+            String accountToId = transfer.getAccountToId();
+            Account fromAccount = accountFromId == null ? null : accounts.computeIfAbsent(accountFromId, this::getAccount);
+            Account toAccount = accountToId == null ? null : accounts.computeIfAbsent(accountToId, this::getAccount);
+            TransferOutcome rejection = validate(fromAccount, toAccount, transfer.getAmount());
+            if (rejection == null) {
+                legs.add(new TransferLeg(i, fromAccount, toAccount, transfer.getAmount()));
+            } else {
+                transferMetrics.rejected(rejection, started);
+                items[i] = new BatchTransferResult.Item(i, BatchTransferResult.Status.REJECTED,
+                        rejection.message(accountFromId, accountToId, transfer.getAmount()));
+            }
         }
 
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new InvalidAmountTransferException();
+        long epoch = epochBarrier.enter();
+        try {
+            if (batch.getMode() == BatchTransfer.Mode.ATOMIC) {
+                if (legs.size() < transfers.size()) {
+                    for (TransferLeg leg : legs) {
+                        items[leg.index] = new BatchTransferResult.Item(leg.index, BatchTransferResult.Status.ABORTED, null);
+                        transferMetrics.aborted(started);
+                    }
+                } else {
+                    batchTransferExecutor.applyAtomically(legs, items, epoch, started);
+                }
+            } else {
+                batchTransferExecutor.applyEach(legs, items, epoch, started);
+            }
+        } finally {
+            epochBarrier.exit(epoch);
         }
+        accountsRepository.awaitRecorded();
+
+        int applied = 0;
+        for (TransferLeg leg : legs) {
+            if (items[leg.index].getStatus() == BatchTransferResult.Status.APPLIED) {
+                applied++;
+                transactionLedger.record(leg.from, leg.to, leg.amount);
+                notifyAboutTransfer(leg);
+                transferMetrics.transferred(leg.from, leg.to, started);
+            }
+        }
+        int rejected = (int) Arrays.stream(items).filter(item -> item.getStatus() == BatchTransferResult.Status.REJECTED).count();
+        return new BatchTransferResult(applied, rejected, Arrays.asList(items));
+    }
 
-        synchronized (fromAccount) {
-            fromAccount.withdraw(amount);
+    /**
+     * Debits the source once and credits every destination, atomically. Every leg is validated up front, then the
+     * stripes of all involved accounts are acquired in ascending order, so concurrent multi-leg transfers and batches
+     * over overlapping accounts cannot deadlock, and the net change is applied in that one critical section. Each
+     * account gets one notification for its total change.
+     */
+    public BatchTransferResult transfer(MultiLegTransfer transfer) {
+        long started = transferMetrics.start();
+        List<MultiLegTransfer.Leg> requested = transfer.getLegs();
+        BatchTransferResult.Item[] items = new BatchTransferResult.Item[requested.size()];
+        List<TransferLeg> legs = new ArrayList<>(requested.size());
+        String accountFromId = transfer.getAccountFromId();
+        Account fromAccount = accountFromId == null ? null : getAccount(accountFromId);
+        Map<String, Account> destinations = new HashMap<>();
+
+        for (int i = 0; i < requested.size(); i++) {
+            MultiLegTransfer.Leg leg = requested.get(i);
+            String accountToId = leg.getAccountToId();
+            Account toAccount = accountToId == null ? null : destinations.computeIfAbsent(accountToId, this::getAccount);
+            TransferOutcome rejection = validate(fromAccount, toAccount, leg.getAmount());
+            if (rejection == null) {
+                legs.add(new TransferLeg(i, fromAccount, toAccount, leg.getAmount()));
+            } else {
+                transferMetrics.rejected(rejection, started);
+                items[i] = new BatchTransferResult.Item(i, BatchTransferResult.Status.REJECTED,
+                        rejection.message(accountFromId, accountToId, leg.getAmount()));
+            }
+        }
+
+        if (legs.size() < requested.size()) {
+            for (TransferLeg leg : legs) {
+                items[leg.index] = new BatchTransferResult.Item(leg.index, BatchTransferResult.Status.ABORTED, null);
+                transferMetrics.aborted(started);
+            }
+            return new BatchTransferResult(0, requested.size() - legs.size(), Arrays.asList(items));
+        }
+
+        boolean applied;
+        long epoch = epochBarrier.enter();
+        try {
+            applied = batchTransferExecutor.applyAtomically(legs, items, epoch, started);
+        } finally {
+            epochBarrier.exit(epoch);
+        }
+        if (!applied) {
+            return new BatchTransferResult(0, 1, Arrays.asList(items));
         }
+        accountsRepository.awaitRecorded();
 
-        Account accountTo = getAccount(accountToId);
+        transactionLedger.recordAll(fromAccount, legs);
+        for (TransferLeg leg : legs) {
+            transferMetrics.transferred(leg.from, leg.to, started);
+        }
+        Map<String, BigDecimal> credits = new LinkedHashMap<>();
+        BigDecimal debit = BigDecimal.ZERO;
+        for (TransferLeg leg : legs) {
+            credits.merge(leg.to.getAccountId(), leg.amount, BigDecimal::add);
+            debit = debit.add(leg.amount);
+        }
+        notificationService.notifyAboutTransfer(fromAccount,
+                "Debit of " + debit + " to " + credits.size() + " accounts");
+        for (Map.Entry<String, BigDecimal> credit : credits.entrySet()) {
+            notificationService.notifyAboutTransfer(destinations.get(credit.getKey()),
+                    "Deposit of " + credit.getValue() + " from account: " + accountFromId);
+        }
+        return new BatchTransferResult(legs.size(), 0, Arrays.asList(items));
+    }
 
-        synchronized (accountTo) {
-            accountTo.deposit(amount);
+    /**
+     * @return the reason the transfer is rejected, checked in a fixed order, or null when it is valid
+     */
+    private static TransferOutcome validate(Account fromAccount, Account toAccount, BigDecimal amount) {
+        if (fromAccount == null) {
+            return TransferOutcome.SOURCE_NOT_FOUND;
+        }
+        // an existing source with the destination's id is the destination, so a missing destination is another id
+        if (toAccount != null && isSameAccount(fromAccount, toAccount)) {
+            return TransferOutcome.SAME_ACCOUNT;
+        }
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+            return TransferOutcome.INVALID_AMOUNT;
         }
+        if (toAccount == null) {
+            return TransferOutcome.DESTINATION_NOT_FOUND;
+        }
+        return null;
+    }
+
+    /**
+     * Compares handles, or ids for repositories that do not number their accounts.
+     */
+    private static boolean isSameAccount(Account fromAccount, Account toAccount) {
+        return fromAccount.getHandle() != Account.NO_HANDLE
+                ? fromAccount.getHandle() == toAccount.getHandle()
+                : fromAccount.getAccountId().equals(toAccount.getAccountId());
+    }
+
+    private void recordTransfer(TransferLeg leg, long epoch) {
+        accountsRepository.recordTransfer(leg.from.getAccountId(), leg.to.getAccountId(), leg.amount, epoch);
+    }
 
-        notificationService.notifyAboutTransfer(fromAccount, "Debit of " + amount + " to account: " + accountToId);
-        notificationService.notifyAboutTransfer(accountTo, "Deposit of " + amount + " from account: " + accountFromId);
+    private void notifyAboutTransfer(TransferLeg leg) {
+        notificationService.notifyAboutTransfer(leg.from,
+                "Debit of " + leg.amount + " to account: " + leg.to.getAccountId());
+        notificationService.notifyAboutTransfer(leg.to,
+                "Deposit of " + leg.amount + " from account: " + leg.from.getAccountId());
     }
 }
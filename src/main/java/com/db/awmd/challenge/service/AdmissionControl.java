@@ -0,0 +1,191 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.config.AdmissionProperties;
+import com.db.awmd.challenge.metrics.LatencyHistogram;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides whether a transfer request is let in, before anything else is done for it. Each API client and each
+ * source account has a {@link TokenBuckets token bucket}; a request without a token is rejected and told when to
+ * retry. Independently of them, requests are shed while too many transfer requests are in progress, queued or
+ * running, or while the p99 latency of the last completed window is too high.
+ * <p>
+ * The latency window is a fresh {@link LatencyHistogram} replaced once {@code accounts.admission.window-millis} have
+ * passed, by whichever request or admission check notices first, so shedding also ends when no request completes.
+ */
+@Component
+public class AdmissionControl implements PublicMetrics {
+
+    /**
+     * Requests a window needs for its p99 to count; fewer are not a load worth shedding.
+     */
+    private static final int MIN_WINDOW_SAMPLES = 100;
+
+    private final boolean enabled;
+    private final TokenBuckets clients;
+    private final TokenBuckets accounts;
+    private final int maxInFlight;
+    private final long maxP99Nanos;
+    private final long windowNanos;
+    private final LongAdder inFlight = new LongAdder();
+    private final AtomicLong windowStarted = new AtomicLong(System.nanoTime());
+    private volatile LatencyHistogram window = new LatencyHistogram();
+    private volatile long windowP99Nanos;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder clientRejections = new LongAdder();
+    private final LongAdder accountRejections = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+
+    @Autowired
+    public AdmissionControl(AdmissionProperties properties) {
+        this.enabled = properties.isEnabled();
+        this.clients = properties.getClientRate() > 0
+                ? new TokenBuckets(properties.getClientRate(), properties.getClientBurst(), properties.getMaxTrackedKeys())
+                : null;
+        this.accounts = properties.getAccountRate() > 0
+                ? new TokenBuckets(properties.getAccountRate(), properties.getAccountBurst(), properties.getMaxTrackedKeys())
+                : null;
+        this.maxInFlight = properties.getMaxInFlight();
+        this.maxP99Nanos = TimeUnit.MILLISECONDS.toNanos(properties.getMaxP99Millis());
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, properties.getWindowMillis()));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return whether the request must be shed because the service is overloaded
+     */
+    public boolean shouldShed() {
+        if (!enabled) {
+            return false;
+        }
+        rollWindow(System.nanoTime());
+        if ((maxInFlight > 0 && inFlight.sum() >= maxInFlight) || (maxP99Nanos > 0 && windowP99Nanos > maxP99Nanos)) {
+            shed.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return 0 when the client may send the request, otherwise the nanoseconds until it may
+     */
+    public long admitClient(String clientId) {
+        return acquire(clients, clientId, clientRejections);
+    }
+
+    /**
+     * @return 0 when the account may send a transfer, otherwise the nanoseconds until it may
+     */
+    public long admitAccount(String accountId) {
+        return acquire(accounts, accountId, accountRejections);
+    }
+
+    /**
+     * Takes the tokens of a whole batch: from each source account as many as it has transfers in the batch, all of
+     * them or none. When one account has too few, the tokens already taken for the others are put back.
+     *
+     * @param transfersBySource the number of transfers of the batch from each source account
+     * @return 0 when the batch may be applied, otherwise the nanoseconds until it may
+     */
+    public long admitAccounts(Map<String, Integer> transfersBySource) {
+        if (!enabled || accounts == null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        List<Map.Entry<String, Integer>> taken = new ArrayList<>(transfersBySource.size());
+        for (Map.Entry<String, Integer> source : transfersBySource.entrySet()) {
+            if (source.getKey() == null) {
+                continue;
+            }
+            long wait = accounts.tryAcquire(source.getKey(), source.getValue(), now);
+            if (wait > 0) {
+                for (Map.Entry<String, Integer> released : taken) {
+                    accounts.release(released.getKey(), released.getValue());
+                }
+                accountRejections.increment();
+                return wait;
+            }
+            taken.add(source);
+        }
+        return 0;
+    }
+
+    /**
+     * @return the most transfers a source account may send in one request, {@link Integer#MAX_VALUE} without a limit
+     */
+    public int maxAccountBurst() {
+        return !enabled || accounts == null ? Integer.MAX_VALUE : accounts.burst();
+    }
+
+    /**
+     * Counts an admitted request as in progress until {@link #completed(long)}.
+     *
+     * @return the start time to pass to {@link #completed(long)}
+     */
+    public long started() {
+        admitted.increment();
+        inFlight.increment();
+        return System.nanoTime();
+    }
+
+    public void completed(long started) {
+        inFlight.decrement();
+        long now = System.nanoTime();
+        window.record(now - started);
+        rollWindow(now);
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("admission.admitted", admitted.sum()));
+        metrics.add(new Metric<>("admission.rejected.client", clientRejections.sum()));
+        metrics.add(new Metric<>("admission.rejected.account", accountRejections.sum()));
+        metrics.add(new Metric<>("admission.shed", shed.sum()));
+        metrics.add(new Metric<>("admission.in-flight", inFlight.sum()));
+        metrics.add(new Metric<>("admission.window.p99.nanos", windowP99Nanos));
+        for (TokenBuckets buckets : new TokenBuckets[] {clients, accounts}) {
+            if (buckets != null) {
+                String prefix = buckets == clients ? "admission.buckets.client" : "admission.buckets.account";
+                metrics.add(new Metric<>(prefix, buckets.size()));
+                metrics.add(new Metric<>(prefix + ".overflowed", buckets.overflowed()));
+            }
+        }
+        return metrics;
+    }
+
+    private long acquire(TokenBuckets buckets, String key, LongAdder rejections) {
+        if (!enabled || buckets == null || key == null) {
+            return 0;
+        }
+        long wait = buckets.tryAcquire(key, System.nanoTime());
+        if (wait > 0) {
+            rejections.increment();
+        }
+        return wait;
+    }
+
+    private void rollWindow(long now) {
+        long started = windowStarted.get();
+        if (now - started >= windowNanos && windowStarted.compareAndSet(started, now)) {
+            LatencyHistogram.Snapshot finished = window.snapshot();
+            window = new LatencyHistogram();
+            windowP99Nanos = finished.getCount() < MIN_WINDOW_SAMPLES ? 0 : finished.percentile(99);
+        }
+    }
+}
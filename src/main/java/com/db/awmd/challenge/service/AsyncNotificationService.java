@@ -0,0 +1,213 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.config.NotificationProperties;
+import com.db.awmd.challenge.domain.Account;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Queues notifications and hands them to the wrapped service from background workers, so transfers do not wait
+ * for the notification channel. Each account is pinned to one worker, which keeps its notifications in order and
+ * lets a worker coalesce the ones of an account drained in the same batch.
+ */
+@Slf4j
+public class AsyncNotificationService implements NotificationService, PublicMetrics, DisposableBean {
+
+    private static final long POLL_MILLIS = 100;
+
+    private final NotificationService delegate;
+    private final NotificationProperties properties;
+    private final List<BlockingQueue<Notification>> queues;
+    private final List<Thread> workers;
+    private volatile boolean running = true;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAccumulator maxLagNanos = new LongAccumulator(Math::max, 0);
+    private volatile long lastLagNanos;
+
+    public AsyncNotificationService(NotificationService delegate, NotificationProperties properties) {
+        this.delegate = delegate;
+        this.properties = properties;
+        int workerCount = Math.max(1, properties.getWorkers());
+        int capacity = Math.max(1, properties.getQueueCapacity() / workerCount);
+        this.queues = new ArrayList<>(workerCount);
+        this.workers = new ArrayList<>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            BlockingQueue<Notification> queue = new ArrayBlockingQueue<>(capacity);
+            Thread worker = new Thread(() -> run(queue), "notification-" + i);
+            worker.setDaemon(true);
+            queues.add(queue);
+            workers.add(worker);
+        }
+        workers.forEach(Thread::start);
+    }
+
+    @Override
+    public void notifyAboutTransfer(Account account, String transferDescription) {
+        Notification notification = new Notification(account, transferDescription, System.nanoTime());
+        BlockingQueue<Notification> queue = queues.get(Math.floorMod(account.getAccountId().hashCode(), queues.size()));
+
+        if (!running) {
+            deliver(account, transferDescription);
+            return;
+        }
+        if (queue.offer(notification)) {
+            enqueued.increment();
+            return;
+        }
+
+        switch (properties.getOverflowPolicy()) {
+            case BLOCK:
+                try {
+                    queue.put(notification);
+                    enqueued.increment();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.increment();
+                }
+                break;
+            case DROP_OLDEST:
+                while (!queue.offer(notification)) {
+                    if (queue.poll() != null) {
+                        dropped.increment();
+                    }
+                }
+                enqueued.increment();
+                break;
+            case CALLER_RUNS:
+                deliver(account, transferDescription);
+                break;
+            default:
+                dropped.increment();
+        }
+    }
+
+    private void run(BlockingQueue<Notification> queue) {
+        List<Notification> batch = new ArrayList<>(properties.getBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                Notification first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, properties.getBatchSize() - 1);
+
+                long lag = System.nanoTime() - first.enqueuedAt;
+                lastLagNanos = lag;
+                maxLagNanos.accumulate(lag);
+                dispatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void dispatch(List<Notification> batch) {
+        if (!properties.isCoalesce() || batch.size() == 1) {
+            for (Notification notification : batch) {
+                deliver(notification.account, notification.description);
+            }
+            return;
+        }
+
+        Map<String, Notification> byAccount = new LinkedHashMap<>();
+        for (Notification notification : batch) {
+            Notification pending = byAccount.get(notification.account.getAccountId());
+            if (pending == null) {
+                byAccount.put(notification.account.getAccountId(), notification);
+            } else {
+                pending.append(notification.description);
+            }
+        }
+        for (Notification notification : byAccount.values()) {
+            deliver(notification.account, notification.description());
+        }
+    }
+
+    private void deliver(Account account, String description) {
+        try {
+            delegate.notifyAboutTransfer(account, description);
+            delivered.increment();
+        } catch (RuntimeException e) {
+            failed.increment();
+            log.warn("Could not notify owner of {}", account.getAccountId(), e);
+        }
+    }
+
+    public int queueDepth() {
+        int depth = 0;
+        for (BlockingQueue<Notification> queue : queues) {
+            depth += queue.size();
+        }
+        return depth;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.asList(
+                new Metric<>("notifications.queue.depth", queueDepth()),
+                new Metric<>("notifications.enqueued", enqueued.sum()),
+                new Metric<>("notifications.delivered", delivered.sum()),
+                new Metric<>("notifications.dropped", dropped.sum()),
+                new Metric<>("notifications.failed", failed.sum()),
+                new Metric<>("notifications.lag.last.millis", TimeUnit.NANOSECONDS.toMillis(lastLagNanos)),
+                new Metric<>("notifications.lag.max.millis", TimeUnit.NANOSECONDS.toMillis(maxLagNanos.get())));
+    }
+
+    /**
+     * Stops accepting work and lets the workers deliver what is still queued.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        for (Thread worker : workers) {
+            worker.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    private static final class Notification {
+
+        final Account account;
+        final String description;
+        final long enqueuedAt;
+        private StringBuilder coalesced;
+
+        Notification(Account account, String description, long enqueuedAt) {
+            this.account = account;
+            this.description = description;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        void append(String other) {
+            if (coalesced == null) {
+                coalesced = new StringBuilder(description);
+            }
+            coalesced.append('\n').append(other);
+        }
+
+        String description() {
+            return coalesced == null ? description : coalesced.toString();
+        }
+    }
+}
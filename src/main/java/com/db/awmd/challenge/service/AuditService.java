@@ -0,0 +1,142 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.config.AuditProperties;
+import com.db.awmd.challenge.domain.AccountsSummary;
+import com.db.awmd.challenge.domain.DecimalAdder;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.StreamSupport;
+
+/**
+ * Sums all balances at a consistent cut taken with the {@link EpochBarrier}, in parallel on the common fork/join
+ * pool, while transfers keep running.
+ * <p>
+ * Transfers move funds between accounts, so the total only changes when an account is created. The periodic check
+ * compares the total at each cut with the initial balances of the accounts created up to it, relative to the
+ * total found when the service started, which covers accounts loaded rather than created. A drift is logged and
+ * counted once, then becomes the new baseline.
+ */
+@Slf4j
+@Service
+public class AuditService implements PublicMetrics {
+
+    private final AccountsRepository accountsRepository;
+    private final EpochBarrier epochBarrier;
+    private final AuditProperties properties;
+    private final DecimalAdder created = new DecimalAdder();
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder violations = new LongAdder();
+    private BigDecimal baseline;
+    private volatile long lastDurationMillis;
+
+    @Autowired
+    public AuditService(AccountsRepository accountsRepository, EpochBarrier epochBarrier, AuditProperties properties) {
+        this.accountsRepository = accountsRepository;
+        this.epochBarrier = epochBarrier;
+        this.properties = properties;
+        this.baseline = cut().unexplained();
+    }
+
+    /**
+     * Must be called inside the epoch that creates the account.
+     */
+    public void accountCreated(BigDecimal initialBalance) {
+        created.add(initialBalance);
+    }
+
+    public AccountsSummary summarize() {
+        return cut().summary;
+    }
+
+    @Scheduled(fixedDelayString = "${accounts.audit.check-interval-millis:60000}",
+            initialDelayString = "${accounts.audit.check-interval-millis:60000}")
+    public void checkPeriodically() {
+        if (properties.isCheckEnabled()) {
+            checkTotal();
+        }
+    }
+
+    /**
+     * @return false when the total of all balances is not explained by the accounts created since the last check
+     */
+    public synchronized boolean checkTotal() {
+        Cut cut = cut();
+        checks.increment();
+        BigDecimal unexplained = cut.unexplained();
+        if (unexplained.compareTo(baseline) == 0) {
+            return true;
+        }
+        violations.increment();
+        log.error("Total of all balances {} at epoch {} drifted by {} from the funds of created accounts",
+                cut.summary.getTotalBalance(), cut.summary.getEpoch(), unexplained.subtract(baseline));
+        baseline = unexplained;
+        return false;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.asList(
+                new Metric<>("audit.checks", checks.sum()),
+                new Metric<>("audit.violations", violations.sum()),
+                new Metric<>("audit.last.duration.millis", lastDurationMillis));
+    }
+
+    private Cut cut() {
+        long started = System.nanoTime();
+        long cutEpoch = epochBarrier.beginCut();
+        Total total;
+        BigDecimal createdFunds;
+        try {
+            createdFunds = created.sum();
+            total = StreamSupport.stream(accountsRepository.allAccounts().spliterator(), true)
+                    .collect(Total::new, (sum, account) -> sum.add(epochBarrier.balanceBefore(account, cutEpoch)),
+                            Total::add);
+        } finally {
+            epochBarrier.endCut();
+        }
+        lastDurationMillis = (System.nanoTime() - started) / 1_000_000;
+        return new Cut(new AccountsSummary(cutEpoch - 1, total.accounts, total.balance, lastDurationMillis),
+                createdFunds);
+    }
+
+    private static final class Total {
+
+        long accounts;
+        BigDecimal balance = BigDecimal.ZERO;
+
+        void add(BigDecimal accountBalance) {
+            accounts++;
+            balance = balance.add(accountBalance);
+        }
+
+        void add(Total other) {
+            accounts += other.accounts;
+            balance = balance.add(other.balance);
+        }
+    }
+
+    private static final class Cut {
+
+        final AccountsSummary summary;
+        final BigDecimal created;
+
+        Cut(AccountsSummary summary, BigDecimal created) {
+            this.summary = summary;
+            this.created = created;
+        }
+
+        BigDecimal unexplained() {
+            return summary.getTotalBalance().subtract(created);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.BatchTransferResult.Item;
+import com.db.awmd.challenge.domain.BatchTransferResult.Status;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.exception.BalanceOverflowException;
+import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.repository.AccountsRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies the validated legs of a batch. Legs are grouped by the accounts they touch and every group runs under
+ * one ordered acquisition of its stripes, instead of one lock round trip per transfer. Applied legs are recorded in
+ * the repository before the stripes are released. The legs it rejects or aborts are counted in
+ * {@link TransferMetrics}; applied legs are left to the caller.
+ */
+class BatchTransferExecutor {
+
+    private final AccountLocks accountLocks;
+    private final EpochBarrier epochBarrier;
+    private final TransferMetrics transferMetrics;
+    private final AccountsRepository accountsRepository;
+
+    BatchTransferExecutor(AccountLocks accountLocks, EpochBarrier epochBarrier, TransferMetrics transferMetrics,
+                          AccountsRepository accountsRepository) {
+        this.accountLocks = accountLocks;
+        this.epochBarrier = epochBarrier;
+        this.transferMetrics = transferMetrics;
+        this.accountsRepository = accountsRepository;
+    }
+
+    /**
+     * Checks that the legs can be applied in order and then applies the net change of every account once, all
+     * while holding the stripes of every involved account. Nothing is applied when any leg is rejected.
+     *
+     * @param started the start time of the request, from {@link TransferMetrics#start()}
+     */
+    boolean applyAtomically(List<TransferLeg> legs, Item[] items, long epoch, long started) {
+        Set<Account> accounts = accountsOf(legs);
+        int[] stripes = accountLocks.stripesOf(accounts);
+        accountLocks.lockAll(stripes);
+        try {
+            preserveBalances(accounts, epoch);
+            Map<Account, BigDecimal> net = new IdentityHashMap<>();
+            for (TransferLeg leg : legs) {
+                BigDecimal fromNet = net.getOrDefault(leg.from, BigDecimal.ZERO);
+                if (leg.from.getBalance().add(fromNet).compareTo(leg.amount) < 0) {
+                    reject(leg, InsufficientFundsException.message(leg.from.getAccountId(), leg.amount), legs, items);
+                    transferMetrics.rejected(TransferOutcome.INSUFFICIENT_FUNDS, started);
+                    abortOthers(legs, started);
+                    return false;
+                }
+                net.put(leg.from, fromNet.subtract(leg.amount));
+                net.merge(leg.to, leg.amount, BigDecimal::add);
+            }
+
+            if (!applyNet(net, legs, items, started)) {
+                abortOthers(legs, started);
+                return false;
+            }
+            try {
+                for (TransferLeg leg : legs) {
+                    record(leg, epoch);
+                }
+            } catch (RuntimeException e) {
+                for (Map.Entry<Account, BigDecimal> entry : net.entrySet()) {
+                    undo(entry.getKey(), entry.getValue());
+                }
+                throw e;
+            }
+        } finally {
+            accountLocks.unlockAll(stripes);
+        }
+
+        for (TransferLeg leg : legs) {
+            items[leg.index] = new Item(leg.index, Status.APPLIED, null);
+        }
+        return true;
+    }
+
+    /**
+     * Applies each leg on its own; a rejected leg does not affect the others.
+     */
+    void applyEach(List<TransferLeg> legs, Item[] items, long epoch, long started) {
+        for (List<TransferLeg> group : groupByAccounts(legs)) {
+            Set<Account> accounts = accountsOf(group);
+            int[] stripes = accountLocks.stripesOf(accounts);
+            accountLocks.lockAll(stripes);
+            try {
+                preserveBalances(accounts, epoch);
+                for (TransferLeg leg : group) {
+                    items[leg.index] = apply(leg, epoch, started);
+                }
+            } finally {
+                accountLocks.unlockAll(stripes);
+            }
+        }
+    }
+
+    private void preserveBalances(Set<Account> accounts, long epoch) {
+        if (epochBarrier.isCutInProgress()) {
+            for (Account account : accounts) {
+                account.preserveBalance(epoch);
+            }
+        }
+    }
+
+    private Item apply(TransferLeg leg, long epoch, long started) {
+        if (!leg.from.tryWithdraw(leg.amount)) {
+            transferMetrics.rejected(TransferOutcome.INSUFFICIENT_FUNDS, started);
+            return new Item(leg.index, Status.REJECTED,
+                    InsufficientFundsException.message(leg.from.getAccountId(), leg.amount));
+        }
+        try {
+            leg.to.deposit(leg.amount);
+        } catch (BalanceOverflowException e) {
+            leg.from.deposit(leg.amount);
+            transferMetrics.failed(e, started);
+            return new Item(leg.index, Status.REJECTED, e.getMessage());
+        }
+        try {
+            record(leg, epoch);
+        } catch (RuntimeException e) {
+            leg.to.tryWithdraw(leg.amount);
+            leg.from.deposit(leg.amount);
+            throw e;
+        }
+        return new Item(leg.index, Status.APPLIED, null);
+    }
+
+    private void record(TransferLeg leg, long epoch) {
+        accountsRepository.recordTransfer(leg.from.getAccountId(), leg.to.getAccountId(), leg.amount, epoch);
+    }
+
+    /**
+     * Checks every net credit and withdraws all net debits before depositing any credit, so a rejected batch only
+     * puts back what was withdrawn and never takes back a credit, which the lock-free engine could already have moved
+     * on. Debits can only fail here when the lock-free engine moved funds concurrently. A checked credit can only fail
+     * when concurrent lock-free deposits took its account to the limit of its cell in between; only then are credits
+     * taken back.
+     *
+     * @return whether the whole net change was applied; when not, everything is undone and the first leg carries the
+     * failure
+     */
+    private boolean applyNet(Map<Account, BigDecimal> net, List<TransferLeg> legs, Item[] items, long started) {
+        List<Map.Entry<Account, BigDecimal>> withdrawn = new ArrayList<>(net.size());
+        String failure = null;
+        try {
+            for (Map.Entry<Account, BigDecimal> entry : net.entrySet()) {
+                if (entry.getValue().signum() > 0) {
+                    entry.getKey().checkDeposit(entry.getValue());
+                }
+            }
+            for (Map.Entry<Account, BigDecimal> entry : net.entrySet()) {
+                if (entry.getValue().signum() < 0) {
+                    BigDecimal debit = entry.getValue().negate();
+                    if (!entry.getKey().tryWithdraw(debit)) {
+                        failure = InsufficientFundsException.message(entry.getKey().getAccountId(), debit);
+                        transferMetrics.rejected(TransferOutcome.INSUFFICIENT_FUNDS, started);
+                        break;
+                    }
+                    withdrawn.add(entry);
+                }
+            }
+        } catch (BalanceOverflowException e) {
+            failure = e.getMessage();
+            transferMetrics.failed(e, started);
+        }
+        if (failure != null) {
+            for (Map.Entry<Account, BigDecimal> entry : withdrawn) {
+                undo(entry.getKey(), entry.getValue());
+            }
+            reject(legs.get(0), failure, legs, items);
+            return false;
+        }
+
+        List<Map.Entry<Account, BigDecimal>> credited = new ArrayList<>(net.size());
+        try {
+            for (Map.Entry<Account, BigDecimal> entry : net.entrySet()) {
+                if (entry.getValue().signum() > 0) {
+                    entry.getKey().deposit(entry.getValue());
+                    credited.add(entry);
+                }
+            }
+        } catch (BalanceOverflowException e) {
+            for (Map.Entry<Account, BigDecimal> entry : credited) {
+                undo(entry.getKey(), entry.getValue());
+            }
+            for (Map.Entry<Account, BigDecimal> entry : withdrawn) {
+                undo(entry.getKey(), entry.getValue());
+            }
+            transferMetrics.failed(e, started);
+            reject(legs.get(0), e.getMessage(), legs, items);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Taking back a credit is only needed when recording failed, and a recording repository has every transfer
+     * applied under the stripes, or when a checked credit overflowed.
+     */
+    private void undo(Account account, BigDecimal delta) {
+        if (delta.signum() < 0) {
+            account.deposit(delta.negate());
+        } else if (!account.tryWithdraw(delta)) {
+            throw new IllegalStateException("Could not undo credit of " + delta + " to " + account.getAccountId());
+        }
+    }
+
+    private void abortOthers(List<TransferLeg> legs, long started) {
+        for (int i = 1; i < legs.size(); i++) {
+            transferMetrics.aborted(started);
+        }
+    }
+
+    private void reject(TransferLeg rejected, String message, List<TransferLeg> legs, Item[] items) {
+        for (TransferLeg leg : legs) {
+            items[leg.index] = new Item(leg.index, Status.ABORTED, null);
+        }
+        items[rejected.index] = new Item(rejected.index, Status.REJECTED, message);
+    }
+
+    /**
+     * Splits the legs into groups that share no account, keeping the request order inside every group.
+     */
+    private List<List<TransferLeg>> groupByAccounts(List<TransferLeg> legs) {
+        Map<Account, Integer> ids = new IdentityHashMap<>();
+        int[] parent = new int[legs.size() * 2];
+        for (TransferLeg leg : legs) {
+            union(parent, idOf(ids, parent, leg.from), idOf(ids, parent, leg.to));
+        }
+
+        Map<Integer, List<TransferLeg>> groups = new LinkedHashMap<>();
+        for (TransferLeg leg : legs) {
+            groups.computeIfAbsent(find(parent, ids.get(leg.from)), root -> new ArrayList<>()).add(leg);
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    private static int idOf(Map<Account, Integer> ids, int[] parent, Account account) {
+        Integer id = ids.get(account);
+        if (id == null) {
+            id = ids.size();
+            ids.put(account, id);
+            parent[id] = id;
+        }
+        return id;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) {
+            parent[rootB] = rootA;
+        }
+    }
+
+    private static int find(int[] parent, int id) {
+        while (parent[id] != id) {
+            parent[id] = parent[parent[id]];
+            id = parent[id];
+        }
+        return id;
+    }
+
+    private static Set<Account> accountsOf(List<TransferLeg> legs) {
+        Set<Account> accounts = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (TransferLeg leg : legs) {
+            accounts.add(leg.from);
+            accounts.add(leg.to);
+        }
+        return accounts;
+    }
+}
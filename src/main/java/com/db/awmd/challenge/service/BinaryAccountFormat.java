@@ -0,0 +1,79 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact big-endian records: {@code [u16 id length][UTF-8 id][i32 scale][u8 length][unscaled two's complement]},
+ * the balance encoded as in the journal. Records are small enough to be decoded while framing them.
+ */
+@Component
+public class BinaryAccountFormat implements AccountStreamFormat<Account> {
+
+    public static final String MEDIA_TYPE = "application/octet-stream";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Override
+    public Source<Account> source(InputStream in) {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+        return () -> {
+            int high = data.read();
+            if (high < 0) {
+                return null;
+            }
+            try {
+                byte[] id = new byte[(high << 8) | data.readUnsignedByte()];
+                data.readFully(id);
+                int scale = data.readInt();
+                byte[] unscaled = new byte[data.readUnsignedByte()];
+                data.readFully(unscaled);
+                BigDecimal balance = unscaled.length == 0 ? null : new BigDecimal(new BigInteger(unscaled), scale);
+                return new Account(new String(id, StandardCharsets.UTF_8), balance);
+            } catch (EOFException e) {
+                throw new IllegalArgumentException("Truncated record");
+            }
+        };
+    }
+
+    @Override
+    public Account decode(Account record) {
+        return record;
+    }
+
+    @Override
+    public Sink sink(OutputStream out) {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        return new Sink() {
+
+            @Override
+            public void write(Account account) throws IOException {
+                byte[] id = account.getAccountId().getBytes(StandardCharsets.UTF_8);
+                BigDecimal balance = account.getBalance();
+                byte[] unscaled = balance.unscaledValue().toByteArray();
+                data.writeShort(id.length);
+                data.write(id);
+                data.writeInt(balance.scale());
+                data.writeByte(unscaled.length);
+                data.write(unscaled);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                data.flush();
+            }
+        };
+    }
+}
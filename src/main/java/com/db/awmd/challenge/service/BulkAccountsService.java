@@ -0,0 +1,188 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.config.BulkProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.BulkImportResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Streams accounts into and out of the repository. An import frames records on the calling thread and hands them
+ * in chunks to a pool of workers that decode, validate and create them in parallel; only a few chunks per worker
+ * are read ahead, so the memory of an import does not depend on its size. Every record is accepted or rejected on
+ * its own: a malformed record, an invalid account, a balance the configured representation cannot hold, a duplicate
+ * id or a repository that fails to store it is reported with its position in the stream and does not stop the
+ * import.
+ */
+@Slf4j
+@Service
+public class BulkAccountsService implements DisposableBean {
+
+    private final AccountsService accountsService;
+    private final BulkProperties properties;
+    private final int workers;
+    private final ExecutorService executor;
+
+    @Autowired
+    public BulkAccountsService(AccountsService accountsService, BulkProperties properties) {
+        this.accountsService = accountsService;
+        this.properties = properties;
+        this.workers = properties.getWorkers() > 0 ? properties.getWorkers()
+                : Runtime.getRuntime().availableProcessors();
+        AtomicInteger created = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "bulk-import-" + created.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public <R> BulkImportResult importAccounts(AccountStreamFormat<R> format, InputStream in) throws IOException {
+        long started = System.nanoTime();
+        int chunkSize = Math.max(1, properties.getChunkSize());
+        int maxChunks = workers * Math.max(1, properties.getChunksPerWorker());
+        Semaphore chunks = new Semaphore(maxChunks);
+        Import progress = new Import(properties.getMaxReportedRejections());
+
+        AccountStreamFormat.Source<R> source = format.source(in);
+        List<R> chunk = new ArrayList<>(chunkSize);
+        long position = 0;
+        try {
+            R record;
+            while ((record = source.next()) != null) {
+                chunk.add(record);
+                if (chunk.size() == chunkSize) {
+                    submit(format, chunk, position + 1, chunks, progress);
+                    position += chunk.size();
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            progress.reject(position + chunk.size() + 1, null, e.getMessage());
+        } finally {
+            if (!chunk.isEmpty()) {
+                submit(format, chunk, position + 1, chunks, progress);
+            }
+            chunks.acquireUninterruptibly(maxChunks);
+        }
+
+        BulkImportResult result = progress.result();
+        log.info("Imported {} accounts, rejected {}, in {} ms", result.getImported(), result.getRejected(),
+                (System.nanoTime() - started) / 1_000_000);
+        return result;
+    }
+
+    public void exportAccounts(AccountStreamFormat<?> format, OutputStream out) throws IOException {
+        AccountStreamFormat.Sink sink = format.sink(out);
+        for (Account account : accountsService.getAccountsRepository().allAccounts()) {
+            sink.write(account);
+        }
+        sink.flush();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    private <R> void submit(AccountStreamFormat<R> format, List<R> chunk, long firstPosition, Semaphore chunks,
+                            Import progress) {
+        chunks.acquireUninterruptibly();
+        try {
+            executor.execute(() -> {
+                try {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        create(format, chunk.get(i), firstPosition + i, progress);
+                    }
+                } finally {
+                    chunks.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            chunks.release();
+            throw e;
+        }
+    }
+
+    private <R> void create(AccountStreamFormat<R> format, R record, long position, Import progress) {
+        String accountId = null;
+        try {
+            Account account = format.decode(record);
+            accountId = account.getAccountId();
+            validate(account);
+            accountsService.createAccount(account);
+            progress.imported.increment();
+        } catch (RuntimeException e) {
+            // also failures of the repository, such as a journal that cannot be written, so the others still run
+            progress.reject(position, accountId, e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+    }
+
+    /**
+     * Same constraints as {@code POST /v1/accounts}.
+     */
+    private static void validate(Account account) {
+        if (account.getAccountId() == null || account.getAccountId().isEmpty()) {
+            throw new IllegalArgumentException("Account id must not be empty");
+        }
+        BigDecimal balance = account.getBalance();
+        if (balance == null) {
+            throw new IllegalArgumentException("Balance must not be null");
+        }
+        if (balance.signum() < 0) {
+            throw new IllegalArgumentException("Initial balance must be positive.");
+        }
+    }
+
+    private static final class Import {
+
+        final LongAdder imported = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        final List<BulkImportResult.Rejection> rejections = new ArrayList<>();
+        final int maxReported;
+
+        Import(int maxReported) {
+            this.maxReported = maxReported;
+        }
+
+        void reject(long position, String accountId, String message) {
+            rejected.increment();
+            synchronized (rejections) {
+                rejections.add(new BulkImportResult.Rejection(position, accountId, message));
+                if (rejections.size() > 2 * maxReported) {
+                    trim();
+                }
+            }
+        }
+
+        /**
+         * Keeps the earliest rejections in the stream, which workers do not report in order.
+         */
+        private void trim() {
+            rejections.sort(Comparator.comparingLong(BulkImportResult.Rejection::getRecord));
+            rejections.subList(Math.min(maxReported, rejections.size()), rejections.size()).clear();
+        }
+
+        BulkImportResult result() {
+            synchronized (rejections) {
+                trim();
+                return new BulkImportResult(imported.sum(), rejected.sum(), new ArrayList<>(rejections));
+            }
+        }
+    }
+}
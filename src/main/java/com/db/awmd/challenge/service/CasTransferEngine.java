@@ -0,0 +1,46 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+
+/**
+ * Lock-free engine relying on the compare-and-set balance of {@link Account}. The debit and the credit are
+ * each atomic, so no update is ever lost, but a reader may briefly see the funds in flight between them.
+ * While a cut is in progress transfers take the stripes instead, since preserving a balance and changing it
+ * must not be interleaved with the reader.
+ */
+@Service
+@ConditionalOnProperty(prefix = "accounts.transfer", name = "engine", havingValue = "cas")
+public class CasTransferEngine implements TransferEngine {
+
+    private final EpochBarrier epochBarrier;
+    private final StripedLockTransferEngine lockingEngine;
+
+    @Autowired
+    public CasTransferEngine(AccountLocks accountLocks, EpochBarrier epochBarrier) {
+        this.epochBarrier = epochBarrier;
+        this.lockingEngine = new StripedLockTransferEngine(accountLocks, epochBarrier);
+    }
+
+    @Override
+    public boolean transfer(Account fromAccount, Account toAccount, BigDecimal amount, long epoch) {
+        if (epochBarrier.isCutInProgress()) {
+            return lockingEngine.transfer(fromAccount, toAccount, amount, epoch);
+        }
+
+        if (!fromAccount.tryWithdraw(amount)) {
+            return false;
+        }
+        try {
+            toAccount.deposit(amount);
+        } catch (RuntimeException e) {
+            fromAccount.deposit(amount);
+            throw e;
+        }
+        return true;
+    }
+}
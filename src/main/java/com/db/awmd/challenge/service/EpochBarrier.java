@@ -0,0 +1,139 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lets a reader take a consistent cut of all balances without stopping transfers.
+ * <p>
+ * Every transfer runs inside an epoch, entered before it touches a balance and exited once it is recorded. A cut
+ * closes the current epoch by starting the next one and waits for the transfers still in the closing epoch to
+ * finish; transfers of the new epoch wait for that too before touching a balance, and while the cut is in progress
+ * they preserve the balances they are about to change (see {@link Account#preserveBalance(long)}). The cut is then
+ * exactly the effect of every transfer up to the closing epoch and of none after it.
+ */
+@Component
+public class EpochBarrier {
+
+    private final AccountLocks accountLocks;
+    private final LongAdder[] inFlight = {new LongAdder(), new LongAdder()};
+    private final ReentrantLock cutLock = new ReentrantLock();
+
+    private volatile long epoch = 1;
+    private volatile long drainedEpoch = 0;
+    private volatile boolean cutInProgress;
+
+    @Autowired
+    public EpochBarrier(AccountLocks accountLocks) {
+        this.accountLocks = accountLocks;
+    }
+
+    /**
+     * @return the entered epoch, to be passed to {@link #exit(long)}
+     */
+    public long enter() {
+        long entered = epoch;
+        inFlightOf(entered).increment();
+        while (epoch != entered) {
+            inFlightOf(entered).decrement();
+            entered = epoch;
+            inFlightOf(entered).increment();
+        }
+        while (drainedEpoch < entered - 1) {
+            Thread.yield();
+        }
+        return entered;
+    }
+
+    /**
+     * Same as {@link #enter()}, but waits for a cut in progress to end first. For changes that cannot preserve what
+     * a cut should see, such as the creation of an account, so that a cut either completely includes them or
+     * completely excludes them.
+     */
+    public long enterBetweenCuts() {
+        while (true) {
+            while (cutInProgress) {
+                LockSupport.parkNanos(100_000);
+            }
+            long entered = enter();
+            if (!cutInProgress) {
+                return entered;
+            }
+            exit(entered);
+        }
+    }
+
+    public void exit(long entered) {
+        inFlightOf(entered).decrement();
+    }
+
+    /**
+     * @return whether balances must be preserved before they are changed
+     */
+    public boolean isCutInProgress() {
+        return cutInProgress;
+    }
+
+    /**
+     * Closes the current epoch and waits until none of its transfers is in flight. Must be followed by
+     * {@link #endCut()}.
+     *
+     * @return the epoch the cut is taken before, to be passed to {@link #balanceBefore(Account, long)}
+     */
+    public long beginCut() {
+        cutLock.lock();
+        cutInProgress = true;
+        long closing = epoch;
+        epoch = closing + 1;
+
+        LongAdder closingInFlight = inFlightOf(closing);
+        while (closingInFlight.sum() != 0) {
+            LockSupport.parkNanos(10_000);
+        }
+        drainedEpoch = closing;
+        return closing + 1;
+    }
+
+    public void endCut() {
+        cutInProgress = false;
+        cutLock.unlock();
+    }
+
+    public BigDecimal balanceBefore(Account account, long cutEpoch) {
+        int stripe = accountLocks.stripeOf(account.getAccountId());
+        accountLocks.lock(stripe, stripe);
+        try {
+            return account.balanceBefore(cutEpoch);
+        } finally {
+            accountLocks.unlock(stripe, stripe);
+        }
+    }
+
+    /**
+     * @return the epoch transfers currently enter
+     */
+    public long currentEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Moves past epochs used before a restart, so that epochs keep increasing in anything persisted with them.
+     * Must be called before any transfer runs.
+     */
+    public void advanceTo(long minimumEpoch) {
+        if (minimumEpoch > epoch) {
+            epoch = minimumEpoch;
+            drainedEpoch = minimumEpoch - 1;
+        }
+    }
+
+    private LongAdder inFlightOf(long epoch) {
+        return inFlight[(int) (epoch & 1)];
+    }
+}
@@ -0,0 +1,299 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.config.HoldProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Hold;
+import com.db.awmd.challenge.domain.Hold.Status;
+import com.db.awmd.challenge.domain.HoldsSummary;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.exception.InvalidAmountTransferException;
+import com.db.awmd.challenge.exception.NonexistentAccountException;
+import com.db.awmd.challenge.exception.SameAccountTransferException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reserves funds of an account for a payment to another account, then either transfers them to the payee
+ * (capture), returns them to the account (release), or returns them once the hold expires.
+ * <p>
+ * Holding funds moves them out of the account's balance into its held amount (see {@link Account#hold(BigDecimal)})
+ * under the stripe of the account only. The book balance does not change, so a hold needs no epoch and is recorded
+ * nowhere but here: it costs one compare-and-set of the balance, like the debit of a transfer. A capture is a
+ * transfer out of the held amount through {@link AccountsService}, journaled, recorded in the ledger and notified
+ * like any other; a partial capture returns the rest of the hold to the account.
+ * <p>
+ * Each hold changes state under its own monitor, so a capture, a release and the expiry of the same hold are
+ * serialized and only the first of them applies. Expiry times are kept ordered in a skip list, which the sweeper
+ * walks from its head every {@code accounts.holds.sweep-interval-millis} until the first time still ahead. Finished
+ * holds stay queryable for {@code accounts.holds.retention-millis} through the same list.
+ * <p>
+ * Holds are kept in memory only. After a restart the journal restores the book balances, so held funds are
+ * available again.
+ */
+@Slf4j
+@Service
+public class HoldService implements PublicMetrics {
+
+    private final AccountsService accountsService;
+    private final AccountLocks accountLocks;
+    private final long defaultTtlMillis;
+    private final long maxTtlMillis;
+    private final long retentionMillis;
+
+    private final ConcurrentHashMap<Long, Entry> holds = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Deadline> deadlines = new ConcurrentSkipListSet<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicLong deadlineSequence = new AtomicLong();
+
+    private final LongAdder active = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder captured = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    @Autowired
+    public HoldService(AccountsService accountsService, AccountLocks accountLocks, HoldProperties properties) {
+        this.accountsService = accountsService;
+        this.accountLocks = accountLocks;
+        this.defaultTtlMillis = properties.getDefaultTtlMillis();
+        this.maxTtlMillis = properties.getMaxTtlMillis();
+        this.retentionMillis = properties.getRetentionMillis();
+    }
+
+    /**
+     * @param ttlMillis how long to hold the funds, capped at {@code accounts.holds.max-ttl-millis}; null for
+     *                  {@code accounts.holds.default-ttl-millis}
+     */
+    public Hold hold(String accountId, String accountToId, BigDecimal amount, Long ttlMillis)
+            throws NonexistentAccountException, SameAccountTransferException, InvalidAmountTransferException,
+            InsufficientFundsException {
+        TransferOutcome rejection = accountsService.check(accountId, accountToId, amount);
+        if (rejection != null) {
+            rejection.throwIfRejected(accountId, accountToId, amount);
+        }
+        Account account = accountsService.getAccount(accountId);
+        Account payee = accountsService.getAccount(accountToId);
+
+        int stripe = accountLocks.stripeOf(accountId);
+        accountLocks.lock(stripe);
+        try {
+            if (!account.hold(amount)) {
+                throw new InsufficientFundsException(accountId, amount);
+            }
+        } finally {
+            accountLocks.unlock(stripe);
+        }
+
+        long ttl = ttlMillis == null ? defaultTtlMillis : Math.min(ttlMillis, maxTtlMillis);
+        Entry entry = new Entry(ids.incrementAndGet(), account, payee, amount, System.currentTimeMillis() + ttl);
+        entry.deadline = new Deadline(entry.expiresAt, deadlineSequence.incrementAndGet(), entry);
+        holds.put(entry.id, entry);
+        deadlines.add(entry.deadline);
+        active.increment();
+        created.increment();
+        return entry.view();
+    }
+
+    /**
+     * @return the hold, or null when it is unknown or was forgotten after the retention
+     */
+    public Hold get(long id) {
+        Entry entry = holds.get(id);
+        return entry == null ? null : entry.view();
+    }
+
+    public HoldsSummary summarize(Account account) {
+        return new HoldsSummary(account.getAccountId(), account.getBalance(), account.getHeld());
+    }
+
+    /**
+     * Transfers {@code amount} of the hold to its payee and returns the rest to the account.
+     *
+     * @param amount null to capture the whole hold
+     * @return the hold, {@link Status#CAPTURED} unless it had already finished, or null when it is unknown
+     */
+    public Hold capture(long id, BigDecimal amount) throws InvalidAmountTransferException {
+        Entry entry = holds.get(id);
+        if (entry == null) {
+            return null;
+        }
+        BigDecimal capturedAmount = amount == null ? entry.amount : amount;
+        if (capturedAmount.signum() <= 0 || capturedAmount.compareTo(entry.amount) > 0) {
+            throw new InvalidAmountTransferException();
+        }
+        synchronized (entry) {
+            if (entry.status != Status.HELD) {
+                return entry.view();
+            }
+            accountsService.transferHeld(entry.account, entry.payee, capturedAmount);
+            BigDecimal rest = entry.amount.subtract(capturedAmount);
+            if (rest.signum() > 0) {
+                release(entry.account, rest);
+            }
+            entry.capturedAmount = capturedAmount;
+            entry.status = Status.CAPTURED;
+        }
+        finished(entry);
+        captured.increment();
+        return entry.view();
+    }
+
+    /**
+     * Returns the funds of the hold to the account.
+     *
+     * @return the hold, {@link Status#RELEASED} unless it had already finished, or null when it is unknown
+     */
+    public Hold release(long id) {
+        Entry entry = holds.get(id);
+        if (entry == null) {
+            return null;
+        }
+        if (finish(entry, Status.RELEASED)) {
+            released.increment();
+        }
+        return entry.view();
+    }
+
+    /**
+     * Releases the holds whose time is up and forgets finished holds past their retention.
+     *
+     * @return the number of holds released
+     */
+    @Scheduled(fixedDelayString = "${accounts.holds.sweep-interval-millis:1000}",
+            initialDelayString = "${accounts.holds.sweep-interval-millis:1000}")
+    public synchronized int sweep() {
+        long now = System.currentTimeMillis();
+        int count = 0;
+        for (Iterator<Deadline> it = deadlines.iterator(); it.hasNext(); ) {
+            Deadline deadline = it.next();
+            if (deadline.time > now) {
+                break;
+            }
+            it.remove();
+            Entry entry = deadline.entry;
+            if (deadline != entry.deadline) {
+                holds.remove(entry.id, entry);
+            } else if (finish(entry, Status.EXPIRED)) {
+                expired.increment();
+                count++;
+            }
+        }
+        if (count > 0) {
+            log.info("Released {} expired holds", count);
+        }
+        return count;
+    }
+
+    public long active() {
+        return active.sum();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("holds.active", active.sum()));
+        metrics.add(new Metric<>("holds.created", created.sum()));
+        metrics.add(new Metric<>("holds.captured", captured.sum()));
+        metrics.add(new Metric<>("holds.released", released.sum()));
+        metrics.add(new Metric<>("holds.expired", expired.sum()));
+        metrics.add(new Metric<>("holds.retained", holds.size()));
+        return metrics;
+    }
+
+    /**
+     * Returns the whole hold to the account, unless it already finished.
+     */
+    private boolean finish(Entry entry, Status outcome) {
+        synchronized (entry) {
+            if (entry.status != Status.HELD) {
+                return false;
+            }
+            release(entry.account, entry.amount);
+            entry.status = outcome;
+        }
+        finished(entry);
+        return true;
+    }
+
+    /**
+     * Replaces the expiry of a finished hold by the end of its retention.
+     */
+    private void finished(Entry entry) {
+        active.decrement();
+        deadlines.remove(entry.deadline);
+        Deadline forget = new Deadline(System.currentTimeMillis() + retentionMillis,
+                deadlineSequence.incrementAndGet(), entry);
+        deadlines.add(forget);
+    }
+
+    private void release(Account account, BigDecimal amount) {
+        int stripe = accountLocks.stripeOf(account.getAccountId());
+        accountLocks.lock(stripe);
+        try {
+            account.release(amount);
+        } finally {
+            accountLocks.unlock(stripe);
+        }
+    }
+
+    private static final class Entry {
+
+        final long id;
+        final Account account;
+        final Account payee;
+        final BigDecimal amount;
+        final long expiresAt;
+        volatile Status status = Status.HELD;
+        volatile BigDecimal capturedAmount;
+        // the expiry while the hold is held; any other deadline of the entry ends its retention
+        Deadline deadline;
+
+        Entry(long id, Account account, Account payee, BigDecimal amount, long expiresAt) {
+            this.id = id;
+            this.account = account;
+            this.payee = payee;
+            this.amount = amount;
+            this.expiresAt = expiresAt;
+        }
+
+        Hold view() {
+            Status current = status;
+            return new Hold(id, account.getAccountId(), payee.getAccountId(), amount, null, expiresAt, current,
+                    current == Status.CAPTURED ? capturedAmount : null);
+        }
+    }
+
+    private static final class Deadline implements Comparable<Deadline> {
+
+        final long time;
+        final long sequence;
+        final Entry entry;
+
+        Deadline(long time, long sequence, Entry entry) {
+            this.time = time;
+            this.sequence = sequence;
+            this.entry = entry;
+        }
+
+        @Override
+        public int compareTo(Deadline other) {
+            int byTime = Long.compare(time, other.time);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.config.IdempotencyProperties;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.exception.RequestIdReusedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the outcome of recent transfers by client and request id, so a retried request gets the first outcome
+ * back instead of being applied again. Request ids are scoped to the client that chose them, and each entry keeps
+ * the accounts and amount of its transfer: reusing a request id for a different transfer is refused instead of
+ * answered with the outcome of the first one.
+ * <p>
+ * Lookups only read a {@link ConcurrentHashMap}. Insertions also append to the FIFO queue of one of several
+ * segments, each with its own lock, and evict from its head the entries beyond the segment's share of
+ * {@code accounts.idempotency.max-entries} and those older than {@code accounts.idempotency.ttl-millis}. Every
+ * remembered entry is in one of the queues, so the entry count never exceeds the configured maximum. A retry that
+ * arrives while the first request is still running waits for its outcome.
+ */
+@Component
+public class IdempotencyCache implements PublicMetrics {
+
+    /**
+     * Estimated heap cost of an entry besides the characters of its key and account ids: map node, entry, key and id
+     * strings, amount, queue slot and completed future.
+     */
+    static final int ENTRY_OVERHEAD_BYTES = 240;
+
+    private static final int MAX_SEGMENTS = 64;
+
+    private final ConcurrentHashMap<String, Entry> entries;
+    private final Segment[] segments;
+    private final int segmentCapacity;
+    private final long ttlNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder mismatches = new LongAdder();
+    private final LongAdder sizeEvictions = new LongAdder();
+    private final LongAdder expiryEvictions = new LongAdder();
+    private final LongAdder retained = new LongAdder();
+    private final LongAdder retainedKeyChars = new LongAdder();
+
+    @Autowired
+    public IdempotencyCache(IdempotencyProperties properties) {
+        int maxEntries = Math.max(1, properties.getMaxEntries());
+        int segmentCount = Math.min(MAX_SEGMENTS, Integer.highestOneBit(maxEntries));
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment();
+        }
+        this.segmentCapacity = maxEntries / segmentCount;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(properties.getTtlMillis());
+        this.entries = new ConcurrentHashMap<>(Math.min(maxEntries, 1 << 16));
+    }
+
+    /**
+     * Runs the transfer unless an outcome is remembered for the request id of the client. A transfer that fails with
+     * an exception is not remembered, so it can be retried.
+     *
+     * @param clientId      the client that chose the request id, null for anonymous clients
+     * @param remoteAddress the address of the request, which scopes the request ids of anonymous clients
+     * @param request       the transfer the request id was sent with
+     * @throws RequestIdReusedException when the request id was remembered for a transfer with other accounts or
+     *                                  another amount
+     */
+    public TransferOutcome execute(String clientId, String remoteAddress, Transfer request,
+                                   Supplier<TransferOutcome> transfer) {
+        String key = keyOf(clientId, remoteAddress, request.getRequestId());
+        while (true) {
+            long now = System.nanoTime();
+            Entry entry = entries.get(key);
+            if (entry != null && entry.isExpired(now, ttlNanos) && entries.remove(key, entry)) {
+                expiryEvictions.increment();
+                entry = null;
+            }
+            if (entry == null) {
+                Entry claimed = new Entry(key, request, now);
+                entry = entries.putIfAbsent(key, claimed);
+                if (entry == null) {
+                    misses.increment();
+                    admit(claimed, now);
+                    return run(claimed, transfer);
+                }
+            }
+            if (!entry.isFor(request)) {
+                mismatches.increment();
+                throw new RequestIdReusedException(request.getRequestId());
+            }
+
+            try {
+                TransferOutcome outcome = entry.outcome.join();
+                hits.increment();
+                return outcome;
+            } catch (CompletionException e) {
+                // the first attempt failed and was forgotten; try again
+            }
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return estimated heap held by remembered entries, including those evicted from the map but still queued
+     */
+    public long footprintBytes() {
+        return retained.sum() * ENTRY_OVERHEAD_BYTES + retainedKeyChars.sum() * 2;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        long hits = hits();
+        long lookups = hits + misses();
+        metrics.add(new Metric<>("idempotency.hits", hits));
+        metrics.add(new Metric<>("idempotency.misses", lookups - hits));
+        metrics.add(new Metric<>("idempotency.hit.ratio", lookups == 0 ? 0.0 : (double) hits / lookups));
+        metrics.add(new Metric<>("idempotency.mismatches", mismatches.sum()));
+        metrics.add(new Metric<>("idempotency.evictions.size", sizeEvictions.sum()));
+        metrics.add(new Metric<>("idempotency.evictions.expired", expiryEvictions.sum()));
+        metrics.add(new Metric<>("idempotency.entries", size()));
+        metrics.add(new Metric<>("idempotency.footprint.bytes", footprintBytes()));
+        return metrics;
+    }
+
+    private TransferOutcome run(Entry entry, Supplier<TransferOutcome> transfer) {
+        TransferOutcome outcome;
+        try {
+            outcome = transfer.get();
+        } catch (RuntimeException e) {
+            entries.remove(entry.key, entry);
+            entry.outcome.completeExceptionally(e);
+            throw e;
+        }
+        entry.outcome.complete(outcome);
+        return outcome;
+    }
+
+    private void admit(Entry entry, long now) {
+        Segment segment = segments[spread(entry.key.hashCode()) & (segments.length - 1)];
+        segment.lock.lock();
+        try {
+            segment.queue.addLast(entry);
+            retained.increment();
+            retainedKeyChars.add(entry.chars());
+
+            Entry eldest;
+            while ((eldest = segment.queue.peekFirst()) != null) {
+                boolean full = segment.queue.size() > segmentCapacity;
+                if (!full && !eldest.isExpired(now, ttlNanos)) {
+                    break;
+                }
+                segment.queue.pollFirst();
+                retained.decrement();
+                retainedKeyChars.add(-eldest.chars());
+                if (entries.remove(eldest.key, eldest)) {
+                    (full ? sizeEvictions : expiryEvictions).increment();
+                }
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Prefixes the request id with the length of the client id and the client id, so no two pairs share a key.
+     * Anonymous clients are told apart by remote address, as by admission control, under a prefix no client id gets.
+     */
+    private static String keyOf(String clientId, String remoteAddress, String requestId) {
+        if (clientId != null) {
+            return clientId.length() + ":" + clientId + requestId;
+        }
+        String address = remoteAddress == null ? "" : remoteAddress;
+        return "@" + address.length() + ":" + address + requestId;
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Segment {
+
+        final ReentrantLock lock = new ReentrantLock();
+        final ArrayDeque<Entry> queue = new ArrayDeque<>();
+    }
+
+    private static final class Entry {
+
+        final String key;
+        final String accountFromId;
+        final String accountToId;
+        final BigDecimal amount;
+        final long createdNanos;
+        final CompletableFuture<TransferOutcome> outcome = new CompletableFuture<>();
+
+        Entry(String key, Transfer request, long createdNanos) {
+            this.key = key;
+            this.accountFromId = request.getAccountFromId();
+            this.accountToId = request.getAccountToId();
+            this.amount = request.getAmount();
+            this.createdNanos = createdNanos;
+        }
+
+        /**
+         * Amounts are compared by value, so {@code 10} and {@code 10.00} are the same transfer.
+         */
+        boolean isFor(Transfer request) {
+            return Objects.equals(accountFromId, request.getAccountFromId())
+                    && Objects.equals(accountToId, request.getAccountToId())
+                    && (amount == null ? request.getAmount() == null
+                    : request.getAmount() != null && amount.compareTo(request.getAmount()) == 0);
+        }
+
+        int chars() {
+            return key.length() + (accountFromId == null ? 0 : accountFromId.length())
+                    + (accountToId == null ? 0 : accountToId.length());
+        }
+
+        boolean isExpired(long now, long ttlNanos) {
+            return now - createdNanos > ttlNanos;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One account per line, as the JSON accepted by {@code POST /v1/accounts}. Blank lines are skipped.
+ */
+@Component
+public class NdjsonAccountFormat implements AccountStreamFormat<String> {
+
+    public static final String MEDIA_TYPE = "application/x-ndjson";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ObjectMapper objectMapper;
+    private final ObjectReader accountReader;
+
+    @Autowired
+    public NdjsonAccountFormat(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.accountReader = objectMapper.readerFor(Account.class);
+    }
+
+    @Override
+    public Source<String> source(InputStream in) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+        return () -> {
+            String line;
+            do {
+                line = reader.readLine();
+            } while (line != null && line.trim().isEmpty());
+            return line;
+        };
+    }
+
+    @Override
+    public Account decode(String record) {
+        try {
+            return accountReader.readValue(record);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed record: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed record: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Sink sink(OutputStream out) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.setRootValueSeparator(new SerializedString("\n"));
+        return new Sink() {
+
+            @Override
+            public void write(Account account) throws IOException {
+                generator.writeStartObject();
+                generator.writeStringField("accountId", account.getAccountId());
+                generator.writeFieldName("balance");
+                generator.writeNumber(account.getBalance().toPlainString());
+                generator.writeEndObject();
+            }
+
+            @Override
+            public void flush() throws IOException {
+                generator.writeRaw('\n');
+                generator.flush();
+            }
+        };
+    }
+}
@@ -0,0 +1,272 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.config.ReplicationProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.ReplicationLog;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the accounts of a follower in step with the leader's {@link ReplicationLog}, received over TCP from
+ * {@code accounts.replication.leader-host} and applied by a single thread. The connection is retried every
+ * {@code accounts.replication.reconnect-millis} and resumes from the last record applied.
+ * <p>
+ * Creations go through {@link AccountsService#createAccount(Account)}. A transfer is applied inside an epoch of the
+ * {@link EpochBarrier}, under the stripes of both accounts, so the follower's own consistent cuts and audit see it
+ * whole. The leader logs every transfer before releasing its accounts, so the log is in the order transfers were
+ * applied and replaying it never takes a balance below zero. A record that would, or that names an account not yet
+ * created, means the follower has diverged: it drops its position and reloads a snapshot.
+ * <p>
+ * Staleness is the time since the follower last knew it had applied everything the leader had logged, which it
+ * learns from the leader's position carried by every frame. Funds held on the leader are not replicated: a follower
+ * serves book balances.
+ */
+@Slf4j
+@Service
+@Profile("follower")
+public class ReplicationFollower implements PublicMetrics, DisposableBean {
+
+    private final AccountsService accountsService;
+    private final AccountLocks accountLocks;
+    private final EpochBarrier epochBarrier;
+    private final InetSocketAddress leader;
+    private final long reconnectMillis;
+    private final Thread receiver;
+    private volatile boolean running = true;
+    private volatile Socket socket;
+
+    // receiver thread only
+    private ByteBuffer records = ByteBuffer.allocate(256 * 1024);
+    private long skipBeforeEpoch;
+
+    private volatile long appliedPosition = -1;
+    private volatile long caughtUpNanos;
+    private volatile boolean caughtUp;
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder snapshots = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private final ReplicationLog.Visitor applier = new Applier();
+
+    @Autowired
+    public ReplicationFollower(AccountsService accountsService, AccountLocks accountLocks, EpochBarrier epochBarrier,
+                               ReplicationProperties properties) {
+        this.accountsService = accountsService;
+        this.accountLocks = accountLocks;
+        this.epochBarrier = epochBarrier;
+        this.leader = new InetSocketAddress(properties.getLeaderHost(), properties.getPort());
+        this.reconnectMillis = Math.max(1, properties.getReconnectMillis());
+        this.receiver = new Thread(this::receive, "replication-follower");
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    /**
+     * @return the end of the last record applied, -1 before the first snapshot
+     */
+    public long appliedPosition() {
+        return appliedPosition;
+    }
+
+    /**
+     * @return milliseconds since the follower was last known to be caught up with the leader, or
+     * {@link Long#MAX_VALUE} when it never was
+     */
+    public long stalenessMillis() {
+        return caughtUp ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - caughtUpNanos) : Long.MAX_VALUE;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("replication.applied.position", appliedPosition));
+        metrics.add(new Metric<>("replication.applied.records", applied.sum()));
+        metrics.add(new Metric<>("replication.staleness.millis", caughtUp ? stalenessMillis() : -1));
+        metrics.add(new Metric<>("replication.snapshots", snapshots.sum()));
+        metrics.add(new Metric<>("replication.reconnects", reconnects.sum()));
+        return metrics;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                log.debug("Closing the connection to the leader failed", e);
+            }
+        }
+        receiver.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    private void receive() {
+        while (running) {
+            try (Socket connection = new Socket()) {
+                socket = connection;
+                connection.connect(leader, (int) reconnectMillis);
+                connection.setTcpNoDelay(true);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+                out.writeInt(ReplicationProtocol.MAGIC);
+                out.writeLong(appliedPosition);
+                out.flush();
+                log.info("Following {} from position {}", leader, appliedPosition);
+                follow(new DataInputStream(new BufferedInputStream(connection.getInputStream(), 256 * 1024)));
+            } catch (IOException | RuntimeException e) {
+                if (running) {
+                    log.warn("Replication from {} interrupted: {}", leader, e.toString());
+                }
+            }
+            records.clear();
+            if (running) {
+                reconnects.increment();
+                try {
+                    Thread.sleep(reconnectMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void follow(DataInputStream in) throws IOException {
+        while (running) {
+            byte type = in.readByte();
+            long received = System.nanoTime();
+            long leaderPosition = in.readLong();
+            if (type == ReplicationProtocol.RECORDS) {
+                long from = in.readLong();
+                int length = in.readInt();
+                if (from != appliedPosition + records.position()) {
+                    throw new IOException("Expected records from " + (appliedPosition + records.position())
+                            + " but got them from " + from);
+                }
+                ensureRoom(length);
+                in.readFully(records.array(), records.position(), length);
+                records.position(records.position() + length);
+                records.flip();
+                try {
+                    applied.add(ReplicationLog.decode(records, applier));
+                } catch (IllegalStateException e) {
+                    // some records of the chunk may be applied already, so only a snapshot restores the balances
+                    appliedPosition = -1;
+                    throw new IOException("Diverged from the leader, reloading a snapshot: " + e.getMessage(), e);
+                }
+                appliedPosition += records.position();
+                records.compact();
+            } else if (type == ReplicationProtocol.SNAPSHOT) {
+                loadSnapshot(in);
+            } else if (type != ReplicationProtocol.HEARTBEAT) {
+                throw new IOException("Unknown frame type " + type);
+            }
+            if (appliedPosition >= leaderPosition) {
+                caughtUpNanos = received;
+                caughtUp = true;
+            }
+        }
+    }
+
+    private void loadSnapshot(DataInputStream in) throws IOException {
+        long position = in.readLong();
+        long cutEpoch = in.readLong();
+        int accounts = in.readInt();
+        applier.accountsCleared();
+        for (int i = 0; i < accounts; i++) {
+            String accountId = in.readUTF();
+            accountsService.createAccount(new Account(accountId, ReplicationProtocol.readDecimal(in)));
+        }
+        records.clear();
+        skipBeforeEpoch = cutEpoch;
+        appliedPosition = position;
+        snapshots.increment();
+        log.info("Loaded a snapshot of {} accounts at position {}", accounts, position);
+    }
+
+    private void ensureRoom(int length) {
+        if (records.remaining() < length) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * records.capacity(), records.position() + length));
+            records.flip();
+            larger.put(records);
+            records = larger;
+        }
+    }
+
+    private Account accountOf(String accountId) {
+        Account account = accountsService.getAccount(accountId);
+        if (account == null) {
+            throw new IllegalStateException("Transfer of account " + accountId + " before its creation");
+        }
+        return account;
+    }
+
+    private void transfer(Account from, Account to, BigDecimal amount) {
+        int fromStripe = accountLocks.stripeOf(from.getAccountId());
+        int toStripe = accountLocks.stripeOf(to.getAccountId());
+        long epoch = epochBarrier.enter();
+        try {
+            accountLocks.lock(fromStripe, toStripe);
+            try {
+                if (epochBarrier.isCutInProgress()) {
+                    from.preserveBalance(epoch);
+                    to.preserveBalance(epoch);
+                }
+                if (!from.tryWithdraw(amount)) {
+                    throw new IllegalStateException("Transfer of " + amount + " from account " + from.getAccountId()
+                            + " would take its balance below zero");
+                }
+                to.deposit(amount);
+            } finally {
+                accountLocks.unlock(fromStripe, toStripe);
+            }
+        } finally {
+            epochBarrier.exit(epoch);
+        }
+    }
+
+    /**
+     * Applies the records of the log.
+     */
+    private final class Applier implements ReplicationLog.Visitor {
+
+        @Override
+        public void accountCreated(String accountId, BigDecimal balance) {
+            if (accountsService.getAccount(accountId) != null) {
+                return;
+            }
+            accountsService.createAccount(new Account(accountId, balance));
+        }
+
+        @Override
+        public void transferApplied(String accountFromId, String accountToId, BigDecimal amount, long epoch) {
+            if (epoch < skipBeforeEpoch) {
+                return;
+            }
+            transfer(accountOf(accountFromId), accountOf(accountToId), amount);
+        }
+
+        @Override
+        public void accountsCleared() {
+            accountsService.getAccountsRepository().clearAccounts();
+        }
+    }
+}
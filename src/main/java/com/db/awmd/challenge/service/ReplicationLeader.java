@@ -0,0 +1,229 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.config.ReplicationProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.ReplicatedAccountsRepository;
+import com.db.awmd.challenge.repository.ReplicationLog;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ships the {@link ReplicationLog} of the leader to every follower connected on {@code accounts.replication.port},
+ * each from its own sender thread.
+ * <p>
+ * A sender copies as much of the log as is available, up to a chunk, and writes it through a buffered stream that is
+ * flushed whenever the follower has been sent everything: under load records leave in large writes, and when idle
+ * each transfer leaves as soon as it is logged. An idle connection gets a heartbeat every
+ * {@code accounts.replication.heartbeat-millis}, so that the follower can tell that it is still caught up.
+ * <p>
+ * A follower that connects without a position, or with one the ring has already overwritten, is first sent a
+ * snapshot of every balance at a consistent cut taken with the {@link EpochBarrier}, then the log from the position
+ * read before the cut; the follower skips the transfers of that stretch that the cut already includes, the same way
+ * a journal replay skips those of a snapshot. The balances are collected during the cut and sent after it, so
+ * transfers only wait for the cut, not for the network.
+ */
+@Slf4j
+@Service
+@Profile("leader")
+public class ReplicationLeader implements PublicMetrics, DisposableBean {
+
+    private static final int CHUNK = 64 * 1024;
+
+    private final ReplicatedAccountsRepository repository;
+    private final ReplicationLog replicationLog;
+    private final EpochBarrier epochBarrier;
+    private final long heartbeatMillis;
+    private final ServerSocket serverSocket;
+    private final Thread acceptor;
+    private final List<Sender> senders = new CopyOnWriteArrayList<>();
+    private final LongAdder sentBytes = new LongAdder();
+    private final LongAdder snapshots = new LongAdder();
+    private volatile boolean running = true;
+
+    @Autowired
+    public ReplicationLeader(ReplicatedAccountsRepository repository, EpochBarrier epochBarrier,
+                             ReplicationProperties properties) throws IOException {
+        this.repository = repository;
+        this.replicationLog = repository.getLog();
+        this.epochBarrier = epochBarrier;
+        this.heartbeatMillis = Math.max(1, properties.getHeartbeatMillis());
+        this.serverSocket = new ServerSocket(properties.getPort());
+        this.acceptor = new Thread(this::accept, "replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        log.info("Accepting followers on port {}", serverSocket.getLocalPort());
+    }
+
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int followers() {
+        return senders.size();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        long position = replicationLog.position();
+        long maxLag = 0;
+        for (Sender sender : senders) {
+            maxLag = Math.max(maxLag, position - sender.position);
+        }
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("replication.log.position", position));
+        metrics.add(new Metric<>("replication.followers", senders.size()));
+        metrics.add(new Metric<>("replication.sent.bytes", sentBytes.sum()));
+        metrics.add(new Metric<>("replication.snapshots", snapshots.sum()));
+        metrics.add(new Metric<>("replication.lag.bytes.max", maxLag));
+        return metrics;
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        running = false;
+        serverSocket.close();
+        for (Sender sender : senders) {
+            sender.close();
+        }
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Sender sender = new Sender(socket);
+                senders.add(sender);
+                Thread thread = new Thread(sender, "replication-sender-" + socket.getRemoteSocketAddress());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("Accepting a follower failed", e);
+                }
+            }
+        }
+    }
+
+    private final class Sender implements Runnable {
+
+        final Socket socket;
+        volatile long position;
+
+        Sender(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                 DataOutputStream out = new DataOutputStream(
+                         new BufferedOutputStream(socket.getOutputStream(), 2 * CHUNK))) {
+                if (in.readInt() != ReplicationProtocol.MAGIC) {
+                    throw new IOException("Not a follower");
+                }
+                position = in.readLong();
+                log.info("Follower {} connected at position {}", socket.getRemoteSocketAddress(), position);
+                ship(out);
+            } catch (IOException | UncheckedIOException e) {
+                if (running) {
+                    log.warn("Follower {} disconnected", socket.getRemoteSocketAddress(), e);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                senders.remove(this);
+                close();
+            }
+        }
+
+        void ship(DataOutputStream out) throws IOException, InterruptedException {
+            ByteBuffer chunk = ByteBuffer.allocate(CHUNK);
+            if (position < 0) {
+                sendSnapshot(out);
+            }
+            while (running) {
+                chunk.clear();
+                int length = replicationLog.read(position, chunk);
+                if (length < 0) {
+                    log.info("Follower {} fell behind the log at position {}", socket.getRemoteSocketAddress(),
+                            position);
+                    sendSnapshot(out);
+                } else if (length > 0) {
+                    out.writeByte(ReplicationProtocol.RECORDS);
+                    out.writeLong(replicationLog.position());
+                    out.writeLong(position);
+                    out.writeInt(length);
+                    out.write(chunk.array(), 0, length);
+                    position += length;
+                    sentBytes.add(length);
+                } else {
+                    out.flush();
+                    if (!replicationLog.awaitAppend(position, heartbeatMillis, TimeUnit.MILLISECONDS)) {
+                        out.writeByte(ReplicationProtocol.HEARTBEAT);
+                        out.writeLong(replicationLog.position());
+                        out.flush();
+                    }
+                }
+            }
+        }
+
+        void sendSnapshot(DataOutputStream out) throws IOException {
+            long from = replicationLog.position();
+            List<String> ids = new ArrayList<>();
+            List<BigDecimal> balances = new ArrayList<>();
+            long cutEpoch = epochBarrier.beginCut();
+            try {
+                for (Account account : repository.allAccounts()) {
+                    ids.add(account.getAccountId());
+                    balances.add(epochBarrier.balanceBefore(account, cutEpoch));
+                }
+            } finally {
+                epochBarrier.endCut();
+            }
+
+            out.writeByte(ReplicationProtocol.SNAPSHOT);
+            out.writeLong(replicationLog.position());
+            out.writeLong(from);
+            out.writeLong(cutEpoch);
+            out.writeInt(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                out.writeUTF(ids.get(i));
+                ReplicationProtocol.writeDecimal(out, balances.get(i));
+            }
+            position = from;
+            snapshots.increment();
+            log.info("Sent a snapshot of {} accounts to follower {}", ids.size(), socket.getRemoteSocketAddress());
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                log.debug("Closing the connection of a follower failed", e);
+            }
+        }
+    }
+}
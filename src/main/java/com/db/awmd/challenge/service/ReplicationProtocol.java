@@ -0,0 +1,48 @@
+package com.db.awmd.challenge.service;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Frames exchanged between a leader and a follower over one TCP connection.
+ * <p>
+ * The follower opens the connection with {@code [int MAGIC][long position]}: the end of the last log record it
+ * applied, or -1 when it has nothing. From then on only the leader talks. Every frame starts with the frame type and
+ * the position of the leader's log when the frame was sent, which tells the follower whether it is caught up:
+ * <ul>
+ * <li>{@link #RECORDS} {@code [long from][int length][bytes]}: log bytes from position {@code from}, possibly
+ * ending in the middle of a record that the next frame continues.</li>
+ * <li>{@link #HEARTBEAT}: nothing new since the last frame.</li>
+ * <li>{@link #SNAPSHOT} {@code [long position][long cutEpoch][int accounts]} then {@code [UTF id][decimal]} per
+ * account: every balance at a consistent cut. The records that follow start at {@code position}; those of
+ * transfers applied before {@code cutEpoch} are already in the balances.</li>
+ * </ul>
+ */
+final class ReplicationProtocol {
+
+    static final int MAGIC = 0x52504c31;
+
+    static final byte RECORDS = 1;
+    static final byte HEARTBEAT = 2;
+    static final byte SNAPSHOT = 3;
+
+    private ReplicationProtocol() {
+    }
+
+    static void writeDecimal(DataOutput out, BigDecimal value) throws IOException {
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        out.writeInt(value.scale());
+        out.writeShort(unscaled.length);
+        out.write(unscaled);
+    }
+
+    static BigDecimal readDecimal(DataInput in) throws IOException {
+        int scale = in.readInt();
+        byte[] unscaled = new byte[in.readShort()];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+}
@@ -0,0 +1,311 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hash-partitions accounts into shards, each owned by a single thread that applies the operations queued for it, so
+ * the balances of a shard are only ever changed by its owner and hot accounts are never contended for.
+ * <p>
+ * A transfer inside one shard is applied by its owner in one step. A transfer across shards is a two-phase
+ * exchange between the owners: the source owner reserves the amount by debiting it and hands the transfer to the
+ * destination owner, which commits it by crediting the amount, or sends it back to be released when the credit
+ * fails. The calling thread waits for the outcome, still inside its epoch, so a cut never sees a reserved amount
+ * that is not committed. While a cut is in progress owners take the stripes of the accounts they change, since
+ * preserving a balance and changing it must not be interleaved with the reader. Batches still lock stripes and
+ * may run alongside the owners, which the compare-and-set balances allow.
+ */
+@Service
+@ConditionalOnProperty(prefix = "accounts.transfer", name = "engine", havingValue = "sharded")
+public class ShardedTransferEngine implements TransferEngine, DisposableBean {
+
+    private static final int SPINS = 1_000;
+
+    private static final ThreadLocal<Completion> COMPLETIONS = ThreadLocal.withInitial(Completion::new);
+
+    private final AccountLocks accountLocks;
+    private final EpochBarrier epochBarrier;
+    private final Shard[] shards;
+    private volatile boolean running = true;
+
+    /**
+     * @param shards number of shard owner threads; 0 uses one per available processor
+     */
+    @Autowired
+    public ShardedTransferEngine(AccountLocks accountLocks, EpochBarrier epochBarrier,
+                                 @Value("${accounts.transfer.shards:0}") int shards) {
+        this.accountLocks = accountLocks;
+        this.epochBarrier = epochBarrier;
+        int count = shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            this.shards[i] = new Shard(i);
+        }
+        for (Shard shard : this.shards) {
+            shard.owner.start();
+        }
+    }
+
+    @Override
+    public boolean transfer(Account fromAccount, Account toAccount, BigDecimal amount, long epoch) {
+        Completion completion = COMPLETIONS.get();
+        completion.reset();
+        Shard fromShard = shardOf(fromAccount);
+        Shard toShard = shardOf(toAccount);
+        fromShard.submit(new Operation(fromAccount, toAccount, amount, epoch, fromShard, toShard, completion));
+        return completion.await();
+    }
+
+    public int shards() {
+        return shards.length;
+    }
+
+    /**
+     * Owners finish the operations already queued before they stop.
+     */
+    @Override
+    public void destroy() {
+        running = false;
+        for (Shard shard : shards) {
+            LockSupport.unpark(shard.owner);
+        }
+    }
+
+    private Shard shardOf(Account account) {
+        int h = account.getAccountId().hashCode() * 0x9e3779b9;
+        return shards[Math.floorMod(h ^ (h >>> 16), shards.length)];
+    }
+
+    private void apply(Operation operation) {
+        try {
+            switch (operation.phase) {
+                case Operation.LOCAL:
+                    applyLocal(operation);
+                    break;
+                case Operation.RESERVE:
+                    reserve(operation);
+                    break;
+                case Operation.COMMIT:
+                    commit(operation);
+                    break;
+                default:
+                    release(operation);
+            }
+        } catch (RuntimeException e) {
+            operation.completion.fail(e);
+        }
+    }
+
+    private void applyLocal(Operation operation) {
+        int fromStripe = -1;
+        int toStripe = -1;
+        if (epochBarrier.isCutInProgress()) {
+            fromStripe = accountLocks.stripeOf(operation.from.getAccountId());
+            toStripe = accountLocks.stripeOf(operation.to.getAccountId());
+            accountLocks.lock(fromStripe, toStripe);
+        }
+        try {
+            if (fromStripe >= 0) {
+                operation.from.preserveBalance(operation.epoch);
+                operation.to.preserveBalance(operation.epoch);
+            }
+            if (!operation.from.tryWithdraw(operation.amount)) {
+                operation.completion.complete(false);
+                return;
+            }
+            try {
+                operation.to.deposit(operation.amount);
+            } catch (RuntimeException e) {
+                operation.from.deposit(operation.amount);
+                throw e;
+            }
+        } finally {
+            if (fromStripe >= 0) {
+                accountLocks.unlock(fromStripe, toStripe);
+            }
+        }
+        operation.completion.complete(true);
+    }
+
+    private void reserve(Operation operation) {
+        int stripe = lockIfCutInProgress(operation.from, operation.epoch);
+        boolean reserved;
+        try {
+            reserved = operation.from.tryWithdraw(operation.amount);
+        } finally {
+            unlock(stripe);
+        }
+        if (!reserved) {
+            operation.completion.complete(false);
+            return;
+        }
+        operation.phase = Operation.COMMIT;
+        operation.toShard.submit(operation);
+    }
+
+    private void commit(Operation operation) {
+        int stripe = lockIfCutInProgress(operation.to, operation.epoch);
+        try {
+            operation.to.deposit(operation.amount);
+        } catch (RuntimeException e) {
+            operation.failure = e;
+            operation.phase = Operation.RELEASE;
+            operation.fromShard.submit(operation);
+            return;
+        } finally {
+            unlock(stripe);
+        }
+        operation.completion.complete(true);
+    }
+
+    private void release(Operation operation) {
+        int stripe = lockIfCutInProgress(operation.from, operation.epoch);
+        try {
+            operation.from.deposit(operation.amount);
+        } finally {
+            unlock(stripe);
+        }
+        operation.completion.fail(operation.failure);
+    }
+
+    /**
+     * @return the locked stripe, or -1 when no cut is in progress
+     */
+    private int lockIfCutInProgress(Account account, long epoch) {
+        if (!epochBarrier.isCutInProgress()) {
+            return -1;
+        }
+        int stripe = accountLocks.stripeOf(account.getAccountId());
+        accountLocks.lock(stripe, stripe);
+        account.preserveBalance(epoch);
+        return stripe;
+    }
+
+    private void unlock(int stripe) {
+        if (stripe >= 0) {
+            accountLocks.unlock(stripe, stripe);
+        }
+    }
+
+    private final class Shard {
+
+        final ConcurrentLinkedQueue<Operation> queue = new ConcurrentLinkedQueue<>();
+        final Thread owner;
+        volatile boolean parked;
+
+        Shard(int index) {
+            owner = new Thread(this::run, "shard-" + index);
+            owner.setDaemon(true);
+        }
+
+        void submit(Operation operation) {
+            queue.offer(operation);
+            if (parked) {
+                LockSupport.unpark(owner);
+            }
+        }
+
+        private void run() {
+            int idle = 0;
+            while (running || !queue.isEmpty()) {
+                Operation operation = queue.poll();
+                if (operation != null) {
+                    apply(operation);
+                    idle = 0;
+                } else if (++idle < SPINS) {
+                    Thread.yield();
+                } else {
+                    parked = true;
+                    if (queue.isEmpty() && running) {
+                        LockSupport.park(this);
+                    }
+                    parked = false;
+                    idle = 0;
+                }
+            }
+        }
+    }
+
+    private static final class Operation {
+
+        static final int LOCAL = 0;
+        static final int RESERVE = 1;
+        static final int COMMIT = 2;
+        static final int RELEASE = 3;
+
+        final Account from;
+        final Account to;
+        final BigDecimal amount;
+        final long epoch;
+        final Shard fromShard;
+        final Shard toShard;
+        final Completion completion;
+        int phase;
+        RuntimeException failure;
+
+        Operation(Account from, Account to, BigDecimal amount, long epoch, Shard fromShard, Shard toShard,
+                  Completion completion) {
+            this.from = from;
+            this.to = to;
+            this.amount = amount;
+            this.epoch = epoch;
+            this.fromShard = fromShard;
+            this.toShard = toShard;
+            this.completion = completion;
+            this.phase = fromShard == toShard ? LOCAL : RESERVE;
+        }
+    }
+
+    /**
+     * Outcome slot of the calling thread, reused for each of its transfers since it waits for every one of them.
+     */
+    private static final class Completion {
+
+        static final int PENDING = 0;
+        static final int APPLIED = 1;
+        static final int REJECTED = 2;
+        static final int FAILED = 3;
+
+        final Thread caller = Thread.currentThread();
+        volatile int state;
+        RuntimeException failure;
+
+        void reset() {
+            failure = null;
+            state = PENDING;
+        }
+
+        void complete(boolean applied) {
+            state = applied ? APPLIED : REJECTED;
+            LockSupport.unpark(caller);
+        }
+
+        void fail(RuntimeException e) {
+            failure = e;
+            state = FAILED;
+            LockSupport.unpark(caller);
+        }
+
+        boolean await() {
+            for (int spins = 0; state == PENDING; spins++) {
+                if (spins < SPINS) {
+                    Thread.yield();
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+            if (state == FAILED) {
+                throw failure;
+            }
+            return state == APPLIED;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.JournaledAccountsRepository;
+import com.db.awmd.challenge.repository.SnapshotFile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Periodically snapshots every balance of the durable repository at a consistent cut taken with the
+ * {@link EpochBarrier}. Transfers keep running while the balances are collected; they only wait for the transfers
+ * still in flight when the cut starts. The file is written once the cut has ended.
+ */
+@Slf4j
+@Service
+@Profile("durable")
+public class SnapshotService implements PublicMetrics {
+
+    private final JournaledAccountsRepository repository;
+    private final EpochBarrier epochBarrier;
+
+    private volatile long snapshots;
+    private volatile long lastDurationMillis;
+    private volatile long lastSizeBytes;
+    private volatile long lastAccounts;
+
+    @Autowired
+    public SnapshotService(JournaledAccountsRepository repository, EpochBarrier epochBarrier) {
+        this.repository = repository;
+        this.epochBarrier = epochBarrier;
+        epochBarrier.advanceTo(repository.lastEpoch() + 1);
+    }
+
+    @Scheduled(fixedDelayString = "${accounts.snapshot.interval-millis:300000}",
+            initialDelayString = "${accounts.snapshot.interval-millis:300000}")
+    public synchronized SnapshotFile.Snapshot takeSnapshot() throws IOException {
+        long started = System.nanoTime();
+        long journalPosition = repository.journalPosition();
+        List<String> ids = new ArrayList<>();
+        List<BigDecimal> balances = new ArrayList<>();
+        long cutEpoch = epochBarrier.beginCut();
+        try {
+            for (Account account : repository.allAccounts()) {
+                ids.add(account.getAccountId());
+                balances.add(epochBarrier.balanceBefore(account, cutEpoch));
+            }
+        } finally {
+            epochBarrier.endCut();
+        }
+        SnapshotFile.Snapshot snapshot = repository.writeSnapshot(journalPosition, cutEpoch - 1, ids, balances);
+
+        lastDurationMillis = (System.nanoTime() - started) / 1_000_000;
+        lastSizeBytes = snapshot.getSizeBytes();
+        lastAccounts = snapshot.getAccounts();
+        snapshots++;
+        log.info("Snapshot of {} accounts ({} bytes) written in {} ms", lastAccounts, lastSizeBytes,
+                lastDurationMillis);
+        return snapshot;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.asList(
+                new Metric<>("snapshot.count", snapshots),
+                new Metric<>("snapshot.last.duration.millis", lastDurationMillis),
+                new Metric<>("snapshot.last.size.bytes", lastSizeBytes),
+                new Metric<>("snapshot.last.accounts", lastAccounts),
+                new Metric<>("snapshot.load.millis", repository.loadMillis()));
+    }
+}
@@ -0,0 +1,79 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+
+/**
+ * Debits and credits both accounts while holding their stripes, so other lock holders never observe
+ * the debit without the matching credit. Waiting for a stripe counts as contention of both accounts, and an account
+ * that combines its deposits is credited without locking its stripe outside of cuts.
+ */
+@Service
+@ConditionalOnProperty(prefix = "accounts.transfer", name = "engine", havingValue = "striped", matchIfMissing = true)
+public class StripedLockTransferEngine implements TransferEngine {
+
+    private final AccountLocks accountLocks;
+    private final EpochBarrier epochBarrier;
+
+    @Autowired
+    public StripedLockTransferEngine(AccountLocks accountLocks, EpochBarrier epochBarrier) {
+        this.accountLocks = accountLocks;
+        this.epochBarrier = epochBarrier;
+    }
+
+    @Override
+    public boolean transfer(Account fromAccount, Account toAccount, BigDecimal amount, long epoch) {
+        int fromStripe = accountLocks.stripeOf(fromAccount.getAccountId());
+        if (toAccount.isCombiningDeposits() && !epochBarrier.isCutInProgress()) {
+            return transferToCombining(fromAccount, toAccount, amount, fromStripe);
+        }
+        int toStripe = accountLocks.stripeOf(toAccount.getAccountId());
+
+        if (accountLocks.lock(fromStripe, toStripe)) {
+            fromAccount.contended();
+            toAccount.contended();
+        }
+        try {
+            if (epochBarrier.isCutInProgress()) {
+                fromAccount.preserveBalance(epoch);
+                toAccount.preserveBalance(epoch);
+            }
+            return withdrawAndDeposit(fromAccount, toAccount, amount);
+        } finally {
+            accountLocks.unlock(fromStripe, toStripe);
+        }
+    }
+
+    /**
+     * Deposits combined by the destination need no lock of their own, so only the source is locked. Outside of a
+     * cut nothing has to be preserved, and readers may briefly see the debit before the credit, as with the
+     * {@link CasTransferEngine}.
+     */
+    private boolean transferToCombining(Account fromAccount, Account toAccount, BigDecimal amount, int fromStripe) {
+        if (accountLocks.lock(fromStripe)) {
+            fromAccount.contended();
+        }
+        try {
+            return withdrawAndDeposit(fromAccount, toAccount, amount);
+        } finally {
+            accountLocks.unlock(fromStripe);
+        }
+    }
+
+    private static boolean withdrawAndDeposit(Account fromAccount, Account toAccount, BigDecimal amount) {
+        if (!fromAccount.tryWithdraw(amount)) {
+            return false;
+        }
+        try {
+            toAccount.deposit(amount);
+        } catch (RuntimeException e) {
+            fromAccount.deposit(amount);
+            throw e;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,114 @@
+package com.db.awmd.challenge.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A token bucket per key, each kept as the single {@code long} of the generic cell rate algorithm: the time at which
+ * the bucket would be full again. Taking a token is one compare-and-set of it, so buckets need no lock.
+ * <p>
+ * A full bucket is the same as an absent one, so once {@code maxKeys} buckets are tracked the full ones are swept,
+ * at most every {@link #SWEEP_INTERVAL_NANOS}. Keys that still find no room share a single overflow bucket, which
+ * keeps the map bounded (up to the keys being added concurrently) however many distinct keys arrive.
+ */
+public class TokenBuckets {
+
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final int burst;
+    private final int maxKeys;
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong overflow = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime() - SWEEP_INTERVAL_NANOS);
+    private final LongAdder overflowed = new LongAdder();
+
+    /**
+     * @param ratePerSecond tokens added to each bucket per second
+     * @param burst         tokens a full bucket holds
+     */
+    public TokenBuckets(int ratePerSecond, int burst, int maxKeys) {
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, ratePerSecond);
+        this.burst = Math.max(1, burst);
+        this.toleranceNanos = (this.burst - 1) * intervalNanos;
+        this.maxKeys = Math.max(1, maxKeys);
+    }
+
+    /**
+     * @return 0 when a token was taken, otherwise the nanoseconds until the bucket of the key holds one
+     */
+    public long tryAcquire(String key, long now) {
+        return tryAcquire(key, 1, now);
+    }
+
+    /**
+     * Takes all of the {@code permits} in one step, or none of them.
+     *
+     * @return 0 when the tokens were taken, otherwise the nanoseconds until the bucket of the key holds them;
+     * {@link Long#MAX_VALUE} when they are more than a full bucket holds
+     */
+    public long tryAcquire(String key, int permits, long now) {
+        if (permits > burst) {
+            return Long.MAX_VALUE;
+        }
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = track(key, now);
+        }
+        while (true) {
+            long full = bucket.get();
+            long from = Math.max(full, now);
+            long wait = from + (permits - 1) * intervalNanos - toleranceNanos - now;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(full, from + permits * intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Puts back tokens taken for a request that was rejected before it did anything.
+     */
+    public void release(String key, int permits) {
+        AtomicLong bucket = buckets.getOrDefault(key, overflow);
+        bucket.addAndGet(-permits * intervalNanos);
+    }
+
+    public int burst() {
+        return burst;
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    /**
+     * @return keys that found no room and used the overflow bucket
+     */
+    public long overflowed() {
+        return overflowed.sum();
+    }
+
+    private AtomicLong track(String key, long now) {
+        if (buckets.size() >= maxKeys) {
+            sweep(now);
+            if (buckets.size() >= maxKeys) {
+                overflowed.increment();
+                return overflow;
+            }
+        }
+        return buckets.computeIfAbsent(key, k -> new AtomicLong(Long.MIN_VALUE));
+    }
+
+    private void sweep(long now) {
+        long last = lastSweep.get();
+        if (now - last >= SWEEP_INTERVAL_NANOS && lastSweep.compareAndSet(last, now)) {
+            buckets.entrySet().removeIf(entry -> entry.getValue().get() <= now);
+        }
+    }
+}
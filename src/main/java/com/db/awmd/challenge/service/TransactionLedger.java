@@ -0,0 +1,167 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.config.LedgerProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.LedgerEntry;
+import com.db.awmd.challenge.domain.LedgerPage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Recent transfers of every account, kept in a ring per account that overwrites its oldest entries once
+ * {@code accounts.ledger.entries-per-account} are held. A ring is a set of parallel arrays rather than an array of
+ * entry objects: timestamp and direction packed in a long, and references to the counterparty id, the amount and
+ * the balance after, all of which already exist, so appending allocates nothing once the ring has grown.
+ * <p>
+ * Entries are appended after the transfer has released its accounts. The balance after is read at that point, so
+ * when other transfers of the same account run concurrently it may already include them, and their entries may be
+ * appended in a different order than their updates were applied.
+ */
+@Component
+public class TransactionLedger implements PublicMetrics {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final boolean enabled;
+    private final int entriesPerAccount;
+    private final int maxPageSize;
+    private final ConcurrentHashMap<String, History> histories = new ConcurrentHashMap<>();
+    private final LongAdder appended = new LongAdder();
+
+    @Autowired
+    public TransactionLedger(LedgerProperties properties) {
+        this.enabled = properties.isEnabled();
+        this.entriesPerAccount = Math.max(1, properties.getEntriesPerAccount());
+        this.maxPageSize = Math.max(1, properties.getMaxPageSize());
+    }
+
+    public void record(Account fromAccount, Account toAccount, BigDecimal amount) {
+        if (!enabled) {
+            return;
+        }
+        long timestamp = System.currentTimeMillis();
+        historyOf(fromAccount.getAccountId())
+                .append(timestamp, true, toAccount.getAccountId(), amount, fromAccount.getBalance());
+        historyOf(toAccount.getAccountId())
+                .append(timestamp, false, fromAccount.getAccountId(), amount, toAccount.getBalance());
+        appended.add(2);
+    }
+
+    /**
+     * Records the legs of one atomic transfer from {@code fromAccount}, appending to its history once. Its entries
+     * all carry its balance after the whole transfer.
+     */
+    void recordAll(Account fromAccount, List<TransferLeg> legs) {
+        if (!enabled) {
+            return;
+        }
+        long timestamp = System.currentTimeMillis();
+        historyOf(fromAccount.getAccountId()).appendAll(timestamp, legs, fromAccount.getBalance());
+        for (TransferLeg leg : legs) {
+            historyOf(leg.to.getAccountId())
+                    .append(timestamp, false, fromAccount.getAccountId(), leg.amount, leg.to.getBalance());
+        }
+        appended.add(2L * legs.size());
+    }
+
+    /**
+     * @param cursor {@link LedgerPage#getNextCursor()} of the previous page, or null for the newest entries
+     * @param limit  entries per page, capped at {@code accounts.ledger.max-page-size}
+     */
+    public LedgerPage page(String accountId, Long cursor, int limit) {
+        History history = histories.get(accountId);
+        if (history == null) {
+            return new LedgerPage(new ArrayList<>(), null);
+        }
+        return history.page(cursor == null ? Long.MAX_VALUE : cursor, Math.max(1, Math.min(limit, maxPageSize)));
+    }
+
+    public void clear() {
+        histories.clear();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("ledger.accounts", histories.size()));
+        metrics.add(new Metric<>("ledger.appended", appended.sum()));
+        return metrics;
+    }
+
+    private History historyOf(String accountId) {
+        History history = histories.get(accountId);
+        if (history == null) {
+            history = histories.computeIfAbsent(accountId, id -> new History(entriesPerAccount));
+        }
+        return history;
+    }
+
+    /**
+     * Entry {@code n} (from 1) is in slot {@code (n - 1) % capacity}. The arrays only grow before the first entry
+     * is overwritten, and stop growing at the retention, so growing never moves an entry to another slot.
+     */
+    private static final class History {
+
+        final int retention;
+        long[] stamps = new long[0];
+        String[] counterparties = new String[0];
+        BigDecimal[] amounts = new BigDecimal[0];
+        BigDecimal[] balances = new BigDecimal[0];
+        long last;
+
+        History(int retention) {
+            this.retention = retention;
+        }
+
+        synchronized void append(long timestamp, boolean debit, String counterpartyId, BigDecimal amount,
+                                 BigDecimal balanceAfter) {
+            if (last == stamps.length && stamps.length < retention) {
+                grow();
+            }
+            int slot = (int) (last % stamps.length);
+            stamps[slot] = timestamp << 1 | (debit ? 1 : 0);
+            counterparties[slot] = counterpartyId;
+            amounts[slot] = amount;
+            balances[slot] = balanceAfter;
+            last++;
+        }
+
+        synchronized void appendAll(long timestamp, List<TransferLeg> legs, BigDecimal balanceAfter) {
+            for (TransferLeg leg : legs) {
+                append(timestamp, true, leg.to.getAccountId(), leg.amount, balanceAfter);
+            }
+        }
+
+        synchronized LedgerPage page(long before, int limit) {
+            long first = Math.max(1, last - stamps.length + 1);
+            long from = Math.min(before - 1, last);
+            List<LedgerEntry> entries = new ArrayList<>(Math.max(0, (int) Math.min(limit, from - first + 1)));
+            long sequence = from;
+            for (; sequence >= first && entries.size() < limit; sequence--) {
+                int slot = (int) ((sequence - 1) % stamps.length);
+                boolean debit = (stamps[slot] & 1) != 0;
+                entries.add(new LedgerEntry(sequence, stamps[slot] >>> 1, counterparties[slot],
+                        debit ? amounts[slot].negate() : amounts[slot], balances[slot]));
+            }
+            return new LedgerPage(entries, sequence >= first ? sequence + 1 : null);
+        }
+
+        private void grow() {
+            int capacity = (int) Math.min(retention, Math.max(INITIAL_CAPACITY, 2L * stamps.length));
+            stamps = Arrays.copyOf(stamps, capacity);
+            counterparties = Arrays.copyOf(counterparties, capacity);
+            amounts = Arrays.copyOf(amounts, capacity);
+            balances = Arrays.copyOf(balances, capacity);
+        }
+    }
+}
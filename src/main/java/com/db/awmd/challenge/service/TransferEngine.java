@@ -0,0 +1,20 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+
+import java.math.BigDecimal;
+
+/**
+ * Moves funds between two already validated accounts. Implementations decide how the debit and the credit
+ * are made safe under concurrency and are selected with the {@code accounts.transfer.engine} property.
+ */
+public interface TransferEngine {
+
+    /**
+     * @param epoch the epoch the caller entered in the {@link EpochBarrier}; implementations preserve the balances
+     *              of that epoch before changing them while a cut is in progress
+     * @return false, without changing either balance, when the source account has insufficient funds; a
+     * rejection is an expected outcome, so it is reported without building an exception
+     */
+    boolean transfer(Account fromAccount, Account toAccount, BigDecimal amount, long epoch);
+}
@@ -0,0 +1,23 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+
+import java.math.BigDecimal;
+
+/**
+ * A validated transfer between two resolved accounts. {@code index} is its position in the request it came from.
+ */
+final class TransferLeg {
+
+    final int index;
+    final Account from;
+    final Account to;
+    final BigDecimal amount;
+
+    TransferLeg(int index, Account from, Account to, BigDecimal amount) {
+        this.index = index;
+        this.from = from;
+        this.to = to;
+        this.amount = amount;
+    }
+}
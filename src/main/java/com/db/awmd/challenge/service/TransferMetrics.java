@@ -0,0 +1,143 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.exception.BalanceOverflowException;
+import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.exception.InvalidAmountTransferException;
+import com.db.awmd.challenge.exception.NonexistentAccountException;
+import com.db.awmd.challenge.exception.SameAccountTransferException;
+import com.db.awmd.challenge.metrics.HotAccounts;
+import com.db.awmd.challenge.metrics.LatencyHistogram;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts transfer outcomes, records the latency of every transfer and tracks the accounts that transfers touch
+ * most, along with the stripe wait times of {@link AccountLocks}. Every transfer of a batch or multi-leg transfer
+ * counts on its own, timed from the start of its request. All of it is exported as {@code transfers.*} and
+ * {@code locks.*} metrics; {@code accounts.metrics.enabled=false} turns the transfer side off.
+ */
+@Component
+public class TransferMetrics implements PublicMetrics {
+
+    public enum Outcome {
+        SUCCESS, INSUFFICIENT_FUNDS, NONEXISTENT_ACCOUNT, SAME_ACCOUNT, INVALID_AMOUNT, BALANCE_OVERFLOW, FAILED,
+        /** A valid transfer of an atomic batch or multi-leg transfer that was not applied because another was not. */
+        ABORTED;
+
+        String metricName() {
+            return "transfers.outcome." + name().toLowerCase().replace('_', '-');
+        }
+    }
+
+    private final AccountLocks accountLocks;
+    private final boolean enabled;
+    private final LongAdder[] outcomes = new LongAdder[Outcome.values().length];
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final HotAccounts hotAccounts = new HotAccounts(64, 16);
+
+    @Autowired
+    public TransferMetrics(AccountLocks accountLocks, @Value("${accounts.metrics.enabled:true}") boolean enabled) {
+        this.accountLocks = accountLocks;
+        this.enabled = enabled;
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @return the start time to pass to {@link #transferred}, {@link #rejected} or {@link #failed}
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void transferred(Account fromAccount, Account toAccount, long started) {
+        if (enabled) {
+            latency.record(System.nanoTime() - started);
+            outcomes[Outcome.SUCCESS.ordinal()].increment();
+            hotAccounts.touched(fromAccount.getAccountId());
+            hotAccounts.touched(toAccount.getAccountId());
+        }
+    }
+
+    public void rejected(TransferOutcome rejection, long started) {
+        if (enabled) {
+            latency.record(System.nanoTime() - started);
+            outcomes[outcomeOf(rejection).ordinal()].increment();
+        }
+    }
+
+    public void failed(Exception failure, long started) {
+        if (enabled) {
+            latency.record(System.nanoTime() - started);
+            outcomes[outcomeOf(failure).ordinal()].increment();
+        }
+    }
+
+    public void aborted(long started) {
+        if (enabled) {
+            latency.record(System.nanoTime() - started);
+            outcomes[Outcome.ABORTED.ordinal()].increment();
+        }
+    }
+
+    public long count(Outcome outcome) {
+        return outcomes[outcome.ordinal()].sum();
+    }
+
+    public List<HotAccounts.HotAccount> hotAccounts(int limit) {
+        return hotAccounts.top(limit);
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        for (Outcome outcome : Outcome.values()) {
+            metrics.add(new Metric<>(outcome.metricName(), count(outcome)));
+        }
+        latency.snapshot().addTo(metrics, "transfers.latency.nanos");
+        accountLocks.waits().addTo(metrics, "locks.wait.nanos");
+        return metrics;
+    }
+
+    private static Outcome outcomeOf(TransferOutcome rejection) {
+        switch (rejection) {
+            case SOURCE_NOT_FOUND:
+            case DESTINATION_NOT_FOUND:
+                return Outcome.NONEXISTENT_ACCOUNT;
+            case SAME_ACCOUNT:
+                return Outcome.SAME_ACCOUNT;
+            case INVALID_AMOUNT:
+                return Outcome.INVALID_AMOUNT;
+            case INSUFFICIENT_FUNDS:
+                return Outcome.INSUFFICIENT_FUNDS;
+            default:
+                return Outcome.SUCCESS;
+        }
+    }
+
+    private static Outcome outcomeOf(Exception failure) {
+        if (failure instanceof InsufficientFundsException) {
+            return Outcome.INSUFFICIENT_FUNDS;
+        } else if (failure instanceof NonexistentAccountException) {
+            return Outcome.NONEXISTENT_ACCOUNT;
+        } else if (failure instanceof SameAccountTransferException) {
+            return Outcome.SAME_ACCOUNT;
+        } else if (failure instanceof InvalidAmountTransferException) {
+            return Outcome.INVALID_AMOUNT;
+        } else if (failure instanceof BalanceOverflowException) {
+            return Outcome.BALANCE_OVERFLOW;
+        }
+        return Outcome.FAILED;
+    }
+}
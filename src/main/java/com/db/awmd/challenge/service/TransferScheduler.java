@@ -0,0 +1,326 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.config.SchedulerProperties;
+import com.db.awmd.challenge.domain.BatchTransfer;
+import com.db.awmd.challenge.domain.BatchTransferResult;
+import com.db.awmd.challenge.domain.ScheduledTransfer;
+import com.db.awmd.challenge.domain.ScheduledTransfer.Status;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.metrics.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Holds transfers until their execution time in a hierarchical timing wheel driven by a single thread.
+ * <p>
+ * The wheel has {@value #LEVELS} levels of {@value #SLOTS} slots; a slot of level {@code n} spans
+ * {@code SLOTS^n} ticks of {@code accounts.scheduler.tick-millis}, so with the default tick the wheel reaches 497
+ * days ahead, and transfers further out go round the top level again. Every slot is an intrusive list, so
+ * scheduling is a constant-time insertion whatever the number of pending transfers, and a pending transfer costs
+ * one small object. When a slot of a higher level comes up, its transfers are cascaded into lower levels; when a
+ * slot of the lowest level comes up, its transfers are due.
+ * <p>
+ * Only the wheel thread touches the wheel: new transfers reach it through a queue, and cancelling only marks a
+ * transfer, which the wheel skips when it comes due. Transfers due on the same tick are applied in batches of
+ * {@code accounts.scheduler.batch-size} through {@link AccountsService#transfer(BatchTransfer)} in best-effort mode,
+ * and each records how late it ran in the {@code scheduler.lag.millis} histogram. Executed and cancelled transfers
+ * stay queryable for {@code accounts.scheduler.retention-millis}, after which the wheel forgets them.
+ * <p>
+ * Pending transfers are held in memory only and do not survive a restart.
+ */
+@Slf4j
+@Service
+public class TransferScheduler implements PublicMetrics, DisposableBean {
+
+    private static final int SLOT_BITS = 8;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 4;
+
+    private final AccountsService accountsService;
+    private final long tickMillis;
+    private final int batchSize;
+    private final long retentionMillis;
+
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry> added = new ConcurrentLinkedQueue<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final Thread wheelThread;
+    private volatile boolean running = true;
+
+    private final Entry[][] wheel = new Entry[LEVELS][SLOTS];
+    private final List<Entry> due = new ArrayList<>();
+    private long currentTick;
+
+    private final LongAdder pending = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LatencyHistogram lag = new LatencyHistogram();
+
+    @Autowired
+    public TransferScheduler(AccountsService accountsService, SchedulerProperties properties) {
+        this.accountsService = accountsService;
+        this.tickMillis = Math.max(1, properties.getTickMillis());
+        this.batchSize = Math.max(1, properties.getBatchSize());
+        this.retentionMillis = properties.getRetentionMillis();
+        this.currentTick = System.currentTimeMillis() / tickMillis;
+        this.wheelThread = new Thread(this::run, "transfer-scheduler");
+        wheelThread.setDaemon(true);
+        wheelThread.start();
+    }
+
+    /**
+     * @param executeAt milliseconds since the epoch
+     */
+    public ScheduledTransfer schedule(String accountFromId, String accountToId, BigDecimal amount, long executeAt) {
+        Entry entry = new Entry(ids.incrementAndGet(), accountFromId, accountToId, amount, executeAt);
+        entries.put(entry.id, entry);
+        pending.increment();
+        added.add(entry);
+        return entry.view();
+    }
+
+    /**
+     * @return the transfer, or null when it is unknown or was forgotten after the retention
+     */
+    public ScheduledTransfer get(long id) {
+        Entry entry = entries.get(id);
+        return entry == null ? null : entry.view();
+    }
+
+    /**
+     * @return the transfer, {@link Status#CANCELLED} unless it already ran, or null when it is unknown
+     */
+    public ScheduledTransfer cancel(long id) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.finish(Status.PENDING, Status.CANCELLED, null)) {
+            pending.decrement();
+            cancelled.increment();
+        }
+        return entry.view();
+    }
+
+    public long pending() {
+        return pending.sum();
+    }
+
+    public LatencyHistogram.Snapshot lag() {
+        return lag.snapshot();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("scheduler.pending", pending.sum()));
+        metrics.add(new Metric<>("scheduler.applied", applied.sum()));
+        metrics.add(new Metric<>("scheduler.rejected", rejected.sum()));
+        metrics.add(new Metric<>("scheduler.cancelled", cancelled.sum()));
+        metrics.add(new Metric<>("scheduler.retained", entries.size()));
+        lag.snapshot().addTo(metrics, "scheduler.lag.millis");
+        return metrics;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(wheelThread);
+        wheelThread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                Entry entry;
+                while ((entry = added.poll()) != null) {
+                    // rounded up, so that a transfer never runs before its time
+                    entry.tick = (entry.executeAt + tickMillis - 1) / tickMillis;
+                    insert(entry);
+                }
+                long nowTick = System.currentTimeMillis() / tickMillis;
+                while (currentTick < nowTick) {
+                    currentTick++;
+                    advance();
+                    if (due.size() >= batchSize) {
+                        runDue();
+                    }
+                }
+                runDue();
+            } catch (RuntimeException e) {
+                log.error("Scheduled transfers failed", e);
+            }
+            long untilNextTick = (currentTick + 1) * tickMillis - System.currentTimeMillis();
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(Math.max(1, untilNextTick)));
+        }
+    }
+
+    /**
+     * Cascades the higher level slots that start at the current tick, then takes the due transfers out of the slot
+     * of the lowest level.
+     */
+    private void advance() {
+        for (int level = LEVELS - 1; level >= 0; level--) {
+            if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                int slot = (int) (currentTick >>> (SLOT_BITS * level)) & (SLOTS - 1);
+                Entry entry = wheel[level][slot];
+                wheel[level][slot] = null;
+                while (entry != null) {
+                    Entry next = entry.next;
+                    entry.next = null;
+                    insert(entry);
+                    entry = next;
+                }
+            }
+        }
+    }
+
+    private void insert(Entry entry) {
+        long delta = entry.tick - currentTick;
+        if (delta <= 0) {
+            expire(entry);
+            return;
+        }
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int slot = (int) (entry.tick >>> (SLOT_BITS * level)) & (SLOTS - 1);
+        entry.next = wheel[level][slot];
+        wheel[level][slot] = entry;
+    }
+
+    /**
+     * A pending transfer becomes due. A finished one is kept until the end of its retention, then forgotten.
+     */
+    private void expire(Entry entry) {
+        if (entry.status == Status.PENDING) {
+            due.add(entry);
+        } else if (!entry.retained) {
+            entry.retained = true;
+            entry.tick = (entry.finishedAt + retentionMillis) / tickMillis;
+            insert(entry);
+        } else {
+            entries.remove(entry.id, entry);
+        }
+    }
+
+    private void runDue() {
+        for (int from = 0; from < due.size(); from += batchSize) {
+            List<Entry> batch = new ArrayList<>(Math.min(batchSize, due.size() - from));
+            List<Transfer> transfers = new ArrayList<>(batch.size());
+            for (Entry entry : due.subList(from, Math.min(due.size(), from + batchSize))) {
+                if (entry.claim()) {
+                    batch.add(entry);
+                    transfers.add(new Transfer(entry.accountFromId, entry.accountToId, entry.amount));
+                }
+            }
+            if (!batch.isEmpty()) {
+                apply(batch, transfers);
+            }
+        }
+        due.clear();
+    }
+
+    private void apply(List<Entry> batch, List<Transfer> transfers) {
+        List<BatchTransferResult.Item> items = null;
+        String failure = null;
+        try {
+            items = accountsService.transfer(new BatchTransfer(BatchTransfer.Mode.BEST_EFFORT, transfers)).getItems();
+        } catch (RuntimeException e) {
+            log.error("Batch of {} scheduled transfers failed", batch.size(), e);
+            failure = e.getMessage();
+        }
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < batch.size(); i++) {
+            Entry entry = batch.get(i);
+            BatchTransferResult.Item item = items == null ? null : items.get(i);
+            if (item != null && item.getStatus() == BatchTransferResult.Status.APPLIED) {
+                entry.finish(Status.RUNNING, Status.APPLIED, null);
+                applied.increment();
+            } else {
+                entry.finish(Status.RUNNING, Status.REJECTED, item == null ? failure : item.getMessage());
+                rejected.increment();
+            }
+            pending.decrement();
+            lag.record(now - entry.executeAt);
+            insert(entry);
+        }
+    }
+
+    private static final class Entry {
+
+        final long id;
+        final String accountFromId;
+        final String accountToId;
+        final BigDecimal amount;
+        final long executeAt;
+        volatile Status status = Status.PENDING;
+        volatile long finishedAt;
+        volatile String message;
+
+        // wheel thread only
+        long tick;
+        boolean retained;
+        Entry next;
+
+        Entry(long id, String accountFromId, String accountToId, BigDecimal amount, long executeAt) {
+            this.id = id;
+            this.accountFromId = accountFromId;
+            this.accountToId = accountToId;
+            this.amount = amount;
+            this.executeAt = executeAt;
+        }
+
+        synchronized boolean claim() {
+            if (status != Status.PENDING) {
+                return false;
+            }
+            status = Status.RUNNING;
+            return true;
+        }
+
+        /**
+         * Transitions are serialized by the entry's monitor, and readers only read the volatile fields. The finish
+         * time and message are written before the status, so a reader that sees the final status also sees them.
+         */
+        boolean finish(Status expected, Status outcome, String message) {
+            if (status != expected) {
+                return false;
+            }
+            long now = System.currentTimeMillis();
+            synchronized (this) {
+                if (status != expected) {
+                    return false;
+                }
+                finishedAt = now;
+                this.message = message;
+                status = outcome;
+                return true;
+            }
+        }
+
+        ScheduledTransfer view() {
+            Status current = status;
+            boolean finished = current != Status.PENDING && current != Status.RUNNING;
+            return new ScheduledTransfer(id, accountFromId, accountToId, amount, executeAt, current,
+                    finished ? finishedAt : null, finished ? message : null);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.exception.NonexistentAccountException;
+import com.db.awmd.challenge.service.AccountsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * The {@link Account#getHandle() handle} of an account, for clients of the binary protocol that address accounts by
+ * handle. 404 when the repository does not number its accounts.
+ */
+@RestController
+@RequestMapping("/v1/accounts")
+public class AccountHandlesController {
+
+  private final AccountsService accountsService;
+
+  @Autowired
+  public AccountHandlesController(AccountsService accountsService) {
+    this.accountsService = accountsService;
+  }
+
+  @GetMapping(path = "/{accountId}/handle")
+  public ResponseEntity<Integer> getHandle(@PathVariable String accountId) throws NonexistentAccountException {
+    Account account = accountsService.getAccount(accountId);
+    if (account == null) {
+      throw new NonexistentAccountException(accountId);
+    }
+    if (account.getHandle() == Account.NO_HANDLE) {
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+    return ResponseEntity.ok(account.getHandle());
+  }
+}
@@ -1,36 +1,71 @@
 package com.db.awmd.challenge.web;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.BatchTransfer;
+import com.db.awmd.challenge.domain.BatchTransferResult;
+import com.db.awmd.challenge.domain.MultiLegTransfer;
+import com.db.awmd.challenge.domain.ScheduledTransfer;
 import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
 import com.db.awmd.challenge.exception.*;
+import com.db.awmd.challenge.service.AccountViews;
+import com.db.awmd.challenge.service.AdmissionControl;
 import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.IdempotencyCache;
+import com.db.awmd.challenge.service.TransferScheduler;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+/**
+ * Endpoints answer with a {@link ResponseEntity}, or with a {@code DeferredResult} of one when {@link AsyncHandlers}
+ * runs them on its handler threads.
+ */
 @RestController
 @RequestMapping("/v1/accounts")
 @Slf4j
 public class AccountsController {
 
   private final AccountsService accountsService;
+  private final IdempotencyCache idempotencyCache;
+  private final AccountViews accountViews;
+  private final AdmissionControl admissionControl;
+  private final TransferScheduler transferScheduler;
+  private final AsyncHandlers asyncHandlers;
 
   @Autowired
-  public AccountsController(AccountsService accountsService) {
+  public AccountsController(AccountsService accountsService, IdempotencyCache idempotencyCache,
+    AccountViews accountViews, AdmissionControl admissionControl, TransferScheduler transferScheduler,
+    AsyncHandlers asyncHandlers) {
     this.accountsService = accountsService;
+    this.idempotencyCache = idempotencyCache;
+    this.accountViews = accountViews;
+    this.admissionControl = admissionControl;
+    this.transferScheduler = transferScheduler;
+    this.asyncHandlers = asyncHandlers;
   }
 
   @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
-  public ResponseEntity<Object> createAccount(@RequestBody @Valid Account account) {
+  public Object createAccount(@RequestBody @Valid Account account) {
+    return asyncHandlers.respond(() -> create(account));
+  }
+
+  private ResponseEntity<Object> create(Account account) {
     log.info("Creating account {}", account);
 
     try {
@@ -42,17 +77,178 @@ public class AccountsController {
     return new ResponseEntity<>(HttpStatus.CREATED);
   }
 
+  /**
+   * Writes the cached JSON of the account's current view, which is serialized again only after the balance changed.
+   */
   @GetMapping(path = "/{accountId}")
-  public Account getAccount(@PathVariable String accountId) {
+  public Object getAccount(@PathVariable String accountId) {
+    return asyncHandlers.respond(() -> view(accountId));
+  }
+
+  private ResponseEntity<byte[]> view(String accountId) {
     log.info("Retrieving account for id {}", accountId);
-    return this.accountsService.getAccount(accountId);
+    Account account = this.accountsService.getAccount(accountId);
+    if (account == null) {
+      return new ResponseEntity<>(HttpStatus.OK);
+    }
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON_UTF8).body(accountViews.view(account).getJson());
   }
 
   @PostMapping(value = "/transfer", consumes = MediaType.APPLICATION_JSON_VALUE)
-  public ResponseEntity<Object> transfer(@RequestBody @Valid Transfer transfer) throws InvalidAmountTransferException, SameAccountTransferException, InsufficientFundsException, NonexistentAccountException {
+  public Object transfer(@RequestBody @Valid Transfer transfer,
+    @RequestHeader(value = AdmissionInterceptor.CLIENT_ID_HEADER, required = false) String clientId,
+    HttpServletRequest request) {
+    String remoteAddress = request.getRemoteAddr();
+    return asyncHandlers.respond(() -> applyTransfer(transfer, clientId, remoteAddress));
+  }
 
-    accountsService.transfer(transfer.getAccountFromId(),transfer.getAccountToId(), transfer.getAmount());
+  /**
+   * A retried request whose outcome is remembered is answered without taking a token of the source account.
+   */
+  private ResponseEntity<Object> applyTransfer(Transfer transfer, String clientId, String remoteAddress) {
+    TransferOutcome outcome;
+    try {
+      outcome = transfer.getRequestId() == null
+        ? admitAndTransfer(transfer)
+        : idempotencyCache.execute(clientId, remoteAddress, transfer, () -> admitAndTransfer(transfer));
+    } catch (AccountThrottledException e) {
+      return tooManyTransfers(e.waitNanos);
+    }
+    if (!outcome.isApplied()) {
+      return new ResponseEntity<>(outcome.message(transfer.getAccountFromId(), transfer.getAccountToId(),
+        transfer.getAmount()), HttpStatus.BAD_REQUEST);
+    }
     return new ResponseEntity<>(HttpStatus.OK);
   }
 
+  @PostMapping(value = "/transfers/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public Object transferBatch(@RequestBody @Valid BatchTransfer batch) {
+    return asyncHandlers.respond(() -> applyBatch(batch));
+  }
+
+  /**
+   * Answers 413 when a source account has more transfers in the batch than its bucket holds, as such a batch would
+   * never be admitted.
+   */
+  private ResponseEntity<Object> applyBatch(BatchTransfer batch) {
+    log.info("Applying batch of {} transfers in {} mode", batch.getTransfers().size(), batch.getMode());
+    Map<String, Integer> transfersBySource = new LinkedHashMap<>();
+    for (Transfer transfer : batch.getTransfers()) {
+      transfersBySource.merge(transfer.getAccountFromId(), 1, Integer::sum);
+    }
+    int maxTransfers = admissionControl.maxAccountBurst();
+    for (Map.Entry<String, Integer> source : transfersBySource.entrySet()) {
+      if (source.getValue() > maxTransfers) {
+        return new ResponseEntity<>("Account " + source.getKey() + " has " + source.getValue()
+          + " transfers in the batch, more than the " + maxTransfers + " it may send at once",
+          HttpStatus.PAYLOAD_TOO_LARGE);
+      }
+    }
+    long wait = admissionControl.admitAccounts(transfersBySource);
+    if (wait > 0) {
+      return tooManyTransfers(wait);
+    }
+
+    BatchTransferResult result = accountsService.transfer(batch);
+    boolean rejected = batch.getMode() == BatchTransfer.Mode.ATOMIC && result.getApplied() == 0;
+    return new ResponseEntity<>(result, rejected ? HttpStatus.BAD_REQUEST : HttpStatus.OK);
+  }
+
+  @PostMapping(value = "/transfers/multi-leg", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public Object transferMultiLeg(@RequestBody @Valid MultiLegTransfer transfer) {
+    return asyncHandlers.respond(() -> applyMultiLeg(transfer));
+  }
+
+  private ResponseEntity<BatchTransferResult> applyMultiLeg(MultiLegTransfer transfer) {
+    log.info("Applying transfer from {} to {} accounts", transfer.getAccountFromId(), transfer.getLegs().size());
+    long wait = admissionControl.admitAccount(transfer.getAccountFromId());
+    if (wait > 0) {
+      return tooManyTransfers(wait);
+    }
+
+    BatchTransferResult result = accountsService.transfer(transfer);
+    return new ResponseEntity<>(result, result.getApplied() == 0 ? HttpStatus.BAD_REQUEST : HttpStatus.OK);
+  }
+
+  /**
+   * Checks the accounts and the amount now; whether the funds suffice is only known when the transfer runs.
+   */
+  @PostMapping(value = "/transfers/scheduled", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public Object scheduleTransfer(@RequestBody @Valid ScheduledTransfer transfer) {
+    return asyncHandlers.respond(() -> schedule(transfer));
+  }
+
+  private ResponseEntity<Object> schedule(ScheduledTransfer transfer) {
+    log.info("Scheduling transfer from {} to {} at {}", transfer.getAccountFromId(), transfer.getAccountToId(),
+      transfer.getExecuteAt());
+    long wait = admissionControl.admitAccount(transfer.getAccountFromId());
+    if (wait > 0) {
+      return tooManyTransfers(wait);
+    }
+
+    TransferOutcome rejection = accountsService.check(transfer.getAccountFromId(), transfer.getAccountToId(),
+      transfer.getAmount());
+    if (rejection != null) {
+      return new ResponseEntity<>(rejection.message(transfer.getAccountFromId(), transfer.getAccountToId(),
+        transfer.getAmount()), HttpStatus.BAD_REQUEST);
+    }
+    return new ResponseEntity<>(transferScheduler.schedule(transfer.getAccountFromId(), transfer.getAccountToId(),
+      transfer.getAmount(), transfer.getExecuteAt()), HttpStatus.CREATED);
+  }
+
+  @GetMapping(path = "/transfers/scheduled/{id}")
+  public Object getScheduledTransfer(@PathVariable long id) {
+    return asyncHandlers.respond(() -> {
+      ScheduledTransfer transfer = transferScheduler.get(id);
+      return transfer == null ? new ResponseEntity<>(HttpStatus.NOT_FOUND) : ResponseEntity.ok(transfer);
+    });
+  }
+
+  /**
+   * Answers 409 with the transfer when it is already running or finished.
+   */
+  @DeleteMapping(path = "/transfers/scheduled/{id}")
+  public Object cancelScheduledTransfer(@PathVariable long id) {
+    return asyncHandlers.respond(() -> cancel(id));
+  }
+
+  private ResponseEntity<ScheduledTransfer> cancel(long id) {
+    ScheduledTransfer transfer = transferScheduler.cancel(id);
+    if (transfer == null) {
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+    return new ResponseEntity<>(transfer,
+      transfer.getStatus() == ScheduledTransfer.Status.CANCELLED ? HttpStatus.OK : HttpStatus.CONFLICT);
+  }
+
+  /**
+   * The source account ran out of tokens; nothing was applied. A batch is rejected as a whole when any of its
+   * source accounts lacks a token for each of its transfers, and takes none from the others.
+   */
+  private static <T> ResponseEntity<T> tooManyTransfers(long waitNanos) {
+    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+      .header(HttpHeaders.RETRY_AFTER, AdmissionInterceptor.retryAfterSeconds(waitNanos)).build();
+  }
+
+  /**
+   * @throws AccountThrottledException when the source account is out of tokens, so the idempotency cache does not
+   *                                    remember the rejection
+   */
+  private TransferOutcome admitAndTransfer(Transfer transfer) {
+    long wait = admissionControl.admitAccount(transfer.getAccountFromId());
+    if (wait > 0) {
+      throw new AccountThrottledException(wait);
+    }
+    return accountsService.tryTransfer(transfer.getAccountFromId(), transfer.getAccountToId(), transfer.getAmount());
+  }
+
+  private static final class AccountThrottledException extends RuntimeException {
+
+    final long waitNanos;
+
+    AccountThrottledException(long waitNanos) {
+      super(null, null, false, false);
+      this.waitNanos = waitNanos;
+    }
+  }
 }
@@ -1,8 +1,10 @@
 package com.db.awmd.challenge.web;
 
+import com.db.awmd.challenge.exception.BalanceOverflowException;
 import com.db.awmd.challenge.exception.InsufficientFundsException;
 import com.db.awmd.challenge.exception.InvalidAmountTransferException;
 import com.db.awmd.challenge.exception.NonexistentAccountException;
+import com.db.awmd.challenge.exception.RequestIdReusedException;
 import com.db.awmd.challenge.exception.SameAccountTransferException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -15,8 +17,14 @@ import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExcep
 public class AccountsControllerExceptionHandler extends ResponseEntityExceptionHandler {
 
     @ExceptionHandler(value = {InsufficientFundsException.class, NonexistentAccountException.class,
-            InvalidAmountTransferException.class, SameAccountTransferException.class})
+            InvalidAmountTransferException.class, SameAccountTransferException.class,
+            BalanceOverflowException.class})
     public ResponseEntity handleAccountsException(Exception e, WebRequest request) {
         return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
     }
+
+    @ExceptionHandler(RequestIdReusedException.class)
+    public ResponseEntity<String> handleRequestIdReused(RequestIdReusedException e, WebRequest request) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+    }
 }
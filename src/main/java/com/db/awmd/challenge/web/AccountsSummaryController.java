@@ -0,0 +1,28 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.AccountsSummary;
+import com.db.awmd.challenge.service.AuditService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/v1/accounts")
+@Slf4j
+public class AccountsSummaryController {
+
+  private final AuditService auditService;
+
+  @Autowired
+  public AccountsSummaryController(AuditService auditService) {
+    this.auditService = auditService;
+  }
+
+  @GetMapping(path = "/summary")
+  public AccountsSummary getSummary() {
+    log.info("Summarizing all accounts");
+    return auditService.summarize();
+  }
+}
@@ -0,0 +1,72 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.service.AdmissionControl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies {@link AdmissionControl} to transfer requests before their body is read: an overloaded service answers
+ * 503, and a client out of tokens 429 with a {@code Retry-After}, both without a body. Clients are told apart by
+ * their {@code X-Client-Id} header, or by remote address without one. Source accounts are limited by the
+ * controllers, once the body is parsed.
+ */
+@Component
+public class AdmissionInterceptor extends HandlerInterceptorAdapter {
+
+  public static final String CLIENT_ID_HEADER = "X-Client-Id";
+
+  private static final String STARTED = AdmissionInterceptor.class.getName() + ".started";
+
+  private final AdmissionControl admissionControl;
+
+  @Autowired
+  public AdmissionInterceptor(AdmissionControl admissionControl) {
+    this.admissionControl = admissionControl;
+  }
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+    if (!admissionControl.isEnabled() || request.getDispatcherType() != DispatcherType.REQUEST) {
+      return true;
+    }
+    if (admissionControl.shouldShed()) {
+      response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+      response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+      return false;
+    }
+    String clientId = request.getHeader(CLIENT_ID_HEADER);
+    long wait = admissionControl.admitClient(clientId == null ? request.getRemoteAddr() : clientId);
+    if (wait > 0) {
+      response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+      response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds(wait));
+      return false;
+    }
+    request.setAttribute(STARTED, admissionControl.started());
+    return true;
+  }
+
+  /**
+   * Called once the response is complete, also for asynchronous requests.
+   */
+  @Override
+  public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+    Exception ex) {
+    Object started = request.getAttribute(STARTED);
+    if (started != null) {
+      request.removeAttribute(STARTED);
+      admissionControl.completed((Long) started);
+    }
+  }
+
+  static String retryAfterSeconds(long waitNanos) {
+    return Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1)));
+  }
+}
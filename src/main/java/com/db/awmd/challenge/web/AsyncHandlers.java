@@ -0,0 +1,107 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.config.AsyncWebProperties;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+/**
+ * Runs the handlers of {@link AccountsController}. With {@code accounts.web.async.enabled} they run on a bounded pool
+ * of handler threads as Servlet 3 asynchronous requests, so container threads are not held while a transfer runs or
+ * waits for the journal; the container thread still reads, parses and validates the body, so invalid requests are
+ * rejected before they take a queue slot. When every handler thread is busy and the queue is full, the handler runs
+ * on the container thread instead, so the response is the one it would have been without the pool.
+ */
+@Component
+public class AsyncHandlers implements PublicMetrics, DisposableBean {
+
+  private final ThreadPoolExecutor executor;
+  private final long timeoutMillis;
+  private final LongAdder inline = new LongAdder();
+  private final LongAdder timedOut = new LongAdder();
+  private final LongAdder skipped = new LongAdder();
+
+  @Autowired
+  public AsyncHandlers(AsyncWebProperties properties) {
+    this.timeoutMillis = properties.getTimeoutMillis();
+    if (!properties.isEnabled()) {
+      this.executor = null;
+      return;
+    }
+    int threads = Math.max(1, properties.getThreads());
+    AtomicInteger created = new AtomicInteger();
+    this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity())), runnable -> {
+        Thread thread = new Thread(runnable, "accounts-handler-" + created.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+      });
+  }
+
+  /**
+   * Exceptions of the handler are resolved by {@link AccountsControllerExceptionHandler} either way. A handler whose
+   * request timed out while it was queued is not run, so a client that retries does not have its transfer applied
+   * twice.
+   *
+   * @return the response of the handler, or a {@link DeferredResult} a handler thread completes with it
+   */
+  public Object respond(Supplier<?> handler) {
+    if (executor == null) {
+      return handler.get();
+    }
+    DeferredResult<Object> result = new DeferredResult<>(timeoutMillis);
+    result.onTimeout(timedOut::increment);
+    try {
+      executor.execute(() -> {
+        if (result.isSetOrExpired()) {
+          skipped.increment();
+          return;
+        }
+        try {
+          result.setResult(handler.get());
+        } catch (Throwable e) {
+          result.setErrorResult(e);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      inline.increment();
+      return handler.get();
+    }
+    return result;
+  }
+
+  @Override
+  public Collection<Metric<?>> metrics() {
+    if (executor == null) {
+      return Collections.emptyList();
+    }
+    List<Metric<?>> metrics = new ArrayList<>();
+    metrics.add(new Metric<>("http.async.active", executor.getActiveCount()));
+    metrics.add(new Metric<>("http.async.queued", executor.getQueue().size()));
+    metrics.add(new Metric<>("http.async.inline", inline.sum()));
+    metrics.add(new Metric<>("http.async.timeouts", timedOut.sum()));
+    metrics.add(new Metric<>("http.async.skipped", skipped.sum()));
+    return metrics;
+  }
+
+  @Override
+  public void destroy() {
+    if (executor != null) {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,462 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.config.BinaryProtocolProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.exception.BalanceOverflowException;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.AdmissionControl;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transfers over persistent TCP connections on {@code accounts.binary.port}, for clients that send too many of them
+ * to pay for JSON and HTTP on each. A client may pipeline any number of requests; each is answered, in order, with
+ * the correlation id it carried. All integers are big-endian:
+ * <ul>
+ * <li>request {@code [int length][int correlationId][short fromLength][from][short toLength][to][long unscaled]
+ * [byte scale]}, ids in UTF-8 and the amount as {@code unscaled * 10^-scale}. An account can instead be given by its
+ * {@link Account#getHandle() handle} as {@code [short HANDLE][int handle]}, which spares the server decoding and
+ * hashing its id; handles are served on {@code GET /v1/accounts/{accountId}/handle};</li>
+ * <li>response {@code [int length = 5][int correlationId][byte status]}, the status being one of the constants
+ * below.</li>
+ * </ul>
+ * A frame whose length does not match its content, or does not fit in {@code accounts.binary.buffer-bytes}, closes
+ * the connection.
+ * <p>
+ * Connections are spread over {@code accounts.binary.workers} selector threads, each of which decodes, applies and
+ * answers every complete request it read before writing the responses back in one write. Buffers belong to the
+ * connection and the ids and amount of a request are looked up in caches of the worker, so a steady stream of
+ * transfers between known accounts allocates nothing in the protocol. When a client does not read its responses the
+ * worker stops reading its requests until it does.
+ * <p>
+ * Source accounts are limited by {@link AdmissionControl} as on HTTP; requests carry no idempotency key and are not
+ * counted by the load shedding of HTTP requests.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "accounts.binary", name = "enabled", havingValue = "true")
+public class BinaryTransferServer implements PublicMetrics, DisposableBean {
+
+  public static final byte APPLIED = 0;
+  public static final byte SOURCE_NOT_FOUND = 1;
+  public static final byte SAME_ACCOUNT = 2;
+  public static final byte INVALID_AMOUNT = 3;
+  public static final byte DESTINATION_NOT_FOUND = 4;
+  public static final byte INSUFFICIENT_FUNDS = 5;
+  public static final byte TOO_MANY_REQUESTS = 6;
+  public static final byte BALANCE_OVERFLOW = 7;
+  public static final byte FAILED = 8;
+
+  /** Id length marking an account given by its handle. */
+  public static final int HANDLE = 0xffff;
+
+  /** Correlation id, both id lengths, unscaled amount and scale. */
+  static final int MIN_REQUEST_LENGTH = 4 + 2 + 2 + 8 + 1;
+  static final int RESPONSE_BYTES = 4 + 4 + 1;
+
+  private static final int ID_CACHE_SIZE = 1 << 14;
+
+  private final AccountsService accountsService;
+  private final AdmissionControl admissionControl;
+  private final int bufferBytes;
+  private final ServerSocketChannel serverChannel;
+  private final Thread acceptor;
+  private final Worker[] workers;
+  private final AtomicInteger connections = new AtomicInteger();
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder protocolErrors = new LongAdder();
+  private volatile boolean running = true;
+
+  @Autowired
+  public BinaryTransferServer(AccountsService accountsService, AdmissionControl admissionControl,
+    BinaryProtocolProperties properties) throws IOException {
+    this.accountsService = accountsService;
+    this.admissionControl = admissionControl;
+    this.bufferBytes = Math.max(MIN_REQUEST_LENGTH + 4, properties.getBufferBytes());
+    int workerCount = properties.getWorkers() > 0 ? properties.getWorkers()
+      : Runtime.getRuntime().availableProcessors();
+    this.workers = new Worker[workerCount];
+    for (int i = 0; i < workerCount; i++) {
+      workers[i] = new Worker(i);
+    }
+    this.serverChannel = ServerSocketChannel.open();
+    serverChannel.bind(new InetSocketAddress(properties.getPort()));
+    for (Worker worker : workers) {
+      worker.start();
+    }
+    this.acceptor = new Thread(this::accept, "binary-acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+    log.info("Accepting binary transfer clients on port {} with {} workers", port(), workerCount);
+  }
+
+  public int port() {
+    return serverChannel.socket().getLocalPort();
+  }
+
+  @Override
+  public Collection<Metric<?>> metrics() {
+    List<Metric<?>> metrics = new ArrayList<>();
+    metrics.add(new Metric<>("binary.connections", connections.get()));
+    metrics.add(new Metric<>("binary.requests", requests.sum()));
+    metrics.add(new Metric<>("binary.protocol.errors", protocolErrors.sum()));
+    return metrics;
+  }
+
+  @Override
+  public void destroy() throws IOException, InterruptedException {
+    running = false;
+    serverChannel.close();
+    acceptor.join(TimeUnit.SECONDS.toMillis(5));
+    for (Worker worker : workers) {
+      worker.selector.wakeup();
+      worker.join(TimeUnit.SECONDS.toMillis(5));
+    }
+  }
+
+  private void accept() {
+    int next = 0;
+    while (running) {
+      try {
+        SocketChannel channel = serverChannel.accept();
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Worker worker = workers[next];
+        next = (next + 1) % workers.length;
+        worker.accepted.add(channel);
+        worker.selector.wakeup();
+      } catch (ClosedChannelException e) {
+        return;
+      } catch (IOException e) {
+        if (running) {
+          log.warn("Accepting a binary client failed", e);
+        }
+      }
+    }
+  }
+
+  static byte status(TransferOutcome outcome) {
+    switch (outcome) {
+      case APPLIED:
+        return APPLIED;
+      case SOURCE_NOT_FOUND:
+        return SOURCE_NOT_FOUND;
+      case SAME_ACCOUNT:
+        return SAME_ACCOUNT;
+      case INVALID_AMOUNT:
+        return INVALID_AMOUNT;
+      case DESTINATION_NOT_FOUND:
+        return DESTINATION_NOT_FOUND;
+      case INSUFFICIENT_FUNDS:
+        return INSUFFICIENT_FUNDS;
+      default:
+        return FAILED;
+    }
+  }
+
+  private static final class Connection {
+
+    final SocketChannel channel;
+    final ByteBuffer in;
+    final ByteBuffer out;
+    boolean malformed;
+
+    Connection(SocketChannel channel, int bufferBytes) {
+      this.channel = channel;
+      this.in = ByteBuffer.allocate(bufferBytes);
+      this.out = ByteBuffer.allocate(bufferBytes);
+    }
+  }
+
+  private final class Worker extends Thread {
+
+    final Selector selector;
+    final Queue<SocketChannel> accepted = new ConcurrentLinkedQueue<>();
+    final String[] ids = new String[ID_CACHE_SIZE];
+    long lastUnscaled;
+    int lastScale;
+    BigDecimal lastAmount = BigDecimal.ZERO;
+
+    Worker(int index) throws IOException {
+      super("binary-worker-" + index);
+      setDaemon(true);
+      this.selector = Selector.open();
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (running) {
+          selector.select();
+          register();
+          Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+          while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            Connection connection = (Connection) key.attachment();
+            try {
+              if (key.isWritable()) {
+                handle(key, connection);
+              } else if (key.isReadable()) {
+                if (connection.channel.read(connection.in) < 0) {
+                  close(key);
+                } else {
+                  handle(key, connection);
+                }
+              }
+            } catch (IOException | RuntimeException e) {
+              log.debug("Binary client {} disconnected", connection.channel, e);
+              close(key);
+            }
+          }
+        }
+      } catch (IOException e) {
+        log.error("Binary worker {} failed", getName(), e);
+      } finally {
+        for (SelectionKey key : selector.keys()) {
+          close(key);
+        }
+        try {
+          selector.close();
+        } catch (IOException e) {
+          log.debug("Closing the selector of {} failed", getName(), e);
+        }
+      }
+    }
+
+    private void register() {
+      SocketChannel channel;
+      while ((channel = accepted.poll()) != null) {
+        try {
+          channel.register(selector, SelectionKey.OP_READ, new Connection(channel, bufferBytes));
+          connections.incrementAndGet();
+        } catch (IOException e) {
+          log.debug("Registering binary client {} failed", channel, e);
+        }
+      }
+    }
+
+    /**
+     * Answers the requests read so far and writes the responses, as long as they can be written. After a malformed
+     * frame the connection is closed once the requests before it are answered.
+     */
+    private void handle(SelectionKey key, Connection connection) throws IOException {
+      boolean outOfRoom;
+      do {
+        outOfRoom = answer(connection);
+      } while (flush(key, connection) && outOfRoom);
+      if (connection.malformed && connection.out.position() == 0) {
+        close(key);
+      }
+    }
+
+    /**
+     * @return whether requests were left unanswered for lack of room for their responses
+     */
+    private boolean answer(Connection connection) {
+      ByteBuffer in = connection.in;
+      ByteBuffer out = connection.out;
+      in.flip();
+      try {
+        while (!connection.malformed && in.remaining() >= 4) {
+          int start = in.position();
+          int length = in.getInt(start);
+          if (length < MIN_REQUEST_LENGTH || length > in.capacity() - 4) {
+            malformed(connection, "frame length " + length);
+            return false;
+          }
+          if (in.remaining() < 4 + length) {
+            return false;
+          }
+          int fromLength = fieldLength(in.getShort(start + 8));
+          int toLength = fromLength > length - MIN_REQUEST_LENGTH ? -1
+            : fieldLength(in.getShort(start + 10 + fromLength));
+          if (MIN_REQUEST_LENGTH + fromLength + toLength != length) {
+            malformed(connection, "frame length " + length + " does not match its content");
+            return false;
+          }
+          if (out.remaining() < RESPONSE_BYTES) {
+            return true;
+          }
+          in.position(start + 4);
+          int correlationId = in.getInt();
+          out.putInt(RESPONSE_BYTES - 4).putInt(correlationId).put(transfer(in));
+          requests.increment();
+        }
+        return false;
+      } finally {
+        in.compact();
+      }
+    }
+
+    /**
+     * @return the length of an id or handle following its length field
+     */
+    private int fieldLength(short length) {
+      return (length & 0xffff) == HANDLE ? 4 : length & 0xffff;
+    }
+
+    /**
+     * Transfers between ids, or between handles when either account is given by its handle.
+     */
+    private byte transfer(ByteBuffer in) {
+      String from = null;
+      String to = null;
+      int fromHandle = Account.NO_HANDLE;
+      int toHandle = Account.NO_HANDLE;
+      if ((in.getShort(in.position()) & 0xffff) == HANDLE) {
+        fromHandle = in.getInt(in.position() + 2);
+        in.position(in.position() + 6);
+      } else {
+        from = readId(in);
+      }
+      if ((in.getShort(in.position()) & 0xffff) == HANDLE) {
+        toHandle = in.getInt(in.position() + 2);
+        in.position(in.position() + 6);
+      } else {
+        to = readId(in);
+      }
+      BigDecimal amount = amount(in.getLong(), in.get());
+      boolean byHandle = from == null || to == null;
+      if (byHandle) {
+        fromHandle = from == null ? fromHandle : handleOf(from);
+        toHandle = to == null ? toHandle : handleOf(to);
+      }
+
+      if (admissionControl.isEnabled()) {
+        Account source = from == null ? accountsService.getAccount(fromHandle) : null;
+        String sourceId = source == null ? from : source.getAccountId();
+        if (sourceId != null && admissionControl.admitAccount(sourceId) > 0) {
+          return TOO_MANY_REQUESTS;
+        }
+      }
+      try {
+        return status(byHandle ? accountsService.tryTransfer(fromHandle, toHandle, amount)
+          : accountsService.tryTransfer(from, to, amount));
+      } catch (BalanceOverflowException e) {
+        return BALANCE_OVERFLOW;
+      } catch (RuntimeException e) {
+        log.error("Binary transfer from {} to {} failed", byHandle ? fromHandle : from, byHandle ? toHandle : to, e);
+        return FAILED;
+      }
+    }
+
+    private int handleOf(String accountId) {
+      Account account = accountsService.getAccount(accountId);
+      return account == null ? Account.NO_HANDLE : account.getHandle();
+    }
+
+    /**
+     * Reads an id, reusing the cached string when it has the same characters: ASCII ids hash like
+     * {@link String#hashCode()}, whose value the returned string then already holds for the repository lookup.
+     */
+    private String readId(ByteBuffer in) {
+      int length = in.getShort() & 0xffff;
+      int start = in.position();
+      byte[] bytes = in.array();
+      int offset = in.arrayOffset() + start;
+      int hash = 0;
+      for (int i = 0; i < length; i++) {
+        hash = 31 * hash + bytes[offset + i];
+      }
+      int slot = (hash ^ (hash >>> 16)) & (ID_CACHE_SIZE - 1);
+      String cached = ids[slot];
+      in.position(start + length);
+      if (cached != null && matches(cached, bytes, offset, length)) {
+        return cached;
+      }
+      String id = new String(bytes, offset, length, StandardCharsets.UTF_8);
+      ids[slot] = id;
+      return id;
+    }
+
+    private boolean matches(String id, byte[] bytes, int offset, int length) {
+      if (id.length() != length) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        if (bytes[offset + i] < 0 || id.charAt(i) != bytes[offset + i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Clients mostly repeat the same amount, so the last one is kept.
+     */
+    private BigDecimal amount(long unscaled, int scale) {
+      if (unscaled != lastUnscaled || scale != lastScale) {
+        lastAmount = BigDecimal.valueOf(unscaled, scale);
+        lastUnscaled = unscaled;
+        lastScale = scale;
+      }
+      return lastAmount;
+    }
+
+    /**
+     * Writes what it can. While responses are left unwritten the connection waits for the client to read them
+     * instead of reading more requests.
+     *
+     * @return whether every response was written
+     */
+    private boolean flush(SelectionKey key, Connection connection) throws IOException {
+      ByteBuffer out = connection.out;
+      out.flip();
+      connection.channel.write(out);
+      boolean written = !out.hasRemaining();
+      out.compact();
+      int interest = written ? SelectionKey.OP_READ : SelectionKey.OP_WRITE;
+      if (key.interestOps() != interest) {
+        key.interestOps(interest);
+      }
+      return written;
+    }
+
+    private void malformed(Connection connection, String problem) {
+      log.debug("Closing binary client {}: {}", connection.channel, problem);
+      connection.malformed = true;
+      protocolErrors.increment();
+    }
+
+    private void close(SelectionKey key) {
+      key.cancel();
+      if (!key.channel().isOpen()) {
+        return;
+      }
+      try {
+        key.channel().close();
+        connections.decrementAndGet();
+      } catch (IOException e) {
+        log.debug("Closing a binary client failed", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.BulkImportResult;
+import com.db.awmd.challenge.service.BinaryAccountFormat;
+import com.db.awmd.challenge.service.BulkAccountsService;
+import com.db.awmd.challenge.service.NdjsonAccountFormat;
+import java.io.IOException;
+import javax.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Bulk import and export of accounts as NDJSON ({@value NdjsonAccountFormat#MEDIA_TYPE}) or compact binary
+ * ({@value BinaryAccountFormat#MEDIA_TYPE}) streams, selected by the content type of an import and the accepted type
+ * of an export.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/v1/accounts/bulk")
+public class BulkAccountsController {
+
+  private final BulkAccountsService bulkAccountsService;
+  private final NdjsonAccountFormat ndjson;
+  private final BinaryAccountFormat binary;
+
+  @Autowired
+  public BulkAccountsController(BulkAccountsService bulkAccountsService, NdjsonAccountFormat ndjson,
+    BinaryAccountFormat binary) {
+    this.bulkAccountsService = bulkAccountsService;
+    this.ndjson = ndjson;
+    this.binary = binary;
+  }
+
+  @PostMapping(consumes = NdjsonAccountFormat.MEDIA_TYPE)
+  public BulkImportResult importNdjson(HttpServletRequest request) throws IOException {
+    log.info("Importing NDJSON accounts");
+    return bulkAccountsService.importAccounts(ndjson, request.getInputStream());
+  }
+
+  @PostMapping(consumes = BinaryAccountFormat.MEDIA_TYPE)
+  public BulkImportResult importBinary(HttpServletRequest request) throws IOException {
+    log.info("Importing binary accounts");
+    return bulkAccountsService.importAccounts(binary, request.getInputStream());
+  }
+
+  @GetMapping(produces = NdjsonAccountFormat.MEDIA_TYPE)
+  public StreamingResponseBody exportNdjson() {
+    return out -> bulkAccountsService.exportAccounts(ndjson, out);
+  }
+
+  @GetMapping(produces = BinaryAccountFormat.MEDIA_TYPE)
+  public StreamingResponseBody exportBinary() {
+    return out -> bulkAccountsService.exportAccounts(binary, out);
+  }
+}
@@ -0,0 +1,56 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.config.ReplicationProperties;
+import com.db.awmd.challenge.service.ReplicationFollower;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Makes a follower read-only: changes answer 405, since they only succeed on the leader, and reads answer 503 while
+ * the follower is more than {@code accounts.replication.max-staleness-millis} behind. Served reads carry the
+ * staleness in the {@code X-Replica-Staleness-Millis} header.
+ */
+@Component
+@Profile("follower")
+public class FollowerInterceptor extends HandlerInterceptorAdapter {
+
+  public static final String STALENESS_HEADER = "X-Replica-Staleness-Millis";
+
+  private final ReplicationFollower replicationFollower;
+  private final long maxStalenessMillis;
+
+  @Autowired
+  public FollowerInterceptor(ReplicationFollower replicationFollower, ReplicationProperties properties) {
+    this.replicationFollower = replicationFollower;
+    this.maxStalenessMillis = properties.getMaxStalenessMillis();
+  }
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+    if (request.getDispatcherType() != DispatcherType.REQUEST) {
+      return true;
+    }
+    if (!HttpMethod.GET.matches(request.getMethod()) && !HttpMethod.HEAD.matches(request.getMethod())) {
+      response.setStatus(HttpStatus.METHOD_NOT_ALLOWED.value());
+      response.setHeader(HttpHeaders.ALLOW, "GET, HEAD");
+      return false;
+    }
+    long staleness = replicationFollower.stalenessMillis();
+    if (staleness > maxStalenessMillis) {
+      response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+      response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+      return false;
+    }
+    response.setHeader(STALENESS_HEADER, Long.toString(staleness));
+    return true;
+  }
+}
@@ -0,0 +1,114 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Hold;
+import com.db.awmd.challenge.domain.HoldCapture;
+import com.db.awmd.challenge.domain.HoldsSummary;
+import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.exception.InvalidAmountTransferException;
+import com.db.awmd.challenge.exception.NonexistentAccountException;
+import com.db.awmd.challenge.exception.SameAccountTransferException;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.AdmissionControl;
+import com.db.awmd.challenge.service.HoldService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Funds held on an account for a payment to another account: created with the payee and the amount, then captured,
+ * in full or in part, or released. Holds not captured or released in time are released when they expire.
+ */
+@RestController
+@RequestMapping("/v1/accounts/{accountId}/holds")
+@Slf4j
+public class HoldsController {
+
+  private final AccountsService accountsService;
+  private final HoldService holdService;
+  private final AdmissionControl admissionControl;
+
+  @Autowired
+  public HoldsController(AccountsService accountsService, HoldService holdService,
+    AdmissionControl admissionControl) {
+    this.accountsService = accountsService;
+    this.holdService = holdService;
+    this.admissionControl = admissionControl;
+  }
+
+  @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> createHold(@PathVariable String accountId, @RequestBody Hold hold)
+    throws NonexistentAccountException, SameAccountTransferException, InvalidAmountTransferException,
+    InsufficientFundsException {
+    log.info("Holding {} on {} for {}", hold.getAmount(), accountId, hold.getAccountToId());
+    long wait = admissionControl.admitAccount(accountId);
+    if (wait > 0) {
+      return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+        .header(HttpHeaders.RETRY_AFTER, AdmissionInterceptor.retryAfterSeconds(wait)).build();
+    }
+    if (hold.getTtlMillis() != null && hold.getTtlMillis() <= 0) {
+      return new ResponseEntity<>("Hold time to live must be bigger than 0", HttpStatus.BAD_REQUEST);
+    }
+    return new ResponseEntity<>(holdService.hold(accountId, hold.getAccountToId(), hold.getAmount(),
+      hold.getTtlMillis()), HttpStatus.CREATED);
+  }
+
+  @GetMapping
+  public HoldsSummary getHolds(@PathVariable String accountId) throws NonexistentAccountException {
+    Account account = accountsService.getAccount(accountId);
+    if (account == null) {
+      throw new NonexistentAccountException(accountId);
+    }
+    return holdService.summarize(account);
+  }
+
+  @GetMapping(path = "/{holdId}")
+  public ResponseEntity<Hold> getHold(@PathVariable String accountId, @PathVariable long holdId) {
+    Hold hold = holdService.get(holdId);
+    return isOf(hold, accountId) ? ResponseEntity.ok(hold) : new ResponseEntity<>(HttpStatus.NOT_FOUND);
+  }
+
+  /**
+   * 409 when the hold was already captured, released or expired.
+   */
+  @PostMapping(path = "/{holdId}/capture")
+  public ResponseEntity<Hold> captureHold(@PathVariable String accountId, @PathVariable long holdId,
+    @RequestBody(required = false) HoldCapture capture) throws InvalidAmountTransferException {
+    if (!isOf(holdService.get(holdId), accountId)) {
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+    Hold hold = holdService.capture(holdId, capture == null ? null : capture.getAmount());
+    return finished(hold, Hold.Status.CAPTURED);
+  }
+
+  /**
+   * 409 when the hold was already captured, released or expired.
+   */
+  @PostMapping(path = "/{holdId}/release")
+  public ResponseEntity<Hold> releaseHold(@PathVariable String accountId, @PathVariable long holdId) {
+    if (!isOf(holdService.get(holdId), accountId)) {
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+    return finished(holdService.release(holdId), Hold.Status.RELEASED);
+  }
+
+  private static boolean isOf(Hold hold, String accountId) {
+    return hold != null && hold.getAccountId().equals(accountId);
+  }
+
+  private static ResponseEntity<Hold> finished(Hold hold, Hold.Status expected) {
+    if (hold == null) {
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+    return new ResponseEntity<>(hold, hold.getStatus() == expected ? HttpStatus.OK : HttpStatus.CONFLICT);
+  }
+}
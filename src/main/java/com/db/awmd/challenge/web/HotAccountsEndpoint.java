@@ -0,0 +1,31 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.metrics.HotAccounts;
+import com.db.awmd.challenge.service.TransferMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Actuator endpoint {@code /hotaccounts} listing the accounts touched by the most transfers, with estimated counts.
+ */
+@Component
+public class HotAccountsEndpoint extends AbstractEndpoint<List<HotAccounts.HotAccount>> {
+
+  private static final int LIMIT = 20;
+
+  private final TransferMetrics transferMetrics;
+
+  @Autowired
+  public HotAccountsEndpoint(TransferMetrics transferMetrics) {
+    super("hotaccounts", false);
+    this.transferMetrics = transferMetrics;
+  }
+
+  @Override
+  public List<HotAccounts.HotAccount> invoke() {
+    return transferMetrics.hotAccounts(LIMIT);
+  }
+}
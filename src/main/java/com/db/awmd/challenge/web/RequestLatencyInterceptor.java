@@ -0,0 +1,74 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.metrics.LatencyHistogram;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records the latency of every request in a histogram per method and mapped path, exported as
+ * {@code http.<method>.<path>.nanos.*}, e.g. {@code http.post.v1.accounts.transfer.nanos.p99}. Asynchronous requests
+ * are timed from their first dispatch to the completion of the dispatch that writes the response.
+ */
+@Component
+public class RequestLatencyInterceptor extends HandlerInterceptorAdapter implements PublicMetrics {
+
+  private static final String STARTED = RequestLatencyInterceptor.class.getName() + ".started";
+
+  private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+  private final Map<String, Map<Object, LatencyHistogram>> histogramsByMethod = new ConcurrentHashMap<>();
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+    if (request.getAttribute(STARTED) == null) {
+      request.setAttribute(STARTED, System.nanoTime());
+    }
+    return true;
+  }
+
+  @Override
+  public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+    Exception ex) {
+    Object started = request.getAttribute(STARTED);
+    Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+    if (started != null && pattern != null) {
+      histogramOf(request.getMethod(), pattern).record(System.nanoTime() - (Long) started);
+    }
+  }
+
+  /**
+   * The metric name is only built the first time a method and pattern are seen; after that the histogram is found
+   * with two map reads.
+   */
+  private LatencyHistogram histogramOf(String method, Object pattern) {
+    Map<Object, LatencyHistogram> byPattern = histogramsByMethod.get(method);
+    if (byPattern == null) {
+      byPattern = histogramsByMethod.computeIfAbsent(method, key -> new ConcurrentHashMap<>());
+    }
+    LatencyHistogram histogram = byPattern.get(pattern);
+    if (histogram == null) {
+      String name = "http." + method.toLowerCase() + pattern.toString().replaceAll("[{}]", "").replace('/', '.')
+        + ".nanos";
+      histogram = byPattern.computeIfAbsent(pattern,
+        key -> histograms.computeIfAbsent(name, metric -> new LatencyHistogram()));
+    }
+    return histogram;
+  }
+
+  @Override
+  public Collection<Metric<?>> metrics() {
+    List<Metric<?>> metrics = new ArrayList<>();
+    histograms.forEach((name, histogram) -> histogram.snapshot().addTo(metrics, name));
+    return metrics;
+  }
+}
@@ -0,0 +1,40 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.LedgerPage;
+import com.db.awmd.challenge.exception.NonexistentAccountException;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.TransactionLedger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Recent transfers of an account, newest first. Pass the {@code nextCursor} of a page as {@code cursor} to get the
+ * page after it.
+ */
+@RestController
+@RequestMapping("/v1/accounts")
+public class TransactionsController {
+
+  private final AccountsService accountsService;
+  private final TransactionLedger transactionLedger;
+
+  @Autowired
+  public TransactionsController(AccountsService accountsService, TransactionLedger transactionLedger) {
+    this.accountsService = accountsService;
+    this.transactionLedger = transactionLedger;
+  }
+
+  @GetMapping(path = "/{accountId}/transactions")
+  public LedgerPage getTransactions(@PathVariable String accountId,
+    @RequestParam(required = false) Long cursor,
+    @RequestParam(defaultValue = "50") int limit) throws NonexistentAccountException {
+    if (accountsService.getAccount(accountId) == null) {
+      throw new NonexistentAccountException(accountId);
+    }
+    return transactionLedger.page(accountId, cursor, limit);
+  }
+}
@@ -4,11 +4,16 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
+import com.db.awmd.challenge.config.AccountViewProperties;
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.service.AccountViews;
 import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.TransactionLedger;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import java.math.BigDecimal;
 import org.junit.Before;
 import org.junit.Test;
@@ -31,6 +36,12 @@ public class AccountsControllerTest {
   @Autowired
   private AccountsService accountsService;
 
+  @Autowired
+  private TransactionLedger transactionLedger;
+
+  @Autowired
+  private AccountViews accountViews;
+
   @Autowired
   private WebApplicationContext webApplicationContext;
 
@@ -40,6 +51,7 @@ public class AccountsControllerTest {
 
     // Reset the existing accounts before each test.
     accountsService.getAccountsRepository().clearAccounts();
+    transactionLedger.clear();
   }
 
   @Test
@@ -101,4 +113,190 @@ public class AccountsControllerTest {
       .andExpect(
         content().string("{\"accountId\":\"" + uniqueAccountId + "\",\"balance\":123.45}"));
   }
+
+  @Test
+  public void getHandle() throws Exception {
+    Account account = new Account("Id-Handle", BigDecimal.ONE);
+    this.accountsService.createAccount(account);
+    this.mockMvc.perform(get("/v1/accounts/Id-Handle/handle"))
+      .andExpect(status().isOk())
+      .andExpect(content().string(Integer.toString(account.getHandle())));
+    this.mockMvc.perform(get("/v1/accounts/Id-Missing/handle")).andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void transferRetriedWithTheSameRequestIdIsAppliedOnce() throws Exception {
+    accountsService.createAccount(new Account("Id-1", new BigDecimal(100)));
+    accountsService.createAccount(new Account("Id-2", BigDecimal.ZERO));
+    String transfer = "{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":60,\"requestId\":\"Req-1\"}";
+
+    this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON).content(transfer))
+      .andExpect(status().isOk());
+    this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON).content(transfer))
+      .andExpect(status().isOk());
+
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("40");
+    assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("60");
+  }
+
+  @Test
+  public void requestIdReusedForAnotherTransferIsRefused() throws Exception {
+    accountsService.createAccount(new Account("Id-1", new BigDecimal(100)));
+    accountsService.createAccount(new Account("Id-2", BigDecimal.ZERO));
+    String transfer = "{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":%d,"
+      + "\"requestId\":\"Req-reused\"}";
+
+    this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+      .header("X-Client-Id", "client-a").content(String.format(transfer, 10))).andExpect(status().isOk());
+    this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+      .header("X-Client-Id", "client-a").content(String.format(transfer, 20)))
+      .andExpect(status().isUnprocessableEntity());
+    this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+      .header("X-Client-Id", "client-b").content(String.format(transfer, 20))).andExpect(status().isOk());
+
+    assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("30");
+  }
+
+  @Test
+  public void transferBatch() throws Exception {
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+    this.accountsService.createAccount(new Account("Id-2", new BigDecimal("0")));
+
+    this.mockMvc.perform(post("/v1/accounts/transfers/batch").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"mode\":\"BEST_EFFORT\",\"transfers\":["
+        + "{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":60},"
+        + "{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":60}]}"))
+      .andExpect(status().isOk())
+      .andExpect(content().json("{\"applied\":1,\"rejected\":1,\"items\":["
+        + "{\"index\":0,\"status\":\"APPLIED\"},{\"index\":1,\"status\":\"REJECTED\"}]}"));
+
+    this.mockMvc.perform(post("/v1/accounts/transfers/batch").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"mode\":\"ATOMIC\",\"transfers\":["
+        + "{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":30},"
+        + "{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":30}]}"))
+      .andExpect(status().isBadRequest());
+
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("40");
+  }
+
+  @Test
+  public void transferMultiLeg() throws Exception {
+    this.accountsService.createAccount(new Account("Payer", new BigDecimal("100")));
+    for (int i = 1; i <= 3; i++) {
+      this.accountsService.createAccount(new Account("Payee-" + i, new BigDecimal("0")));
+    }
+
+    this.mockMvc.perform(post("/v1/accounts/transfers/multi-leg").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountFromId\":\"Payer\",\"legs\":["
+        + "{\"accountToId\":\"Payee-1\",\"amount\":40},"
+        + "{\"accountToId\":\"Payee-2\",\"amount\":40},"
+        + "{\"accountToId\":\"Payee-3\",\"amount\":40}]}"))
+      .andExpect(status().isBadRequest())
+      .andExpect(content().json("{\"applied\":0,\"rejected\":1,\"items\":[{\"index\":0,\"status\":\"ABORTED\"},"
+        + "{\"index\":1,\"status\":\"ABORTED\"},{\"index\":2,\"status\":\"REJECTED\"}]}"));
+    assertThat(accountsService.getAccount("Payer").getBalance()).isEqualByComparingTo("100");
+
+    this.mockMvc.perform(post("/v1/accounts/transfers/multi-leg").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountFromId\":\"Payer\",\"legs\":["
+        + "{\"accountToId\":\"Payee-1\",\"amount\":40},"
+        + "{\"accountToId\":\"Payee-4\",\"amount\":10}]}"))
+      .andExpect(status().isBadRequest())
+      .andExpect(content().json("{\"applied\":0,\"rejected\":1,\"items\":[{\"index\":0,\"status\":\"ABORTED\"},"
+        + "{\"index\":1,\"status\":\"REJECTED\",\"message\":\"Account: Payee-4 does not exist\"}]}"));
+
+    this.mockMvc.perform(post("/v1/accounts/transfers/multi-leg").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountFromId\":\"Payer\",\"legs\":["
+        + "{\"accountToId\":\"Payee-1\",\"amount\":40},"
+        + "{\"accountToId\":\"Payee-2\",\"amount\":35.5},"
+        + "{\"accountToId\":\"Payee-1\",\"amount\":5}]}"))
+      .andExpect(status().isOk())
+      .andExpect(content().json("{\"applied\":3,\"rejected\":0}"));
+
+    assertThat(accountsService.getAccount("Payer").getBalance()).isEqualByComparingTo("19.5");
+    assertThat(accountsService.getAccount("Payee-1").getBalance()).isEqualByComparingTo("45");
+    assertThat(accountsService.getAccount("Payee-2").getBalance()).isEqualByComparingTo("35.5");
+  }
+
+  @Test
+  public void transferBatchEmpty() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts/transfers/batch").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"mode\":\"ATOMIC\",\"transfers\":[]}"))
+      .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void getTransactionsPagesNewestFirst() throws Exception {
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+    this.accountsService.createAccount(new Account("Id-2", new BigDecimal("0")));
+    for (int amount = 1; amount <= 3; amount++) {
+      this.accountsService.transfer("Id-1", "Id-2", new BigDecimal(amount));
+    }
+
+    this.mockMvc.perform(get("/v1/accounts/Id-1/transactions?limit=2"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.entries.length()").value(2))
+      .andExpect(jsonPath("$.entries[0].sequence").value(3))
+      .andExpect(jsonPath("$.entries[0].counterpartyId").value("Id-2"))
+      .andExpect(jsonPath("$.entries[0].amount").value(-3))
+      .andExpect(jsonPath("$.entries[0].balanceAfter").value(94))
+      .andExpect(jsonPath("$.nextCursor").value(2));
+
+    this.mockMvc.perform(get("/v1/accounts/Id-1/transactions?limit=2&cursor=2"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.entries.length()").value(1))
+      .andExpect(jsonPath("$.entries[0].amount").value(-1))
+      .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+    this.mockMvc.perform(get("/v1/accounts/Id-2/transactions"))
+      .andExpect(jsonPath("$.entries[0].amount").value(3))
+      .andExpect(jsonPath("$.entries[0].balanceAfter").value(6));
+
+    this.mockMvc.perform(get("/v1/accounts/Id-3/transactions")).andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void getAccountReusesItsViewUntilTheBalanceChanges() throws Exception {
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+    this.accountsService.createAccount(new Account("Id-2", new BigDecimal("0")));
+
+    Account account = accountsService.getAccount("Id-1");
+    byte[] first = accountViews.view(account).getJson();
+    assertThat(accountViews.view(account).getJson()).isSameAs(first);
+
+    this.accountsService.transfer("Id-1", "Id-2", new BigDecimal("30.5"));
+
+    assertThat(accountViews.view(account).getJson()).isNotSameAs(first);
+    this.mockMvc.perform(get("/v1/accounts/Id-1"))
+      .andExpect(status().isOk())
+      .andExpect(content().string("{\"accountId\":\"Id-1\",\"balance\":69.5}"));
+  }
+
+  @Test
+  public void accountViewsKeepAtMostTheConfiguredNumber() {
+    AccountViewProperties properties = new AccountViewProperties();
+    properties.setMaxEntries(2);
+    AccountViews views = new AccountViews(new ObjectMapper(), properties);
+    for (int i = 1; i <= 5; i++) {
+      Account account = new Account("Id-" + i, BigDecimal.TEN);
+      views.view(account);
+      assertThat(views.view(account).getJson()).isSameAs(views.view(account).getJson());
+    }
+
+    assertThat(views.metrics().stream().filter(m -> m.getName().equals("account.views.size"))
+      .findFirst().get().getValue().intValue()).isEqualTo(2);
+    assertThat(views.metrics().stream().filter(m -> m.getName().equals("account.views.evictions"))
+      .findFirst().get().getValue().longValue()).isEqualTo(3);
+  }
+
+  @Test
+  public void getSummary() throws Exception {
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("100.25")));
+    this.accountsService.createAccount(new Account("Id-2", new BigDecimal("50")));
+    this.accountsService.transfer("Id-1", "Id-2", new BigDecimal("30"));
+
+    this.mockMvc.perform(get("/v1/accounts/summary"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.accounts").value(2))
+      .andExpect(jsonPath("$.totalBalance").value(150.25));
+  }
 }
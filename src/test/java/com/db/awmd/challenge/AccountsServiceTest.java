@@ -6,12 +6,20 @@ import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.BatchTransfer;
+import com.db.awmd.challenge.domain.BatchTransferResult;
+import com.db.awmd.challenge.domain.MultiLegTransfer;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
 import com.db.awmd.challenge.exception.*;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
 import com.db.awmd.challenge.service.AccountsService;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.db.awmd.challenge.service.NotificationService;
 import org.junit.Test;
@@ -242,4 +250,160 @@ public class AccountsServiceTest {
     assertThat(account.getBalance()).isEqualTo(BigDecimal.valueOf(1000));
     assertThat(anotherAccount.getBalance()).isEqualTo(BigDecimal.valueOf(1000));
   }
+
+  @Test
+  public void transferBatch_atomicAppliesAllTransfers() {
+    Account account = createAccountWithBalance(1000);
+    Account anotherAccount = createAccountWithBalance(0);
+    Account thirdAccount = createAccountWithBalance(0);
+
+    BatchTransferResult result = accountsService.transfer(new BatchTransfer(BatchTransfer.Mode.ATOMIC, Arrays.asList(
+      new Transfer(account.getAccountId(), anotherAccount.getAccountId(), BigDecimal.valueOf(600)),
+      new Transfer(anotherAccount.getAccountId(), thirdAccount.getAccountId(), BigDecimal.valueOf(500)))));
+
+    assertThat(result.getApplied()).isEqualTo(2);
+    assertThat(account.getBalance()).isEqualByComparingTo("400");
+    assertThat(anotherAccount.getBalance()).isEqualByComparingTo("100");
+    assertThat(thirdAccount.getBalance()).isEqualByComparingTo("500");
+  }
+
+  @Test
+  public void transferBatch_atomicAppliesNothingWhenOneTransferFails() {
+    Account account = createAccountWithBalance(1000);
+    Account anotherAccount = createAccountWithBalance(0);
+
+    BatchTransferResult result = accountsService.transfer(new BatchTransfer(BatchTransfer.Mode.ATOMIC, Arrays.asList(
+      new Transfer(account.getAccountId(), anotherAccount.getAccountId(), BigDecimal.valueOf(600)),
+      new Transfer(account.getAccountId(), anotherAccount.getAccountId(), BigDecimal.valueOf(600)))));
+
+    assertThat(result.getApplied()).isZero();
+    assertThat(result.getItems().get(0).getStatus()).isEqualTo(BatchTransferResult.Status.ABORTED);
+    assertThat(result.getItems().get(1).getStatus()).isEqualTo(BatchTransferResult.Status.REJECTED);
+    assertThat(result.getItems().get(1).getMessage()).isEqualTo("Account: " + account.getAccountId() +
+      " does not have sufficient funds to perform a transfer of " + BigDecimal.valueOf(600));
+    assertThat(account.getBalance()).isEqualByComparingTo("1000");
+    assertThat(anotherAccount.getBalance()).isEqualByComparingTo("0");
+  }
+
+  @Test
+  public void transferBatch_bestEffortReportsEveryTransfer() {
+    Account account = createAccountWithBalance(1000);
+    Account anotherAccount = createAccountWithBalance(0);
+    String unknownId = UUID.randomUUID().toString();
+
+    BatchTransferResult result = accountsService.transfer(new BatchTransfer(BatchTransfer.Mode.BEST_EFFORT, Arrays.asList(
+      new Transfer(account.getAccountId(), anotherAccount.getAccountId(), BigDecimal.valueOf(600)),
+      new Transfer(account.getAccountId(), anotherAccount.getAccountId(), BigDecimal.valueOf(600)),
+      new Transfer(account.getAccountId(), unknownId, BigDecimal.ONE),
+      new Transfer(anotherAccount.getAccountId(), account.getAccountId(), BigDecimal.valueOf(100)))));
+
+    assertThat(result.getApplied()).isEqualTo(2);
+    assertThat(result.getRejected()).isEqualTo(2);
+    assertThat(result.getItems()).extracting(BatchTransferResult.Item::getStatus).containsExactly(
+      BatchTransferResult.Status.APPLIED, BatchTransferResult.Status.REJECTED,
+      BatchTransferResult.Status.REJECTED, BatchTransferResult.Status.APPLIED);
+    assertThat(result.getItems().get(2).getMessage()).isEqualTo("Account: " + unknownId + " does not exist");
+    assertThat(account.getBalance()).isEqualByComparingTo("500");
+    assertThat(anotherAccount.getBalance()).isEqualByComparingTo("500");
+  }
+
+  @Test
+  public void tryTransfer_reportsRejectionsWithoutThrowing() {
+    Account account = createAccountWithBalance(1000);
+    Account anotherAccount = createAccountWithBalance(0);
+    String unknownId = UUID.randomUUID().toString();
+    String id = account.getAccountId();
+    String anotherId = anotherAccount.getAccountId();
+
+    assertThat(accountsService.tryTransfer(unknownId, anotherId, BigDecimal.ONE))
+      .isEqualTo(TransferOutcome.SOURCE_NOT_FOUND);
+    assertThat(accountsService.tryTransfer(id, id, BigDecimal.ONE)).isEqualTo(TransferOutcome.SAME_ACCOUNT);
+    assertThat(accountsService.tryTransfer(id, anotherId, BigDecimal.ZERO)).isEqualTo(TransferOutcome.INVALID_AMOUNT);
+    assertThat(accountsService.tryTransfer(id, unknownId, BigDecimal.ONE))
+      .isEqualTo(TransferOutcome.DESTINATION_NOT_FOUND);
+    assertThat(accountsService.tryTransfer(anotherId, id, BigDecimal.ONE))
+      .isEqualTo(TransferOutcome.INSUFFICIENT_FUNDS);
+    assertThat(TransferOutcome.INSUFFICIENT_FUNDS.message(anotherId, id, BigDecimal.ONE)).isEqualTo("Account: " +
+      anotherId + " does not have sufficient funds to perform a transfer of " + BigDecimal.ONE);
+    assertThat(accountsService.tryTransfer(id, anotherId, BigDecimal.TEN)).isEqualTo(TransferOutcome.APPLIED);
+
+    assertThat(account.getBalance()).isEqualByComparingTo("990");
+    assertThat(anotherAccount.getBalance()).isEqualByComparingTo("10");
+  }
+
+  @Test
+  public void multiLegTransfer_notifiesEachAccountOnceForItsTotal() {
+    Account payer = createAccountWithBalance(1000);
+    Account payee = createAccountWithBalance(0);
+    Account anotherPayee = createAccountWithBalance(0);
+
+    BatchTransferResult result = accountsService.transfer(new MultiLegTransfer(payer.getAccountId(), Arrays.asList(
+      new MultiLegTransfer.Leg(payee.getAccountId(), new BigDecimal(100)),
+      new MultiLegTransfer.Leg(anotherPayee.getAccountId(), new BigDecimal(200)),
+      new MultiLegTransfer.Leg(payee.getAccountId(), new BigDecimal(50)))));
+
+    assertThat(result.getApplied()).isEqualTo(3);
+    assertThat(payer.getBalance()).isEqualByComparingTo("650");
+    verify(notificationService, times(1)).notifyAboutTransfer(payer, "Debit of 350 to 2 accounts");
+    verify(notificationService, times(1))
+      .notifyAboutTransfer(payee, "Deposit of 150 from account: " + payer.getAccountId());
+    verify(notificationService, times(1))
+      .notifyAboutTransfer(anotherPayee, "Deposit of 200 from account: " + payer.getAccountId());
+  }
+
+  @Test
+  public void transferByHandle() {
+    Account account = createAccountWithBalance(1000);
+    Account anotherAccount = createAccountWithBalance(0);
+
+    assertThat(anotherAccount.getHandle()).isEqualTo(account.getHandle() + 1);
+    assertThat(accountsService.getAccount(account.getHandle())).isSameAs(account);
+    assertThat(accountsService.tryTransfer(account.getHandle(), anotherAccount.getHandle(), BigDecimal.valueOf(600)))
+      .isEqualTo(TransferOutcome.APPLIED);
+    assertThat(accountsService.tryTransfer(account.getHandle(), account.getHandle(), BigDecimal.ONE))
+      .isEqualTo(TransferOutcome.SAME_ACCOUNT);
+    assertThat(accountsService.tryTransfer(Integer.MAX_VALUE, account.getHandle(), BigDecimal.ONE))
+      .isEqualTo(TransferOutcome.SOURCE_NOT_FOUND);
+    assertThat(accountsService.tryTransfer(account.getHandle(), Account.NO_HANDLE, BigDecimal.ONE))
+      .isEqualTo(TransferOutcome.DESTINATION_NOT_FOUND);
+    assertThat(account.getBalance()).isEqualByComparingTo("400");
+    assertThat(anotherAccount.getBalance()).isEqualByComparingTo("600");
+  }
+
+  @Test
+  public void concurrentCreationsKeepHandlesDense() throws Exception {
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+    int accounts = 10_000;
+    AtomicInteger duplicates = new AtomicInteger();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      threads.add(new Thread(() -> {
+        for (int i = 0; i < accounts; i++) {
+          try {
+            repository.createAccount(new Account("Dense-" + i, BigDecimal.ONE));
+          } catch (DuplicateAccountIdException e) {
+            duplicates.incrementAndGet();
+          }
+        }
+      }));
+    }
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(duplicates.get()).isEqualTo(3 * accounts);
+    assertThat(repository.allAccounts()).hasSize(accounts);
+    for (int handle = 0; handle < accounts; handle++) {
+      assertThat(repository.getAccount(handle).getHandle()).isEqualTo(handle);
+    }
+    assertThat(repository.getAccount(accounts)).isNull();
+  }
+
+  private Account createAccountWithBalance(int balance) {
+    Account account = new Account(UUID.randomUUID().toString());
+    account.setBalance(new BigDecimal(balance));
+    this.accountsService.createAccount(account);
+    return account;
+  }
 }
@@ -0,0 +1,158 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import com.db.awmd.challenge.config.AdmissionProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.AdmissionControl;
+import com.db.awmd.challenge.service.TokenBuckets;
+import com.db.awmd.challenge.web.AdmissionInterceptor;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.web.context.WebApplicationContext;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"accounts.admission.enabled=true", "accounts.admission.client-rate=1",
+  "accounts.admission.client-burst=3", "accounts.admission.account-rate=1", "accounts.admission.account-burst=1"})
+@WebAppConfiguration
+public class AdmissionControlTest {
+
+  private MockMvc mockMvc;
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private WebApplicationContext webApplicationContext;
+
+  /**
+   * Buckets live as long as the context, so every test uses its own clients and source accounts.
+   */
+  @Before
+  public void prepareMockMvc() {
+    this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+    accountsService.getAccountsRepository().clearAccounts();
+    for (int i = 0; i <= 9; i++) {
+      accountsService.createAccount(new Account("Id-" + i, new BigDecimal(100)));
+    }
+  }
+
+  @Test
+  public void clientOutOfTokensIsRejectedBeforeTheTransfer() throws Exception {
+    for (int i = 1; i <= 3; i++) {
+      transfer("Runaway", "Id-" + i).andExpect(status().isOk());
+    }
+    transfer("Runaway", "Id-4").andExpect(status().isTooManyRequests()).andExpect(header().string("Retry-After", "1"));
+    transfer("Other", "Id-5").andExpect(status().isOk());
+
+    assertThat(accountsService.getAccount("Id-4").getBalance()).isEqualByComparingTo("100");
+    assertThat(accountsService.getAccount("Id-0").getBalance()).isEqualByComparingTo("104");
+  }
+
+  @Test
+  public void accountOutOfTokensIsRejected() throws Exception {
+    transfer("Patient", "Id-6").andExpect(status().isOk());
+    transfer("Patient", "Id-6").andExpect(status().isTooManyRequests());
+
+    assertThat(accountsService.getAccount("Id-6").getBalance()).isEqualByComparingTo("99");
+  }
+
+  @Test
+  public void retriedTransferIsAnsweredWithoutTakingAnAccountToken() throws Exception {
+    accountsService.createAccount(new Account("Id-Retried", new BigDecimal(100)));
+    for (int i = 0; i < 2; i++) {
+      this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+        .header(AdmissionInterceptor.CLIENT_ID_HEADER, "Retrying")
+        .content("{\"accountFromId\":\"Id-Retried\",\"accountToId\":\"Id-0\",\"amount\":1,\"requestId\":\"r-1\"}"))
+        .andExpect(status().isOk());
+    }
+
+    assertThat(accountsService.getAccount("Id-Retried").getBalance()).isEqualByComparingTo("99");
+  }
+
+  @Test
+  public void batchTakesTheTokensOfAllItsSourceAccountsOrNone() throws Exception {
+    batch("Id-7", "Id-7").andExpect(status().isPayloadTooLarge());
+    transfer("Eager", "Id-8").andExpect(status().isOk());
+    batch("Id-9", "Id-8").andExpect(status().isTooManyRequests());
+    transfer("Eager", "Id-9").andExpect(status().isOk());
+
+    assertThat(accountsService.getAccount("Id-7").getBalance()).isEqualByComparingTo("100");
+    assertThat(accountsService.getAccount("Id-9").getBalance()).isEqualByComparingTo("99");
+  }
+
+  @Test
+  public void bucketsGiveSeveralTokensAtOnceAndTakeThemBack() {
+    TokenBuckets buckets = new TokenBuckets(1, 3, 10);
+    long now = System.nanoTime();
+
+    assertThat(buckets.tryAcquire("a", 4, now)).isEqualTo(Long.MAX_VALUE);
+    assertThat(buckets.tryAcquire("a", 2, now)).isZero();
+    assertThat(buckets.tryAcquire("a", 2, now)).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+    buckets.release("a", 2);
+    assertThat(buckets.tryAcquire("a", 3, now)).isZero();
+  }
+
+  @Test
+  public void bucketsRefillAndUnknownKeysShareTheOverflowBucketWhenFull() {
+    TokenBuckets buckets = new TokenBuckets(1, 2, 1);
+    long now = System.nanoTime();
+
+    assertThat(buckets.tryAcquire("a", now)).isZero();
+    assertThat(buckets.tryAcquire("a", now)).isZero();
+    assertThat(buckets.tryAcquire("a", now)).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+    assertThat(buckets.tryAcquire("b", now)).isZero();
+    assertThat(buckets.tryAcquire("c", now)).isZero();
+    assertThat(buckets.tryAcquire("d", now)).isPositive();
+    assertThat(buckets.size()).isEqualTo(1);
+    assertThat(buckets.overflowed()).isEqualTo(3);
+
+    assertThat(buckets.tryAcquire("a", now + TimeUnit.SECONDS.toNanos(1))).isZero();
+  }
+
+  @Test
+  public void shedsWhileTooManyRequestsAreInProgress() {
+    AdmissionProperties properties = new AdmissionProperties();
+    properties.setEnabled(true);
+    properties.setMaxInFlight(2);
+    AdmissionControl admissionControl = new AdmissionControl(properties);
+
+    long first = admissionControl.started();
+    assertThat(admissionControl.shouldShed()).isFalse();
+    admissionControl.started();
+    assertThat(admissionControl.shouldShed()).isTrue();
+    admissionControl.completed(first);
+    assertThat(admissionControl.shouldShed()).isFalse();
+  }
+
+  private ResultActions batch(String... accountFromIds) throws Exception {
+    StringBuilder transfers = new StringBuilder();
+    for (String accountFromId : accountFromIds) {
+      transfers.append(transfers.length() == 0 ? "" : ",")
+        .append("{\"accountFromId\":\"").append(accountFromId).append("\",\"accountToId\":\"Id-0\",\"amount\":1}");
+    }
+    return this.mockMvc.perform(post("/v1/accounts/transfers/batch").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"mode\":\"ATOMIC\",\"transfers\":[" + transfers + "]}"));
+  }
+
+  private ResultActions transfer(String clientId, String accountFromId) throws Exception {
+    return this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+      .header(AdmissionInterceptor.CLIENT_ID_HEADER, clientId)
+      .content("{\"accountFromId\":\"" + accountFromId + "\",\"accountToId\":\"Id-0\",\"amount\":1}"));
+  }
+}
@@ -0,0 +1,183 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import com.db.awmd.challenge.config.AsyncWebProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.web.AsyncHandlers;
+import java.math.BigDecimal;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.context.request.async.DeferredResult;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "accounts.web.async.enabled=true")
+@WebAppConfiguration
+public class AsyncAccountsControllerTest {
+
+  private MockMvc mockMvc;
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private WebApplicationContext webApplicationContext;
+
+  @Before
+  public void prepareMockMvc() {
+    this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+    accountsService.getAccountsRepository().clearAccounts();
+  }
+
+  @Test
+  public void createGetAndTransferKeepTheirContract() throws Exception {
+    perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountId\":\"Id-1\",\"balance\":100}")).andExpect(status().isCreated());
+    perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountId\":\"Id-1\",\"balance\":100}")).andExpect(status().isBadRequest())
+      .andExpect(content().string("Account id Id-1 already exists!"));
+    accountsService.createAccount(new Account("Id-2", BigDecimal.ZERO));
+
+    perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":40}")).andExpect(status().isOk());
+    perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":400}"))
+      .andExpect(status().isBadRequest())
+      .andExpect(content().string("Account: Id-1 does not have sufficient funds to perform a transfer of 400"));
+
+    perform(get("/v1/accounts/Id-2")).andExpect(status().isOk())
+      .andExpect(content().string("{\"accountId\":\"Id-2\",\"balance\":40}"));
+  }
+
+  @Test
+  public void invalidRequestsAreRejectedBeforeGoingAsync() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountId\":\"Id-1\",\"balance\":-1}")).andExpect(status().isBadRequest());
+    assertThat(accountsService.getAccount("Id-1")).isNull();
+  }
+
+  @Test
+  public void scheduledTransfersAndBatchesGoAsyncToo() throws Exception {
+    accountsService.createAccount(new Account("Id-1", new BigDecimal(100)));
+    accountsService.createAccount(new Account("Id-2", BigDecimal.ZERO));
+
+    perform(post("/v1/accounts/transfers/batch").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"mode\":\"ATOMIC\",\"transfers\":[{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":10}]}"))
+      .andExpect(status().isOk());
+    perform(get("/v1/accounts/transfers/scheduled/" + Long.MAX_VALUE)).andExpect(status().isNotFound());
+
+    assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("10");
+  }
+
+  @Test
+  public void aFullQueueRunsTheHandlerOnTheCallingThread() throws Exception {
+    AsyncWebProperties properties = new AsyncWebProperties();
+    properties.setEnabled(true);
+    properties.setThreads(1);
+    properties.setQueueCapacity(1);
+    AsyncHandlers handlers = new AsyncHandlers(properties);
+    CountDownLatch release = new CountDownLatch(1);
+    try {
+      assertThat(handlers.respond(() -> {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return "busy";
+      })).isInstanceOf(DeferredResult.class);
+      assertThat(handlers.respond(() -> "queued")).isInstanceOf(DeferredResult.class);
+
+      assertThat(handlers.respond(() -> Thread.currentThread())).isSameAs(Thread.currentThread());
+      assertThat(handlers.metrics().stream().filter(m -> m.getName().equals("http.async.inline"))
+        .findFirst().get().getValue().longValue()).isEqualTo(1);
+    } finally {
+      release.countDown();
+      handlers.destroy();
+    }
+  }
+
+  @Test
+  public void aHandlerWhoseRequestEndedWhileQueuedIsNotRun() throws Exception {
+    AsyncWebProperties properties = new AsyncWebProperties();
+    properties.setEnabled(true);
+    properties.setThreads(1);
+    properties.setQueueCapacity(1);
+    AsyncHandlers handlers = new AsyncHandlers(properties);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicBoolean ran = new AtomicBoolean();
+    try {
+      handlers.respond(() -> {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return "busy";
+      });
+      DeferredResult<?> queued = (DeferredResult<?>) handlers.respond(() -> ran.getAndSet(true));
+      queued.setErrorResult(new IllegalStateException("timed out"));
+      release.countDown();
+
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (metric(handlers, "http.async.skipped") == 0 && System.nanoTime() < deadline) {
+        Thread.sleep(1);
+      }
+      assertThat(metric(handlers, "http.async.skipped")).isEqualTo(1);
+      assertThat(ran.get()).isFalse();
+    } finally {
+      release.countDown();
+      handlers.destroy();
+    }
+  }
+
+  @Test
+  public void anErrorOfTheHandlerCompletesTheRequest() throws Exception {
+    AsyncWebProperties properties = new AsyncWebProperties();
+    properties.setEnabled(true);
+    AsyncHandlers handlers = new AsyncHandlers(properties);
+    try {
+      DeferredResult<?> result = (DeferredResult<?>) handlers.respond(() -> {
+        throw new AssertionError("failed");
+      });
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (!result.hasResult() && System.nanoTime() < deadline) {
+        Thread.sleep(1);
+      }
+      assertThat(result.getResult()).isInstanceOf(AssertionError.class);
+    } finally {
+      handlers.destroy();
+    }
+  }
+
+  private static long metric(AsyncHandlers handlers, String name) {
+    return handlers.metrics().stream().filter(m -> m.getName().equals(name)).findFirst().get().getValue().longValue();
+  }
+
+  private ResultActions perform(RequestBuilder request) throws Exception {
+    MvcResult started = this.mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+    return this.mockMvc.perform(asyncDispatch(started));
+  }
+}
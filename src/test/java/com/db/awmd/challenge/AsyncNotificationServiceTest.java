@@ -0,0 +1,103 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.config.NotificationProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.service.AsyncNotificationService;
+import com.db.awmd.challenge.service.NotificationService;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class AsyncNotificationServiceTest {
+
+  private final List<String> sent = new CopyOnWriteArrayList<>();
+
+  @Test
+  public void deliversEveryNotificationInOrder() throws InterruptedException {
+    NotificationProperties properties = new NotificationProperties();
+    properties.setCoalesce(false);
+    AsyncNotificationService service = new AsyncNotificationService(recording(), properties);
+
+    Account account = new Account("Id-1");
+    for (int i = 0; i < 100; i++) {
+      service.notifyAboutTransfer(account, "Transfer " + i);
+    }
+    service.destroy();
+
+    assertThat(sent).hasSize(100);
+    assertThat(sent.get(0)).isEqualTo("Id-1: Transfer 0");
+    assertThat(sent.get(99)).isEqualTo("Id-1: Transfer 99");
+  }
+
+  @Test
+  public void coalescesNotificationsOfTheSameAccount() throws InterruptedException {
+    CountDownLatch release = new CountDownLatch(1);
+    NotificationProperties properties = new NotificationProperties();
+    properties.setWorkers(1);
+    AsyncNotificationService service = new AsyncNotificationService(blockingUntil(release), properties);
+
+    Account account = new Account("Id-1");
+    Account anotherAccount = new Account("Id-2");
+    service.notifyAboutTransfer(account, "first");
+    waitUntilQueueIsEmpty(service);
+    service.notifyAboutTransfer(account, "second");
+    service.notifyAboutTransfer(anotherAccount, "other");
+    service.notifyAboutTransfer(account, "third");
+    release.countDown();
+    service.destroy();
+
+    assertThat(sent).containsExactly("Id-1: first", "Id-1: second\nthird", "Id-2: other");
+  }
+
+  @Test
+  public void dropsNewestWhenQueueIsFull() throws InterruptedException {
+    CountDownLatch release = new CountDownLatch(1);
+    NotificationProperties properties = new NotificationProperties();
+    properties.setWorkers(1);
+    properties.setQueueCapacity(2);
+    properties.setCoalesce(false);
+    properties.setOverflowPolicy(NotificationProperties.OverflowPolicy.DROP_NEWEST);
+    AsyncNotificationService service = new AsyncNotificationService(blockingUntil(release), properties);
+
+    Account account = new Account("Id-1");
+    service.notifyAboutTransfer(account, "in flight");
+    waitUntilQueueIsEmpty(service);
+    for (int i = 0; i < 5; i++) {
+      service.notifyAboutTransfer(account, "queued " + i);
+    }
+    release.countDown();
+    service.destroy();
+
+    assertThat(sent).containsExactly("Id-1: in flight", "Id-1: queued 0", "Id-1: queued 1");
+    assertThat(service.metrics().stream()
+      .filter(metric -> metric.getName().equals("notifications.dropped"))
+      .map(metric -> metric.getValue().longValue())
+      .collect(Collectors.toList()))
+      .containsExactly(3L);
+  }
+
+  private NotificationService recording() {
+    return (account, description) -> sent.add(account.getAccountId() + ": " + description);
+  }
+
+  private NotificationService blockingUntil(CountDownLatch release) {
+    return (account, description) -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      sent.add(account.getAccountId() + ": " + description);
+    };
+  }
+
+  private void waitUntilQueueIsEmpty(AsyncNotificationService service) throws InterruptedException {
+    while (service.queueDepth() > 0) {
+      Thread.sleep(5);
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.config.AuditProperties;
+import com.db.awmd.challenge.config.BalanceProperties;
+import com.db.awmd.challenge.config.LedgerProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountsSummary;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.AccountLocks;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.AuditService;
+import com.db.awmd.challenge.service.CasTransferEngine;
+import com.db.awmd.challenge.service.EpochBarrier;
+import com.db.awmd.challenge.service.TransactionLedger;
+import com.db.awmd.challenge.service.TransferMetrics;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+
+public class AuditServiceTest {
+
+  private static final int ACCOUNTS = 1000;
+
+  @Test
+  public void totalsAtCutsAreExactWhileTransfersAndCreationsRun() throws InterruptedException {
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+    AccountLocks locks = new AccountLocks(64);
+    EpochBarrier barrier = new EpochBarrier(locks);
+    AuditService audit = new AuditService(repository, barrier, new AuditProperties());
+    // the cas engine leaves funds in flight between debit and credit outside of cuts
+    AccountsService service = new AccountsService(repository, (account, description) -> {
+    }, new CasTransferEngine(locks, barrier), new BalanceProperties(), locks, barrier,
+      new TransferMetrics(locks, true), new TransactionLedger(new LedgerProperties()), audit);
+    for (int i = 0; i < ACCOUNTS; i++) {
+      service.createAccount(new Account("Id-" + i, new BigDecimal("100.50")));
+    }
+
+    AtomicBoolean running = new AtomicBoolean(true);
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 3; t++) {
+      Thread thread = new Thread(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (running.get()) {
+          int from = random.nextInt(ACCOUNTS);
+          int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+          service.tryTransfer("Id-" + from, "Id-" + to, new BigDecimal(random.nextInt(1, 50)));
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    int[] created = {0};
+    Thread creator = new Thread(() -> {
+      while (running.get()) {
+        service.createAccount(new Account("New-" + created[0]++, BigDecimal.ONE));
+      }
+    });
+    creator.start();
+
+    for (int i = 0; i < 50; i++) {
+      AccountsSummary summary = audit.summarize();
+      long newAccounts = summary.getAccounts() - ACCOUNTS;
+      assertThat(summary.getTotalBalance())
+        .isEqualByComparingTo(new BigDecimal("100.50").multiply(new BigDecimal(ACCOUNTS)).add(new BigDecimal(newAccounts)));
+      assertThat(audit.checkTotal()).isTrue();
+    }
+    running.set(false);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    creator.join();
+  }
+
+  @Test
+  public void reportsBalancesChangedOutsideOfTransfers() {
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+    repository.createAccount(new Account("Loaded", BigDecimal.TEN));
+    AccountLocks locks = new AccountLocks(64);
+    EpochBarrier barrier = new EpochBarrier(locks);
+    AuditService audit = new AuditService(repository, barrier, new AuditProperties());
+    AccountsService service = new AccountsService(repository, (account, description) -> {
+    }, new CasTransferEngine(locks, barrier), new BalanceProperties(), locks, barrier,
+      new TransferMetrics(locks, true), new TransactionLedger(new LedgerProperties()), audit);
+    service.createAccount(new Account("Id-1", new BigDecimal(5)));
+    assertThat(audit.checkTotal()).isTrue();
+
+    service.getAccount("Id-1").deposit(BigDecimal.ONE);
+
+    assertThat(audit.checkTotal()).isFalse();
+    assertThat(audit.checkTotal()).isTrue();
+    assertThat(audit.summarize().getTotalBalance()).isEqualByComparingTo("16");
+  }
+}
@@ -0,0 +1,186 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.config.AdmissionProperties;
+import com.db.awmd.challenge.config.AuditProperties;
+import com.db.awmd.challenge.config.BalanceProperties;
+import com.db.awmd.challenge.config.BinaryProtocolProperties;
+import com.db.awmd.challenge.config.LedgerProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.AccountLocks;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.AdmissionControl;
+import com.db.awmd.challenge.service.AuditService;
+import com.db.awmd.challenge.service.EpochBarrier;
+import com.db.awmd.challenge.service.StripedLockTransferEngine;
+import com.db.awmd.challenge.service.TransactionLedger;
+import com.db.awmd.challenge.service.TransferMetrics;
+import com.db.awmd.challenge.web.BinaryTransferServer;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BinaryTransferServerTest {
+
+  private AccountsService accountsService;
+  private BinaryTransferServer server;
+  private Socket socket;
+  private DataOutputStream out;
+  private DataInputStream in;
+
+  @Before
+  public void startServer() throws IOException {
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+    AccountLocks locks = new AccountLocks(64);
+    EpochBarrier barrier = new EpochBarrier(locks);
+    accountsService = new AccountsService(repository, (account, description) -> {
+    }, new StripedLockTransferEngine(locks, barrier), new BalanceProperties(), locks, barrier,
+      new TransferMetrics(locks, true), new TransactionLedger(new LedgerProperties()),
+      new AuditService(repository, barrier, new AuditProperties()));
+    accountsService.createAccount(new Account("Id-1", new BigDecimal("100000")));
+    accountsService.createAccount(new Account("Id-2", BigDecimal.ZERO));
+
+    AdmissionProperties admission = new AdmissionProperties();
+    admission.setEnabled(true);
+    admission.setAccountRate(1_000_000);
+    admission.setAccountBurst(1_000_000);
+    BinaryProtocolProperties properties = new BinaryProtocolProperties();
+    properties.setPort(0);
+    properties.setWorkers(2);
+    properties.setBufferBytes(256);
+    server = new BinaryTransferServer(accountsService, new AdmissionControl(admission), properties);
+
+    socket = new Socket("localhost", server.port());
+    out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    in = new DataInputStream(socket.getInputStream());
+  }
+
+  @After
+  public void stopServer() throws Exception {
+    socket.close();
+    server.destroy();
+  }
+
+  @Test
+  public void answersPipelinedRequestsInOrderWithTheirCorrelationIds() throws IOException {
+    send(out, 11, "Id-1", "Id-2", 12345, 2);
+    send(out, 12, "Id-2", "Id-1", 1000, 0);
+    send(out, 13, "Id-9", "Id-1", 1, 0);
+    send(out, 14, "Id-1", "Id-1", 1, 0);
+    send(out, 15, "Id-1", "Id-2", 0, 0);
+    send(out, 16, "Id-1", "Id-9", 1, 0);
+    send(out, 17, "Id-1", "Id-2", 12345, 2);
+    out.flush();
+
+    assertResponse(11, BinaryTransferServer.APPLIED);
+    assertResponse(12, BinaryTransferServer.INSUFFICIENT_FUNDS);
+    assertResponse(13, BinaryTransferServer.SOURCE_NOT_FOUND);
+    assertResponse(14, BinaryTransferServer.SAME_ACCOUNT);
+    assertResponse(15, BinaryTransferServer.INVALID_AMOUNT);
+    assertResponse(16, BinaryTransferServer.DESTINATION_NOT_FOUND);
+    assertResponse(17, BinaryTransferServer.APPLIED);
+    assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("246.90");
+  }
+
+  @Test
+  public void acceptsAccountsGivenByHandle() throws IOException {
+    int handle = accountsService.getAccount("Id-1").getHandle();
+    int anotherHandle = accountsService.getAccount("Id-2").getHandle();
+    sendByHandle(out, 21, handle, anotherHandle);
+    sendByHandle(out, 22, handle, handle);
+    sendByHandle(out, 23, 1_000, handle);
+    // an id and a handle in one request
+    out.writeInt(4 + 2 + 4 + 6 + 8 + 1);
+    out.writeInt(24);
+    out.writeShort(4);
+    out.write("Id-1".getBytes(StandardCharsets.UTF_8));
+    out.writeShort(BinaryTransferServer.HANDLE);
+    out.writeInt(anotherHandle);
+    out.writeLong(1);
+    out.writeByte(0);
+    out.flush();
+
+    assertResponse(21, BinaryTransferServer.APPLIED);
+    assertResponse(22, BinaryTransferServer.SAME_ACCOUNT);
+    assertResponse(23, BinaryTransferServer.SOURCE_NOT_FOUND);
+    assertResponse(24, BinaryTransferServer.APPLIED);
+    assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("2");
+  }
+
+  @Test
+  public void keepsUpWithAClientThatWritesFasterThanItReads() throws Exception {
+    int requests = 50_000;
+    AtomicReference<IOException> failure = new AtomicReference<>();
+    Thread writer = new Thread(() -> {
+      try {
+        for (int i = 0; i < requests; i++) {
+          send(out, i, "Id-1", "Id-2", 1, 0);
+        }
+        out.flush();
+      } catch (IOException e) {
+        failure.set(e);
+      }
+    });
+    writer.start();
+    for (int i = 0; i < requests; i++) {
+      assertResponse(i, BinaryTransferServer.APPLIED);
+    }
+    writer.join();
+
+    assertThat(failure.get()).isNull();
+    assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("50000");
+    assertThat(server.metrics().stream().filter(m -> m.getName().equals("binary.requests"))
+      .findFirst().get().getValue().longValue()).isEqualTo(requests);
+  }
+
+  @Test
+  public void closesTheConnectionOnAMalformedFrame() throws IOException {
+    send(out, 1, "Id-1", "Id-2", 1, 0);
+    out.writeInt(1_000_000);
+    out.flush();
+
+    assertResponse(1, BinaryTransferServer.APPLIED);
+    assertThat(in.read()).isEqualTo(-1);
+  }
+
+  private void assertResponse(int correlationId, byte status) throws IOException {
+    assertThat(in.readInt()).isEqualTo(5);
+    assertThat(in.readInt()).isEqualTo(correlationId);
+    assertThat(in.readByte()).as("status of %d", correlationId).isEqualTo(status);
+  }
+
+  private static void sendByHandle(DataOutputStream out, int correlationId, int from, int to) throws IOException {
+    out.writeInt(4 + 6 + 6 + 8 + 1);
+    out.writeInt(correlationId);
+    out.writeShort(BinaryTransferServer.HANDLE);
+    out.writeInt(from);
+    out.writeShort(BinaryTransferServer.HANDLE);
+    out.writeInt(to);
+    out.writeLong(1);
+    out.writeByte(0);
+  }
+
+  private static void send(DataOutputStream out, int correlationId, String from, String to, long unscaled,
+    int scale) throws IOException {
+    byte[] fromBytes = from.getBytes(StandardCharsets.UTF_8);
+    byte[] toBytes = to.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(4 + 2 + fromBytes.length + 2 + toBytes.length + 8 + 1);
+    out.writeInt(correlationId);
+    out.writeShort(fromBytes.length);
+    out.write(fromBytes);
+    out.writeShort(toBytes.length);
+    out.write(toBytes);
+    out.writeLong(unscaled);
+    out.writeByte(scale);
+  }
+}
@@ -0,0 +1,202 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import com.db.awmd.challenge.config.AuditProperties;
+import com.db.awmd.challenge.config.BalanceProperties;
+import com.db.awmd.challenge.config.BulkProperties;
+import com.db.awmd.challenge.config.LedgerProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.BulkImportResult;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.AccountLocks;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.AuditService;
+import com.db.awmd.challenge.service.BinaryAccountFormat;
+import com.db.awmd.challenge.service.BulkAccountsService;
+import com.db.awmd.challenge.service.EpochBarrier;
+import com.db.awmd.challenge.service.NdjsonAccountFormat;
+import com.db.awmd.challenge.service.StripedLockTransferEngine;
+import com.db.awmd.challenge.service.TransactionLedger;
+import com.db.awmd.challenge.service.TransferMetrics;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.context.WebApplicationContext;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@WebAppConfiguration
+public class BulkAccountsTest {
+
+  private MockMvc mockMvc;
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private BulkAccountsService bulkAccountsService;
+
+  @Autowired
+  private NdjsonAccountFormat ndjson;
+
+  @Autowired
+  private BinaryAccountFormat binary;
+
+  @Autowired
+  private WebApplicationContext webApplicationContext;
+
+  @Before
+  public void prepareMockMvc() {
+    this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+    accountsService.getAccountsRepository().clearAccounts();
+  }
+
+  @Test
+  public void importReportsEveryRejectedRecord() throws Exception {
+    accountsService.createAccount(new Account("Id-1", BigDecimal.ONE));
+    String body = "{\"accountId\":\"Id-1\",\"balance\":10}\n"
+      + "{\"accountId\":\"Id-2\",\"balance\":20}\n"
+      + "\n"
+      + "{\"accountId\":\"Id-3\",\"balance\":-5}\n"
+      + "{\"accountId\":\"Id-4\",\"balance\":\n"
+      + "{\"accountId\":\"Id-5\",\"balance\":50.25}\n";
+
+    this.mockMvc.perform(post("/v1/accounts/bulk").contentType(NdjsonAccountFormat.MEDIA_TYPE).content(body))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.imported").value(2))
+      .andExpect(jsonPath("$.rejected").value(3))
+      .andExpect(jsonPath("$.rejections[0].record").value(1))
+      .andExpect(jsonPath("$.rejections[0].message").value("Account id Id-1 already exists!"))
+      .andExpect(jsonPath("$.rejections[1].record").value(3))
+      .andExpect(jsonPath("$.rejections[1].message").value("Initial balance must be positive."))
+      .andExpect(jsonPath("$.rejections[2].record").value(4));
+
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("1");
+    assertThat(accountsService.getAccount("Id-5").getBalance()).isEqualByComparingTo("50.25");
+  }
+
+  @Test
+  public void balanceWithTooManyDecimalsIsRejectedWithoutDroppingTheRestOfItsChunk() throws Exception {
+    AccountLocks locks = new AccountLocks(16);
+    EpochBarrier barrier = new EpochBarrier(locks);
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+    BalanceProperties fixedPoint = new BalanceProperties();
+    fixedPoint.setMode(BalanceProperties.Mode.FIXED_POINT);
+    AccountsService fixedPointService = new AccountsService(repository, (account, description) -> {
+    }, new StripedLockTransferEngine(locks, barrier), fixedPoint, locks, barrier, new TransferMetrics(locks, true),
+      new TransactionLedger(new LedgerProperties()), new AuditService(repository, barrier, new AuditProperties()));
+    BulkProperties properties = new BulkProperties();
+    properties.setWorkers(1);
+    properties.setChunkSize(4);
+    BulkAccountsService bulk = new BulkAccountsService(fixedPointService, properties);
+    String body = "{\"accountId\":\"Id-1\",\"balance\":10}\n"
+      + "{\"accountId\":\"Id-2\",\"balance\":1.005}\n"
+      + "{\"accountId\":\"Id-3\",\"balance\":30}\n"
+      + "{\"accountId\":\"Id-4\",\"balance\":40.5}\n";
+
+    BulkImportResult result;
+    try {
+      result = bulk.importAccounts(ndjson, new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    } finally {
+      bulk.destroy();
+    }
+
+    assertThat(result.getImported()).isEqualTo(3);
+    assertThat(result.getRejected()).isEqualTo(1);
+    assertThat(result.getRejections().get(0).getRecord()).isEqualTo(2);
+    assertThat(result.getRejections().get(0).getAccountId()).isEqualTo("Id-2");
+    assertThat(fixedPointService.getAccount("Id-4").getBalance()).isEqualTo(new BigDecimal("40.50"));
+  }
+
+  @Test
+  public void recordTheRepositoryFailsToStoreIsRejectedWithoutStoppingTheImport() throws Exception {
+    AccountLocks locks = new AccountLocks(16);
+    EpochBarrier barrier = new EpochBarrier(locks);
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory() {
+
+      @Override
+      public void createAccount(Account account) {
+        if (account.getAccountId().equals("Id-2")) {
+          throw new UncheckedIOException(new IOException("Journal is full"));
+        }
+        super.createAccount(account);
+      }
+    };
+    AccountsService failingService = new AccountsService(repository, (account, description) -> {
+    }, new StripedLockTransferEngine(locks, barrier), new BalanceProperties(), locks, barrier,
+      new TransferMetrics(locks, true), new TransactionLedger(new LedgerProperties()),
+      new AuditService(repository, barrier, new AuditProperties()));
+    BulkProperties properties = new BulkProperties();
+    properties.setWorkers(1);
+    BulkAccountsService bulk = new BulkAccountsService(failingService, properties);
+    String body = "{\"accountId\":\"Id-1\",\"balance\":10}\n"
+      + "{\"accountId\":\"Id-2\",\"balance\":20}\n"
+      + "{\"accountId\":\"Id-3\",\"balance\":30}\n";
+
+    BulkImportResult result;
+    try {
+      result = bulk.importAccounts(ndjson, new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    } finally {
+      bulk.destroy();
+    }
+
+    assertThat(result.getImported()).isEqualTo(2);
+    assertThat(result.getRejected()).isEqualTo(1);
+    assertThat(result.getRejections().get(0).getAccountId()).isEqualTo("Id-2");
+    assertThat(result.getRejections().get(0).getMessage()).contains("Journal is full");
+  }
+
+  @Test
+  public void exportedAccountsImportBackInBothFormats() throws Exception {
+    StringBuilder body = new StringBuilder();
+    for (int i = 0; i < 10_000; i++) {
+      body.append("{\"accountId\":\"Id-").append(i).append("\",\"balance\":").append(i).append(".5}\n");
+    }
+    BulkImportResult result = bulkAccountsService.importAccounts(
+      ndjson,
+      new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8)));
+    assertThat(result.getImported()).isEqualTo(10_000);
+
+    MvcResult started = this.mockMvc.perform(get("/v1/accounts/bulk").accept(NdjsonAccountFormat.MEDIA_TYPE))
+      .andReturn();
+    started.getAsyncResult();
+    String exported = started.getResponse().getContentAsString();
+    String[] lines = exported.split("\n");
+    String[] expected = body.toString().split("\n");
+    Arrays.sort(lines);
+    Arrays.sort(expected);
+    assertThat(lines).containsExactly(expected);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    bulkAccountsService.exportAccounts(binary, out);
+    accountsService.getAccountsRepository().clearAccounts();
+    result = bulkAccountsService.importAccounts(binary, new ByteArrayInputStream(out.toByteArray()));
+    assertThat(result.getImported()).isEqualTo(10_000);
+    assertThat(accountsService.getAccount("Id-9999").getBalance()).isEqualByComparingTo("9999.5");
+
+    result = bulkAccountsService.importAccounts(binary,
+      new ByteArrayInputStream(Arrays.copyOf(out.toByteArray(), out.size() - 1)));
+    assertThat(result.getImported()).isEqualTo(0);
+    assertThat(result.getRejected()).isEqualTo(10_000);
+    assertThat(result.getRejections()).hasSize(1000);
+  }
+}
@@ -0,0 +1,161 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.BatchTransfer;
+import com.db.awmd.challenge.domain.BatchTransferResult;
+import com.db.awmd.challenge.domain.FixedPointBalanceCell;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.exception.BalanceOverflowException;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.NotificationService;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.UUID;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"accounts.balance.mode=fixed-point", "accounts.balance.currency=BHD"})
+public class FixedPointBalanceTest {
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @MockBean
+  private NotificationService notificationService;
+
+  @Test
+  public void createAccount_storesMinorUnitsWithCurrencyScale() {
+    Account account = new Account(UUID.randomUUID().toString(), new BigDecimal("12.5"));
+    accountsService.createAccount(account);
+
+    assertThat(account.getBalance()).isEqualTo(new BigDecimal("12.500"));
+  }
+
+  @Test
+  public void transfer_balancesAreCorrectAfterTransfer() throws Exception {
+    Account account = new Account(UUID.randomUUID().toString(), new BigDecimal(1000));
+    Account anotherAccount = new Account(UUID.randomUUID().toString(), new BigDecimal(1000));
+    accountsService.createAccount(account);
+    accountsService.createAccount(anotherAccount);
+
+    accountsService.transfer(account.getAccountId(), anotherAccount.getAccountId(), new BigDecimal("0.125"));
+
+    assertThat(account.getBalance()).isEqualByComparingTo("999.875");
+    assertThat(anotherAccount.getBalance()).isEqualByComparingTo("1000.125");
+  }
+
+  @Test
+  public void transfer_failsOnAmountFinerThanScale() throws Exception {
+    Account account = new Account(UUID.randomUUID().toString(), new BigDecimal(1000));
+    Account anotherAccount = new Account(UUID.randomUUID().toString(), new BigDecimal(1000));
+    accountsService.createAccount(account);
+    accountsService.createAccount(anotherAccount);
+
+    try {
+      accountsService.transfer(account.getAccountId(), anotherAccount.getAccountId(), new BigDecimal("0.0001"));
+      fail("Should have failed when the amount has more decimals than the currency");
+    } catch (BalanceOverflowException e) {
+      assertThat(account.getBalance()).isEqualByComparingTo("1000");
+    }
+  }
+
+  @Test
+  public void deposit_failsOnOverflowAndLeavesBalanceUntouched() {
+    FixedPointBalanceCell cell = new FixedPointBalanceCell(BigDecimal.valueOf(Long.MAX_VALUE, 2), 2);
+
+    try {
+      cell.deposit(new BigDecimal("0.01"));
+      fail("Should have failed when the balance overflows");
+    } catch (BalanceOverflowException e) {
+      assertThat(cell.getUnits()).isEqualTo(Long.MAX_VALUE);
+    }
+  }
+
+  @Test
+  public void atomicBatch_isRejectedBeforeAnyCreditWhenOneWouldOverflow() {
+    Account account = new Account(UUID.randomUUID().toString(), new BigDecimal(1000));
+    Account anotherAccount = new Account(UUID.randomUUID().toString(), BigDecimal.ZERO);
+    Account fullAccount = new Account(UUID.randomUUID().toString(), BigDecimal.valueOf(Long.MAX_VALUE, 3));
+    accountsService.createAccount(account);
+    accountsService.createAccount(anotherAccount);
+    accountsService.createAccount(fullAccount);
+
+    BatchTransferResult result = accountsService.transfer(new BatchTransfer(BatchTransfer.Mode.ATOMIC, Arrays.asList(
+      new Transfer(account.getAccountId(), anotherAccount.getAccountId(), BigDecimal.TEN),
+      new Transfer(account.getAccountId(), fullAccount.getAccountId(), BigDecimal.ONE))));
+
+    assertThat(result.getApplied()).isZero();
+    assertThat(account.getBalance()).isEqualByComparingTo("1000");
+    assertThat(anotherAccount.getBalance()).isEqualByComparingTo("0");
+    assertThat(fullAccount.getBalance()).isEqualByComparingTo(BigDecimal.valueOf(Long.MAX_VALUE, 3));
+  }
+
+  @Test
+  public void checkDeposit_failsOnOverflowWithoutDepositing() {
+    FixedPointBalanceCell cell = new FixedPointBalanceCell(BigDecimal.valueOf(Long.MAX_VALUE - 1, 2), 2);
+    cell.checkDeposit(new BigDecimal("0.01"));
+
+    try {
+      cell.checkDeposit(new BigDecimal("0.02"));
+      fail("Should have failed when the balance would overflow");
+    } catch (BalanceOverflowException e) {
+      assertThat(cell.getUnits()).isEqualTo(Long.MAX_VALUE - 1);
+    }
+  }
+
+  @Test
+  public void combinedDeposits_areRejectedBeyondTheCombiningLimit() {
+    FixedPointBalanceCell cell = new FixedPointBalanceCell(BigDecimal.valueOf((1L << 62) - 10, 2), 2);
+    cell.combineDepositsAfter(1);
+    cell.contended();
+    assertThat(cell.isCombining()).isTrue();
+
+    cell.depositUnits(10);
+    try {
+      cell.depositUnits(1);
+      fail("Should have failed beyond the limit of a cell combining deposits");
+    } catch (BalanceOverflowException e) {
+      assertThat(cell.getUnits()).isEqualTo(1L << 62);
+    }
+    assertThat(cell.tryWithdrawUnits(1L << 62)).isTrue();
+    cell.depositUnits(1L << 40);
+    assertThat(cell.getUnits()).isEqualTo(1L << 40);
+  }
+
+  @Test
+  public void toUnits_convertsAmountsWithFewerDecimalsAndNegativeScales() {
+    assertThat(FixedPointBalanceCell.toUnits(new BigDecimal("12.5"), 2)).isEqualTo(1250);
+    assertThat(FixedPointBalanceCell.toUnits(new BigDecimal("-0.07"), 2)).isEqualTo(-7);
+    assertThat(FixedPointBalanceCell.toUnits(new BigDecimal("1E+3"), 2)).isEqualTo(100000);
+    assertThat(FixedPointBalanceCell.toUnits(new BigDecimal("1.500"), 2)).isEqualTo(150);
+    assertThat(FixedPointBalanceCell.toUnits(BigDecimal.valueOf(Long.MAX_VALUE, 2), 2)).isEqualTo(Long.MAX_VALUE);
+  }
+
+  @Test
+  public void get_followsTheBalanceAfterEachUpdate() {
+    FixedPointBalanceCell cell = new FixedPointBalanceCell(new BigDecimal("10"), 2);
+
+    assertThat(cell.get()).isEqualTo(new BigDecimal("10.00"));
+    assertThat(cell.get()).isSameAs(cell.get());
+    cell.deposit(new BigDecimal("0.01"));
+    assertThat(cell.get()).isEqualTo(new BigDecimal("10.01"));
+  }
+
+  @Test
+  public void toUnits_failsOnValuesBeyondALong() {
+    try {
+      FixedPointBalanceCell.toUnits(new BigDecimal("1E+17"), 2);
+      fail("Should have failed when the units do not fit in a long");
+    } catch (BalanceOverflowException e) {
+      assertThat(e.getMessage()).contains("2 decimal places");
+    }
+  }
+}
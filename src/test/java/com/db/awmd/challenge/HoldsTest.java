@@ -0,0 +1,146 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Hold;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.AuditService;
+import com.db.awmd.challenge.service.HoldService;
+import java.math.BigDecimal;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.WebApplicationContext;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@WebAppConfiguration
+public class HoldsTest {
+
+  private MockMvc mockMvc;
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private HoldService holdService;
+
+  @Autowired
+  private AuditService auditService;
+
+  @Autowired
+  private WebApplicationContext webApplicationContext;
+
+  @Before
+  public void prepareMockMvc() {
+    this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+    accountsService.getAccountsRepository().clearAccounts();
+    accountsService.createAccount(new Account("Id-1", new BigDecimal(100)));
+    accountsService.createAccount(new Account("Id-2", new BigDecimal(100)));
+  }
+
+  @Test
+  public void captureTransfersPartOfTheHoldAndReturnsTheRest() throws Exception {
+    String created = this.mockMvc.perform(post("/v1/accounts/Id-1/holds")
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountToId\":\"Id-2\",\"amount\":40}"))
+      .andExpect(status().isCreated())
+      .andExpect(jsonPath("$.status").value("HELD"))
+      .andReturn().getResponse().getContentAsString();
+    long id = Long.parseLong(created.replaceAll(".*\"id\":(\\d+).*", "$1"));
+
+    this.mockMvc.perform(get("/v1/accounts/Id-1/holds"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.available").value(60))
+      .andExpect(jsonPath("$.held").value(40));
+    this.mockMvc.perform(get("/v1/accounts/Id-1"))
+      .andExpect(jsonPath("$.balance").value(60));
+
+    this.mockMvc.perform(post("/v1/accounts/Id-1/holds/" + id + "/capture")
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"amount\":25}"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.status").value("CAPTURED"))
+      .andExpect(jsonPath("$.capturedAmount").value(25));
+
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("75");
+    assertThat(accountsService.getAccount("Id-1").getHeld()).isEqualByComparingTo("0");
+    assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("125");
+
+    this.mockMvc.perform(post("/v1/accounts/Id-1/holds/" + id + "/release"))
+      .andExpect(status().isConflict())
+      .andExpect(jsonPath("$.status").value("CAPTURED"));
+  }
+
+  @Test
+  public void releaseReturnsTheFunds() throws Exception {
+    Hold hold = holdService.hold("Id-1", "Id-2", new BigDecimal(100), null);
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("0");
+
+    this.mockMvc.perform(post("/v1/accounts/Id-1/holds/" + hold.getId() + "/release"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.status").value("RELEASED"));
+    this.mockMvc.perform(post("/v1/accounts/Id-1/holds/" + hold.getId() + "/capture"))
+      .andExpect(status().isConflict());
+
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("100");
+    assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("100");
+    this.mockMvc.perform(get("/v1/accounts/Id-2/holds/" + hold.getId()))
+      .andExpect(status().isNotFound());
+  }
+
+  @Test
+  public void holdsCannotExceedTheAvailableFunds() throws Exception {
+    holdService.hold("Id-1", "Id-2", new BigDecimal(70), null);
+
+    this.mockMvc.perform(post("/v1/accounts/Id-1/holds")
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountToId\":\"Id-2\",\"amount\":31}"))
+      .andExpect(status().isBadRequest());
+    this.mockMvc.perform(post("/v1/accounts/transfer")
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":31}"))
+      .andExpect(status().isBadRequest());
+    this.mockMvc.perform(post("/v1/accounts/Id-1/holds")
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountToId\":\"Id-1\",\"amount\":1}"))
+      .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void expiredHoldsAreReleased() throws Exception {
+    Hold hold = holdService.hold("Id-1", "Id-2", new BigDecimal(30), 1L);
+    Thread.sleep(5);
+
+    assertThat(holdService.sweep()).isGreaterThanOrEqualTo(1);
+    assertThat(holdService.get(hold.getId()).getStatus()).isEqualTo(Hold.Status.EXPIRED);
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("100");
+    assertThat(holdService.capture(hold.getId(), null).getStatus()).isEqualTo(Hold.Status.EXPIRED);
+  }
+
+  @Test
+  public void heldFundsStayInTheAuditedTotal() throws Exception {
+    auditService.checkTotal();
+    BigDecimal total = auditService.summarize().getTotalBalance();
+
+    Hold captured = holdService.hold("Id-1", "Id-2", new BigDecimal(50), null);
+    holdService.hold("Id-2", "Id-1", new BigDecimal(20), null);
+    assertThat(auditService.summarize().getTotalBalance()).isEqualByComparingTo(total);
+
+    holdService.capture(captured.getId(), new BigDecimal(10));
+    assertThat(auditService.summarize().getTotalBalance()).isEqualByComparingTo(total);
+    assertThat(auditService.checkTotal()).isTrue();
+  }
+}
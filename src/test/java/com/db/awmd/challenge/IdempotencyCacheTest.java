@@ -0,0 +1,143 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import com.db.awmd.challenge.config.IdempotencyProperties;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.exception.RequestIdReusedException;
+import com.db.awmd.challenge.service.IdempotencyCache;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class IdempotencyCacheTest {
+
+  @Test
+  public void retriesGetTheFirstOutcomeWithoutRunningAgain() throws InterruptedException {
+    IdempotencyCache cache = new IdempotencyCache(new IdempotencyProperties());
+    AtomicInteger runs = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    List<TransferOutcome> outcomes = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      Thread thread = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        TransferOutcome outcome = cache.execute(null, "127.0.0.1", request("Req-1"), () -> {
+          runs.incrementAndGet();
+          return TransferOutcome.APPLIED;
+        });
+        synchronized (outcomes) {
+          outcomes.add(outcome);
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(runs.get()).isEqualTo(1);
+    assertThat(outcomes).hasSize(8).containsOnly(TransferOutcome.APPLIED);
+    assertThat(cache.hits()).isEqualTo(7);
+    assertThat(cache.misses()).isEqualTo(1);
+  }
+
+  @Test
+  public void failedTransfersAreNotRemembered() {
+    IdempotencyCache cache = new IdempotencyCache(new IdempotencyProperties());
+    try {
+      cache.execute(null, "127.0.0.1", request("Req-1"), () -> {
+        throw new IllegalStateException("down");
+      });
+      fail("Should have passed the failure on");
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).isEqualTo("down");
+    }
+
+    assertThat(cache.execute(null, "127.0.0.1", request("Req-1"), () -> TransferOutcome.INSUFFICIENT_FUNDS))
+      .isEqualTo(TransferOutcome.INSUFFICIENT_FUNDS);
+    assertThat(cache.execute(null, "127.0.0.1", request("Req-1"), () -> TransferOutcome.APPLIED))
+      .isEqualTo(TransferOutcome.INSUFFICIENT_FUNDS);
+  }
+
+  @Test
+  public void evictsBeyondTheSizeLimitAndAfterTheTtl() throws InterruptedException {
+    IdempotencyProperties properties = new IdempotencyProperties();
+    properties.setMaxEntries(1024);
+    IdempotencyCache cache = new IdempotencyCache(properties);
+    for (int i = 0; i < 10_000; i++) {
+      cache.execute(null, "127.0.0.1", request("Req-" + i), () -> TransferOutcome.APPLIED);
+    }
+    assertThat(cache.size()).isLessThanOrEqualTo(1024).isGreaterThan(512);
+    assertThat(cache.footprintBytes()).isLessThanOrEqualTo(1024L * (240 + 2 * "@9:127.0.0.1Req-9999Id-1Id-2".length()));
+
+    properties.setTtlMillis(10);
+    IdempotencyCache expiring = new IdempotencyCache(properties);
+    expiring.execute(null, "127.0.0.1", request("Req-1"), () -> TransferOutcome.APPLIED);
+    Thread.sleep(20);
+    assertThat(expiring.execute(null, "127.0.0.1", request("Req-1"), () -> TransferOutcome.SAME_ACCOUNT))
+      .isEqualTo(TransferOutcome.SAME_ACCOUNT);
+  }
+
+  @Test
+  public void refusesARequestIdReusedForAnotherTransfer() {
+    IdempotencyCache cache = new IdempotencyCache(new IdempotencyProperties());
+    cache.execute(null, "127.0.0.1", request("Req-1"), () -> TransferOutcome.APPLIED);
+
+    assertThat(cache.execute(null, "127.0.0.1", new Transfer("Id-1", "Id-2", new BigDecimal("10.00"), "Req-1"),
+      () -> TransferOutcome.INSUFFICIENT_FUNDS)).isEqualTo(TransferOutcome.APPLIED);
+    for (Transfer other : Arrays.asList(new Transfer("Id-1", "Id-2", BigDecimal.ONE, "Req-1"),
+      new Transfer("Id-1", "Id-3", BigDecimal.TEN, "Req-1"), new Transfer("Id-3", "Id-2", BigDecimal.TEN, "Req-1"))) {
+      try {
+        cache.execute(null, "127.0.0.1", other, () -> TransferOutcome.APPLIED);
+        fail("Should have refused the request id reused for another transfer");
+      } catch (RequestIdReusedException e) {
+        assertThat(e.getMessage()).contains("Req-1");
+      }
+    }
+  }
+
+  @Test
+  public void scopesRequestIdsToTheirClient() {
+    IdempotencyCache cache = new IdempotencyCache(new IdempotencyProperties());
+    cache.execute("client-a", null, request("Req-1"), () -> TransferOutcome.APPLIED);
+
+    assertThat(cache.execute("client-b", null, request("Req-1"), () -> TransferOutcome.INSUFFICIENT_FUNDS))
+      .isEqualTo(TransferOutcome.INSUFFICIENT_FUNDS);
+    assertThat(cache.execute(null, "127.0.0.1", request("Req-1"), () -> TransferOutcome.SAME_ACCOUNT))
+      .isEqualTo(TransferOutcome.SAME_ACCOUNT);
+    assertThat(cache.execute("client-", null, request("aReq-1"), () -> TransferOutcome.INVALID_AMOUNT))
+      .isEqualTo(TransferOutcome.INVALID_AMOUNT);
+    assertThat(cache.execute("client-a", null, request("Req-1"), () -> TransferOutcome.SAME_ACCOUNT))
+      .isEqualTo(TransferOutcome.APPLIED);
+  }
+
+  @Test
+  public void scopesRequestIdsOfAnonymousClientsToTheirAddress() {
+    IdempotencyCache cache = new IdempotencyCache(new IdempotencyProperties());
+    cache.execute(null, "10.0.0.1", request("Req-1"), () -> TransferOutcome.APPLIED);
+
+    assertThat(cache.execute(null, "10.0.0.2", request("Req-1"), () -> TransferOutcome.INSUFFICIENT_FUNDS))
+      .isEqualTo(TransferOutcome.INSUFFICIENT_FUNDS);
+    assertThat(cache.execute("10.0.0.1", null, request("Req-1"), () -> TransferOutcome.SAME_ACCOUNT))
+      .isEqualTo(TransferOutcome.SAME_ACCOUNT);
+    assertThat(cache.execute(null, "10.0.0.1", request("Req-1"), () -> TransferOutcome.INVALID_AMOUNT))
+      .isEqualTo(TransferOutcome.APPLIED);
+  }
+
+  private static Transfer request(String requestId) {
+    return new Transfer("Id-1", "Id-2", BigDecimal.TEN, requestId);
+  }
+}
@@ -0,0 +1,224 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import com.db.awmd.challenge.config.AuditProperties;
+import com.db.awmd.challenge.config.BalanceProperties;
+import com.db.awmd.challenge.config.JournalProperties;
+import com.db.awmd.challenge.config.LedgerProperties;
+import com.db.awmd.challenge.config.SnapshotProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.Journal;
+import com.db.awmd.challenge.repository.JournaledAccountsRepository;
+import com.db.awmd.challenge.service.AccountLocks;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.AuditService;
+import com.db.awmd.challenge.service.CasTransferEngine;
+import com.db.awmd.challenge.service.EpochBarrier;
+import com.db.awmd.challenge.service.TransactionLedger;
+import com.db.awmd.challenge.service.TransferMetrics;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JournalTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void replaysRecordsAcrossSegments() throws IOException {
+    Path directory = folder.getRoot().toPath();
+    try (Journal journal = Journal.open(directory, 256, Journal.FsyncPolicy.ALWAYS, 0, new Recorder())) {
+      journal.appendCreate("Id-1", new BigDecimal("100.50"));
+      for (int i = 0; i < 20; i++) {
+        journal.appendTransfer("Id-1", "Id-2", BigDecimal.valueOf(i, 2), 1);
+      }
+    }
+
+    assertThat(segments(directory).size()).isGreaterThan(1);
+    Recorder recorder = new Recorder();
+    try (Journal journal = Journal.open(directory, 256, Journal.FsyncPolicy.ALWAYS, 0, recorder)) {
+      journal.appendTransfer("Id-2", "Id-1", BigDecimal.ONE, 1);
+    }
+
+    assertThat(recorder.records).hasSize(21);
+    assertThat(recorder.records.get(0)).isEqualTo("create Id-1 100.50");
+    assertThat(recorder.records.get(20)).isEqualTo("transfer Id-1 Id-2 0.19");
+
+    Recorder reopened = new Recorder();
+    Journal.open(directory, 256, Journal.FsyncPolicy.NEVER, 0, reopened).close();
+    assertThat(reopened.records).hasSize(22);
+    assertThat(reopened.records.get(21)).isEqualTo("transfer Id-2 Id-1 1");
+  }
+
+  @Test
+  public void ignoresAndOverwritesTornTail() throws IOException {
+    Path directory = folder.getRoot().toPath();
+    long end;
+    try (Journal journal = Journal.open(directory, 4096, Journal.FsyncPolicy.ALWAYS, 0, new Recorder())) {
+      journal.appendCreate("Id-1", BigDecimal.TEN);
+      end = journal.appendTransfer("Id-1", "Id-2", BigDecimal.ONE, 1);
+    }
+
+    // corrupt the last byte of the second record, as a crash in the middle of the append would
+    try (RandomAccessFile file = new RandomAccessFile(segments(directory).get(0).toFile(), "rw")) {
+      file.seek(end - 1);
+      file.write(0x7f);
+    }
+
+    Recorder recorder = new Recorder();
+    try (Journal journal = Journal.open(directory, 4096, Journal.FsyncPolicy.ALWAYS, 0, recorder)) {
+      journal.appendTransfer("Id-1", "Id-3", BigDecimal.ONE, 1);
+    }
+    Recorder reopened = new Recorder();
+    Journal.open(directory, 4096, Journal.FsyncPolicy.ALWAYS, 0, reopened).close();
+
+    assertThat(recorder.records).containsExactly("create Id-1 10");
+    assertThat(reopened.records).containsExactly("create Id-1 10", "transfer Id-1 Id-3 1");
+  }
+
+  @Test
+  public void journaledRepositoryRestoresBalancesOnRestart() throws Exception {
+    JournalProperties properties = new JournalProperties();
+    properties.setDirectory(folder.newFolder("journal").getPath());
+    properties.setSegmentSize(1024);
+    SnapshotProperties snapshotProperties = new SnapshotProperties();
+    snapshotProperties.setDirectory(folder.newFolder("snapshots").getPath());
+
+    JournaledAccountsRepository repository = new JournaledAccountsRepository(new AccountsRepositoryInMemory(),
+      properties, new BalanceProperties(), snapshotProperties);
+    Account account = new Account("Id-1", new BigDecimal(1000));
+    Account anotherAccount = new Account("Id-2", new BigDecimal(1000));
+    repository.createAccount(account);
+    repository.createAccount(anotherAccount);
+    for (int i = 0; i < 50; i++) {
+      account.withdraw(BigDecimal.TEN);
+      anotherAccount.deposit(BigDecimal.TEN);
+      repository.recordTransfer("Id-1", "Id-2", BigDecimal.TEN, 1);
+    }
+    repository.destroy();
+
+    JournaledAccountsRepository restarted = new JournaledAccountsRepository(new AccountsRepositoryInMemory(),
+      properties, new BalanceProperties(), snapshotProperties);
+    assertThat(restarted.getAccount("Id-1").getBalance()).isEqualByComparingTo("500");
+    assertThat(restarted.getAccount("Id-2").getBalance()).isEqualByComparingTo("1500");
+    restarted.destroy();
+  }
+
+  @Test
+  public void transfersAreJournaledInTheOrderTheyAreApplied() throws Exception {
+    JournalProperties properties = journalProperties();
+    SnapshotProperties snapshotProperties = snapshotProperties();
+    JournaledAccountsRepository repository = new JournaledAccountsRepository(new AccountsRepositoryInMemory(),
+      properties, new BalanceProperties(), snapshotProperties);
+    AccountsService accountsService = accountsService(repository);
+    accountsService.createAccount(new Account("Id-1", new BigDecimal(1000)));
+    accountsService.createAccount(new Account("Id-2", BigDecimal.ZERO));
+    accountsService.createAccount(new Account("Id-3", BigDecimal.ZERO));
+
+    // the second thread only ever spends what the first one just deposited
+    Thread first = new Thread(() -> {
+      for (int i = 0; i < 1000; i++) {
+        accountsService.tryTransfer("Id-1", "Id-2", BigDecimal.ONE);
+      }
+    });
+    Thread second = new Thread(() -> {
+      for (int applied = 0; applied < 1000; ) {
+        if (accountsService.tryTransfer("Id-2", "Id-3", BigDecimal.ONE).isApplied()) {
+          applied++;
+        }
+      }
+    });
+    first.start();
+    second.start();
+    first.join();
+    second.join();
+    repository.destroy();
+
+    JournaledAccountsRepository restarted = new JournaledAccountsRepository(new AccountsRepositoryInMemory(),
+      properties, new BalanceProperties(), snapshotProperties);
+    assertThat(restarted.getAccount("Id-1").getBalance()).isEqualByComparingTo("0");
+    assertThat(restarted.getAccount("Id-2").getBalance()).isEqualByComparingTo("0");
+    assertThat(restarted.getAccount("Id-3").getBalance()).isEqualByComparingTo("1000");
+    restarted.destroy();
+  }
+
+  @Test
+  public void replayRejectsATransferThatWouldTakeABalanceBelowZero() throws IOException {
+    JournalProperties properties = journalProperties();
+    try (Journal journal = Journal.open(Paths.get(properties.getDirectory()), properties.getSegmentSize(),
+      Journal.FsyncPolicy.NEVER, 0, new Recorder())) {
+      journal.appendCreate("Id-1", BigDecimal.ONE);
+      journal.appendCreate("Id-2", BigDecimal.ZERO);
+      journal.appendTransfer("Id-1", "Id-2", BigDecimal.TEN, 1);
+    }
+
+    try {
+      new JournaledAccountsRepository(new AccountsRepositoryInMemory(), properties, new BalanceProperties(),
+        snapshotProperties());
+      fail("Should have failed to replay a transfer beyond the balance");
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).contains("below zero");
+    }
+  }
+
+  private JournalProperties journalProperties() throws IOException {
+    JournalProperties properties = new JournalProperties();
+    properties.setDirectory(folder.newFolder("journal").getPath());
+    properties.setSegmentSize(1024 * 1024);
+    return properties;
+  }
+
+  private SnapshotProperties snapshotProperties() throws IOException {
+    SnapshotProperties snapshotProperties = new SnapshotProperties();
+    snapshotProperties.setDirectory(folder.newFolder("snapshots").getPath());
+    return snapshotProperties;
+  }
+
+  /**
+   * Wired with the lock-free engine, which a repository that records transfers must not use.
+   */
+  private static AccountsService accountsService(AccountsRepository repository) {
+    AccountLocks locks = new AccountLocks(64);
+    EpochBarrier barrier = new EpochBarrier(locks);
+    return new AccountsService(repository, (account, description) -> {
+    }, new CasTransferEngine(locks, barrier), new BalanceProperties(), locks, barrier,
+      new TransferMetrics(locks, true), new TransactionLedger(new LedgerProperties()),
+      new AuditService(repository, barrier, new AuditProperties()));
+  }
+
+  private static List<Path> segments(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.sorted().collect(Collectors.toList());
+    }
+  }
+
+  private static class Recorder implements Journal.Visitor {
+
+    final List<String> records = new ArrayList<>();
+
+    @Override
+    public void accountCreated(String accountId, BigDecimal balance) {
+      records.add("create " + accountId + " " + balance);
+    }
+
+    @Override
+    public void transferApplied(String accountFromId, String accountToId, BigDecimal amount) {
+      records.add("transfer " + accountFromId + " " + accountToId + " " + amount);
+    }
+  }
+}
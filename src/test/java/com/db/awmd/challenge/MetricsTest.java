@@ -0,0 +1,127 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.BatchTransfer;
+import com.db.awmd.challenge.domain.MultiLegTransfer;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.metrics.HotAccounts;
+import com.db.awmd.challenge.metrics.LatencyHistogram;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.TransferMetrics;
+import com.db.awmd.challenge.web.RequestLatencyInterceptor;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.WebApplicationContext;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@WebAppConfiguration
+public class MetricsTest {
+
+  private MockMvc mockMvc;
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private TransferMetrics transferMetrics;
+
+  @Autowired
+  private RequestLatencyInterceptor requestLatencyInterceptor;
+
+  @Autowired
+  private WebApplicationContext webApplicationContext;
+
+  @Before
+  public void prepareMockMvc() {
+    this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+    accountsService.getAccountsRepository().clearAccounts();
+  }
+
+  @Test
+  public void histogramPercentilesAreWithinThePrecision() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long value = 1; value <= 100_000; value++) {
+      histogram.record(value * 1000);
+    }
+
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+    assertThat(snapshot.getCount()).isEqualTo(100_000);
+    assertThat(snapshot.percentile(50)).isBetween(50_000_000L, 51_600_000L);
+    assertThat(snapshot.percentile(99)).isBetween(99_000_000L, 102_200_000L);
+    assertThat(snapshot.getMax()).isBetween(100_000_000L, 103_200_000L);
+    assertThat(new LatencyHistogram().snapshot().percentile(99)).isZero();
+  }
+
+  @Test
+  public void hotAccountsFindTheMostTouchedAccounts() {
+    HotAccounts hotAccounts = new HotAccounts(8, 1);
+    for (int i = 0; i < 10_000; i++) {
+      hotAccounts.touched(i % 2 == 0 ? "Id-hot" : "Id-" + i);
+    }
+
+    List<HotAccounts.HotAccount> top = hotAccounts.top(3);
+    assertThat(top.get(0).getAccountId()).isEqualTo("Id-hot");
+    assertThat(top.get(0).getEstimatedTransfers()).isGreaterThanOrEqualTo(5_000);
+  }
+
+  @Test
+  public void transfersAndRequestsAreCounted() throws Exception {
+    accountsService.createAccount(new Account("Id-1", new BigDecimal(100)));
+    accountsService.createAccount(new Account("Id-2", new BigDecimal(100)));
+    long succeeded = transferMetrics.count(TransferMetrics.Outcome.SUCCESS);
+    long insufficient = transferMetrics.count(TransferMetrics.Outcome.INSUFFICIENT_FUNDS);
+
+    this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":10}")).andExpect(status().isOk());
+    this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":1000}"))
+      .andExpect(status().isBadRequest());
+
+    assertThat(transferMetrics.count(TransferMetrics.Outcome.SUCCESS)).isEqualTo(succeeded + 1);
+    assertThat(transferMetrics.count(TransferMetrics.Outcome.INSUFFICIENT_FUNDS)).isEqualTo(insufficient + 1);
+    Map<String, Number> metrics = requestLatencyInterceptor.metrics().stream()
+      .collect(Collectors.toMap(Metric::getName, Metric::getValue));
+    assertThat(metrics.get("http.post.v1.accounts.transfer.nanos.count").longValue()).isGreaterThanOrEqualTo(2);
+    assertThat(transferMetrics.metrics().stream().map(Metric::getName).collect(Collectors.toList()))
+      .contains("transfers.latency.nanos.p99", "locks.wait.nanos.count", "transfers.outcome.same-account");
+  }
+
+  @Test
+  public void everyTransferOfABatchOrMultiLegTransferIsCounted() {
+    accountsService.createAccount(new Account("Id-1", new BigDecimal(100)));
+    accountsService.createAccount(new Account("Id-2", new BigDecimal(100)));
+    long succeeded = transferMetrics.count(TransferMetrics.Outcome.SUCCESS);
+    long nonexistent = transferMetrics.count(TransferMetrics.Outcome.NONEXISTENT_ACCOUNT);
+    long insufficient = transferMetrics.count(TransferMetrics.Outcome.INSUFFICIENT_FUNDS);
+    long aborted = transferMetrics.count(TransferMetrics.Outcome.ABORTED);
+
+    accountsService.transfer(new BatchTransfer(BatchTransfer.Mode.BEST_EFFORT, Arrays.asList(
+      new Transfer("Id-1", "Id-2", BigDecimal.ONE), new Transfer("Id-1", "Id-9", BigDecimal.ONE))));
+    accountsService.transfer(new MultiLegTransfer("Id-1", Arrays.asList(
+      new MultiLegTransfer.Leg("Id-2", BigDecimal.ONE), new MultiLegTransfer.Leg("Id-2", new BigDecimal(1000)))));
+
+    assertThat(transferMetrics.count(TransferMetrics.Outcome.SUCCESS)).isEqualTo(succeeded + 1);
+    assertThat(transferMetrics.count(TransferMetrics.Outcome.NONEXISTENT_ACCOUNT)).isEqualTo(nonexistent + 1);
+    assertThat(transferMetrics.count(TransferMetrics.Outcome.INSUFFICIENT_FUNDS)).isEqualTo(insufficient + 1);
+    assertThat(transferMetrics.count(TransferMetrics.Outcome.ABORTED)).isEqualTo(aborted + 1);
+  }
+}
@@ -0,0 +1,130 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import com.db.awmd.challenge.config.AuditProperties;
+import com.db.awmd.challenge.config.BalanceProperties;
+import com.db.awmd.challenge.config.LedgerProperties;
+import com.db.awmd.challenge.config.OffHeapProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.repository.OffHeapAccountsRepository;
+import com.db.awmd.challenge.service.AccountLocks;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.AuditService;
+import com.db.awmd.challenge.service.EpochBarrier;
+import com.db.awmd.challenge.service.StripedLockTransferEngine;
+import com.db.awmd.challenge.service.TransactionLedger;
+import com.db.awmd.challenge.service.TransferMetrics;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OffHeapAccountsRepositoryTest {
+
+  private OffHeapAccountsRepository repository;
+
+  @Before
+  public void setUp() {
+    OffHeapProperties properties = new OffHeapProperties();
+    properties.setCapacity(10_000);
+    repository = new OffHeapAccountsRepository(properties, new BalanceProperties());
+  }
+
+  @After
+  public void tearDown() {
+    repository.destroy();
+  }
+
+  @Test
+  public void storesAccountsAndRejectsDuplicates() {
+    repository.createAccount(new Account("Id-1", new BigDecimal("12.34")));
+
+    Account account = repository.getAccount("Id-1");
+    assertThat(account.getAccountId()).isEqualTo("Id-1");
+    assertThat(account.getBalance()).isEqualByComparingTo("12.34");
+    assertThat(repository.getAccount("Id-2")).isNull();
+
+    account.deposit(BigDecimal.ONE);
+    assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("13.34");
+
+    try {
+      repository.createAccount(new Account("Id-1", BigDecimal.ZERO));
+      fail("Should have failed when adding duplicate account");
+    } catch (DuplicateAccountIdException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Account id Id-1 already exists!");
+    }
+  }
+
+  @Test
+  public void concurrentCreatesOfTheSameIdsHaveOneWinnerEach() throws InterruptedException {
+    AtomicInteger created = new AtomicInteger();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      Thread thread = new Thread(() -> {
+        for (int i = 0; i < 5_000; i++) {
+          try {
+            repository.createAccount(new Account("Id-" + i, BigDecimal.TEN));
+            created.incrementAndGet();
+          } catch (DuplicateAccountIdException e) {
+            // another thread won
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(created.get()).isEqualTo(5_000);
+    assertThat(repository.size()).isEqualTo(5_000);
+    assertThat(repository.getAccount("Id-4999").getBalance()).isEqualByComparingTo("10");
+  }
+
+  @Test
+  public void transfersThroughTheServiceKeepTheTotal() throws InterruptedException {
+    AccountLocks locks = new AccountLocks(64);
+    EpochBarrier barrier = new EpochBarrier(locks);
+    AccountsService service = new AccountsService(repository, (account, description) -> {
+    }, new StripedLockTransferEngine(locks, barrier), new BalanceProperties(), locks, barrier,
+      new TransferMetrics(locks, true), new TransactionLedger(new LedgerProperties()),
+      new AuditService(repository, barrier, new AuditProperties()));
+    for (int i = 0; i < 16; i++) {
+      service.createAccount(new Account("Id-" + i, new BigDecimal(100)));
+    }
+
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      Thread thread = new Thread(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 20_000; i++) {
+          int from = random.nextInt(16);
+          try {
+            service.transfer("Id-" + from, "Id-" + ((from + 1 + random.nextInt(15)) % 16), new BigDecimal("0.25"));
+          } catch (Exception e) {
+            // insufficient funds now and then
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    BigDecimal total = BigDecimal.ZERO;
+    for (int i = 0; i < 16; i++) {
+      total = total.add(repository.getAccount("Id-" + i).getBalance());
+    }
+    assertThat(total).isEqualByComparingTo("1600");
+  }
+}
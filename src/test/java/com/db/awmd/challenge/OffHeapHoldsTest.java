@@ -0,0 +1,10 @@
+package com.db.awmd.challenge;
+
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * The hold tests against the off-heap repository, whose accounts are fresh views over a record on every lookup.
+ */
+@ActiveProfiles("offheap")
+public class OffHeapHoldsTest extends HoldsTest {
+}
@@ -0,0 +1,202 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.config.AuditProperties;
+import com.db.awmd.challenge.config.BalanceProperties;
+import com.db.awmd.challenge.config.LedgerProperties;
+import com.db.awmd.challenge.config.ReplicationProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.ReplicatedAccountsRepository;
+import com.db.awmd.challenge.repository.ReplicationLog;
+import com.db.awmd.challenge.service.AccountLocks;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.AuditService;
+import com.db.awmd.challenge.service.EpochBarrier;
+import com.db.awmd.challenge.service.ReplicationFollower;
+import com.db.awmd.challenge.service.ReplicationLeader;
+import com.db.awmd.challenge.service.StripedLockTransferEngine;
+import com.db.awmd.challenge.service.TransactionLedger;
+import com.db.awmd.challenge.service.TransferMetrics;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Test;
+
+public class ReplicationTest {
+
+  private static final int ACCOUNTS = 200;
+
+  private final List<AutoCloseable> nodes = new ArrayList<>();
+
+  @After
+  public void stopNodes() throws Exception {
+    for (AutoCloseable node : nodes) {
+      node.close();
+    }
+  }
+
+  @Test
+  public void followerStartedUnderLoadConvergesWithTheLeader() throws Exception {
+    Node leader = new Node(new ReplicatedAccountsRepository(new AccountsRepositoryInMemory(), properties(0)));
+    ReplicationLeader replicationLeader = leader.lead();
+    for (int i = 0; i < ACCOUNTS; i++) {
+      leader.service.createAccount(new Account("Id-" + i, new BigDecimal("1000.25")));
+    }
+
+    AtomicBoolean running = new AtomicBoolean(true);
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 3; t++) {
+      Thread thread = new Thread(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (running.get()) {
+          int from = random.nextInt(ACCOUNTS);
+          int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+          leader.service.tryTransfer("Id-" + from, "Id-" + to, new BigDecimal(random.nextInt(1, 100)));
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    Thread.sleep(100);
+
+    // the snapshot is taken while transfers run, and the follower skips the logged ones it already contains
+    Node follower = new Node(new AccountsRepositoryInMemory());
+    ReplicationFollower replicationFollower = follower.follow(replicationLeader.port());
+    for (int i = 0; i < 50; i++) {
+      leader.service.createAccount(new Account("New-" + i, BigDecimal.TEN));
+      Thread.sleep(5);
+    }
+    running.set(false);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    long position = ((ReplicatedAccountsRepository) leader.repository).getLog().position();
+    awaitApplied(replicationFollower, position);
+    for (Account account : leader.repository.allAccounts()) {
+      assertThat(follower.service.getAccount(account.getAccountId()).getBalance())
+        .as(account.getAccountId()).isEqualByComparingTo(account.getBalance());
+    }
+    assertThat(follower.audit.summarize().getAccounts()).isEqualTo(ACCOUNTS + 50);
+    assertThat(follower.audit.checkTotal()).isTrue();
+    assertThat(replicationFollower.stalenessMillis()).isLessThan(1000);
+  }
+
+  @Test
+  public void followerGetsStaleWithoutTheLeaderAndCatchesUpAgain() throws Exception {
+    Node leader = new Node(new ReplicatedAccountsRepository(new AccountsRepositoryInMemory(), properties(0)));
+    ReplicationLeader replicationLeader = leader.lead();
+    leader.service.createAccount(new Account("Id-1", BigDecimal.TEN));
+    Node follower = new Node(new AccountsRepositoryInMemory());
+    ReplicationFollower replicationFollower = follower.follow(replicationLeader.port());
+    awaitApplied(replicationFollower, ((ReplicatedAccountsRepository) leader.repository).getLog().position());
+
+    replicationLeader.destroy();
+    Thread.sleep(300);
+    assertThat(replicationFollower.stalenessMillis()).isGreaterThanOrEqualTo(250);
+
+    ReplicationLeader restarted = leader.lead(replicationLeader.port());
+    leader.service.createAccount(new Account("Id-2", BigDecimal.ONE));
+    awaitApplied(replicationFollower, ((ReplicatedAccountsRepository) leader.repository).getLog().position());
+    assertThat(follower.service.getAccount("Id-2").getBalance()).isEqualByComparingTo("1");
+    assertThat(restarted.metrics().stream().filter(m -> m.getName().equals("replication.snapshots"))
+      .findFirst().get().getValue().longValue()).isZero();
+  }
+
+  @Test
+  public void logReportsOverwrittenRecordsAndDecodesAcrossReads() {
+    ReplicationLog log = new ReplicationLog(0);
+    List<String> created = new ArrayList<>();
+    ReplicationLog.Visitor visitor = new ReplicationLog.Visitor() {
+      @Override
+      public void accountCreated(String accountId, BigDecimal balance) {
+        created.add(accountId);
+      }
+
+      @Override
+      public void transferApplied(String accountFromId, String accountToId, BigDecimal amount, long epoch) {
+      }
+
+      @Override
+      public void accountsCleared() {
+      }
+    };
+
+    long first = log.appendCreate("Id-000000", BigDecimal.ONE);
+    ByteBuffer buffer = ByteBuffer.allocate(first > 3 ? (int) first - 3 : 1);
+    assertThat(log.read(0, buffer)).isEqualTo(buffer.capacity());
+    buffer.flip();
+    assertThat(ReplicationLog.decode(buffer, visitor)).isZero();
+
+    for (int i = 1; log.position() < 1 << 20; i++) {
+      log.appendCreate(String.format("Id-%06d", i), BigDecimal.ONE);
+    }
+    assertThat(log.read(0, ByteBuffer.allocate(16))).isEqualTo(-1);
+    assertThat(log.read(log.position() + 1, ByteBuffer.allocate(16))).isEqualTo(-1);
+
+    ByteBuffer tail = ByteBuffer.allocate(1024);
+    long from = log.position() - 3 * first;
+    log.read(from, tail);
+    tail.flip();
+    assertThat(ReplicationLog.decode(tail, visitor)).isEqualTo(3);
+    assertThat(created).hasSize(3);
+  }
+
+  private static void awaitApplied(ReplicationFollower follower, long position) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (follower.appliedPosition() < position && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    assertThat(follower.appliedPosition()).isEqualTo(position);
+  }
+
+  private static ReplicationProperties properties(int port) {
+    ReplicationProperties properties = new ReplicationProperties();
+    properties.setPort(port);
+    properties.setLogCapacity(1 << 20);
+    properties.setHeartbeatMillis(20);
+    properties.setReconnectMillis(50);
+    return properties;
+  }
+
+  private final class Node {
+
+    final AccountsRepository repository;
+    final AccountLocks locks = new AccountLocks(64);
+    final EpochBarrier barrier = new EpochBarrier(locks);
+    final AuditService audit;
+    final AccountsService service;
+
+    Node(AccountsRepository repository) {
+      this.repository = repository;
+      this.audit = new AuditService(repository, barrier, new AuditProperties());
+      this.service = new AccountsService(repository, (account, description) -> {
+      }, new StripedLockTransferEngine(locks, barrier), new BalanceProperties(), locks, barrier,
+        new TransferMetrics(locks, true), new TransactionLedger(new LedgerProperties()), audit);
+    }
+
+    ReplicationLeader lead() throws Exception {
+      return lead(0);
+    }
+
+    ReplicationLeader lead(int port) throws Exception {
+      ReplicationLeader leader = new ReplicationLeader((ReplicatedAccountsRepository) repository, barrier,
+        properties(port));
+      nodes.add(leader::destroy);
+      return leader;
+    }
+
+    ReplicationFollower follow(int port) {
+      ReplicationFollower follower = new ReplicationFollower(service, locks, barrier, properties(port));
+      nodes.add(follower::destroy);
+      return follower;
+    }
+  }
+}
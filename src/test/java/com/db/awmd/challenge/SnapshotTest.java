@@ -0,0 +1,155 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.config.AuditProperties;
+import com.db.awmd.challenge.config.BalanceProperties;
+import com.db.awmd.challenge.config.JournalProperties;
+import com.db.awmd.challenge.config.LedgerProperties;
+import com.db.awmd.challenge.config.SnapshotProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.Journal;
+import com.db.awmd.challenge.repository.JournaledAccountsRepository;
+import com.db.awmd.challenge.repository.SnapshotFile;
+import com.db.awmd.challenge.service.AccountLocks;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.AuditService;
+import com.db.awmd.challenge.service.CasTransferEngine;
+import com.db.awmd.challenge.service.EpochBarrier;
+import com.db.awmd.challenge.service.SnapshotService;
+import com.db.awmd.challenge.service.TransactionLedger;
+import com.db.awmd.challenge.service.TransferMetrics;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SnapshotTest {
+
+  private static final int ACCOUNTS = 64;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private JournalProperties journalProperties;
+  private SnapshotProperties snapshotProperties;
+
+  @Before
+  public void setUp() throws IOException {
+    journalProperties = new JournalProperties();
+    journalProperties.setDirectory(folder.newFolder("journal").getPath());
+    journalProperties.setSegmentSize(64 * 1024);
+    journalProperties.setFsync(Journal.FsyncPolicy.NEVER);
+    snapshotProperties = new SnapshotProperties();
+    snapshotProperties.setDirectory(folder.newFolder("snapshots").getPath());
+  }
+
+  @Test
+  public void snapshotsTakenUnderLoadAreConsistentAndRestoreWithTheTail() throws Exception {
+    JournaledAccountsRepository repository = repository();
+    AccountLocks locks = new AccountLocks(1024);
+    EpochBarrier barrier = new EpochBarrier(locks);
+    SnapshotService snapshots = new SnapshotService(repository, barrier);
+    AccountsService service = new AccountsService(repository, (account, description) -> {
+    }, new CasTransferEngine(locks, barrier), new BalanceProperties(), locks, barrier,
+      new TransferMetrics(locks, true), new TransactionLedger(new LedgerProperties()),
+      new AuditService(repository, barrier, new AuditProperties()));
+    for (int i = 0; i < ACCOUNTS; i++) {
+      service.createAccount(new Account("Id-" + i, new BigDecimal(100)));
+    }
+
+    AtomicBoolean running = new AtomicBoolean(true);
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      Thread thread = new Thread(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (running.get()) {
+          int from = random.nextInt(ACCOUNTS);
+          int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+          try {
+            service.transfer("Id-" + from, "Id-" + to, BigDecimal.valueOf(random.nextInt(1, 500), 2));
+          } catch (InsufficientFundsException e) {
+            // expected now and then
+          } catch (Exception e) {
+            throw new IllegalStateException(e);
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+
+    for (int i = 0; i < 10; i++) {
+      Thread.sleep(20);
+      SnapshotFile.Snapshot snapshot = snapshots.takeSnapshot();
+      assertThat(snapshot.getAccounts()).isEqualTo(ACCOUNTS);
+      assertThat(total(snapshot)).isEqualByComparingTo(new BigDecimal(100 * ACCOUNTS));
+    }
+    running.set(false);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    repository.destroy();
+
+    assertThat(SnapshotFile.list(Paths.get(snapshotProperties.getDirectory()))).hasSize(2);
+    JournaledAccountsRepository restarted = repository();
+    for (int i = 0; i < ACCOUNTS; i++) {
+      assertThat(restarted.getAccount("Id-" + i).getBalance())
+        .isEqualByComparingTo(repository.getAccount("Id-" + i).getBalance());
+    }
+    assertThat(restarted.lastEpoch()).isGreaterThan(10);
+    restarted.destroy();
+  }
+
+  @Test
+  public void fallsBackToTheOlderSnapshotWhenTheLatestIsCorrupt() throws Exception {
+    JournaledAccountsRepository repository = repository();
+    AccountLocks locks = new AccountLocks(16);
+    EpochBarrier barrier = new EpochBarrier(locks);
+    SnapshotService snapshots = new SnapshotService(repository, barrier);
+    AccountsService service = new AccountsService(repository, (account, description) -> {
+    }, new CasTransferEngine(locks, barrier), new BalanceProperties(), locks, barrier,
+      new TransferMetrics(locks, true), new TransactionLedger(new LedgerProperties()),
+      new AuditService(repository, barrier, new AuditProperties()));
+    service.createAccount(new Account("Id-1", new BigDecimal(100)));
+    service.createAccount(new Account("Id-2", new BigDecimal(100)));
+
+    service.transfer("Id-1", "Id-2", BigDecimal.TEN);
+    snapshots.takeSnapshot();
+    service.transfer("Id-1", "Id-2", BigDecimal.TEN);
+    SnapshotFile.Snapshot latest = snapshots.takeSnapshot();
+    service.transfer("Id-1", "Id-2", BigDecimal.TEN);
+    repository.destroy();
+
+    try (RandomAccessFile file = new RandomAccessFile(latest.getFile().toFile(), "rw")) {
+      file.seek(file.length() / 2);
+      file.write(0x7f);
+    }
+
+    JournaledAccountsRepository restarted = repository();
+    assertThat(restarted.getAccount("Id-1").getBalance()).isEqualByComparingTo("70");
+    assertThat(restarted.getAccount("Id-2").getBalance()).isEqualByComparingTo("130");
+    restarted.destroy();
+  }
+
+  private JournaledAccountsRepository repository() throws IOException {
+    return new JournaledAccountsRepository(new AccountsRepositoryInMemory(), journalProperties,
+      new BalanceProperties(), snapshotProperties);
+  }
+
+  private static BigDecimal total(SnapshotFile.Snapshot snapshot) throws IOException {
+    BigDecimal[] total = {BigDecimal.ZERO};
+    SnapshotFile.load(snapshot.getFile(), (id, balance) -> total[0] = total[0].add(balance));
+    return total[0];
+  }
+}
@@ -0,0 +1,56 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.config.LedgerProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.LedgerEntry;
+import com.db.awmd.challenge.domain.LedgerPage;
+import com.db.awmd.challenge.service.TransactionLedger;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class TransactionLedgerTest {
+
+  @Test
+  public void keepsTheMostRecentEntriesAndPagesThroughThem() {
+    LedgerProperties properties = new LedgerProperties();
+    properties.setEntriesPerAccount(100);
+    TransactionLedger ledger = new TransactionLedger(properties);
+    Account from = new Account("Id-1", new BigDecimal(1000));
+    Account to = new Account("Id-2", BigDecimal.ZERO);
+    for (int i = 1; i <= 250; i++) {
+      ledger.record(from, to, new BigDecimal(i));
+    }
+
+    List<LedgerEntry> entries = new ArrayList<>();
+    Long cursor = null;
+    do {
+      LedgerPage page = ledger.page("Id-2", cursor, 30);
+      entries.addAll(page.getEntries());
+      cursor = page.getNextCursor();
+    } while (cursor != null);
+
+    assertThat(entries).hasSize(100);
+    assertThat(entries.get(0).getSequence()).isEqualTo(250);
+    assertThat(entries.get(0).getAmount()).isEqualByComparingTo("250");
+    assertThat(entries.get(99).getSequence()).isEqualTo(151);
+    assertThat(entries.get(99).getAmount()).isEqualByComparingTo("151");
+    assertThat(entries.get(99).getCounterpartyId()).isEqualTo("Id-1");
+    assertThat(ledger.page("Id-1", null, 1).getEntries().get(0).getAmount()).isEqualByComparingTo("-250");
+  }
+
+  @Test
+  public void recordsNothingWhenDisabled() {
+    LedgerProperties properties = new LedgerProperties();
+    properties.setEnabled(false);
+    TransactionLedger ledger = new TransactionLedger(properties);
+    ledger.record(new Account("Id-1", BigDecimal.TEN), new Account("Id-2", BigDecimal.ZERO), BigDecimal.ONE);
+
+    LedgerPage page = ledger.page("Id-1", null, 10);
+    assertThat(page.getEntries()).isEmpty();
+    assertThat(page.getNextCursor()).isNull();
+  }
+}
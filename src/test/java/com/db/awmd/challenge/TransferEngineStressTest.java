@@ -0,0 +1,221 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.service.AccountLocks;
+import com.db.awmd.challenge.service.CasTransferEngine;
+import com.db.awmd.challenge.exception.BalanceOverflowException;
+import com.db.awmd.challenge.service.EpochBarrier;
+import com.db.awmd.challenge.service.ShardedTransferEngine;
+import com.db.awmd.challenge.service.StripedLockTransferEngine;
+import com.db.awmd.challenge.service.TransferEngine;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+
+@Slf4j
+public class TransferEngineStressTest {
+
+  private static final int TRANSFERS_PER_THREAD = 200_000;
+
+  private final AccountLocks locks = new AccountLocks(1024);
+
+  @Test
+  public void stripedEngine_scalesOnDisjointPairs() throws InterruptedException {
+    measureScaling(new StripedLockTransferEngine(locks, new EpochBarrier(locks)));
+  }
+
+  @Test
+  public void casEngine_scalesOnDisjointPairs() throws InterruptedException {
+    measureScaling(new CasTransferEngine(locks, new EpochBarrier(locks)));
+  }
+
+  @Test
+  public void stripedEngine_noLostUpdatesOnHotPair() throws InterruptedException {
+    assertNoLostUpdates(new StripedLockTransferEngine(locks, new EpochBarrier(locks)));
+  }
+
+  @Test
+  public void casEngine_noLostUpdatesOnHotPair() throws InterruptedException {
+    assertNoLostUpdates(new CasTransferEngine(locks, new EpochBarrier(locks)));
+  }
+
+  @Test
+  public void stripedEngine_noLostUpdatesOnCombiningPair() throws InterruptedException {
+    assertNoLostUpdates(new StripedLockTransferEngine(locks, new EpochBarrier(locks)), true);
+  }
+
+  @Test
+  public void casEngine_noLostUpdatesOnCombiningPair() throws InterruptedException {
+    assertNoLostUpdates(new CasTransferEngine(locks, new EpochBarrier(locks)), true);
+  }
+
+  @Test
+  public void combiningAccount_withdrawsCombinedDeposits() {
+    StripedLockTransferEngine engine = new StripedLockTransferEngine(locks, new EpochBarrier(locks));
+    Account payer = new Account("Id-A", new BigDecimal(10));
+    Account merchant = new Account("Id-B", BigDecimal.ZERO);
+    merchant.useFixedPoint(2);
+    merchant.combineDepositsAfter(1);
+    merchant.contended();
+    assertThat(merchant.isCombiningDeposits()).isTrue();
+
+    assertThat(engine.transfer(payer, merchant, new BigDecimal("4.25"), 1)).isTrue();
+    assertThat(engine.transfer(payer, merchant, new BigDecimal("5.75"), 1)).isTrue();
+    assertThat(merchant.getBalance()).isEqualByComparingTo("10");
+
+    assertThat(engine.transfer(merchant, payer, new BigDecimal("10.01"), 1)).isFalse();
+    assertThat(engine.transfer(merchant, payer, new BigDecimal(10), 1)).isTrue();
+    assertThat(merchant.getBalance()).isEqualByComparingTo("0");
+    assertThat(payer.getBalance()).isEqualByComparingTo("10");
+  }
+
+  @Test
+  public void shardedEngine_scalesOnDisjointPairs() throws InterruptedException {
+    ShardedTransferEngine engine = new ShardedTransferEngine(locks, new EpochBarrier(locks), 4);
+    measureScaling(engine);
+    engine.destroy();
+  }
+
+  @Test
+  public void shardedEngine_noLostUpdatesOnHotPair() throws InterruptedException {
+    ShardedTransferEngine engine = new ShardedTransferEngine(locks, new EpochBarrier(locks), 4);
+    assertNoLostUpdates(engine);
+    engine.destroy();
+  }
+
+  /**
+   * With 64 shards most of the destinations are owned by another shard than the source, so both the local and the
+   * two-phase path are exercised.
+   */
+  @Test
+  public void shardedEngine_undoesTheDebitWhenTheCreditFails() {
+    ShardedTransferEngine engine = new ShardedTransferEngine(locks, new EpochBarrier(locks), 64);
+    Account from = new Account("Id-A", new BigDecimal(100));
+    for (int i = 0; i < 16; i++) {
+      Account to = new Account("Id-" + i, BigDecimal.valueOf(Long.MAX_VALUE, 2));
+      to.useFixedPoint(2);
+
+      assertThat(engine.transfer(from, to, new BigDecimal(1000), 1)).isFalse();
+      try {
+        engine.transfer(from, to, BigDecimal.TEN, 1);
+        fail("Should have failed when the destination balance overflows");
+      } catch (BalanceOverflowException e) {
+        assertThat(from.getBalance()).isEqualByComparingTo("100");
+        assertThat(to.getBalance()).isEqualByComparingTo(BigDecimal.valueOf(Long.MAX_VALUE, 2));
+      }
+    }
+    engine.destroy();
+  }
+
+  /**
+   * Every thread moves money back and forth inside its own pair of accounts, so throughput should grow
+   * with the thread count until the cores run out. The numbers are logged rather than asserted to keep
+   * the build stable on shared machines; the balances of every pair must be preserved.
+   */
+  private void measureScaling(TransferEngine engine) throws InterruptedException {
+    int cores = Runtime.getRuntime().availableProcessors();
+    for (int threads = 1; threads <= cores; threads *= 2) {
+      List<Account> accounts = new ArrayList<>();
+      for (int i = 0; i < threads * 2; i++) {
+        accounts.add(new Account("Id-" + i, new BigDecimal(1000)));
+      }
+
+      long elapsed = run(threads, thread -> {
+        Account a = accounts.get(thread * 2);
+        Account b = accounts.get(thread * 2 + 1);
+        for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+          if ((i & 1) == 0) {
+            engine.transfer(a, b, BigDecimal.ONE, 1);
+          } else {
+            engine.transfer(b, a, BigDecimal.ONE, 1);
+          }
+        }
+      });
+
+      for (Account account : accounts) {
+        assertThat(account.getBalance()).isEqualByComparingTo("1000");
+      }
+      log.info("{} with {} thread(s): {} transfers/s", engine.getClass().getSimpleName(), threads,
+        (long) threads * TRANSFERS_PER_THREAD * 1_000_000_000L / Math.max(1, elapsed));
+    }
+  }
+
+  private void assertNoLostUpdates(TransferEngine engine) throws InterruptedException {
+    assertNoLostUpdates(engine, false);
+  }
+
+  /**
+   * @param combining whether both accounts combine their deposits from the start, one with a decimal and one with
+   *                  a fixed-point balance
+   */
+  private void assertNoLostUpdates(TransferEngine engine, boolean combining) throws InterruptedException {
+    int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+    Account a = new Account("Id-A", new BigDecimal(1_000_000));
+    Account b = new Account("Id-B", new BigDecimal(1_000_000));
+    if (combining) {
+      b.useFixedPoint(2);
+      for (Account account : new Account[] {a, b}) {
+        account.combineDepositsAfter(1);
+        account.contended();
+      }
+    }
+
+    run(threads, thread -> {
+      for (int i = 0; i < TRANSFERS_PER_THREAD / 4; i++) {
+        if ((thread & 1) == 0) {
+          engine.transfer(a, b, BigDecimal.ONE, 1);
+        } else {
+          engine.transfer(b, a, new BigDecimal(2), 1);
+        }
+      }
+    });
+
+    long forward = (long) ((threads + 1) / 2) * (TRANSFERS_PER_THREAD / 4);
+    long backward = (long) (threads / 2) * (TRANSFERS_PER_THREAD / 4) * 2;
+    assertThat(a.getBalance()).isEqualByComparingTo(BigDecimal.valueOf(1_000_000 - forward + backward));
+    assertThat(b.getBalance()).isEqualByComparingTo(BigDecimal.valueOf(1_000_000 + forward - backward));
+  }
+
+  private long run(int threads, Worker worker) throws InterruptedException {
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> workers = new ArrayList<>(threads);
+    List<Throwable> failures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      int thread = t;
+      workers.add(new Thread(() -> {
+        try {
+          start.await();
+          worker.run(thread);
+        } catch (Exception e) {
+          synchronized (failures) {
+            failures.add(e);
+          }
+        }
+      }));
+    }
+    for (Thread t : workers) {
+      t.start();
+    }
+
+    long begin = System.nanoTime();
+    start.countDown();
+    for (Thread t : workers) {
+      t.join();
+    }
+    long elapsed = System.nanoTime() - begin;
+
+    assertThat(failures).isEmpty();
+    return elapsed;
+  }
+
+  private interface Worker {
+
+    void run(int thread) throws Exception;
+  }
+}
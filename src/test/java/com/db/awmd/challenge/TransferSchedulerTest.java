@@ -0,0 +1,163 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import com.db.awmd.challenge.config.AuditProperties;
+import com.db.awmd.challenge.config.BalanceProperties;
+import com.db.awmd.challenge.config.LedgerProperties;
+import com.db.awmd.challenge.config.SchedulerProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.ScheduledTransfer;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.AccountLocks;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.AuditService;
+import com.db.awmd.challenge.service.EpochBarrier;
+import com.db.awmd.challenge.service.StripedLockTransferEngine;
+import com.db.awmd.challenge.service.TransactionLedger;
+import com.db.awmd.challenge.service.TransferMetrics;
+import com.db.awmd.challenge.service.TransferScheduler;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.WebApplicationContext;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@WebAppConfiguration
+public class TransferSchedulerTest {
+
+  private MockMvc mockMvc;
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private TransferScheduler transferScheduler;
+
+  @Autowired
+  private WebApplicationContext webApplicationContext;
+
+  @Before
+  public void prepareMockMvc() {
+    this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+    accountsService.getAccountsRepository().clearAccounts();
+    accountsService.createAccount(new Account("Id-1", new BigDecimal(100)));
+    accountsService.createAccount(new Account("Id-2", new BigDecimal(100)));
+  }
+
+  @Test
+  public void scheduledTransferRunsAtItsTime() throws Exception {
+    long executeAt = System.currentTimeMillis() + 50;
+    String created = this.mockMvc.perform(post("/v1/accounts/transfers/scheduled")
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":30,\"executeAt\":" + executeAt + "}"))
+      .andExpect(status().isCreated())
+      .andExpect(jsonPath("$.status").value("PENDING"))
+      .andReturn().getResponse().getContentAsString();
+    long id = Long.parseLong(created.replaceAll(".*\"id\":(\\d+).*", "$1"));
+
+    ScheduledTransfer transfer = awaitFinished(transferScheduler, id);
+    assertThat(transfer.getStatus()).isEqualTo(ScheduledTransfer.Status.APPLIED);
+    assertThat(transfer.getFinishedAt()).isGreaterThanOrEqualTo(executeAt);
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("70");
+    assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("130");
+
+    this.mockMvc.perform(get("/v1/accounts/transfers/scheduled/" + id))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.status").value("APPLIED"));
+    this.mockMvc.perform(delete("/v1/accounts/transfers/scheduled/" + id))
+      .andExpect(status().isConflict());
+  }
+
+  @Test
+  public void pendingTransferCanBeCancelled() throws Exception {
+    long id = transferScheduler.schedule("Id-1", "Id-2", BigDecimal.TEN, System.currentTimeMillis() + 3_600_000)
+      .getId();
+
+    this.mockMvc.perform(delete("/v1/accounts/transfers/scheduled/" + id))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.status").value("CANCELLED"));
+    this.mockMvc.perform(get("/v1/accounts/transfers/scheduled/" + id))
+      .andExpect(jsonPath("$.status").value("CANCELLED"));
+    this.mockMvc.perform(get("/v1/accounts/transfers/scheduled/0")).andExpect(status().isNotFound());
+  }
+
+  @Test
+  public void transferToUnknownAccountIsNotScheduled() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts/transfers/scheduled").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-3\",\"amount\":30,\"executeAt\":0}"))
+      .andExpect(status().isBadRequest())
+      .andExpect(content().string("Account: Id-3 does not exist"));
+  }
+
+  /**
+   * With 1 ms ticks the lowest level of the wheel spans 256 ms, so these transfers also go through the cascade
+   * from the second level.
+   */
+  @Test
+  public void everyTransferRunsOnceAndNotEarlyAcrossWheelLevels() throws InterruptedException {
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+    AccountLocks locks = new AccountLocks(64);
+    EpochBarrier barrier = new EpochBarrier(locks);
+    AccountsService service = new AccountsService(repository, (account, description) -> {
+    }, new StripedLockTransferEngine(locks, barrier), new BalanceProperties(), locks, barrier,
+      new TransferMetrics(locks, true), new TransactionLedger(new LedgerProperties()),
+      new AuditService(repository, barrier, new AuditProperties()));
+    service.createAccount(new Account("Id-A", new BigDecimal(1_000_000)));
+    service.createAccount(new Account("Id-B", BigDecimal.ZERO));
+    SchedulerProperties properties = new SchedulerProperties();
+    properties.setTickMillis(1);
+    properties.setBatchSize(64);
+    TransferScheduler scheduler = new TransferScheduler(service, properties);
+
+    Random random = new Random(7);
+    long now = System.currentTimeMillis();
+    List<Long> ids = new ArrayList<>();
+    for (int i = 0; i < 5_000; i++) {
+      long executeAt = now - 100 + random.nextInt(800);
+      ids.add(scheduler.schedule("Id-A", "Id-B", BigDecimal.ONE, executeAt).getId());
+    }
+    long cancelled = scheduler.schedule("Id-A", "Id-B", new BigDecimal(1_000), now + 300).getId();
+    scheduler.cancel(cancelled);
+
+    for (long id : ids) {
+      ScheduledTransfer transfer = awaitFinished(scheduler, id);
+      assertThat(transfer.getStatus()).isEqualTo(ScheduledTransfer.Status.APPLIED);
+      assertThat(transfer.getFinishedAt()).isGreaterThanOrEqualTo(transfer.getExecuteAt());
+    }
+    assertThat(scheduler.pending()).isZero();
+    assertThat(scheduler.get(cancelled).getStatus()).isEqualTo(ScheduledTransfer.Status.CANCELLED);
+    assertThat(service.getAccount("Id-B").getBalance()).isEqualByComparingTo("5000");
+    scheduler.destroy();
+  }
+
+  private static ScheduledTransfer awaitFinished(TransferScheduler scheduler, long id) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5_000;
+    ScheduledTransfer transfer = scheduler.get(id);
+    while (transfer.getStatus() == ScheduledTransfer.Status.PENDING
+      || transfer.getStatus() == ScheduledTransfer.Status.RUNNING) {
+      assertThat(System.currentTimeMillis()).isLessThan(deadline);
+      Thread.sleep(5);
+      transfer = scheduler.get(id);
+    }
+    return transfer;
+  }
+}